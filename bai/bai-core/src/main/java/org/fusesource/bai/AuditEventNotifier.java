@@ -20,17 +20,17 @@ import org.apache.camel.ProducerTemplate;
 import org.apache.camel.management.event.AbstractExchangeEvent;
 import org.apache.camel.util.ObjectHelper;
 import org.apache.camel.util.ServiceHelper;
-import org.fusesource.bai.config.Policy;
+import org.fusesource.bai.config.CompiledPolicySet;
 import org.fusesource.bai.config.PolicySet;
 
 import java.util.EventObject;
-import java.util.List;
 
 /**
  * An Auditor which uses an XML/JSON {@link org.fusesource.bai.config.PolicySet} to define its filters
  */
 public class AuditEventNotifier extends AuditEventNotifierSupport {
     private PolicySet policySet;
+    private volatile CompiledPolicySet compiledPolicySet;
     private ProducerTemplate producerTemplate;
     private String name = "";
 
@@ -52,6 +52,19 @@ public class AuditEventNotifier extends AuditEventNotifierSupport {
 
     public void setPolicySet(PolicySet policySet) {
         this.policySet = policySet;
+        this.compiledPolicySet = null;
+    }
+
+    /**
+     * Returns the compiled policy set used to audit events, lazily compiling the policy set if need be
+     */
+    public CompiledPolicySet getCompiledPolicySet() {
+        CompiledPolicySet answer = compiledPolicySet;
+        if (answer == null) {
+            answer = policySet.compile(getCamelContext());
+            compiledPolicySet = answer;
+        }
+        return answer;
     }
 
     public String getName() {
@@ -68,14 +81,11 @@ public class AuditEventNotifier extends AuditEventNotifierSupport {
 
     @Override
     protected boolean isEnabledFor(EventObject coreEvent, AbstractExchangeEvent exchangeEvent) {
-        return policySet.isEnabled(coreEvent, exchangeEvent);
+        return getCompiledPolicySet().hasPolicies();
     }
 
     protected void processAuditEvent(AuditEvent auditEvent) throws Exception {
-        List<Policy> policies = policySet.getPolicies();
-        for (Policy policy : policies) {
-            policy.process(this, auditEvent);
-        }
+        getCompiledPolicySet().process(this, auditEvent);
     }
 
     public ProducerTemplate getProducerTemplate() {
@@ -89,7 +99,9 @@ public class AuditEventNotifier extends AuditEventNotifierSupport {
     protected void doStart() throws Exception {
         ObjectHelper.notNull(camelContext, "camelContext", this);
         ServiceHelper.startService(getProducerTemplate());
-
+        if (policySet != null) {
+            compiledPolicySet = policySet.compile(camelContext);
+        }
     }
 
     @Override
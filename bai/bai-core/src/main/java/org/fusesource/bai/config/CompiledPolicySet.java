@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.bai.config;
+
+import org.apache.camel.CamelContext;
+import org.fusesource.bai.AuditEvent;
+import org.fusesource.bai.AuditEventNotifier;
+
+import javax.xml.bind.annotation.XmlTransient;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compiled, immutable view of a {@link PolicySet} for auditing events at runtime.
+ * <p/>
+ * Whether a policy applies to an event by its enabled flag, event type and endpoint filters only depends on the
+ * event type and endpoint URI of the event, so those decisions are memoized in a bounded cache per event type.
+ * Only the {@link ExchangeFilter} predicate of the candidate policies is then evaluated for each exchange.
+ * <p/>
+ * The policies are compiled when this object is created, so changes to the policy set afterwards are not seen;
+ * create a new compiled policy set instead.
+ */
+@XmlTransient
+public class CompiledPolicySet {
+    public static final int DEFAULT_CACHE_SIZE = 1000;
+
+    private static final Policy[] NO_POLICIES = new Policy[0];
+
+    private final Policy[] policies;
+    private final DecisionCache[] decisions;
+
+    public CompiledPolicySet(PolicySet policySet, CamelContext camelContext) {
+        this(policySet, camelContext, DEFAULT_CACHE_SIZE);
+    }
+
+    public CompiledPolicySet(PolicySet policySet, CamelContext camelContext, int cacheSize) {
+        List<Policy> enabled = new ArrayList<Policy>();
+        List<Policy> list = policySet.getPolicies();
+        if (list != null) {
+            for (Policy policy : list) {
+                if (policy.isEnabled()) {
+                    if (camelContext != null) {
+                        // lets resolve the endpoints and predicates up front rather than on the first event
+                        policy.getToEndpoint(camelContext);
+                        policy.getPredicate(camelContext);
+                    }
+                    enabled.add(policy);
+                }
+            }
+        }
+        this.policies = enabled.toArray(new Policy[enabled.size()]);
+        // one extra slot for events of an unknown type
+        this.decisions = new DecisionCache[EventType.values().length + 1];
+        for (int i = 0; i < decisions.length; i++) {
+            decisions[i] = new DecisionCache(cacheSize);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledPolicySet(" + policies.length + " policies)";
+    }
+
+    /**
+     * Returns true if there is at least one enabled policy
+     */
+    public boolean hasPolicies() {
+        return policies.length > 0;
+    }
+
+    /**
+     * Returns true if the given event matches the policies
+     */
+    public boolean matchesEvent(AuditEvent auditEvent) {
+        for (Policy policy : candidates(auditEvent)) {
+            if (policy.matchesExchange(auditEvent)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sends the audit event to all of the policies which match it
+     */
+    public void process(AuditEventNotifier auditor, AuditEvent auditEvent) {
+        for (Policy policy : candidates(auditEvent)) {
+            if (policy.matchesExchange(auditEvent)) {
+                policy.send(auditor, auditEvent);
+            }
+        }
+    }
+
+    /**
+     * Returns the policies whose event type and endpoint filters match the event, in policy order
+     */
+    public Policy[] candidates(AuditEvent auditEvent) {
+        if (policies.length == 0) {
+            return NO_POLICIES;
+        }
+        EventType eventType = auditEvent.getEventType();
+        DecisionCache cache = decisions[eventType == null ? decisions.length - 1 : eventType.ordinal()];
+        String endpointURI = auditEvent.getEndpointURI();
+        Policy[] answer;
+        synchronized (cache) {
+            answer = cache.get(endpointURI);
+        }
+        if (answer == null) {
+            List<Policy> matching = new ArrayList<Policy>(policies.length);
+            for (Policy policy : policies) {
+                if (policy.matchesEventAndEndpoint(auditEvent)) {
+                    matching.add(policy);
+                }
+            }
+            answer = matching.isEmpty() ? NO_POLICIES : matching.toArray(new Policy[matching.size()]);
+            synchronized (cache) {
+                cache.put(endpointURI, answer);
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the number of memoized decisions
+     */
+    public int getCacheSize() {
+        int answer = 0;
+        for (DecisionCache cache : decisions) {
+            synchronized (cache) {
+                answer += cache.size();
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * An LRU cache of the matching policies keyed by endpoint URI
+     */
+    private static class DecisionCache extends LinkedHashMap<String, Policy[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final int maxSize;
+
+        DecisionCache(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Policy[]> eldest) {
+            return size() > maxSize;
+        }
+    }
+}
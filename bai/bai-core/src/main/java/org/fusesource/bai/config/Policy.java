@@ -105,25 +105,7 @@ public class Policy extends HasIdentifier {
      */
     public void process(AuditEventNotifier auditor, AuditEvent auditEvent) {
         if (matchesEvent(auditEvent)) {
-            ProducerTemplate producer = auditor.getProducerTemplate();
-            Endpoint endpoint = getToEndpoint(auditor.getCamelContext());
-            if (endpoint != null) {
-                Exchange exchange = endpoint.createExchange();
-                // make sure we don't send out events for this as well
-                // mark exchange as being published to event, to prevent creating new events
-                // for this as well (causing a endless flood of events)
-                exchange.setProperty(Exchange.NOTIFY_EVENT, Boolean.TRUE);
-
-                Object payload = createPayload(auditEvent);
-                exchange.getIn().setBody(payload);
-                try {
-                    producer.send(endpoint, exchange);
-                } finally {
-                    // TODO why do we bother removing the notify event flag???
-                    // and remove it when its done
-                    exchange.removeProperty(Exchange.NOTIFY_EVENT);
-                }
-            }
+            send(auditor, auditEvent);
         }
     }
 
@@ -135,27 +117,30 @@ public class Policy extends HasIdentifier {
     }
 
     public boolean matchesEvent(AuditEvent event) {
-        if (isEnabled() && (events == null || events.matches(event)) &&
-                (endpoints == null || endpoints.matches(event))) {
-
-            Exchange exchange = event.getExchange();
-            if (exchange != null) {
-                if (predicate == null) {
-                    ExpressionDefinition expression = null;
-                    if (filter != null) {
-                        expression = filter.getExpression();
-                    }
-                    if (expression != null) {
-                        predicate = expression.createPredicate(event.getCamelContext());
-                    }
-                }
-                if (predicate != null) {
-                    return predicate.matches(exchange);
-                }
+        return matchesEventAndEndpoint(event) && matchesExchange(event);
+    }
+
+    /**
+     * Returns true if this policy is enabled and its event type and endpoint filters match the event.
+     * The answer only depends on the event type and endpoint URI of the event so it can be memoized.
+     */
+    protected boolean matchesEventAndEndpoint(AuditEvent event) {
+        return isEnabled() && (events == null || events.matches(event)) &&
+                (endpoints == null || endpoints.matches(event));
+    }
+
+    /**
+     * Returns true if the exchange filter predicate, if there is one, matches the exchange of the event
+     */
+    protected boolean matchesExchange(AuditEvent event) {
+        Exchange exchange = event.getExchange();
+        if (exchange != null) {
+            Predicate answer = getPredicate(event.getCamelContext());
+            if (answer != null) {
+                return answer.matches(exchange);
             }
-            return true;
         }
-        return false;
+        return true;
     }
 
     /**
@@ -358,6 +343,47 @@ public class Policy extends HasIdentifier {
         return event;
     }
 
+    /**
+     * Sends the payload of the audit event to the to endpoint
+     */
+    protected void send(AuditEventNotifier auditor, AuditEvent auditEvent) {
+        ProducerTemplate producer = auditor.getProducerTemplate();
+        Endpoint endpoint = getToEndpoint(auditor.getCamelContext());
+        if (endpoint != null) {
+            Exchange exchange = endpoint.createExchange();
+            // make sure we don't send out events for this as well
+            // mark exchange as being published to event, to prevent creating new events
+            // for this as well (causing a endless flood of events)
+            exchange.setProperty(Exchange.NOTIFY_EVENT, Boolean.TRUE);
+
+            Object payload = createPayload(auditEvent);
+            exchange.getIn().setBody(payload);
+            try {
+                producer.send(endpoint, exchange);
+            } finally {
+                // TODO why do we bother removing the notify event flag???
+                // and remove it when its done
+                exchange.removeProperty(Exchange.NOTIFY_EVENT);
+            }
+        }
+    }
+
+    /**
+     * Returns the filter predicate, lazily creating it if need be
+     */
+    protected Predicate getPredicate(CamelContext camelContext) {
+        if (predicate == null) {
+            ExpressionDefinition expression = null;
+            if (filter != null) {
+                expression = filter.getExpression();
+            }
+            if (expression != null) {
+                predicate = expression.createPredicate(camelContext);
+            }
+        }
+        return predicate;
+    }
+
     /**
      * Returns the to endpoint, lazily resolving it if need be
      */
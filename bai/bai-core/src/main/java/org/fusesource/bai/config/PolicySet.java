@@ -1,5 +1,6 @@
 package org.fusesource.bai.config;
 
+import org.apache.camel.CamelContext;
 import org.apache.camel.management.event.AbstractExchangeEvent;
 import org.apache.camel.util.ObjectHelper;
 import org.fusesource.bai.AuditEvent;
@@ -75,6 +76,14 @@ public class PolicySet {
         return false;
     }
 
+    /**
+     * Returns a compiled view of the enabled policies which memoizes the policy decisions for each event type
+     * and endpoint URI
+     */
+    public CompiledPolicySet compile(CamelContext camelContext) {
+        return new CompiledPolicySet(this, camelContext);
+    }
+
     /**
      * Creates the payload
      */
@@ -34,6 +34,7 @@ import org.junit.Test;
 import static org.fusesource.bai.config.AuditAssertions.assertMatchesContext;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class ConfigTest {
@@ -65,6 +66,32 @@ public class ConfigTest {
         assertEquals("XPath expression", "/person/@name = 'James'", xpath.getExpression());
     }
 
+    @Test
+    public void compiledConfigMatches() throws Exception {
+        PolicySet config = ConfigHelper.loadConfigFromClassPath("simpleConfig.xml");
+        CompiledPolicySet compiled = new CompiledPolicySet(config, camelContext, 2);
+        assertTrue("Should have policies", compiled.hasPolicies());
+
+        for (int i = 0; i < 2; i++) {
+            assertMatchesEvent(compiled, true, endpointSeda, EventType.CREATED, bodyA);
+            assertMatchesEvent(compiled, false, endpointVm, EventType.CREATED, bodyA);
+            assertMatchesEvent(compiled, false, endpointSeda, EventType.FAILURE_HANDLED, bodyA);
+            assertMatchesEvent(compiled, false, endpointSeda, EventType.CREATED, bodyB);
+        }
+
+        // the decisions for the event type and endpoint are memoized, only the filter predicate is evaluated again
+        AuditEvent event = createAuditEvent(endpointSeda, EventType.CREATED, bodyA);
+        Policy[] candidates = compiled.candidates(event);
+        assertEquals("candidates", 1, candidates.length);
+        assertSame("candidates should be cached", candidates, compiled.candidates(createAuditEvent(endpointSeda, EventType.CREATED, bodyB)));
+
+        // the cache of each event type is bounded
+        for (int i = 0; i < 10; i++) {
+            compiled.candidates(createAuditEvent(camelContext.getEndpoint("seda:c" + i), EventType.CREATED, bodyA));
+        }
+        assertEquals("cache size", 3, compiled.getCacheSize());
+    }
+
     @Test
     public void configMatchesWithNoContextDefintions() throws Exception {
         assertMatchesContext("noContexts.xml", true, "com.acme.foo", "myContext");
@@ -95,4 +122,10 @@ public class ConfigTest {
         boolean actual = config.matchesEvent(auditEvent);
         assertEquals("Matches " + endpoint + " " + eventType + " body: " + body + " for config " + config + " event: " + auditEvent, expected, actual);
     }
+
+    protected void assertMatchesEvent(CompiledPolicySet config, boolean expected, Endpoint endpoint, EventType eventType, Object body) {
+        AuditEvent auditEvent = createAuditEvent(endpoint, eventType, body);
+        boolean actual = config.matchesEvent(auditEvent);
+        assertEquals("Matches " + endpoint + " " + eventType + " body: " + body + " for config " + config + " event: " + auditEvent, expected, actual);
+    }
 }
@@ -37,7 +37,9 @@ import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.node.ObjectNode;
 import org.fusesource.eca.engine.EventEngine;
 import org.fusesource.eca.engine.EventHelper;
+import org.fusesource.eca.engine.EventProjection;
 import org.fusesource.eca.engine.ExpressionListener;
+import org.fusesource.eca.engine.ProjectedEvent;
 import org.fusesource.eca.eventcache.CacheItem;
 import org.fusesource.eca.expression.Expression;
 import org.fusesource.eca.parser.ANTLRNoCaseStringStream;
@@ -53,6 +55,8 @@ public class EcaEndpoint extends SedaEndpoint {
     private String threshold = "";
     private boolean rawResults;
     private boolean fullResult;
+    private String headers;
+    private boolean retainExchange;
     private String eventEngineImplementation = "default";
     private String cepRouteId = "";
     private EventEngine eventEngine;
@@ -155,6 +159,39 @@ public class EcaEndpoint extends SedaEndpoint {
         this.fullResult = flag;
     }
 
+    /**
+     * @return the comma separated names of the headers kept in the event cache
+     */
+    public String getHeaders() {
+        return headers;
+    }
+
+    /**
+     * Set the comma separated names of the headers to keep in the event cache
+     */
+    public void setHeaders(String headers) {
+        this.headers = headers;
+    }
+
+    /**
+     * @return true if the whole exchanges are kept in the event cache, which is needed for full results,
+     * as raw results hold the exchanges and json results their payloads
+     */
+    public boolean isRetainExchange() {
+        return retainExchange || fullResult;
+    }
+
+    /**
+     * Set whether the whole exchanges are kept in the event cache, rather than just their ids and headers
+     */
+    public void setRetainExchange(boolean retainExchange) {
+        this.retainExchange = retainExchange;
+    }
+
+    public EventProjection getEventProjection() {
+        return EventProjection.headers(getHeaders(), isRetainExchange());
+    }
+
     public String getThreshold() {
         return threshold;
     }
@@ -195,10 +232,10 @@ public class EcaEndpoint extends SedaEndpoint {
 
     protected Object processFullResults() throws Exception {
         Object result = null;
-        List<CacheItem<Exchange>> list = expression.getMatching();
+        List<CacheItem<ProjectedEvent>> list = expression.getMatching();
         if (isRawResults()) {
             if (list != null && !list.isEmpty()) {
-                result = list;
+                result = toExchangeItems(list);
             }
         } else {
             //turn the results into a json string
@@ -207,20 +244,30 @@ public class EcaEndpoint extends SedaEndpoint {
         return result;
     }
 
-    protected String processList(List<CacheItem<Exchange>> list) throws IOException {
+    /**
+     * Returns the items of the exchanges of the events, as raw results are lists of exchange items
+     */
+    protected List<CacheItem<Exchange>> toExchangeItems(List<CacheItem<ProjectedEvent>> list) {
+        List<CacheItem<Exchange>> result = new ArrayList<CacheItem<Exchange>>(list.size());
+        for (CacheItem<ProjectedEvent> item : list) {
+            result.add(new ExchangeCacheItem(item.getItem().getExchange(), item.getTimestamp()));
+        }
+        return result;
+    }
+
+    protected String processList(List<CacheItem<ProjectedEvent>> list) throws IOException {
         String result = null;
         if (list != null && !list.isEmpty()) {
             ObjectMapper objectMapper = new ObjectMapper();
             ObjectNode objectNode = objectMapper.createObjectNode();
             ObjectNode rootNode = objectNode.putObject("eca{" + getPattern() + "}");
-            Map<String, List<CacheItem<Exchange>>> map = new LinkedHashMap<String, List<CacheItem<Exchange>>>(list.size());
+            Map<String, List<CacheItem<ProjectedEvent>>> map = new LinkedHashMap<String, List<CacheItem<ProjectedEvent>>>(list.size());
 
-            for (CacheItem<Exchange> item : list) {
-                Exchange exchange = item.getItem();
-                String routeId = exchange.getFromRouteId();
-                List<CacheItem<Exchange>> cl = map.get(routeId);
+            for (CacheItem<ProjectedEvent> item : list) {
+                String routeId = item.getItem().getFromRouteId();
+                List<CacheItem<ProjectedEvent>> cl = map.get(routeId);
                 if (cl == null) {
-                    cl = new ArrayList<CacheItem<Exchange>>();
+                    cl = new ArrayList<CacheItem<ProjectedEvent>>();
                     map.put(routeId, cl);
                 }
                 cl.add(item);
@@ -231,24 +278,30 @@ public class EcaEndpoint extends SedaEndpoint {
         return result;
     }
 
-    private void processMap(ObjectMapper mapper, ObjectNode root, Map<String, List<CacheItem<Exchange>>> map) throws IOException {
-        for (Map.Entry<String, List<CacheItem<Exchange>>> entry : map.entrySet()) {
+    private void processMap(ObjectMapper mapper, ObjectNode root, Map<String, List<CacheItem<ProjectedEvent>>> map) throws IOException {
+        for (Map.Entry<String, List<CacheItem<ProjectedEvent>>> entry : map.entrySet()) {
             ObjectNode rootList = root.putObject(entry.getKey());
-            List<CacheItem<Exchange>> cl = entry.getValue();
-            for (CacheItem<Exchange> item : cl) {
+            List<CacheItem<ProjectedEvent>> cl = entry.getValue();
+            for (CacheItem<ProjectedEvent> item : cl) {
                 processExchange(mapper, rootList, item);
             }
         }
     }
 
-    private void processExchange(ObjectMapper mapper, ObjectNode root, CacheItem<Exchange> item) throws IOException {
-        Exchange exchange = item.getItem();
+    private void processExchange(ObjectMapper mapper, ObjectNode root, CacheItem<ProjectedEvent> item) throws IOException {
+        ProjectedEvent event = item.getItem();
         long timeStamp = item.getTimestamp();
-        ObjectNode exchangeNode = root.putObject(exchange.getExchangeId());
+        ObjectNode exchangeNode = root.putObject(event.getExchangeId());
         exchangeNode.put("timestamp", timeStamp);
-        Object payload = exchange.getIn().getBody();
-        String payloadString = mapper.writeValueAsString(payload);
-        exchangeNode.put("payload", payloadString);
+        for (Map.Entry<String, Object> entry : event.getValues().entrySet()) {
+            exchangeNode.put(entry.getKey(), mapper.writeValueAsString(entry.getValue()));
+        }
+        Exchange exchange = event.getExchange();
+        if (exchange != null) {
+            Object payload = exchange.getIn().getBody();
+            String payloadString = mapper.writeValueAsString(payload);
+            exchangeNode.put("payload", payloadString);
+        }
     }
 
     protected EventEngine getEventEngine() throws Exception {
@@ -261,6 +314,12 @@ public class EcaEndpoint extends SedaEndpoint {
             try {
                 eventEngine = EventHelper.getEventEngine(getCamelContext(), getEventEngineImplementation());
                 expression = parser.evaluate(eventEngine, getCacheWindow(), getThreshold());
+                if (expression != null) {
+                    EventProjection projection = getEventProjection();
+                    for (String fromId : expression.getFromIds().split(",")) {
+                        eventEngine.addProjection(fromId.trim(), projection);
+                    }
+                }
                 expression.start();
                 expression.validate(getCamelContext());
                 eventEngine.start();
@@ -281,4 +340,26 @@ public class EcaEndpoint extends SedaEndpoint {
         }
         super.doStop();
     }
+
+    private static final class ExchangeCacheItem implements CacheItem<Exchange> {
+        private final Exchange exchange;
+        private final long timeStamp;
+
+        private ExchangeCacheItem(Exchange exchange, long timeStamp) {
+            this.exchange = exchange;
+            this.timeStamp = timeStamp;
+        }
+
+        public Exchange getItem() {
+            return exchange;
+        }
+
+        public long getTimestamp() {
+            return timeStamp;
+        }
+
+        public int compareTo(CacheItem<Exchange> cacheItem) {
+            return (int) (this.timeStamp - cacheItem.getTimestamp());
+        }
+    }
 }
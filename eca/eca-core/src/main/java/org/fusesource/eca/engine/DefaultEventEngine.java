@@ -37,18 +37,25 @@ public class DefaultEventEngine extends ServiceSupport implements EventEngine {
     private EventCacheManager eventCacheManager;
     private Map<String, List<ExpressionHolder>> fromToExpressionMap = new ConcurrentHashMap<String, List<ExpressionHolder>>();
     private Map<Expression, List<String>> expressionToFromMap = new ConcurrentHashMap<Expression, List<String>>();
+    private Map<String, EventProjection> projections = new ConcurrentHashMap<String, EventProjection>();
 
     public void initialize(CamelContext context, String cacheImplementation) throws Exception {
         this.eventCacheManager = EventHelper.getEventCacheManager(context, cacheImplementation);
     }
 
-    public EventCache<Exchange> addRoute(String fromId, String window) {
-        EventCache<Exchange> result = eventCacheManager.getCache(Exchange.class, fromId, window);
+    public EventCache<ProjectedEvent> addRoute(String fromId, String window) {
+        EventCache<ProjectedEvent> result = eventCacheManager.getCache(ProjectedEvent.class, fromId, window);
         return result;
     }
 
+    public synchronized void addProjection(String fromId, EventProjection projection) {
+        EventProjection existing = projections.get(fromId);
+        projections.put(fromId, existing != null ? existing.merge(projection) : projection);
+    }
+
     public void removeRoute(String routeId) {
         eventCacheManager.removeCache(routeId);
+        projections.remove(routeId);
     }
 
     public void process(Exchange exchange) {
@@ -65,13 +72,18 @@ public class DefaultEventEngine extends ServiceSupport implements EventEngine {
             return;
         }
 
-        EventCache<Exchange> eventCache = eventCacheManager.lookupCache(Exchange.class, fromId);
+        EventCache<ProjectedEvent> eventCache = eventCacheManager.lookupCache(ProjectedEvent.class, fromId);
         if (eventCache == null) {
             fromId = exchange.getFromEndpoint().getEndpointKey();
-            eventCache = eventCacheManager.lookupCache(Exchange.class, fromId);
+            eventCache = eventCacheManager.lookupCache(ProjectedEvent.class, fromId);
         }
         if (eventCache != null) {
-            if (eventCache.add(exchange)) {
+            // only keep what the rules need rather than the whole exchange for the length of the window
+            EventProjection projection = projections.get(fromId);
+            if (projection == null) {
+                projection = EventProjection.DEFAULT;
+            }
+            if (eventCache.add(projection.project(exchange))) {
                 // get the matching expressions
                 List<ExpressionHolder> expressionHolders = fromToExpressionMap.get(fromId);
                 for (ExpressionHolder expressionHolder : expressionHolders) {
@@ -147,6 +159,7 @@ public class DefaultEventEngine extends ServiceSupport implements EventEngine {
         eventCacheManager.stop();
         ServiceHelper.stopServices(expressionToFromMap.keySet());
         expressionToFromMap.clear();
+        projections.clear();
     }
 
     private static class ExpressionHolder {
@@ -43,7 +43,15 @@ public interface EventEngine extends Service {
      * @param window the window
      * @return the event cache
      */
-    public EventCache<Exchange> addRoute(String fromId, String window);
+    public EventCache<ProjectedEvent> addRoute(String fromId, String window);
+
+    /**
+     * Declare the fields the rules on a route need, merging with the fields other rules already declared
+     *
+     * @param fromId     the route id
+     * @param projection the fields to keep of each exchange
+     */
+    public void addProjection(String fromId, EventProjection projection);
 
     /**
      * Remove a route
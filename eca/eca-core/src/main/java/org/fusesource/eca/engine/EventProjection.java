@@ -0,0 +1,162 @@
+/**
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.eca.engine;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.builder.ExpressionBuilder;
+
+/**
+ * Declares which fields of an {@link Exchange} the rules of a route need, so that the event caches
+ * only hold a compact {@link ProjectedEvent} rather than the whole {@link Exchange} for the length of the window.
+ * <p/>
+ * The exchange id, route id and timestamp are always kept; headers or the results of expressions are kept
+ * when asked for, and the full exchange only if a rule explicitly needs it, for example to return the payloads.
+ */
+public final class EventProjection {
+
+    /**
+     * Keeps only the exchange and route ids
+     */
+    public static final EventProjection DEFAULT = new EventProjection(new String[0], new org.apache.camel.Expression[0], false);
+
+    private final String[] names;
+    private final org.apache.camel.Expression[] expressions;
+    private final boolean retainExchange;
+
+    private EventProjection(String[] names, org.apache.camel.Expression[] expressions, boolean retainExchange) {
+        this.names = names;
+        this.expressions = expressions;
+        this.retainExchange = retainExchange;
+    }
+
+    /**
+     * Creates a projection of the given expressions, keyed by field name
+     */
+    public static EventProjection fields(Map<String, org.apache.camel.Expression> fields, boolean retainExchange) {
+        String[] names = fields.keySet().toArray(new String[fields.size()]);
+        org.apache.camel.Expression[] expressions = fields.values().toArray(new org.apache.camel.Expression[fields.size()]);
+        return new EventProjection(names, expressions, retainExchange);
+    }
+
+    /**
+     * Creates a projection of the given, comma separated, header names
+     */
+    public static EventProjection headers(String headers, boolean retainExchange) {
+        Map<String, org.apache.camel.Expression> fields = new LinkedHashMap<String, org.apache.camel.Expression>();
+        if (headers != null) {
+            for (String header : headers.split(",")) {
+                header = header.trim();
+                if (header.length() > 0) {
+                    fields.put(header, ExpressionBuilder.headerExpression(header));
+                }
+            }
+        }
+        return fields(fields, retainExchange);
+    }
+
+    /**
+     * Returns a projection holding the fields of both projections, so that a cache shared by several rules
+     * keeps what each of them needs
+     */
+    public EventProjection merge(EventProjection other) {
+        if (other == null || other.equals(this) || other == DEFAULT) {
+            return this;
+        }
+        if (this == DEFAULT) {
+            return other;
+        }
+        Map<String, org.apache.camel.Expression> fields = getFields();
+        for (Map.Entry<String, org.apache.camel.Expression> entry : other.getFields().entrySet()) {
+            org.apache.camel.Expression existing = fields.get(entry.getKey());
+            if (existing == null) {
+                fields.put(entry.getKey(), entry.getValue());
+            } else if (!isSameExpression(existing, entry.getValue())) {
+                throw new IllegalArgumentException("Field " + entry.getKey() + " is projected by different expressions: "
+                        + existing + " and " + entry.getValue());
+            }
+        }
+        return fields(fields, retainExchange || other.retainExchange);
+    }
+
+    /**
+     * Creates the compact event of the exchange
+     */
+    public ProjectedEvent project(Exchange exchange) {
+        Object[] values = null;
+        if (expressions.length > 0) {
+            values = new Object[expressions.length];
+            for (int i = 0; i < expressions.length; i++) {
+                values[i] = expressions[i].evaluate(exchange, Object.class);
+            }
+        }
+        return new ProjectedEvent(exchange.getExchangeId(), exchange.getFromRouteId(), names, values,
+                retainExchange ? exchange : null);
+    }
+
+    public Map<String, org.apache.camel.Expression> getFields() {
+        Map<String, org.apache.camel.Expression> answer = new LinkedHashMap<String, org.apache.camel.Expression>();
+        for (int i = 0; i < names.length; i++) {
+            answer.put(names[i], expressions[i]);
+        }
+        return answer;
+    }
+
+    public boolean isRetainExchange() {
+        return retainExchange;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        EventProjection that = (EventProjection) o;
+        if (retainExchange != that.retainExchange || !Arrays.equals(names, that.names)) {
+            return false;
+        }
+        for (int i = 0; i < expressions.length; i++) {
+            if (!isSameExpression(expressions[i], that.expressions[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Camel expressions don't implement equals, but the built in ones describe themselves, e.g. <code>header(foo)</code>
+     */
+    private static boolean isSameExpression(org.apache.camel.Expression a, org.apache.camel.Expression b) {
+        return a == b || a.equals(b) || a.toString().equals(b.toString());
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(names) + (retainExchange ? 1 : 0);
+    }
+
+    public String toString() {
+        return "EventProjection" + Arrays.toString(names) + (retainExchange ? "[exchange]" : "");
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.eca.engine;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.camel.Exchange;
+
+/**
+ * The compact record of an {@link Exchange} held by the event caches, as declared by an {@link EventProjection}.
+ * <p/>
+ * Events are equal if they were created from the same exchange, which is what the caches use to ignore an
+ * exchange which has already been processed.
+ */
+public final class ProjectedEvent {
+    private final String exchangeId;
+    private final String fromRouteId;
+    private final String[] names;
+    private final Object[] values;
+    private final Exchange exchange;
+
+    ProjectedEvent(String exchangeId, String fromRouteId, String[] names, Object[] values, Exchange exchange) {
+        this.exchangeId = exchangeId;
+        this.fromRouteId = fromRouteId;
+        this.names = names;
+        this.values = values;
+        this.exchange = exchange;
+    }
+
+    public String getExchangeId() {
+        return exchangeId;
+    }
+
+    public String getFromRouteId() {
+        return fromRouteId;
+    }
+
+    /**
+     * Returns the value of the projected field or <tt>null</tt> if it was not projected
+     */
+    public Object getValue(String name) {
+        if (values != null) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(name)) {
+                    return values[i];
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the projected fields keyed by name
+     */
+    public Map<String, Object> getValues() {
+        if (values == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, Object> answer = new LinkedHashMap<String, Object>(names.length);
+        for (int i = 0; i < names.length; i++) {
+            answer.put(names[i], values[i]);
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the exchange, if the projection retains exchanges, otherwise <tt>null</tt>
+     */
+    public Exchange getExchange() {
+        return exchange;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof ProjectedEvent && exchangeId.equals(((ProjectedEvent) o).exchangeId));
+    }
+
+    @Override
+    public int hashCode() {
+        return exchangeId.hashCode();
+    }
+
+    public String toString() {
+        return "ProjectedEvent[" + exchangeId + " from:" + fromRouteId + "]";
+    }
+}
@@ -20,10 +20,10 @@ package org.fusesource.eca.expression;
 import java.util.List;
 
 import org.apache.camel.CamelContext;
-import org.apache.camel.Exchange;
 import org.apache.camel.RuntimeCamelException;
 import org.apache.camel.impl.ServiceSupport;
 import org.fusesource.eca.engine.EventEngine;
+import org.fusesource.eca.engine.ProjectedEvent;
 import org.fusesource.eca.eventcache.CacheItem;
 import org.fusesource.eca.eventcache.EventCache;
 import org.slf4j.Logger;
@@ -37,7 +37,7 @@ public class CepExpression extends ServiceSupport implements Expression {
     private final String fromId;
     private final EventEngine eventEngine;
     private final String eventWindow;
-    private EventCache<Exchange> eventCache;
+    private EventCache<ProjectedEvent> eventCache;
     private final String id;
 
     /**
@@ -51,8 +51,8 @@ public class CepExpression extends ServiceSupport implements Expression {
         LOG.debug("CepExpression created for route {}", id);
     }
 
-    public List<CacheItem<Exchange>> getMatching() {
-        List<CacheItem<Exchange>> result = null;
+    public List<CacheItem<ProjectedEvent>> getMatching() {
+        List<CacheItem<ProjectedEvent>> result = null;
         if (isMatch()) {
             result = eventCache.getCacheItems();
         }
@@ -20,8 +20,8 @@ package org.fusesource.eca.expression;
 import java.util.List;
 
 import org.apache.camel.CamelContext;
-import org.apache.camel.Exchange;
 import org.apache.camel.Service;
+import org.fusesource.eca.engine.ProjectedEvent;
 import org.fusesource.eca.eventcache.CacheItem;
 
 /**
@@ -30,12 +30,12 @@ import org.fusesource.eca.eventcache.CacheItem;
 public interface Expression extends Service {
 
     /**
-     * If {@link Expression} is positive all the exchanges held by the event cache
+     * If {@link Expression} is positive all the events held by the event cache
      * which matches will be returned.
      *
      * @return A list of matching results, or <tt>null</tt> if no matching results.
      */
-    List<CacheItem<Exchange>> getMatching();
+    List<CacheItem<ProjectedEvent>> getMatching();
 
     /**
      * Determines if currently matched.
@@ -20,7 +20,7 @@ package org.fusesource.eca.expression;
 import java.util.Collections;
 import java.util.List;
 
-import org.apache.camel.Exchange;
+import org.fusesource.eca.engine.ProjectedEvent;
 import org.fusesource.eca.eventcache.CacheItem;
 import org.fusesource.eca.util.ParsingUtil;
 
@@ -38,9 +38,9 @@ public abstract class LogicExpression extends BinaryExpression {
     public static Expression createOR(String threshold, Expression lvalue, Expression rvalue) {
         return new LogicExpression(threshold, lvalue, rvalue) {
 
-            public List<CacheItem<Exchange>> getMatching() {
-                List<CacheItem<Exchange>> result = left != null ? left.getMatching() : null;
-                List<CacheItem<Exchange>> rv = right != null ? right.getMatching() : null;
+            public List<CacheItem<ProjectedEvent>> getMatching() {
+                List<CacheItem<ProjectedEvent>> result = left != null ? left.getMatching() : null;
+                List<CacheItem<ProjectedEvent>> rv = right != null ? right.getMatching() : null;
                 if (result != null) {
                     if (rv != null) {
                         result.addAll(rv);
@@ -73,9 +73,9 @@ public abstract class LogicExpression extends BinaryExpression {
     public static Expression createAND(String threshold, Expression lvalue, Expression rvalue) {
         return new LogicExpression(threshold, lvalue, rvalue) {
 
-            public List<CacheItem<Exchange>> getMatching() {
-                List<CacheItem<Exchange>> lv = left.getMatching();
-                List<CacheItem<Exchange>> rv = right.getMatching();
+            public List<CacheItem<ProjectedEvent>> getMatching() {
+                List<CacheItem<ProjectedEvent>> lv = left.getMatching();
+                List<CacheItem<ProjectedEvent>> rv = right.getMatching();
                 if (lv != null && rv != null) {
                     lv.addAll(rv);
                     Collections.sort(lv);
@@ -100,9 +100,9 @@ public abstract class LogicExpression extends BinaryExpression {
     public static Expression createBEFORE(String threshold, Expression lvalue, Expression rvalue) {
         return new LogicExpression(threshold, lvalue, rvalue) {
 
-            public List<CacheItem<Exchange>> getMatching() {
-                List<CacheItem<Exchange>> lv = left != null ? left.getMatching() : null;
-                List<CacheItem<Exchange>> rv = right != null ? right.getMatching() : null;
+            public List<CacheItem<ProjectedEvent>> getMatching() {
+                List<CacheItem<ProjectedEvent>> lv = left != null ? left.getMatching() : null;
+                List<CacheItem<ProjectedEvent>> rv = right != null ? right.getMatching() : null;
                 if (lv != null) {
                     if (rv == null) {
                         return lv;
@@ -130,9 +130,9 @@ public abstract class LogicExpression extends BinaryExpression {
     public static Expression createAFTER(String threshold, Expression lvalue, Expression rvalue) {
         return new LogicExpression(threshold, lvalue, rvalue) {
 
-            public List<CacheItem<Exchange>> getMatching() {
-                List<CacheItem<Exchange>> lv = left != null ? left.getMatching() : null;
-                List<CacheItem<Exchange>> rv = right != null ? right.getMatching() : null;
+            public List<CacheItem<ProjectedEvent>> getMatching() {
+                List<CacheItem<ProjectedEvent>> lv = left != null ? left.getMatching() : null;
+                List<CacheItem<ProjectedEvent>> rv = right != null ? right.getMatching() : null;
                 if (rv != null) {
                     if (lv == null) {
                         return rv;
@@ -160,9 +160,9 @@ public abstract class LogicExpression extends BinaryExpression {
     public static Expression createNOT(String threshold, Expression lvalue, Expression rvalue) {
         return new LogicExpression(threshold, lvalue, rvalue) {
 
-            public List<CacheItem<Exchange>> getMatching() {
-                List<CacheItem<Exchange>> result = left != null ? left.getMatching() : null;
-                List<CacheItem<Exchange>> rv = right != null ? right.getMatching() : null;
+            public List<CacheItem<ProjectedEvent>> getMatching() {
+                List<CacheItem<ProjectedEvent>> result = left != null ? left.getMatching() : null;
+                List<CacheItem<ProjectedEvent>> rv = right != null ? right.getMatching() : null;
                 if (result != null) {
                     if (rv != null) {
                         result.addAll(rv);
@@ -285,19 +285,13 @@ public class StatisticsCalculator extends ServiceSupport {
             }
             Object payload = exchange.getIn().getBody();
             if (value == null && payload != null) {
-                Map<String, Number> map = PropertyUtil.getValues(Number.class, payload);
-                if (map != null && map.isEmpty() == false) {
-                    value = map.values().iterator().next();
-                }
+                value = PropertyUtil.getFirstValue(Number.class, payload);
             }
         } else {
             //try and extract something from the Message to monitor
             Object payload = exchange.getIn().getBody();
             if (payload != null) {
-                Map<String, Number> map = PropertyUtil.getValues(Number.class, payload);
-                if (map != null && map.isEmpty() == false) {
-                    value = map.values().iterator().next();
-                }
+                value = PropertyUtil.getFirstValue(Number.class, payload);
             }
         }
         return value;
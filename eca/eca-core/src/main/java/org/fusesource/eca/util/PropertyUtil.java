@@ -22,13 +22,20 @@ import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
 import java.beans.PropertyEditor;
 import java.beans.PropertyEditorManager;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
 import java.net.URI;
 import java.net.URLDecoder;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Utilities for properties
@@ -36,6 +43,18 @@ import java.util.Map;
 @SuppressWarnings("unchecked")
 public class PropertyUtil {
 
+    private static final Object[] NO_ARGS = {};
+
+    /**
+     * The readable properties of each class, resolved once so that reading the values of a payload
+     * on every event does not need to introspect its class again. Reads don't lock, only a miss does.
+     * The classes are weakly referenced and the properties only refer to their methods weakly, so the
+     * classes of uninstalled bundles can be unloaded and their entries are then removed on the next miss.
+     */
+    private static final ConcurrentMap<ClassKey, ClassProperties> CLASS_PROPERTIES =
+            new ConcurrentHashMap<ClassKey, ClassProperties>();
+    private static final ReferenceQueue<Class<?>> UNLOADED_CLASSES = new ReferenceQueue<Class<?>>();
+
     /**
      * Get properties from a URI
      *
@@ -140,16 +159,8 @@ public class PropertyUtil {
      */
     public static Map<String, String> getProperties(Object object) throws Exception {
         Map<String, String> props = new HashMap<String, String>();
-        BeanInfo beanInfo = Introspector.getBeanInfo(object.getClass());
-        Object[] NULL_ARG = {};
-        PropertyDescriptor[] propertyDescriptors = beanInfo.getPropertyDescriptors();
-        if (propertyDescriptors != null) {
-            for (int i = 0; i < propertyDescriptors.length; i++) {
-                PropertyDescriptor pd = propertyDescriptors[i];
-                if (pd.getReadMethod() != null && !pd.getName().equals("class") && !pd.getName().equals("properties") && !pd.getName().equals("reference")) {
-                    props.put(pd.getName(), ("" + pd.getReadMethod().invoke(object, NULL_ARG)));
-                }
-            }
+        for (PropertyAccessor accessor : getClassProperties(object.getClass()).getAccessors()) {
+            props.put(accessor.name, ("" + accessor.getValue(object)));
         }
         return props;
     }
@@ -183,28 +194,55 @@ public class PropertyUtil {
      * @return <Code>Map</Code> of properties
      */
     public static <T> Map<String, T> getValues(Class<T> type, Object object) throws Exception {
-        Map<String, T> result = new LinkedHashMap<String, T>();
-        BeanInfo beanInfo = Introspector.getBeanInfo(object.getClass());
-        Object[] NULL_ARG = {};
-        PropertyDescriptor[] propertyDescriptors = beanInfo.getPropertyDescriptors();
-        if (propertyDescriptors != null) {
-            for (int i = 0; i < propertyDescriptors.length; i++) {
-                PropertyDescriptor pd = propertyDescriptors[i];
-                if (pd.getReadMethod() != null && !pd.getName().equals("class") && !pd.getName().equals("properties") && !pd.getName().equals("reference")) {
-                    if (isPropertyAssignable(type, pd)) {
-                        result.put(pd.getDisplayName(), (T) pd.getReadMethod().invoke(object, NULL_ARG));
+        PropertyAccessor[] accessors = getClassProperties(object.getClass()).getAccessors(type);
+        Map<String, T> result = new LinkedHashMap<String, T>(accessors.length * 2);
+        for (PropertyAccessor accessor : accessors) {
+            result.put(accessor.displayName, (T) accessor.getValue(object));
+        }
+        return result;
+    }
+
+    /**
+     * Get the value of the first property of an object that matches a type, which is the first value
+     * of {@link #getValues(Class, Object)} without reading all the other properties
+     *
+     * @return the value or <tt>null</tt> if the object has no property of the type
+     */
+    public static <T> T getFirstValue(Class<T> type, Object object) throws Exception {
+        PropertyAccessor[] accessors = getClassProperties(object.getClass()).getAccessors(type);
+        return accessors.length > 0 ? (T) accessors[0].getValue(object) : null;
+    }
+
+    private static ClassProperties getClassProperties(Class<?> clazz) throws Exception {
+        ClassProperties answer = lookupClassProperties(clazz);
+        if (answer == null) {
+            synchronized (CLASS_PROPERTIES) {
+                answer = lookupClassProperties(clazz);
+                if (answer == null) {
+                    Reference<? extends Class<?>> unloaded;
+                    while ((unloaded = UNLOADED_CLASSES.poll()) != null) {
+                        CLASS_PROPERTIES.remove(unloaded);
                     }
+                    answer = new ClassProperties(clazz);
+                    CLASS_PROPERTIES.put(new ClassKey(clazz, UNLOADED_CLASSES), answer);
                 }
             }
         }
-        return result;
+        return answer;
+    }
+
+    private static ClassProperties lookupClassProperties(Class<?> clazz) {
+        return CLASS_PROPERTIES.get(new ClassKey(clazz, null));
     }
 
     private static boolean isPropertyAssignable(Class type, PropertyDescriptor pd) {
-        boolean result = type.isAssignableFrom(pd.getPropertyType());
+        return isPropertyAssignable(type, pd.getPropertyType());
+    }
+
+    private static boolean isPropertyAssignable(Class type, Class pdType) {
+        boolean result = type.isAssignableFrom(pdType);
         if (!result) {
-            if (Number.class.isAssignableFrom(type) && pd.getPropertyType().isPrimitive()) {
-                Class pdType = pd.getPropertyType();
+            if (Number.class.isAssignableFrom(type) && pdType.isPrimitive()) {
                 if (pdType == int.class || pdType == long.class || pdType == short.class || pdType == float.class || pdType == double.class) {
                     result = true;
                 }
@@ -304,4 +342,117 @@ public class PropertyUtil {
         }
         return null;
     }
+
+    /**
+     * A weak reference to a class which is equal to the references to the same class
+     */
+    private static final class ClassKey extends WeakReference<Class<?>> {
+        private final int hash;
+
+        ClassKey(Class<?> clazz, ReferenceQueue<Class<?>> queue) {
+            super(clazz, queue);
+            this.hash = System.identityHashCode(clazz);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ClassKey)) {
+                return false;
+            }
+            Class<?> clazz = get();
+            return clazz != null && clazz == ((ClassKey) o).get();
+        }
+    }
+
+    /**
+     * The readable properties of a class, in the order the introspector returns them
+     */
+    private static final class ClassProperties {
+        private final PropertyAccessor[] accessors;
+        private final Map<ClassKey, PropertyAccessor[]> accessorsByType = new ConcurrentHashMap<ClassKey, PropertyAccessor[]>();
+
+        ClassProperties(Class<?> clazz) throws Exception {
+            List<PropertyAccessor> list = new ArrayList<PropertyAccessor>();
+            BeanInfo beanInfo = Introspector.getBeanInfo(clazz);
+            PropertyDescriptor[] propertyDescriptors = beanInfo.getPropertyDescriptors();
+            if (propertyDescriptors != null) {
+                for (int i = 0; i < propertyDescriptors.length; i++) {
+                    PropertyDescriptor pd = propertyDescriptors[i];
+                    if (pd.getReadMethod() != null && !pd.getName().equals("class") && !pd.getName().equals("properties") && !pd.getName().equals("reference")) {
+                        list.add(new PropertyAccessor(pd));
+                    }
+                }
+            }
+            accessors = list.toArray(new PropertyAccessor[list.size()]);
+            // the introspector caches the bean info strongly, which would keep the class loaded
+            Introspector.flushFromCaches(clazz);
+        }
+
+        PropertyAccessor[] getAccessors() {
+            return accessors;
+        }
+
+        PropertyAccessor[] getAccessors(Class<?> type) {
+            ClassKey key = new ClassKey(type, null);
+            PropertyAccessor[] answer = accessorsByType.get(key);
+            if (answer == null) {
+                List<PropertyAccessor> list = new ArrayList<PropertyAccessor>();
+                for (PropertyAccessor accessor : accessors) {
+                    Class<?> propertyType = accessor.propertyType.get();
+                    if (propertyType != null && isPropertyAssignable(type, propertyType)) {
+                        list.add(accessor);
+                    }
+                }
+                answer = list.toArray(new PropertyAccessor[list.size()]);
+                accessorsByType.put(key, answer);
+            }
+            return answer;
+        }
+    }
+
+    /**
+     * Reads a property. The method and the property type are only weakly referenced, as they refer to their
+     * classes which would otherwise never be unloaded, so the method is looked up again once it is collected.
+     */
+    private static final class PropertyAccessor {
+        private final String name;
+        private final String displayName;
+        private final String readMethodName;
+        private final WeakReference<Class<?>> propertyType;
+        private volatile WeakReference<Method> readMethod;
+
+        PropertyAccessor(PropertyDescriptor descriptor) {
+            this.name = descriptor.getName();
+            this.displayName = descriptor.getDisplayName();
+            this.readMethodName = descriptor.getReadMethod().getName();
+            this.propertyType = new WeakReference<Class<?>>(descriptor.getPropertyType());
+            this.readMethod = accessible(descriptor.getReadMethod());
+        }
+
+        Object getValue(Object object) throws Exception {
+            Method method = readMethod.get();
+            if (method == null) {
+                method = object.getClass().getMethod(readMethodName);
+                readMethod = accessible(method);
+            }
+            return method.invoke(object, NO_ARGS);
+        }
+
+        private static WeakReference<Method> accessible(Method method) {
+            try {
+                // skip the access checks on every invocation
+                method.setAccessible(true);
+            } catch (SecurityException ignore) {
+            }
+            return new WeakReference<Method>(method);
+        }
+    }
 }
@@ -16,6 +16,8 @@
  */
 package org.fusesource.eca.component.eca;
 
+import java.util.List;
+
 import org.apache.camel.Endpoint;
 import org.apache.camel.Exchange;
 import org.apache.camel.Message;
@@ -25,6 +27,7 @@ import org.apache.camel.component.mock.MockEndpoint;
 import org.apache.camel.impl.DefaultExchange;
 import org.apache.camel.test.CamelTestSupport;
 import org.fusesource.eca.TestStat;
+import org.fusesource.eca.eventcache.CacheItem;
 
 public class EcaComponentTest extends CamelTestSupport {
     final int COUNT = 1000;
@@ -106,6 +109,45 @@ public class EcaComponentTest extends CamelTestSupport {
     }
 
 
+    public void testRawResultsHoldExchanges() throws Exception {
+        final DirectEndpoint de = new DirectEndpoint();
+        de.setCamelContext(context);
+        de.setEndpointUriIfNotSpecified("direct://foo");
+
+        final DirectEndpoint de2 = new DirectEndpoint();
+        de2.setCamelContext(context);
+        de2.setEndpointUriIfNotSpecified("direct://foo2");
+
+        final String uri = "eca://raw?pattern=testRoute2 And testRoute1&fullResult=true&rawResults=true";
+        context.addRoutes(new RouteBuilder() {
+            @Override
+            public void configure() throws Exception {
+                Endpoint eca = getContext().getEndpoint(uri);
+
+                from(de).to(eca).setId("testRoute1");
+                from(de2).to(eca).setId("testRoute2");
+                from(eca.getEndpointUri()).to("mock:result");
+            }
+        });
+        context.start();
+
+        Exchange first = createExchange(1, 1);
+        template.send(de, first);
+        Exchange second = createExchange(2, 2);
+        template.send(de2, second);
+
+        EcaEndpoint eca = (EcaEndpoint) context.getEndpoint(uri);
+        assertTrue(eca.isRetainExchange());
+        List<?> results = (List<?>) eca.getEvaluatedResults();
+        assertNotNull(results);
+        assertEquals(2, results.size());
+        for (Object result : results) {
+            Object item = ((CacheItem<?>) result).getItem();
+            assertTrue("Expected an exchange but got " + item, item instanceof Exchange);
+            assertTrue(((Exchange) item).getIn().getBody() instanceof TestStat);
+        }
+    }
+
     protected Exchange createExchange(int queueDepth, long enqueueTime) {
         Exchange exchange = new DefaultExchange(context);
         Message message = exchange.getIn();
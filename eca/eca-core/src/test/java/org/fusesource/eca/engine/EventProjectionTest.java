@@ -0,0 +1,89 @@
+/**
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.eca.engine;
+
+import java.util.Collections;
+
+import junit.framework.TestCase;
+import org.apache.camel.Exchange;
+import org.apache.camel.builder.ExpressionBuilder;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+
+public class EventProjectionTest extends TestCase {
+
+    public void testDefaultProjectionDropsExchange() throws Exception {
+        Exchange exchange = createExchange();
+        ProjectedEvent event = EventProjection.DEFAULT.project(exchange);
+        assertEquals(exchange.getExchangeId(), event.getExchangeId());
+        assertEquals("route1", event.getFromRouteId());
+        assertNull(event.getExchange());
+        assertTrue(event.getValues().isEmpty());
+        assertEquals(event, EventProjection.DEFAULT.project(exchange));
+    }
+
+    public void testHeadersAreProjected() throws Exception {
+        Exchange exchange = createExchange();
+        ProjectedEvent event = EventProjection.headers("foo, missing", false).project(exchange);
+        assertEquals("bar", event.getValue("foo"));
+        assertNull(event.getValue("missing"));
+        assertNull(event.getValue("other"));
+        assertNull(event.getExchange());
+    }
+
+    public void testMergeKeepsAllFields() throws Exception {
+        EventProjection projection = EventProjection.headers("foo", false).merge(EventProjection.headers("other", true));
+        assertTrue(projection.isRetainExchange());
+        assertEquals(2, projection.getFields().size());
+
+        Exchange exchange = createExchange();
+        ProjectedEvent event = projection.project(exchange);
+        assertEquals("bar", event.getValue("foo"));
+        assertEquals(1, event.getValue("other"));
+        assertSame(exchange, event.getExchange());
+    }
+
+    public void testEqualityIncludesExpressions() throws Exception {
+        assertEquals(EventProjection.headers("foo", false), EventProjection.headers("foo", false));
+
+        EventProjection foo = EventProjection.fields(Collections.<String, org.apache.camel.Expression>singletonMap("value", ExpressionBuilder.headerExpression("foo")), false);
+        EventProjection other = EventProjection.fields(Collections.<String, org.apache.camel.Expression>singletonMap("value", ExpressionBuilder.headerExpression("other")), false);
+        assertFalse(foo.equals(other));
+    }
+
+    public void testMergeOfConflictingFieldsFails() throws Exception {
+        EventProjection foo = EventProjection.fields(Collections.<String, org.apache.camel.Expression>singletonMap("value", ExpressionBuilder.headerExpression("foo")), false);
+        EventProjection other = EventProjection.fields(Collections.<String, org.apache.camel.Expression>singletonMap("value", ExpressionBuilder.headerExpression("other")), false);
+        try {
+            foo.merge(other);
+            fail("Should have failed to merge projections of different expressions");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertSame(foo, foo.merge(EventProjection.fields(Collections.<String, org.apache.camel.Expression>singletonMap("value", ExpressionBuilder.headerExpression("foo")), false)));
+    }
+
+    protected Exchange createExchange() {
+        Exchange exchange = new DefaultExchange(new DefaultCamelContext());
+        exchange.setFromRouteId("route1");
+        exchange.getIn().setBody("payload");
+        exchange.getIn().setHeader("foo", "bar");
+        exchange.getIn().setHeader("other", 1);
+        return exchange;
+    }
+}
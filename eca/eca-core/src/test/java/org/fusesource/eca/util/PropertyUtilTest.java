@@ -17,12 +17,18 @@
 
 package org.fusesource.eca.util;
 
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
 import java.util.Map;
 
 import junit.framework.TestCase;
 import org.fusesource.eca.TestStat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class PropertyUtilTest extends TestCase {
+    private final static Logger LOG = LoggerFactory.getLogger(PropertyUtilTest.class);
+    final int BENCHMARK_ITERATIONS = 200000;
 
     public void testGetValues() throws Exception {
         TestStat testStat = new TestStat();
@@ -30,4 +36,58 @@ public class PropertyUtilTest extends TestCase {
         Map<String, Number> map = PropertyUtil.getValues(Number.class, testStat);
         assertEquals(3, map.size());
     }
+
+    public void testGetFirstValue() throws Exception {
+        TestStat testStat = new TestStat();
+        testStat.setEnqueueTime(42);
+
+        Map<String, Number> map = PropertyUtil.getValues(Number.class, testStat);
+        assertEquals(map.values().iterator().next(), PropertyUtil.getFirstValue(Number.class, testStat));
+        assertEquals(42L, PropertyUtil.getFirstValue(Number.class, testStat));
+        assertNull(PropertyUtil.getFirstValue(Number.class, "no numbers"));
+    }
+
+    public void testBenchmarkFirstValue() throws Exception {
+        TestStat testStat = new TestStat();
+        Number expected = introspectFirstNumber(testStat);
+        assertEquals(expected, PropertyUtil.getFirstValue(Number.class, testStat));
+        if (!Boolean.getBoolean("eca.benchmark")) {
+            return;
+        }
+
+        // warm up both before measuring
+        for (int i = 0; i < BENCHMARK_ITERATIONS / 10; i++) {
+            introspectFirstNumber(testStat);
+            PropertyUtil.getFirstValue(Number.class, testStat);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            introspectFirstNumber(testStat);
+        }
+        long introspected = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            PropertyUtil.getFirstValue(Number.class, testStat);
+        }
+        long cached = System.nanoTime() - start;
+
+        LOG.info("Introspected: " + (introspected / BENCHMARK_ITERATIONS) + " ns/op, cached: "
+                + (cached / BENCHMARK_ITERATIONS) + " ns/op");
+    }
+
+    /**
+     * What reading the first number of a payload used to cost on every event
+     */
+    private static Number introspectFirstNumber(Object object) throws Exception {
+        for (PropertyDescriptor pd : Introspector.getBeanInfo(object.getClass()).getPropertyDescriptors()) {
+            if (pd.getReadMethod() != null && !pd.getName().equals("class")
+                    && (Number.class.isAssignableFrom(pd.getPropertyType())
+                    || pd.getPropertyType() == int.class || pd.getPropertyType() == long.class)) {
+                return (Number) pd.getReadMethod().invoke(object);
+            }
+        }
+        return null;
+    }
 }
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2010 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package org.fusesource.fabric.activemq.facade;
+
+import javax.management.ObjectName;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable point in time view of the attributes of all the destinations, subscriptions, producers and
+ * connections of a broker, fetched in bulk so that listing, sorting and paging them does not cost a remote call
+ * per attribute.
+ */
+public class BrokerSnapshot {
+
+    private final long timestamp;
+    private final List<MBeanSnapshot> queues;
+    private final List<MBeanSnapshot> topics;
+    private final List<MBeanSnapshot> subscriptions;
+    private final List<MBeanSnapshot> producers;
+    private final List<MBeanSnapshot> connections;
+
+    public BrokerSnapshot(long timestamp, List<MBeanSnapshot> queues, List<MBeanSnapshot> topics,
+                          List<MBeanSnapshot> subscriptions, List<MBeanSnapshot> producers,
+                          List<MBeanSnapshot> connections) {
+        this.timestamp = timestamp;
+        this.queues = Collections.unmodifiableList(queues);
+        this.topics = Collections.unmodifiableList(topics);
+        this.subscriptions = Collections.unmodifiableList(subscriptions);
+        this.producers = Collections.unmodifiableList(producers);
+        this.connections = Collections.unmodifiableList(connections);
+    }
+
+    @Override
+    public String toString() {
+        return "BrokerSnapshot(queues: " + queues.size() + " topics: " + topics.size()
+                + " subscriptions: " + subscriptions.size() + " producers: " + producers.size()
+                + " connections: " + connections.size() + ")";
+    }
+
+    /**
+     * Returns a page of the given entries sorted by the given attribute
+     *
+     * @param entries       the entries to sort
+     * @param sortAttribute the attribute to sort by or <code>null</code> to sort by the object name
+     * @param ascending     whether to sort in ascending order
+     * @param offset        the index of the first entry to return
+     * @param limit         the maximum number of entries to return or a negative value for all of them
+     */
+    public static List<MBeanSnapshot> page(List<MBeanSnapshot> entries, final String sortAttribute,
+                                           final boolean ascending, int offset, int limit) {
+        List<MBeanSnapshot> sorted = new ArrayList<MBeanSnapshot>(entries);
+        Collections.sort(sorted, new Comparator<MBeanSnapshot>() {
+            @SuppressWarnings("unchecked")
+            public int compare(MBeanSnapshot a, MBeanSnapshot b) {
+                int answer;
+                if (sortAttribute == null) {
+                    answer = a.getId().compareTo(b.getId());
+                } else {
+                    Object av = a.getAttribute(sortAttribute);
+                    Object bv = b.getAttribute(sortAttribute);
+                    if (av == bv) {
+                        answer = 0;
+                    } else if (av == null) {
+                        answer = -1;
+                    } else if (bv == null) {
+                        answer = 1;
+                    } else if (av instanceof Comparable && av.getClass() == bv.getClass()) {
+                        answer = ((Comparable<Object>) av).compareTo(bv);
+                    } else {
+                        answer = av.toString().compareTo(bv.toString());
+                    }
+                }
+                if (answer == 0) {
+                    // keep pages stable across snapshots
+                    return a.getId().compareTo(b.getId());
+                }
+                return ascending ? answer : -answer;
+            }
+        });
+        int from = Math.min(Math.max(offset, 0), sorted.size());
+        int to = limit < 0 ? sorted.size() : Math.min(sorted.size(), from + limit);
+        return sorted.subList(from, to);
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public List<MBeanSnapshot> getQueues() {
+        return queues;
+    }
+
+    public List<MBeanSnapshot> getTopics() {
+        return topics;
+    }
+
+    public List<MBeanSnapshot> getSubscriptions() {
+        return subscriptions;
+    }
+
+    public List<MBeanSnapshot> getProducers() {
+        return producers;
+    }
+
+    public List<MBeanSnapshot> getConnections() {
+        return connections;
+    }
+
+    /**
+     * The attributes of a single MBean
+     */
+    public static class MBeanSnapshot {
+        private final ObjectName name;
+        private final Map<String, Object> attributes;
+
+        public MBeanSnapshot(ObjectName name, Map<String, Object> attributes) {
+            this.name = name;
+            this.attributes = Collections.unmodifiableMap(attributes);
+        }
+
+        @Override
+        public String toString() {
+            return "MBeanSnapshot(" + name + ")";
+        }
+
+        public String getId() {
+            return name.getCanonicalName();
+        }
+
+        public ObjectName getName() {
+            return name;
+        }
+
+        public String getKeyProperty(String key) {
+            return name.getKeyProperty(key);
+        }
+
+        public Map<String, Object> getAttributes() {
+            return attributes;
+        }
+
+        public Object getAttribute(String attribute) {
+            return attributes.get(attribute);
+        }
+    }
+}
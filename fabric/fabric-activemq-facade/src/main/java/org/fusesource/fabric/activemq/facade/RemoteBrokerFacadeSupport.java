@@ -17,12 +17,21 @@
 package org.fusesource.fabric.activemq.facade;
 
 import org.apache.activemq.broker.jmx.BrokerViewMBean;
+import org.apache.activemq.broker.jmx.ConnectionViewMBean;
+import org.apache.activemq.broker.jmx.DurableSubscriptionViewMBean;
 import org.apache.activemq.broker.jmx.ManagementContext;
+import org.apache.activemq.broker.jmx.ProducerViewMBean;
 import org.apache.activemq.broker.jmx.QueueViewMBean;
+import org.apache.activemq.broker.jmx.SubscriptionViewMBean;
+import org.apache.activemq.broker.jmx.TopicViewMBean;
 import org.apache.activemq.command.ActiveMQDestination;
+import org.fusesource.fabric.activemq.facade.BrokerSnapshot.MBeanSnapshot;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.InstanceNotFoundException;
 import javax.management.MBeanServerConnection;
 import javax.management.MBeanServerInvocationHandler;
 import javax.management.MalformedObjectNameException;
@@ -30,13 +39,58 @@ import javax.management.ObjectName;
 import javax.management.QueryExp;
 import javax.management.remote.JMXConnector;
 import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
+ * A base class for {@link BrokerFacade} implementations which talk to a broker over JMX.
+ * <p/>
+ * Listing destinations, subscriptions, producers and connections is served from a {@link BrokerSnapshot} which is
+ * fetched with one query and a bulk attribute read per MBean, run in parallel. The snapshot is cached for a short
+ * time to live and shared by concurrent callers; attributes missing from the snapshot and all operations are
+ * still invoked on the live MBean.
  */
 public abstract class RemoteBrokerFacadeSupport extends BrokerFacadeSupport {
     private static final transient Logger LOG = LoggerFactory.getLogger(RemoteBrokerFacade.class);
+
+    public static final long DEFAULT_SNAPSHOT_TIME_TO_LIVE = 1000L;
+
+    private static final int SNAPSHOT_THREADS = 8;
+    private static final ThreadPoolExecutor SNAPSHOT_EXECUTOR;
+    private static final Map<Class<?>, String[]> ATTRIBUTE_NAMES = new ConcurrentHashMap<Class<?>, String[]>();
+
+    static {
+        SNAPSHOT_EXECUTOR = new ThreadPoolExecutor(SNAPSHOT_THREADS, SNAPSHOT_THREADS, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "BrokerSnapshot-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        SNAPSHOT_EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
     private String brokerName;
+    private long snapshotTimeToLive = DEFAULT_SNAPSHOT_TIME_TO_LIVE;
+    private final Object snapshotLock = new Object();
+    private FutureTask<BrokerSnapshot> snapshotTask;
+    private long snapshotExpiry;
 
     public RemoteBrokerFacadeSupport() {
     }
@@ -54,6 +108,18 @@ public abstract class RemoteBrokerFacadeSupport extends BrokerFacadeSupport {
         this.brokerName = brokerName;
     }
 
+    public long getSnapshotTimeToLive() {
+        return snapshotTimeToLive;
+    }
+
+    /**
+     * Sets how long in milliseconds a {@link BrokerSnapshot} is reused; zero or less disables snapshots so that
+     * every attribute is read from the live MBean
+     */
+    public void setSnapshotTimeToLive(long snapshotTimeToLive) {
+        this.snapshotTimeToLive = snapshotTimeToLive;
+    }
+
     private ObjectName getBrokerObjectName(MBeanServerConnection connection)
             throws IOException, MalformedObjectNameException {
         Set<ObjectName> brokers = findBrokers(connection);
@@ -130,6 +196,332 @@ public abstract class RemoteBrokerFacadeSupport extends BrokerFacadeSupport {
     public void purgeQueue(ActiveMQDestination destination) throws Exception {
         QueueViewMBean queue = getQueue(destination.getPhysicalName());
         queue.purge();
+        invalidateSnapshot();
+    }
+
+    /**
+     * Returns a recent snapshot of the broker, loading a new one if it has expired.
+     * Concurrent callers share the same snapshot and wait for a single load.
+     */
+    public BrokerSnapshot getSnapshot() throws Exception {
+        FutureTask<BrokerSnapshot> task;
+        boolean load = false;
+        synchronized (snapshotLock) {
+            if (snapshotTask == null || (snapshotTask.isDone() && System.currentTimeMillis() >= snapshotExpiry)) {
+                snapshotTask = new FutureTask<BrokerSnapshot>(new Callable<BrokerSnapshot>() {
+                    public BrokerSnapshot call() throws Exception {
+                        BrokerSnapshot answer = loadSnapshot();
+                        synchronized (snapshotLock) {
+                            snapshotExpiry = System.currentTimeMillis() + snapshotTimeToLive;
+                        }
+                        return answer;
+                    }
+                });
+                load = true;
+            }
+            task = snapshotTask;
+        }
+        if (load) {
+            task.run();
+        }
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            synchronized (snapshotLock) {
+                if (snapshotTask == task) {
+                    snapshotTask = null;
+                }
+            }
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Discards the current snapshot so that the next call loads a fresh one
+     */
+    public void invalidateSnapshot() {
+        synchronized (snapshotLock) {
+            snapshotTask = null;
+        }
+    }
+
+    protected boolean isSnapshotEnabled() {
+        return snapshotTimeToLive > 0;
+    }
+
+    protected BrokerSnapshot loadSnapshot() throws Exception {
+        long start = System.currentTimeMillis();
+        final MBeanServerConnection connection = getMBeanServerConnection();
+        ObjectName broker = getBrokerObjectName(connection);
+        Set<ObjectName> names = connection.queryNames(new ObjectName(broker.getCanonicalName() + ",*"), null);
+
+        List<Future<MBeanSnapshot>> queues = new ArrayList<Future<MBeanSnapshot>>();
+        List<Future<MBeanSnapshot>> topics = new ArrayList<Future<MBeanSnapshot>>();
+        List<Future<MBeanSnapshot>> subscriptions = new ArrayList<Future<MBeanSnapshot>>();
+        List<Future<MBeanSnapshot>> producers = new ArrayList<Future<MBeanSnapshot>>();
+        List<Future<MBeanSnapshot>> connections = new ArrayList<Future<MBeanSnapshot>>();
+        for (ObjectName name : names) {
+            String endpoint = name.getKeyProperty("endpoint");
+            String destinationType = name.getKeyProperty("destinationType");
+            if ("Consumer".equals(endpoint)) {
+                String consumerId = name.getKeyProperty("consumerId");
+                boolean durable = consumerId != null && consumerId.startsWith("Durable(");
+                subscriptions.add(fetchAttributes(connection, name,
+                        durable ? DurableSubscriptionViewMBean.class : SubscriptionViewMBean.class));
+            } else if ("Producer".equals(endpoint) || "dynamicProducer".equals(endpoint)) {
+                producers.add(fetchAttributes(connection, name, ProducerViewMBean.class));
+            } else if (endpoint != null) {
+                continue;
+            } else if ("Queue".equals(destinationType)) {
+                queues.add(fetchAttributes(connection, name, QueueViewMBean.class));
+            } else if ("Topic".equals(destinationType)) {
+                topics.add(fetchAttributes(connection, name, TopicViewMBean.class));
+            } else if ("clientConnectors".equals(name.getKeyProperty("connector"))
+                    && "clientId".equals(name.getKeyProperty("connectionViewType"))
+                    && name.getKeyProperty("connectionName") != null) {
+                connections.add(fetchAttributes(connection, name, ConnectionViewMBean.class));
+            }
+        }
+        BrokerSnapshot answer = new BrokerSnapshot(start, collect(queues), collect(topics), collect(subscriptions),
+                collect(producers), collect(connections));
+        LOG.debug("Loaded " + answer + " of " + broker + " in " + (System.currentTimeMillis() - start) + " ms");
+        return answer;
+    }
+
+    private Future<MBeanSnapshot> fetchAttributes(final MBeanServerConnection connection, final ObjectName name,
+                                                  final Class<?> type) {
+        return SNAPSHOT_EXECUTOR.submit(new Callable<MBeanSnapshot>() {
+            public MBeanSnapshot call() throws Exception {
+                AttributeList list;
+                try {
+                    list = connection.getAttributes(name, getAttributeNames(type));
+                } catch (InstanceNotFoundException e) {
+                    // it went away since we queried the names
+                    return null;
+                }
+                Map<String, Object> attributes = new HashMap<String, Object>();
+                for (Object value : list) {
+                    Attribute attribute = (Attribute) value;
+                    attributes.put(attribute.getName(), attribute.getValue());
+                }
+                return new MBeanSnapshot(name, attributes);
+            }
+        });
+    }
+
+    private static List<MBeanSnapshot> collect(List<Future<MBeanSnapshot>> futures) throws Exception {
+        List<MBeanSnapshot> answer = new ArrayList<MBeanSnapshot>(futures.size());
+        for (Future<MBeanSnapshot> future : futures) {
+            MBeanSnapshot snapshot;
+            try {
+                snapshot = future.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof Exception ? (Exception) cause : e;
+            }
+            if (snapshot != null) {
+                answer.add(snapshot);
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the names of the attributes of the given standard MBean interface
+     */
+    protected static String[] getAttributeNames(Class<?> type) {
+        String[] answer = ATTRIBUTE_NAMES.get(type);
+        if (answer == null) {
+            Set<String> names = new TreeSet<String>();
+            for (Method method : type.getMethods()) {
+                String name = getAttributeName(method);
+                if (name != null) {
+                    names.add(name);
+                }
+            }
+            answer = names.toArray(new String[names.size()]);
+            ATTRIBUTE_NAMES.put(type, answer);
+        }
+        return answer;
+    }
+
+    private static String getAttributeName(Method method) {
+        if (method.getParameterTypes().length != 0 || method.getReturnType() == Void.TYPE) {
+            return null;
+        }
+        String name = method.getName();
+        if (name.startsWith("get") && name.length() > 3 && !name.equals("getClass")) {
+            return name.substring(3);
+        } else if (name.startsWith("is") && name.length() > 2 && method.getReturnType() == Boolean.TYPE) {
+            return name.substring(2);
+        }
+        return null;
+    }
+
+    /**
+     * Creates a facade which serves attributes from the snapshot and invokes everything else on the live MBean
+     */
+    protected <T> T snapshotProxy(Class<T> ic, final Class<?> type, final MBeanSnapshot snapshot) {
+        return ic.cast(Proxy.newProxyInstance(ic.getClassLoader(), new Class[]{ic}, new InvocationHandler() {
+            private Object target;
+
+            public Object invoke(Object o, Method method, Object[] args) throws Throwable {
+                if (method.getParameterTypes().length == 0) {
+                    if (method.getName().equals("getId")) {
+                        return snapshot.getId();
+                    }
+                    String attribute = getAttributeName(method);
+                    if (attribute != null && snapshot.getAttributes().containsKey(attribute)) {
+                        return snapshot.getAttribute(attribute);
+                    }
+                }
+                Object mbean;
+                synchronized (this) {
+                    if (target == null) {
+                        target = newProxyInstance(snapshot.getName(), type, true);
+                    }
+                    mbean = target;
+                }
+                try {
+                    return method.invoke(mbean, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+        }));
+    }
+
+    protected <T> List<T> snapshotProxies(Collection<MBeanSnapshot> snapshots, Class<?> type, Class<T> ic) {
+        List<T> answer = new ArrayList<T>(snapshots.size());
+        for (MBeanSnapshot snapshot : snapshots) {
+            answer.add(snapshotProxy(ic, type, snapshot));
+        }
+        return answer;
+    }
+
+    private List<MBeanSnapshot> filter(Collection<MBeanSnapshot> snapshots, String key, String value) {
+        List<MBeanSnapshot> answer = new ArrayList<MBeanSnapshot>();
+        for (MBeanSnapshot snapshot : snapshots) {
+            if (value.equals(snapshot.getKeyProperty(key))) {
+                answer.add(snapshot);
+            }
+        }
+        return answer;
+    }
+
+    private Collection<SubscriptionViewFacade> getConsumers(String destinationType, String destinationName) throws Exception {
+        List<MBeanSnapshot> consumers = filter(getSnapshot().getSubscriptions(), "destinationType", destinationType);
+        return snapshotProxies(filter(consumers, "destinationName", destinationName.replace('"', '_')),
+                SubscriptionViewMBean.class, SubscriptionViewFacade.class);
+    }
+
+    private Collection<ProducerViewFacade> getProducers(String destinationType, String destinationName) throws Exception {
+        destinationName = destinationName.replace('"', '_');
+        List<MBeanSnapshot> answer = new ArrayList<MBeanSnapshot>();
+        for (MBeanSnapshot producer : getSnapshot().getProducers()) {
+            if ("dynamicProducer".equals(producer.getKeyProperty("endpoint"))) {
+                if (destinationName.equals(producer.getAttribute("DestinationName"))) {
+                    answer.add(producer);
+                }
+            } else if (destinationType.equals(producer.getKeyProperty("destinationType"))
+                    && destinationName.equals(producer.getKeyProperty("destinationName"))) {
+                answer.add(producer);
+            }
+        }
+        return snapshotProxies(answer, ProducerViewMBean.class, ProducerViewFacade.class);
+    }
+
+    @Override
+    public Collection<QueueViewFacade> getQueues() throws Exception {
+        if (!isSnapshotEnabled()) {
+            return super.getQueues();
+        }
+        return snapshotProxies(getSnapshot().getQueues(), QueueViewMBean.class, QueueViewFacade.class);
+    }
+
+    /**
+     * Returns a page of the queues sorted by the given attribute, such as <code>QueueSize</code>
+     */
+    public Collection<QueueViewFacade> getQueues(String sortAttribute, boolean ascending, int offset, int limit) throws Exception {
+        List<MBeanSnapshot> page = BrokerSnapshot.page(getSnapshot().getQueues(), sortAttribute, ascending, offset, limit);
+        return snapshotProxies(page, QueueViewMBean.class, QueueViewFacade.class);
+    }
+
+    @Override
+    public Collection<TopicViewFacade> getTopics() throws Exception {
+        if (!isSnapshotEnabled()) {
+            return super.getTopics();
+        }
+        return snapshotProxies(getSnapshot().getTopics(), TopicViewMBean.class, TopicViewFacade.class);
+    }
+
+    /**
+     * Returns a page of the topics sorted by the given attribute, such as <code>ConsumerCount</code>
+     */
+    public Collection<TopicViewFacade> getTopics(String sortAttribute, boolean ascending, int offset, int limit) throws Exception {
+        List<MBeanSnapshot> page = BrokerSnapshot.page(getSnapshot().getTopics(), sortAttribute, ascending, offset, limit);
+        return snapshotProxies(page, TopicViewMBean.class, TopicViewFacade.class);
+    }
+
+    @Override
+    public Collection<ConnectionViewFacade> getConnections() throws Exception {
+        if (!isSnapshotEnabled()) {
+            return super.getConnections();
+        }
+        return snapshotProxies(getSnapshot().getConnections(), ConnectionViewMBean.class, ConnectionViewFacade.class);
+    }
+
+    /**
+     * Returns a page of the connections sorted by the given attribute, such as <code>RemoteAddress</code>
+     */
+    public Collection<ConnectionViewFacade> getConnections(String sortAttribute, boolean ascending, int offset, int limit) throws Exception {
+        List<MBeanSnapshot> page = BrokerSnapshot.page(getSnapshot().getConnections(), sortAttribute, ascending, offset, limit);
+        return snapshotProxies(page, ConnectionViewMBean.class, ConnectionViewFacade.class);
+    }
+
+    @Override
+    public Collection<SubscriptionViewFacade> getQueueConsumers(String queueName) throws Exception {
+        if (!isSnapshotEnabled()) {
+            return super.getQueueConsumers(queueName);
+        }
+        return getConsumers("Queue", queueName);
+    }
+
+    @Override
+    public Collection<SubscriptionViewFacade> getTopicConsumers(String topicName) throws Exception {
+        if (!isSnapshotEnabled()) {
+            return super.getTopicConsumers(topicName);
+        }
+        return getConsumers("Topic", topicName);
+    }
+
+    @Override
+    public Collection<SubscriptionViewFacade> getConsumersOnConnection(String connectionName) throws Exception {
+        if (!isSnapshotEnabled()) {
+            return super.getConsumersOnConnection(connectionName);
+        }
+        return snapshotProxies(filter(getSnapshot().getSubscriptions(), "clientId", connectionName.replace(':', '_')),
+                SubscriptionViewMBean.class, SubscriptionViewFacade.class);
+    }
+
+    @Override
+    public Collection<ProducerViewFacade> getQueueProducers(String queueName) throws Exception {
+        if (!isSnapshotEnabled()) {
+            return super.getQueueProducers(queueName);
+        }
+        return getProducers("Queue", queueName);
+    }
+
+    @Override
+    public Collection<ProducerViewFacade> getTopicProducers(String topicName) throws Exception {
+        if (!isSnapshotEnabled()) {
+            return super.getTopicProducers(topicName);
+        }
+        return getProducers("Topic", topicName);
     }
 
     public ManagementContext getManagementContext() {
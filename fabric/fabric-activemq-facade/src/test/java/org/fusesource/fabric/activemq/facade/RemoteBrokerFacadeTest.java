@@ -0,0 +1,115 @@
+/*
+ * Copyright 2010 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package org.fusesource.fabric.activemq.facade;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.jms.Destination;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RemoteBrokerFacadeTest extends EmbeddedBrokerTestSupport {
+
+    protected final String QUEUE_NAME = "RemoteBrokerFacadeTest.Queue";
+
+    protected RemoteBrokerFacade brokerFacade;
+
+    @Before
+    public void setUp() throws Exception {
+        if (broker == null) {
+            broker = createBroker();
+        }
+        startBroker();
+
+        connectionFactory = createConnectionFactory();
+        connection = createConnection();
+        connection.start();
+        session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+
+        brokerFacade = new RemoteBrokerFacade(broker.getManagementContext().getMBeanServer());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (connection != null) {
+            connection.close();
+        }
+        if (broker != null) {
+            broker.stop();
+            broker.waitUntilStopped();
+        }
+    }
+
+    @Test
+    public void testSnapshotIsSharedUntilInvalidated() throws Exception {
+        BrokerSnapshot snapshot = brokerFacade.getSnapshot();
+        assertSame(snapshot, brokerFacade.getSnapshot());
+        brokerFacade.invalidateSnapshot();
+        assertNotSame(snapshot, brokerFacade.getSnapshot());
+    }
+
+    @Test
+    public void testQueuesAreSortedAndPaged() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            MessageProducer producer = session.createProducer(session.createQueue(QUEUE_NAME + i));
+            for (int j = 0; j < i; j++) {
+                producer.send(session.createTextMessage("message " + j));
+            }
+            producer.close();
+        }
+        brokerFacade.invalidateSnapshot();
+
+        List<String> names = new ArrayList<String>();
+        for (QueueViewFacade queue : brokerFacade.getQueues("QueueSize", false, 1, 2)) {
+            names.add(queue.getName());
+        }
+        assertEquals(2, names.size());
+        assertEquals(QUEUE_NAME + 3, names.get(0));
+        assertEquals(QUEUE_NAME + 2, names.get(1));
+
+        QueueViewFacade queue = brokerFacade.getQueue(QUEUE_NAME + 4);
+        assertNotNull(queue);
+        assertEquals(4, queue.getQueueSize());
+        assertNotNull(queue.getId());
+    }
+
+    @Test
+    public void testConsumersAndProducers() throws Exception {
+        Destination destination = session.createQueue(QUEUE_NAME);
+        MessageConsumer consumer = session.createConsumer(destination);
+        MessageProducer producer = session.createProducer(destination);
+        Thread.sleep(500);
+        brokerFacade.invalidateSnapshot();
+
+        assertEquals(1, brokerFacade.getQueueConsumers(QUEUE_NAME).size());
+        assertEquals(1, brokerFacade.getQueueProducers(QUEUE_NAME).size());
+        assertEquals(0, brokerFacade.getTopicConsumers(QUEUE_NAME).size());
+
+        brokerFacade.setSnapshotTimeToLive(0);
+        assertEquals(1, brokerFacade.getQueueConsumers(QUEUE_NAME).size());
+
+        producer.close();
+        consumer.close();
+    }
+}
@@ -193,7 +193,7 @@ public class DeploymentAgent implements ManagedService, FrameworkListener {
                 if (bundle.getLocation().endsWith("SNAPSHOT")) {
                     org.fusesource.fabric.agent.mvn.Parser parser = new org.fusesource.fabric.agent.mvn.Parser(bundle.getLocation());
                     String systemPath = System.getProperty("karaf.home") + File.separator + "system" + File.separator + parser.getArtifactPath().substring(4);
-                    String agentDownloadsPath = System.getProperty("karaf.data") + "/maven/agent" + File.separator + parser.getArtifactPath().substring(4);
+                    String agentDownloadsPath = DownloadManager.getCacheDirectory() + File.separator + parser.getArtifactPath().substring(4);
                     long systemChecksum = 0;
                     long agentChecksum = 0;
                     try {
@@ -26,6 +26,12 @@ import org.fusesource.fabric.agent.mvn.MavenRepositoryURL;
 
 public class DownloadManager {
 
+    /**
+     * System property pointing to a download cache that is shared with other containers, such as the siblings
+     * of a child container. Relative paths are resolved against karaf.home.
+     */
+    public static final String SHARED_CACHE_PROPERTY = "fabric.agent.download.cache";
+
     /**
      * Thread pool for downloads
      */
@@ -47,10 +53,25 @@ public class DownloadManager {
     public DownloadManager(MavenConfiguration configuration, ExecutorService executor) throws MalformedURLException {
         this.configuration = configuration;
         this.executor = executor;
-        this.cache = new MavenRepositoryURL("file://" + System.getProperty("karaf.data") + "/maven/agent" + "@snapshots");
+        this.cache = new MavenRepositoryURL("file://" + getCacheDirectory() + "@snapshots");
         this.system = new MavenRepositoryURL("file://" + System.getProperty("karaf.home") + "/system" + "@snapshots");
     }
 
+    /**
+     * Returns the directory where the downloaded artifacts are kept.
+     */
+    public static String getCacheDirectory() {
+        String shared = System.getProperty(SHARED_CACHE_PROPERTY);
+        if (shared != null && shared.length() > 0) {
+            File dir = new File(shared);
+            if (!dir.isAbsolute()) {
+                dir = new File(System.getProperty("karaf.home"), shared);
+            }
+            return dir.getAbsolutePath();
+        }
+        return System.getProperty("karaf.data") + "/maven/agent";
+    }
+
     public void shutdown() {
         // noop
     }
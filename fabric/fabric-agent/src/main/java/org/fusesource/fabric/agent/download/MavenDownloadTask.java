@@ -106,11 +106,17 @@ public class MavenDownloadTask extends AbstractDownloadTask implements Runnable
                 copy(is, os);
                 is.close();
                 os.close();
-                if (file.exists() && !file.delete()) {
-                    throw new IOException("Unable to delete file: " + file.toString());
-                }
+                // the cache may be shared with other containers, so try to replace the file atomically first
                 if (!tmp.renameTo(file)) {
-                    throw new IOException("Unable to rename file " + tmp.toString() + " to " + file.toString());
+                    // some platforms can not rename over an existing file
+                    file.delete();
+                    if (!tmp.renameTo(file)) {
+                        if (!file.exists()) {
+                            throw new IOException("Unable to rename file " + tmp.toString() + " to " + file.toString());
+                        }
+                        // another container has just downloaded the same artifact
+                        tmp.delete();
+                    }
                 }
                 return file;
             } catch (IOException ignore) {
@@ -0,0 +1,368 @@
+/**
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.fabric.camel;
+
+import org.apache.camel.AsyncCallback;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.processor.loadbalancer.LoadBalancerSupport;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A load balancer which keeps per member statistics so that it can send requests to the members which are
+ * responding fastest, rather than picking members at random.
+ * <p/>
+ * The following strategies are supported
+ * <ul>
+ * <li>{@link Strategy#EWMA} picks the member with the lowest exponentially weighted moving average response time,
+ * scaled by its outstanding requests</li>
+ * <li>{@link Strategy#LEAST_OUTSTANDING} picks the member with the fewest outstanding requests, using the
+ * response times to choose between members with the same number</li>
+ * <li>{@link Strategy#POWER_OF_TWO_CHOICES} picks two members at random and uses the one with the lower
+ * EWMA cost, which avoids the herding of a full scan while still steering away from slow members</li>
+ * </ul>
+ * Members which fail {@link #getEjectionThreshold()} requests in a row are ejected for {@link #getEjectionTime()},
+ * doubling on each repeated ejection, and members which join or return from ejection only receive their full
+ * share of requests after {@link #getSlowStartTime()}.
+ */
+public class AdaptiveLoadBalancer extends LoadBalancerSupport {
+    private static final transient Log LOG = LogFactory.getLog(AdaptiveLoadBalancer.class);
+
+    private static final double MIN_WEIGHT = 0.1;
+    private static final int MAX_EJECTION_SHIFT = 5;
+
+    public enum Strategy {
+        EWMA, LEAST_OUTSTANDING, POWER_OF_TWO_CHOICES;
+
+        /**
+         * Returns the strategy for the given URI friendly name such as <tt>ewma</tt>,
+         * <tt>leastOutstanding</tt> or <tt>p2c</tt>
+         */
+        public static Strategy fromName(String name) {
+            String text = name.replace("-", "").replace("_", "");
+            if (text.equalsIgnoreCase("ewma")) {
+                return EWMA;
+            } else if (text.equalsIgnoreCase("leastOutstanding") || text.equalsIgnoreCase("leastRequests")) {
+                return LEAST_OUTSTANDING;
+            } else if (text.equalsIgnoreCase("p2c") || text.equalsIgnoreCase("powerOfTwoChoices")) {
+                return POWER_OF_TWO_CHOICES;
+            }
+            throw new IllegalArgumentException("Unknown load balancer strategy: " + name);
+        }
+    }
+
+    private final Strategy strategy;
+    private final ConcurrentMap<Processor, MemberStats> stats = new ConcurrentHashMap<Processor, MemberStats>();
+    private final Random random = new Random();
+    private long decayTime = 10000;
+    private int ejectionThreshold = 5;
+    private long ejectionTime = 30000;
+    private long slowStartTime = 30000;
+
+    public AdaptiveLoadBalancer(Strategy strategy) {
+        this.strategy = strategy;
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptiveLoadBalancer(" + strategy + ")";
+    }
+
+    @Override
+    public void addProcessor(Processor processor) {
+        long now = System.nanoTime();
+        MemberStats member = new MemberStats(now);
+        // lets start new members off at the average cost so that they don't get flooded before
+        // we've measured them
+        member.ewma = averageEwma(now);
+        stats.put(processor, member);
+        super.addProcessor(processor);
+    }
+
+    @Override
+    public void removeProcessor(Processor processor) {
+        super.removeProcessor(processor);
+        stats.remove(processor);
+    }
+
+    public void process(Exchange exchange) throws Exception {
+        Processor processor = chooseProcessor(exchange);
+        MemberStats member = getStats(processor);
+        long start = member.begin();
+        boolean failed = true;
+        try {
+            processor.process(exchange);
+            failed = exchange.getException() != null;
+        } finally {
+            member.end(start, failed);
+        }
+    }
+
+    public boolean process(Exchange exchange, AsyncCallback callback) {
+        try {
+            process(exchange);
+        } catch (Exception e) {
+            exchange.setException(e);
+        }
+        callback.done(true);
+        return true;
+    }
+
+    /**
+     * Returns the processor which should handle the next exchange
+     */
+    protected Processor chooseProcessor(Exchange exchange) {
+        List<Processor> list = getProcessors();
+        int size = list.size();
+        if (size == 0) {
+            throw new IllegalStateException("No processors found.");
+        } else if (size == 1) {
+            return list.get(0);
+        }
+        long now = System.nanoTime();
+        if (strategy == Strategy.POWER_OF_TWO_CHOICES) {
+            Processor answer = choosePowerOfTwo(list, now, false);
+            // if everything is ejected lets fall back to trying all the members
+            return answer != null ? answer : choosePowerOfTwo(list, now, true);
+        }
+        Processor answer = chooseLowestCost(list, now, false);
+        return answer != null ? answer : chooseLowestCost(list, now, true);
+    }
+
+    protected Processor chooseLowestCost(List<Processor> list, long now, boolean includeEjected) {
+        int size = list.size();
+        // start at a random offset so that ties are spread across the members
+        int offset = random.nextInt(size);
+        Processor answer = null;
+        double lowestLoad = Double.MAX_VALUE;
+        double lowestCost = Double.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            Processor processor = list.get((offset + i) % size);
+            MemberStats member = getStats(processor);
+            if (!includeEjected && member.isEjected(now)) {
+                continue;
+            }
+            double weight = member.weight(now);
+            double cost = member.cost(now) / weight;
+            // the least outstanding strategy only uses the response times to break ties
+            double load = strategy == Strategy.LEAST_OUTSTANDING ? (member.outstanding.get() + 1) / weight : 0;
+            if (answer == null || load < lowestLoad || (load == lowestLoad && cost < lowestCost)) {
+                answer = processor;
+                lowestLoad = load;
+                lowestCost = cost;
+            }
+        }
+        return answer;
+    }
+
+    protected Processor choosePowerOfTwo(List<Processor> list, long now, boolean includeEjected) {
+        int size = list.size();
+        Processor first = null;
+        Processor second = null;
+        // a few attempts is enough to find healthy members unless most of them are ejected
+        for (int attempt = 0; attempt < size * 2 && second == null; attempt++) {
+            Processor processor = list.get(random.nextInt(size));
+            if (processor == first || (!includeEjected && getStats(processor).isEjected(now))) {
+                continue;
+            }
+            if (first == null) {
+                first = processor;
+            } else {
+                second = processor;
+            }
+        }
+        if (second == null) {
+            return first;
+        }
+        MemberStats a = getStats(first);
+        MemberStats b = getStats(second);
+        return a.cost(now) / a.weight(now) <= b.cost(now) / b.weight(now) ? first : second;
+    }
+
+    protected MemberStats getStats(Processor processor) {
+        MemberStats answer = stats.get(processor);
+        if (answer == null) {
+            // the processor was removed while we were choosing it, so lets not add its statistics back
+            answer = new MemberStats(System.nanoTime());
+        }
+        return answer;
+    }
+
+    protected double averageEwma(long now) {
+        double total = 0;
+        int count = 0;
+        for (MemberStats member : stats.values()) {
+            if (!member.isEjected(now)) {
+                total += member.ewma;
+                count++;
+            }
+        }
+        return count > 0 ? total / count : 0;
+    }
+
+    // Properties
+    //-------------------------------------------------------------------------
+
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    public long getDecayTime() {
+        return decayTime;
+    }
+
+    /**
+     * Sets the time in milliseconds over which older response times stop influencing the moving average
+     */
+    public void setDecayTime(long decayTime) {
+        this.decayTime = decayTime;
+    }
+
+    public int getEjectionThreshold() {
+        return ejectionThreshold;
+    }
+
+    /**
+     * Sets the number of consecutive failures after which a member is ejected, or 0 to never eject members
+     */
+    public void setEjectionThreshold(int ejectionThreshold) {
+        this.ejectionThreshold = ejectionThreshold;
+    }
+
+    public long getEjectionTime() {
+        return ejectionTime;
+    }
+
+    /**
+     * Sets the time in milliseconds a member is ejected for the first time it is ejected
+     */
+    public void setEjectionTime(long ejectionTime) {
+        this.ejectionTime = ejectionTime;
+    }
+
+    public long getSlowStartTime() {
+        return slowStartTime;
+    }
+
+    /**
+     * Sets the time in milliseconds over which new members ramp up to their full share of requests
+     */
+    public void setSlowStartTime(long slowStartTime) {
+        this.slowStartTime = slowStartTime;
+    }
+
+    // Implementation methods
+    //-------------------------------------------------------------------------
+
+    /**
+     * The statistics for a single member
+     */
+    protected class MemberStats {
+        final AtomicInteger outstanding = new AtomicInteger();
+        volatile double ewma;
+        volatile long lastUpdate;
+        volatile long startTime;
+        volatile long ejectedUntil;
+        int consecutiveFailures;
+        int ejections;
+
+        MemberStats(long now) {
+            this.startTime = now;
+            this.lastUpdate = now;
+        }
+
+        long begin() {
+            outstanding.incrementAndGet();
+            return System.nanoTime();
+        }
+
+        void end(long start, boolean failed) {
+            outstanding.decrementAndGet();
+            long now = System.nanoTime();
+            long rtt = now - start;
+            synchronized (this) {
+                double elapsed = Math.max(0, now - lastUpdate);
+                double alpha = Math.exp(-elapsed / TimeUnit.MILLISECONDS.toNanos(decayTime));
+                // lets track increases straight away so that a member which suddenly slows down is avoided
+                ewma = rtt > ewma ? rtt : ewma * alpha + rtt * (1 - alpha);
+                lastUpdate = now;
+                if (!failed) {
+                    consecutiveFailures = 0;
+                    if (ejectedUntil == 0) {
+                        ejections = 0;
+                    }
+                } else if (ejectionThreshold > 0 && ++consecutiveFailures >= ejectionThreshold) {
+                    long time = TimeUnit.MILLISECONDS.toNanos(ejectionTime) << Math.min(ejections, MAX_EJECTION_SHIFT);
+                    ejectedUntil = now + time;
+                    ejections++;
+                    consecutiveFailures = 0;
+                    LOG.warn("Ejecting load balancer member after " + ejectionThreshold + " consecutive failures for "
+                            + TimeUnit.NANOSECONDS.toMillis(time) + " ms");
+                }
+            }
+        }
+
+        boolean isEjected(long now) {
+            long until = ejectedUntil;
+            if (until == 0) {
+                return false;
+            } else if (now - until < 0) {
+                return true;
+            }
+            synchronized (this) {
+                if (ejectedUntil != 0 && now - ejectedUntil >= 0) {
+                    // lets bring the member back slowly
+                    ejectedUntil = 0;
+                    startTime = now;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Returns the expected cost of sending a request to this member
+         */
+        double cost(long now) {
+            double latency = ewma;
+            // lets forget about old measurements so that members we've avoided get another chance
+            long idle = now - lastUpdate;
+            if (idle > 0 && outstanding.get() == 0) {
+                latency = latency * Math.exp(-(double) idle / TimeUnit.MILLISECONDS.toNanos(decayTime));
+            }
+            return (latency + 1) * (outstanding.get() + 1);
+        }
+
+        /**
+         * Returns the slow start weight of this member between 0.1 and 1
+         */
+        double weight(long now) {
+            if (slowStartTime <= 0) {
+                return 1;
+            }
+            double ratio = (double) (now - startTime) / TimeUnit.MILLISECONDS.toNanos(slowStartTime);
+            return ratio >= 1 ? 1 : Math.max(MIN_WEIGHT, ratio);
+        }
+    }
+}
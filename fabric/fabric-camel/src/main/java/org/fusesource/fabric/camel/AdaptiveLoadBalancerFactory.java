@@ -0,0 +1,89 @@
+/**
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.fabric.camel;
+
+import org.apache.camel.processor.loadbalancer.LoadBalancer;
+
+/**
+ * Creates {@link AdaptiveLoadBalancer} instances using one of its response time or load aware strategies
+ */
+public class AdaptiveLoadBalancerFactory implements LoadBalancerFactory {
+    private AdaptiveLoadBalancer.Strategy strategy = AdaptiveLoadBalancer.Strategy.POWER_OF_TWO_CHOICES;
+    private long decayTime = 10000;
+    private int ejectionThreshold = 5;
+    private long ejectionTime = 30000;
+    private long slowStartTime = 30000;
+
+    public AdaptiveLoadBalancerFactory() {
+    }
+
+    public AdaptiveLoadBalancerFactory(AdaptiveLoadBalancer.Strategy strategy) {
+        this.strategy = strategy;
+    }
+
+    public LoadBalancer createLoadBalancer() {
+        AdaptiveLoadBalancer answer = new AdaptiveLoadBalancer(strategy);
+        answer.setDecayTime(decayTime);
+        answer.setEjectionThreshold(ejectionThreshold);
+        answer.setEjectionTime(ejectionTime);
+        answer.setSlowStartTime(slowStartTime);
+        return answer;
+    }
+
+    // Properties
+    //-------------------------------------------------------------------------
+
+    public AdaptiveLoadBalancer.Strategy getStrategy() {
+        return strategy;
+    }
+
+    public void setStrategy(AdaptiveLoadBalancer.Strategy strategy) {
+        this.strategy = strategy;
+    }
+
+    public long getDecayTime() {
+        return decayTime;
+    }
+
+    public void setDecayTime(long decayTime) {
+        this.decayTime = decayTime;
+    }
+
+    public int getEjectionThreshold() {
+        return ejectionThreshold;
+    }
+
+    public void setEjectionThreshold(int ejectionThreshold) {
+        this.ejectionThreshold = ejectionThreshold;
+    }
+
+    public long getEjectionTime() {
+        return ejectionTime;
+    }
+
+    public void setEjectionTime(long ejectionTime) {
+        this.ejectionTime = ejectionTime;
+    }
+
+    public long getSlowStartTime() {
+        return slowStartTime;
+    }
+
+    public void setSlowStartTime(long slowStartTime) {
+        this.slowStartTime = slowStartTime;
+    }
+}
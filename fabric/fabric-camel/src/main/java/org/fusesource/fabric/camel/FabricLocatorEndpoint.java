@@ -38,6 +38,10 @@ import java.util.Set;
 
 /**
  * Creates an endpoint which uses FABRIC to map a logical name to physical endpoint names
+ * <p/>
+ * The load balancer can be chosen on the URI using <tt>fabric:name?loadBalancerType=p2c</tt> with one of
+ * <tt>random</tt>, <tt>ewma</tt>, <tt>leastOutstanding</tt> or <tt>p2c</tt> along with the
+ * <tt>ejectionThreshold</tt>, <tt>ejectionTime</tt> and <tt>slowStartTime</tt> options of the adaptive strategies.
  */
 public class FabricLocatorEndpoint extends DefaultEndpoint {
     private static final transient Log LOG = LogFactory.getLog(FabricLocatorEndpoint.class);
@@ -48,6 +52,11 @@ public class FabricLocatorEndpoint extends DefaultEndpoint {
     private LoadBalancerFactory loadBalancerFactory;
     private LoadBalancer loadBalancer;
     private final Map<String, Processor> processors = new HashMap<String, Processor>();
+    private String loadBalancerType;
+    private long decayTime = 10000;
+    private int ejectionThreshold = 5;
+    private long ejectionTime = 30000;
+    private long slowStartTime = 30000;
 
 
     public FabricLocatorEndpoint(String uri, FabricComponent component, Group group) {
@@ -159,7 +168,16 @@ public class FabricLocatorEndpoint extends DefaultEndpoint {
 
     public LoadBalancerFactory getLoadBalancerFactory() {
         if (loadBalancerFactory == null) {
-            loadBalancerFactory = component.getLoadBalancerFactory();
+            if (loadBalancerType == null || loadBalancerType.equalsIgnoreCase("random")) {
+                loadBalancerFactory = component.getLoadBalancerFactory();
+            } else {
+                AdaptiveLoadBalancerFactory factory = new AdaptiveLoadBalancerFactory(AdaptiveLoadBalancer.Strategy.fromName(loadBalancerType));
+                factory.setDecayTime(decayTime);
+                factory.setEjectionThreshold(ejectionThreshold);
+                factory.setEjectionTime(ejectionTime);
+                factory.setSlowStartTime(slowStartTime);
+                loadBalancerFactory = factory;
+            }
         }
         return loadBalancerFactory;
     }
@@ -168,6 +186,49 @@ public class FabricLocatorEndpoint extends DefaultEndpoint {
         this.loadBalancerFactory = loadBalancerFactory;
     }
 
+    public String getLoadBalancerType() {
+        return loadBalancerType;
+    }
+
+    /**
+     * Sets the load balancer strategy; one of <tt>random</tt>, <tt>ewma</tt>, <tt>leastOutstanding</tt> or <tt>p2c</tt>
+     */
+    public void setLoadBalancerType(String loadBalancerType) {
+        this.loadBalancerType = loadBalancerType;
+    }
+
+    public long getDecayTime() {
+        return decayTime;
+    }
+
+    public void setDecayTime(long decayTime) {
+        this.decayTime = decayTime;
+    }
+
+    public int getEjectionThreshold() {
+        return ejectionThreshold;
+    }
+
+    public void setEjectionThreshold(int ejectionThreshold) {
+        this.ejectionThreshold = ejectionThreshold;
+    }
+
+    public long getEjectionTime() {
+        return ejectionTime;
+    }
+
+    public void setEjectionTime(long ejectionTime) {
+        this.ejectionTime = ejectionTime;
+    }
+
+    public long getSlowStartTime() {
+        return slowStartTime;
+    }
+
+    public void setSlowStartTime(long slowStartTime) {
+        this.slowStartTime = slowStartTime;
+    }
+
     public LoadBalancer createLoadBalancer() {
         return getLoadBalancerFactory().createLoadBalancer();
     }
@@ -0,0 +1,193 @@
+/**
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.fabric.camel;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.apache.camel.processor.loadbalancer.LoadBalancer;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the adaptive load balancer strategies steer requests away from slow and failing members
+ */
+public class AdaptiveLoadBalancerTest {
+    private static final transient Logger LOG = LoggerFactory.getLogger(AdaptiveLoadBalancerTest.class);
+
+    private static final int MEMBERS = 8;
+    private static final int THREADS = 4;
+    private static final int REQUESTS_PER_THREAD = 250;
+
+    private final CamelContext camelContext = new DefaultCamelContext();
+
+    @Test
+    public void testSteersAwayFromSlowMember() throws Exception {
+        int total = THREADS * REQUESTS_PER_THREAD;
+        int fairShare = total / MEMBERS;
+        for (AdaptiveLoadBalancer.Strategy strategy : AdaptiveLoadBalancer.Strategy.values()) {
+            AdaptiveLoadBalancerFactory factory = new AdaptiveLoadBalancerFactory(strategy);
+            factory.setDecayTime(60000);
+            int slowRequests = sendRequests(strategy.toString(), factory);
+            assertTrue(strategy + " sent " + slowRequests + " of " + total + " requests to the slow member, its fair share is " + fairShare,
+                    slowRequests < fairShare / 4);
+        }
+    }
+
+    @Test
+    public void testRemovedMemberStatsAreNotRecreated() throws Exception {
+        AdaptiveLoadBalancer loadBalancer = new AdaptiveLoadBalancer(AdaptiveLoadBalancer.Strategy.EWMA);
+        Processor member = new SimulatedMember(0);
+        loadBalancer.addProcessor(member);
+        loadBalancer.removeProcessor(member);
+        assertNotSame("Statistics of a removed member should not be kept", loadBalancer.getStats(member), loadBalancer.getStats(member));
+    }
+
+    @Test
+    public void testEjectsFailingMember() throws Exception {
+        AdaptiveLoadBalancer loadBalancer = new AdaptiveLoadBalancer(AdaptiveLoadBalancer.Strategy.LEAST_OUTSTANDING);
+        loadBalancer.setEjectionThreshold(3);
+        loadBalancer.setEjectionTime(60000);
+        final AtomicInteger healthy = new AtomicInteger();
+        final AtomicInteger failing = new AtomicInteger();
+        loadBalancer.addProcessor(new SimulatedMember(1) {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                healthy.incrementAndGet();
+                super.process(exchange);
+            }
+        });
+        // failing fast makes a member look quicker than the healthy ones so it must be ejected
+        loadBalancer.addProcessor(new Processor() {
+            public void process(Exchange exchange) throws Exception {
+                failing.incrementAndGet();
+                throw new IllegalStateException("Simulated failure");
+            }
+        });
+        for (int i = 0; i < 100; i++) {
+            try {
+                loadBalancer.process(new DefaultExchange(camelContext));
+            } catch (IllegalStateException expected) {
+            }
+        }
+        assertEquals(3, failing.get());
+        assertEquals(97, healthy.get());
+    }
+
+    @Test
+    public void testSlowStart() throws Exception {
+        AdaptiveLoadBalancer loadBalancer = new AdaptiveLoadBalancer(AdaptiveLoadBalancer.Strategy.LEAST_OUTSTANDING);
+        loadBalancer.setSlowStartTime(200);
+        loadBalancer.setDecayTime(10);
+        final AtomicInteger slow = new AtomicInteger();
+        final AtomicInteger fast = new AtomicInteger();
+        loadBalancer.addProcessor(new SimulatedMember(1) {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                slow.incrementAndGet();
+                super.process(exchange);
+            }
+        });
+        Thread.sleep(250);
+
+        // the new member should be held back while it is starting even though it is faster
+        loadBalancer.addProcessor(new Processor() {
+            public void process(Exchange exchange) throws Exception {
+                fast.incrementAndGet();
+            }
+        });
+        for (int i = 0; i < 20; i++) {
+            loadBalancer.process(new DefaultExchange(camelContext));
+        }
+        assertEquals(20, slow.get());
+        assertEquals(0, fast.get());
+
+        Thread.sleep(250);
+        for (int i = 0; i < 100; i++) {
+            loadBalancer.process(new DefaultExchange(camelContext));
+        }
+        assertTrue("The new member should get most requests once started but got " + fast.get(), fast.get() > 50);
+    }
+
+    /**
+     * Sends requests from a few threads to members where the first one is much slower than the rest,
+     * returning the number of requests the slow member received
+     */
+    protected int sendRequests(String name, LoadBalancerFactory factory) throws Exception {
+        final LoadBalancer loadBalancer = factory.createLoadBalancer();
+        final AtomicInteger slowRequests = new AtomicInteger();
+        loadBalancer.addProcessor(new SimulatedMember(40) {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                slowRequests.incrementAndGet();
+                super.process(exchange);
+            }
+        });
+        for (int i = 1; i < MEMBERS; i++) {
+            loadBalancer.addProcessor(new SimulatedMember(1));
+        }
+        final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+        final CountDownLatch latch = new CountDownLatch(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            new Thread("load-balancer-" + t) {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+                            loadBalancer.process(new DefaultExchange(camelContext));
+                        }
+                    } catch (Exception e) {
+                        LOG.warn("Failed to process exchange: " + e, e);
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            }.start();
+        }
+        latch.await();
+        assertEquals(null, failure.get());
+        LOG.info(name + " load balancer sent " + slowRequests.get() + " requests to the slow member");
+        return slowRequests.get();
+    }
+
+    /**
+     * A member which takes a fixed time to process each request
+     */
+    protected static class SimulatedMember implements Processor {
+        private final long delay;
+
+        public SimulatedMember(long delay) {
+            this.delay = delay;
+        }
+
+        public void process(Exchange exchange) throws Exception {
+            Thread.sleep(delay);
+        }
+    }
+}
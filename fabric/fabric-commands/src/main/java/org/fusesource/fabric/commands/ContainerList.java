@@ -17,6 +17,7 @@
 package org.fusesource.fabric.commands;
 
 import java.io.PrintStream;
+import java.util.Map;
 
 import org.apache.felix.gogo.commands.Argument;
 import org.apache.felix.gogo.commands.Command;
@@ -24,6 +25,8 @@ import org.apache.felix.gogo.commands.Option;
 import org.fusesource.fabric.api.Container;
 import org.fusesource.fabric.api.Version;
 import org.fusesource.fabric.boot.commands.support.FabricCommand;
+import org.fusesource.fabric.service.ContainerInventory;
+import org.fusesource.fabric.utils.shell.ShellUtils;
 
 import static org.fusesource.fabric.commands.support.CommandUtils.filterContainers;
 import static org.fusesource.fabric.commands.support.CommandUtils.matchVersion;
@@ -36,20 +39,29 @@ public class ContainerList extends FabricCommand {
     static final String FORMAT = "%-30s %-9s %-7s %-30s %s";
     static final String VERBOSE_FORMAT = "%-20s %-9s %-7s %-30s  %-30s %-90s %s";
 
+    static final String DETAILS_FORMAT = "%-30s %-9s %-7s %-30s %-9s %-10s %s";
+
     static final String[] HEADERS = {"[id]", "[version]", "[alive]", "[profiles]", "[provision status]"};
+    static final String[] DETAILS_HEADERS = {"[id]", "[version]", "[alive]", "[profiles]", "[bundles]", "[services]", "[provision status]"};
     static final String[] VERBOSE_HEADERS = {"[id]", "[version]", "[alive]", "[profiles]", "[ssh url]", "[jmx url]", "[provision status]"};
 
     @Option(name = "--version", description = "Optional version to use as filter")
     private String version;
     @Option(name = "-v", aliases = "--verbose", description = "Flag for verbose output", multiValued = false, required = false)
     private boolean verbose;
+    @Option(name = "-d", aliases = "--details", description = "Also list the number of bundles and services of each container, which are read over JMX", multiValued = false, required = false)
+    private boolean details;
+    @Option(name = "--jmx-user", multiValued = false, required = false, description = "The jmx user name used to read the container details.")
+    private String username;
+    @Option(name = "--jmx-password", multiValued = false, required = false, description = "The jmx password used to read the container details.")
+    private String password;
     @Argument(index = 0, name = "filter", description = "Filter by container ID or by profile name. When a profile name is specified, only the containers with that profile are listed.", required = false, multiValued = false)
     private String filter = null;
 
     @Override
     protected Object doExecute() throws Exception {
         checkFabricAvailable();
-        Container[] containers = fabricService.getContainers();
+        Container[] containers = fabricService.getContainerSnapshots();
 
         // filter unwanted containers, and split list into parent/child,
         // so we can sort the list as we want it 
@@ -64,7 +76,12 @@ public class ContainerList extends FabricCommand {
             ver = fabricService.getVersion(version);
         }
        
-        if (verbose) {
+        if (details) {
+            String jmxUser = username != null ? username : ShellUtils.retrieveFabricUser(session);
+            String jmxPassword = password != null ? password : ShellUtils.retrieveFabricUserPassword(session);
+            Map<String, ContainerInventory.ContainerDetails> inventory = new ContainerInventory(fabricService).getDetails(containers, jmxUser, jmxPassword, true, true);
+            printContainersDetails(containers, inventory, ver, System.out);
+        } else if (verbose) {
             printContainersVerbose(containers, ver, System.out);
         } else {
             printContainers(containers, ver, System.out);
@@ -90,6 +107,27 @@ public class ContainerList extends FabricCommand {
         }
     }
 
+    protected void printContainersDetails(Container[] containers, Map<String, ContainerInventory.ContainerDetails> inventory, Version version, PrintStream out) {
+        out.println(String.format(DETAILS_FORMAT, DETAILS_HEADERS));
+        for (Container container : containers) {
+            if (matchVersion(container, version)) {
+                String indent = "";
+                for (Container c = container; !c.isRoot(); c = c.getParent()) {
+                    indent += "  ";
+                }
+                //Mark local container with a star symobl
+                String marker = "";
+                if (container.getId().equals(fabricService.getCurrentContainer().getId())) {
+                    marker = "*";
+                }
+                ContainerInventory.ContainerDetails details = inventory.get(container.getId());
+                int bundles = details != null ? details.getBundles().length : 0;
+                int services = details != null ? details.getServices().length : 0;
+                out.println(String.format(DETAILS_FORMAT, indent + container.getId() + marker, container.getVersion().getName(), container.isAlive(), toString(container.getProfiles()), bundles, services, status(container)));
+            }
+        }
+    }
+
     protected void printContainersVerbose(Container[] containers, Version version, PrintStream out) {
         out.println(String.format(VERBOSE_FORMAT, VERBOSE_HEADERS));
         for (Container container : containers) {
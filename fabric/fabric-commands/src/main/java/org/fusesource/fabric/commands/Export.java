@@ -16,21 +16,32 @@
  */
 package org.fusesource.fabric.commands;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
 import org.apache.felix.gogo.commands.Argument;
 import org.apache.felix.gogo.commands.Command;
 import org.apache.felix.gogo.commands.Option;
 import org.fusesource.fabric.boot.commands.support.FabricCommand;
+import org.fusesource.fabric.utils.Closeables;
 import org.fusesource.fabric.zookeeper.utils.RegexSupport;
 import org.fusesource.fabric.zookeeper.IZKClient;
+import org.fusesource.fabric.zookeeper.utils.ZookeeperBulkUtils;
 
 
 import static org.fusesource.fabric.zookeeper.utils.RegexSupport.getPatterns;
@@ -40,6 +51,8 @@ import static org.fusesource.fabric.zookeeper.utils.RegexSupport.merge;
 @Command(name = "export", scope = "fabric", description = "Export the contents of the fabric registry to the specified directory in the filesystem", detailedDescription = "classpath:export.txt")
 public class Export extends FabricCommand {
 
+    private static final int BATCH_SIZE = 1000;
+
     @Argument(description="Path of the directory to export to")
     String target = System.getProperty("karaf.home") + File.separator + "fabric" + File.separator + "export";
 
@@ -58,6 +71,9 @@ public class Export extends FabricCommand {
     @Option(name="-t", aliases={"--trim"}, description="Trims the first timestamp comment line in properties files starting with the '#' character")
     boolean trimHeader;
 
+    @Option(name="-a", aliases={"--archive"}, description="Export to a single zip archive at the target path instead of a directory. The archive is written while the registry is read and can be imported with fabric:import --archive.")
+    boolean archive;
+
     @Option(name="--dry-run", description="Log the actions that would be performed during an export, but do not actually perform the export.")
     boolean dryRun = false;
 
@@ -97,43 +113,31 @@ public class Export extends FabricCommand {
         List<Pattern> include = getPatterns(regex);
         List<Pattern> exclude = getPatterns(nregex);
         List<Pattern> profile = getPatterns(new String[]{RegexSupport.PROFILE_REGEX});
-        List<Pattern> containerProperties = getPatterns(new String[]{RegexSupport.PROFILE_CONTAINER_PROPERTIES_REGEX});
 
-        List<String> paths = zk.getAllChildren(path);
-        SortedSet<File> directories = new TreeSet<File>();
-        Map<File, String> settings = new HashMap<File, String>();
-
-        for(String p : paths) {
+        List<String> paths = new ArrayList<String>();
+        for (String p : ZookeeperBulkUtils.getAllChildren(zk, path)) {
             p = path + p;
             if (!matches(include, p, true) || matches(exclude, p, false) || matches(profile,p,false)) {
                 continue;
             }
-            byte[] data = zk.getData(p);
-            if (data != null) {
-                String name = p;
-                //Znodes that translate into folders and also have data need to change their name to avoid a collision.
-                if (!p.contains(".") || p.endsWith("fabric-ensemble")) {
-                    name += ".cfg";
-                }
-                String value = new String(data);
-                if (trimHeader && value.startsWith("#")) {
-                    // lets remove the first line
-                    int idx = value.indexOf("\n");
-                    if (idx > 0) {
-                        value = value.substring(idx + 1);
-                    }
-                }
-                //Make sure to append the parents
-                if(matches(containerProperties,p,false)) {
-                  byte[] parentData = zk.getData(p.substring(0,p.lastIndexOf("/")));
-                    if (parentData != null) {
-                        String parentValue = "parents=" + new String(parentData);
-                        value += "\n" + parentValue;
-                    }
+            paths.add(p);
+        }
+
+        if (archive) {
+            exportToArchive(zk, paths);
+            return;
+        }
+
+        SortedSet<File> directories = new TreeSet<File>();
+        Map<File, String> settings = new HashMap<File, String>();
+
+        for (int i = 0; i < paths.size(); i += BATCH_SIZE) {
+            for (Map.Entry<String, String> entry : read(zk, paths.subList(i, Math.min(paths.size(), i + BATCH_SIZE))).entrySet()) {
+                if (entry.getValue() != null) {
+                    settings.put(new File(target + File.separator + entry.getKey()), entry.getValue());
+                } else {
+                    directories.add(new File(target + File.separator + entry.getKey()));
                 }
-                settings.put(new File(target + File.separator + name), value);
-            } else {
-                directories.add(new File(target + File.separator + p));
             }
         }
 
@@ -195,6 +199,96 @@ public class Export extends FabricCommand {
         }
     }
 
+    /**
+     * Writes the paths to a zip archive, reading and writing them in batches so that the export never holds more
+     * than one batch in memory
+     */
+    protected void exportToArchive(IZKClient zk, List<String> paths) throws Exception {
+        File file = new File(target);
+        if (file.exists() && !file.isFile()) {
+            throw new IllegalArgumentException("File " + file + " exists but is not a file");
+        }
+        ZipOutputStream out = null;
+        try {
+            if (!dryRun) {
+                if (file.getParentFile() != null && !file.getParentFile().exists() && !file.getParentFile().mkdirs()) {
+                    throw new RuntimeException("Failed to create directory " + file.getParentFile());
+                }
+                out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            }
+            for (int i = 0; i < paths.size(); i += BATCH_SIZE) {
+                for (Map.Entry<String, String> entry : read(zk, paths.subList(i, Math.min(paths.size(), i + BATCH_SIZE))).entrySet()) {
+                    String name = entry.getKey().substring(1);
+                    if (entry.getValue() == null) {
+                        name += "/";
+                    }
+                    if (dryRun) {
+                        System.out.printf("Writing archive entry : %s\n", name);
+                        continue;
+                    }
+                    out.putNextEntry(new ZipEntry(name));
+                    if (entry.getValue() != null) {
+                        out.write(entry.getValue().getBytes());
+                    }
+                    out.closeEntry();
+                }
+            }
+        } finally {
+            Closeables.closeQuitely(out);
+        }
+    }
+
+    /**
+     * Reads the data of the given paths with pipelined requests. Returns the name each path is exported as
+     * mapped to its contents, or to null for paths which are exported as directories.
+     */
+    protected Map<String, String> read(IZKClient zk, List<String> paths) throws Exception {
+        List<Pattern> containerProperties = getPatterns(new String[]{RegexSupport.PROFILE_CONTAINER_PROPERTIES_REGEX});
+        Set<String> reads = new LinkedHashSet<String>(paths);
+        for (String p : paths) {
+            if (matches(containerProperties, p, false)) {
+                reads.add(p.substring(0, p.lastIndexOf("/")));
+            }
+        }
+        Map<String, byte[]> values = ZookeeperBulkUtils.getData(zk, reads);
+
+        Map<String, String> answer = new LinkedHashMap<String, String>();
+        for (String p : paths) {
+            if (!values.containsKey(p)) {
+                // deleted since the tree was listed
+                continue;
+            }
+            byte[] data = values.get(p);
+            if (data != null) {
+                String name = p;
+                //Znodes that translate into folders and also have data need to change their name to avoid a collision.
+                if (!p.contains(".") || p.endsWith("fabric-ensemble")) {
+                    name += ".cfg";
+                }
+                String value = new String(data);
+                if (trimHeader && value.startsWith("#")) {
+                    // lets remove the first line
+                    int idx = value.indexOf("\n");
+                    if (idx > 0) {
+                        value = value.substring(idx + 1);
+                    }
+                }
+                //Make sure to append the parents
+                if(matches(containerProperties,p,false)) {
+                  byte[] parentData = values.get(p.substring(0,p.lastIndexOf("/")));
+                    if (parentData != null) {
+                        String parentValue = "parents=" + new String(parentData);
+                        value += "\n" + parentValue;
+                    }
+                }
+                answer.put(name, value);
+            } else {
+                answer.put(p, null);
+            }
+        }
+        return answer;
+    }
+
     @Override
     protected Object doExecute() throws Exception {
         doExecute(getZooKeeper());
@@ -45,6 +45,12 @@ public class Import extends FabricCommand {
     @Option(name="-fs", aliases={"--filesystem"}, description="Indicates that the 'source' argument is a directory on the filesystem.")
     boolean filesystem = true;
 
+    @Option(name="-a", aliases={"--archive"}, description="Indicates that the 'source' argument is a zip archive created by fabric:export --archive.")
+    boolean archive = false;
+
+    @Option(name="--diff", description="Only write the znodes whose data differs from the data being imported.")
+    boolean diff = false;
+
     @Option(name="-v", aliases={"--verbose"}, description="Verbose output of files being imported")
     boolean verbose = false;
 
@@ -70,14 +76,21 @@ public class Import extends FabricCommand {
         if (properties == true) {
             filesystem = false;
         }
+        if (archive == true) {
+            filesystem = false;
+            properties = false;
+        }
         if (filesystem == true) {
             properties = false;
         }
         if (properties) {
-            ZookeeperImportUtils.importFromPropertiesFile(zk, source, target, regex, nregex, dryRun);
+            ZookeeperImportUtils.importFromPropertiesFile(zk, source, target, regex, nregex, dryRun, diff);
         }
         if (filesystem) {
-            ZookeeperImportUtils.importFromFileSystem(zk, source, target, regex, nregex, delete, dryRun, verbose);
+            ZookeeperImportUtils.importFromFileSystem(zk, source, target, regex, nregex, delete, dryRun, verbose, diff);
+        }
+        if (archive) {
+            ZookeeperImportUtils.importFromArchive(zk, source, target, regex, nregex, delete, dryRun, verbose, diff);
         }
         System.out.println("imported ZK data from: " + source);
     }
@@ -32,7 +32,7 @@ public class VersionList extends FabricCommand {
     protected Object doExecute() throws Exception {
         checkFabricAvailable();
 
-        Container[] containers = fabricService.getContainers();
+        Container[] containers = fabricService.getContainerSnapshots();
         Version[] versions = fabricService.getVersions();
         printVersions(containers, versions, fabricService.getDefaultVersion(), System.out);
         return null;
@@ -33,7 +33,11 @@ import org.fusesource.fabric.service.jclouds.firewall.FirewallManager;
 import org.fusesource.fabric.service.jclouds.firewall.FirewallManagerFactory;
 import org.fusesource.fabric.service.jclouds.firewall.FirewallNotSupportedOnProviderException;
 import org.fusesource.fabric.service.jclouds.firewall.Rule;
+import org.fusesource.fabric.service.jclouds.internal.ProviderRateLimiter;
+import org.fusesource.fabric.zookeeper.IZKClient;
 import org.fusesource.fabric.zookeeper.ZkDefs;
+import org.fusesource.fabric.zookeeper.ZkPath;
+import org.fusesource.fabric.zookeeper.utils.ZooKeeperUtils;
 import org.jclouds.compute.ComputeService;
 import org.jclouds.compute.domain.ExecResponse;
 import org.jclouds.compute.domain.NodeMetadata;
@@ -59,23 +63,41 @@ public class CloudContainerInstallationTask implements Runnable {
     private final FirewallManagerFactory firewallManagerFactory;
     private final TemplateOptions templateOptions;
 
+    private final ProviderRateLimiter rateLimiter;
+    private final IZKClient zooKeeper;
+
     private final Set<CreateJCloudsContainerMetadata> result;
     private final CountDownLatch latch;
+    private final long notBefore;
 
     public CloudContainerInstallationTask(String containerName, NodeMetadata nodeMetadata, CreateJCloudsContainerOptions options, ComputeService computeService, FirewallManagerFactory firewallManagerFactory, TemplateOptions templateOptions, Set<CreateJCloudsContainerMetadata> result, CountDownLatch latch) {
+        this(containerName, nodeMetadata, options, computeService, firewallManagerFactory, templateOptions, new ProviderRateLimiter(), null, result, latch, 0L);
+    }
+
+    /**
+     * @param notBefore The time in millis before which the node should not be accessed, as its ssh daemon may still be starting.
+     */
+    public CloudContainerInstallationTask(String containerName, NodeMetadata nodeMetadata, CreateJCloudsContainerOptions options, ComputeService computeService, FirewallManagerFactory firewallManagerFactory, TemplateOptions templateOptions, ProviderRateLimiter rateLimiter, IZKClient zooKeeper, Set<CreateJCloudsContainerMetadata> result, CountDownLatch latch, long notBefore) {
         this.containerName = containerName;
         this.nodeMetadata = nodeMetadata;
         this.options = options;
         this.computeService = computeService;
         this.firewallManagerFactory = firewallManagerFactory;
         this.templateOptions = templateOptions;
+        this.rateLimiter = rateLimiter;
+        this.zooKeeper = zooKeeper;
         this.result = result;
         this.latch = latch;
+        this.notBefore = notBefore;
     }
 
     @Override
     public void run() {
         try {
+            long delay = notBefore - System.currentTimeMillis();
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
             LoginCredentials credentials = nodeMetadata.getCredentials();
             //For some cloud providers return do not allow shell access to root, so the user needs to be overrided.
             if (!Strings.isNullOrEmpty(options.getUser()) && credentials != null) {
@@ -112,31 +134,34 @@ public class CloudContainerInstallationTask implements Runnable {
                 addresses.put(ZkDefs.PUBLIC_IP, publicAddress);
             }
 
-            options.getSystemProperties().put(ContainerProviderUtils.ADDRESSES_PROPERTY_KEY, addresses);
-            options.getMetadataMap().put(containerName, jCloudsContainerMetadata);
-
             //Setup firwall for node
             try {
                 FirewallManager firewallManager = firewallManagerFactory.getFirewallManager(computeService);
                 if (firewallManager.isSupported()) {
+                    long start = System.currentTimeMillis();
+                    updateStep("configuring firewall");
                     options.getCreationStateListener().onStateChange("Configuring firewall.");
                     String source = getOriginatingIp();
 
                     Rule httpRule = Rule.create().source("0.0.0.0/0").destination(nodeMetadata).port(8181);
+                    rateLimiter.acquire(options.getProviderName());
                     firewallManager.addRules(httpRule);
 
                     if (source != null) {
                         Rule jmxRule = Rule.create().source(source).destination(nodeMetadata).ports(44444, 1099);
                         Rule sshRule = Rule.create().source(source).destination(nodeMetadata).port(8101);
                         Rule zookeeperRule = Rule.create().source(source).destination(nodeMetadata).port(2181);
+                        rateLimiter.acquire(options.getProviderName());
                         firewallManager.addRules(jmxRule, sshRule, zookeeperRule);
                     }
                     //We do add the target node public address to the firewall rules, as a way to make things easier in cases
                     //where firewall configuration is shared among nodes of the same groups, e.g. EC2.
                     if (!Strings.isNullOrEmpty(publicAddress)) {
                         Rule zookeeperFromTargetRule = Rule.create().source(publicAddress + "/32").destination(nodeMetadata).port(2181);
+                        rateLimiter.acquire(options.getProviderName());
                         firewallManager.addRule(zookeeperFromTargetRule);
                     }
+                    jCloudsContainerMetadata.addStepTiming("firewall", System.currentTimeMillis() - start);
                 } else {
                     options.getCreationStateListener().onStateChange(String.format("Skipping firewall configuration. Not supported for provider %s", options.getProviderName()));
                 }
@@ -150,14 +175,29 @@ public class CloudContainerInstallationTask implements Runnable {
 
 
             try {
-                String script = buildInstallAndStartScript(options.name(containerName));
+                String script;
+                //The options are shared by all the containers that are installed concurrently.
+                synchronized (options) {
+                    options.getSystemProperties().put(ContainerProviderUtils.ADDRESSES_PROPERTY_KEY, addresses);
+                    options.getMetadataMap().put(containerName, jCloudsContainerMetadata);
+                    try {
+                        script = buildInstallAndStartScript(options.name(containerName));
+                    } finally {
+                        //Cleanup addresses.
+                        options.getSystemProperties().clear();
+                    }
+                }
+                updateStep("installing");
                 options.getCreationStateListener().onStateChange(String.format("Installing fabric agent on container %s. It may take a while...", containerName));
+                long start = System.currentTimeMillis();
                 ExecResponse response = null;
                 try {
+                    TemplateOptions scriptOptions = templateOptions.clone();
+                    rateLimiter.acquire(options.getProviderName());
                     if (credentials != null) {
-                        response = computeService.runScriptOnNode(id, script, templateOptions.overrideLoginCredentials(credentials).runAsRoot(false));
+                        response = computeService.runScriptOnNode(id, script, scriptOptions.overrideLoginCredentials(credentials).runAsRoot(false));
                     } else {
-                        response = computeService.runScriptOnNode(id, script, templateOptions);
+                        response = computeService.runScriptOnNode(id, script, scriptOptions);
                     }
                 } catch (AuthorizationException ex) {
                     throw new Exception("Failed to connect to the container via ssh.");
@@ -177,17 +217,52 @@ public class CloudContainerInstallationTask implements Runnable {
                 } else {
                     jCloudsContainerMetadata.setFailure(new Exception("No response received for fabric install script."));
                 }
+                jCloudsContainerMetadata.addStepTiming("install", System.currentTimeMillis() - start);
             } catch (Throwable t) {
                 jCloudsContainerMetadata.setFailure(t);
             }
-            //Cleanup addresses.
-            options.getSystemProperties().clear();
+            if (jCloudsContainerMetadata.isSuccess()) {
+                updateStep("installed");
+            } else {
+                updateFailure(jCloudsContainerMetadata.getFailure());
+            }
             result.add(jCloudsContainerMetadata);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } finally {
             latch.countDown();
         }
     }
 
+    /**
+     * Publishes the installation step of the container in the registry, as it happens. The step has its own node
+     * so that it never overwrites the provisioning result, which the agent of the container reports.
+     */
+    private void updateStep(String step) {
+        if (zooKeeper != null && zooKeeper.isConnected()) {
+            try {
+                ZooKeeperUtils.set(zooKeeper, ZkPath.CONTAINER_PROVISION_STEP.getPath(containerName), step);
+            } catch (Throwable t) {
+                LOGGER.debug("Unable to set provisioning step of container " + containerName, t);
+            }
+        }
+    }
+
+    /**
+     * Marks the provisioning of the container as failed in the registry. The provisioning result is otherwise
+     * left to the agent of the container, as it reports the success once the container is provisioned.
+     */
+    private void updateFailure(Throwable failure) {
+        if (zooKeeper != null && zooKeeper.isConnected()) {
+            try {
+                ZooKeeperUtils.set(zooKeeper, ZkPath.CONTAINER_PROVISION_RESULT.getPath(containerName), ZkDefs.ERROR);
+                ZooKeeperUtils.set(zooKeeper, ZkPath.CONTAINER_PROVISION_EXCEPTION.getPath(containerName), String.valueOf(failure));
+            } catch (Throwable t) {
+                LOGGER.debug("Unable to set provisioning exception of container " + containerName, t);
+            }
+        }
+    }
+
     /**
      * @return the IP address of the client on which this code is running.
      * @throws java.io.IOException
@@ -25,8 +25,11 @@ import java.lang.reflect.Field;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -34,6 +37,7 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import com.google.common.base.Strings;
@@ -45,12 +49,14 @@ import org.fusesource.fabric.api.CreateJCloudsContainerOptions;
 import org.fusesource.fabric.internal.ContainerProviderUtils;
 import org.fusesource.fabric.service.jclouds.firewall.FirewallManagerFactory;
 import org.fusesource.fabric.service.jclouds.internal.CloudUtils;
+import org.fusesource.fabric.service.jclouds.internal.ProviderRateLimiter;
 import org.fusesource.fabric.zookeeper.ZkDefs;
 import org.jclouds.compute.ComputeService;
 import org.jclouds.compute.RunNodesException;
 import org.jclouds.compute.domain.ExecResponse;
 import org.jclouds.compute.domain.NodeMetadata;
 import org.jclouds.compute.domain.OsFamily;
+import org.jclouds.compute.domain.Template;
 import org.jclouds.compute.domain.TemplateBuilder;
 import org.jclouds.compute.options.RunScriptOptions;
 import org.jclouds.compute.options.TemplateOptions;
@@ -73,6 +79,7 @@ import static org.fusesource.fabric.internal.ContainerProviderUtils.buildStopScr
 public class JcloudsContainerProvider implements ContainerProvider<CreateJCloudsContainerOptions, CreateJCloudsContainerMetadata> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(JcloudsContainerProvider.class);
+    private static final long NODE_STARTUP_DELAY = 5000L;
     private final ConcurrentMap<String, ComputeService> computeServiceMap = new ConcurrentHashMap<String, ComputeService>();
 
     private FirewallManagerFactory firewallManagerFactory;
@@ -83,7 +90,10 @@ public class JcloudsContainerProvider implements ContainerProvider<CreateJClouds
 
     private ServiceReference computeReference = null;
 
-    private ExecutorService executorService = Executors.newCachedThreadPool();
+    private final ProviderRateLimiter rateLimiter = new ProviderRateLimiter();
+    private ExecutorService executorService;
+    private int maximumConcurrentBootstraps = 10;
+    private int maximumNodesPerRequest = 10;
 
     public synchronized void bind(ComputeService computeService) {
         if (computeService != null) {
@@ -107,6 +117,12 @@ public class JcloudsContainerProvider implements ContainerProvider<CreateJClouds
         if (computeReference != null) {
             bundleContext.ungetService(computeReference);
         }
+        synchronized (this) {
+            if (executorService != null) {
+                executorService.shutdownNow();
+                executorService = null;
+            }
+        }
     }
 
     public ConcurrentMap<String, ComputeService> getComputeServiceMap() {
@@ -114,7 +130,8 @@ public class JcloudsContainerProvider implements ContainerProvider<CreateJClouds
     }
 
     public Set<CreateJCloudsContainerMetadata> create(CreateJCloudsContainerOptions options) throws MalformedURLException, RunNodesException, URISyntaxException, InterruptedException {
-        final Set<CreateJCloudsContainerMetadata> result = new LinkedHashSet<CreateJCloudsContainerMetadata>();
+        final Set<CreateJCloudsContainerMetadata> result = Collections.synchronizedSet(new LinkedHashSet<CreateJCloudsContainerMetadata>());
+        final List<Future<?>> installations = new ArrayList<Future<?>>();
         try {
             options.getCreationStateListener().onStateChange("Looking up for compute service.");
             ComputeService computeService = getOrCreateComputeService(options);
@@ -206,25 +223,32 @@ public class JcloudsContainerProvider implements ContainerProvider<CreateJClouds
             }
             builder = builder.options(templateOptions);
 
-            Set<? extends NodeMetadata> metadatas = null;
             overviewBuilder.append(" It may take a while ...");
             options.getCreationStateListener().onStateChange(overviewBuilder.toString());
-            metadatas = computeService.createNodesInGroup(options.getGroup(), options.getNumber(), builder.build());
-
-            if (metadatas != null) {
-                for (NodeMetadata metadata : metadatas) {
-                    options.getCreationStateListener().onStateChange(String.format("Node %s has been created.", metadata.getName()));
-                }
-            }
-
-            Thread.sleep(5000);
 
+            //The nodes are requested in batches and each batch is bootstrapped while the next one is being created.
+            String originalName = new String(options.getName());
+            CountDownLatch countDownLatch = new CountDownLatch(options.getNumber());
+            Template template = builder.build();
             int suffix = 1;
-            if (metadatas != null) {
-                String originalName = new String(options.getName());
-                CountDownLatch countDownLatch = new CountDownLatch(options.getNumber());
-
+            for (int created = 0; created < options.getNumber(); created += maximumNodesPerRequest) {
+                int batchSize = Math.min(maximumNodesPerRequest, options.getNumber() - created);
+                Set<? extends NodeMetadata> metadatas;
+                try {
+                    rateLimiter.acquire(options.getProviderName());
+                    metadatas = computeService.createNodesInGroup(options.getGroup(), batchSize, template);
+                } catch (RunNodesException e) {
+                    //Bootstrap the nodes that did make it and report the rest as failed.
+                    LOGGER.warn("Failed to create " + e.getNodeErrors().size() + " nodes in group " + options.getGroup(), e);
+                    metadatas = e.getSuccessfulNodes();
+                    for (int i = metadatas.size(); i < batchSize; i++) {
+                        addFailure(result, e);
+                        countDownLatch.countDown();
+                    }
+                }
+                long notBefore = System.currentTimeMillis() + NODE_STARTUP_DELAY;
                 for (NodeMetadata nodeMetadata : metadatas) {
+                    options.getCreationStateListener().onStateChange(String.format("Node %s has been created.", nodeMetadata.getName()));
                     String containerName;
                     if (options.getNumber() > 1) {
                         containerName = originalName + (suffix++);
@@ -232,18 +256,18 @@ public class JcloudsContainerProvider implements ContainerProvider<CreateJClouds
                         containerName = originalName;
                     }
                     CloudContainerInstallationTask installationTask = new CloudContainerInstallationTask(containerName,
-                            nodeMetadata, options, computeService, firewallManagerFactory, templateOptions, result,
-                            countDownLatch);
-                    executorService.execute(installationTask);
+                            nodeMetadata, options, computeService, firewallManagerFactory, templateOptions, rateLimiter,
+                            zooKeeper, result, countDownLatch, notBefore);
+                    installations.add(getExecutorService().submit(installationTask));
                 }
-                countDownLatch.await(10, TimeUnit.MINUTES);
             }
+            countDownLatch.await(10, TimeUnit.MINUTES);
         } catch (Throwable t) {
+            //The installations already submitted add their own metadata, so they need to be done before counting the failures.
+            awaitInstallations(installations);
             if (options != null && options.getNumber() > 0) {
                 for (int i = result.size(); i < options.getNumber(); i++) {
-                    CreateJCloudsContainerMetadata failureMetdata = new CreateJCloudsContainerMetadata();
-                    failureMetdata.setFailure(t);
-                    result.add(failureMetdata);
+                    addFailure(result, t);
                 }
             }
         }
@@ -263,6 +287,7 @@ public class JcloudsContainerProvider implements ContainerProvider<CreateJClouds
 
                 String nodeId = jCloudsContainerMetadata.getNodeId();
                 ComputeService computeService = getOrCreateComputeService(options);
+                rateLimiter.acquire(options.getProviderName());
                 NodeMetadata nodeMetadata = computeService.getNodeMetadata(nodeId);
                 LoginCredentials credentials = nodeMetadata.getCredentials();
 
@@ -283,6 +308,7 @@ public class JcloudsContainerProvider implements ContainerProvider<CreateJClouds
 
                 String script = buildStartScript(options.name(container.getId()));
                 ExecResponse response = null;
+                rateLimiter.acquire(options.getProviderName());
                 if (credentials != null) {
                     response = computeService.runScriptOnNode(nodeId, script, RunScriptOptions.Builder.overrideLoginCredentials(credentials).runAsRoot(false));
                 } else {
@@ -310,6 +336,7 @@ public class JcloudsContainerProvider implements ContainerProvider<CreateJClouds
             try {
                 String nodeId = jCloudsContainerMetadata.getNodeId();
                 ComputeService computeService = getOrCreateComputeService(options);
+                rateLimiter.acquire(options.getProviderName());
                 NodeMetadata nodeMetadata = computeService.getNodeMetadata(nodeId);
                 LoginCredentials credentials = nodeMetadata.getCredentials();
 
@@ -330,6 +357,7 @@ public class JcloudsContainerProvider implements ContainerProvider<CreateJClouds
 
                 String script = buildStopScript(options.name(container.getId()));
                 ExecResponse response = null;
+                rateLimiter.acquire(options.getProviderName());
                 if (credentials != null) {
                     response = computeService.runScriptOnNode(nodeId, script, RunScriptOptions.Builder.overrideLoginCredentials(credentials).runAsRoot(false));
                 } else {
@@ -357,6 +385,7 @@ public class JcloudsContainerProvider implements ContainerProvider<CreateJClouds
             CreateJCloudsContainerOptions options = jCloudsContainerMetadata.getCreateOptions();
             String nodeId = jCloudsContainerMetadata.getNodeId();
             ComputeService computeService = getOrCreateComputeService(options);
+            rateLimiter.acquire(options.getProviderName());
             computeService.destroyNode(nodeId);
         }
     }
@@ -494,6 +523,89 @@ public class JcloudsContainerProvider implements ContainerProvider<CreateJClouds
     }
 
 
+    /**
+     * Cancels the installations which have not started yet and waits for the running ones to complete.
+     */
+    private static void awaitInstallations(List<Future<?>> installations) {
+        for (Future<?> installation : installations) {
+            installation.cancel(false);
+        }
+        for (Future<?> installation : installations) {
+            if (installation.isCancelled()) {
+                continue;
+            }
+            try {
+                installation.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                for (Future<?> running : installations) {
+                    running.cancel(true);
+                }
+                return;
+            } catch (Exception e) {
+                //The installation records its own failure.
+            }
+        }
+    }
+
+    private static void addFailure(Set<CreateJCloudsContainerMetadata> result, Throwable t) {
+        CreateJCloudsContainerMetadata failureMetdata = new CreateJCloudsContainerMetadata();
+        failureMetdata.setFailure(t);
+        result.add(failureMetdata);
+    }
+
+    /**
+     * Returns the pool that bootstraps the created nodes, which bounds the number of concurrent ssh sessions.
+     */
+    private synchronized ExecutorService getExecutorService() {
+        if (executorService == null) {
+            executorService = Executors.newFixedThreadPool(maximumConcurrentBootstraps);
+        }
+        return executorService;
+    }
+
+    public int getMaximumConcurrentBootstraps() {
+        return maximumConcurrentBootstraps;
+    }
+
+    public synchronized void setMaximumConcurrentBootstraps(int maximumConcurrentBootstraps) {
+        this.maximumConcurrentBootstraps = maximumConcurrentBootstraps;
+        if (executorService != null) {
+            executorService.shutdown();
+            executorService = null;
+        }
+    }
+
+    public int getMaximumNodesPerRequest() {
+        return maximumNodesPerRequest;
+    }
+
+    /**
+     * Sets the maximum number of nodes requested from the provider by a single api call.
+     */
+    public void setMaximumNodesPerRequest(int maximumNodesPerRequest) {
+        this.maximumNodesPerRequest = Math.max(1, maximumNodesPerRequest);
+    }
+
+    public ProviderRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    public double getDefaultRequestsPerSecond() {
+        return rateLimiter.getDefaultRequestsPerSecond();
+    }
+
+    public void setDefaultRequestsPerSecond(double requestsPerSecond) {
+        rateLimiter.setDefaultRequestsPerSecond(requestsPerSecond);
+    }
+
+    /**
+     * Overrides the requests per second allowed by the api of each provider, keyed by provider id.
+     */
+    public void setRequestsPerSecond(Map<String, Double> requestsPerSecond) {
+        rateLimiter.setRequestsPerSecond(requestsPerSecond);
+    }
+
     public FirewallManagerFactory getFirewallManagerFactory() {
         return firewallManagerFactory;
     }
@@ -0,0 +1,109 @@
+/**
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.fabric.service.jclouds.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.util.concurrent.RateLimiter;
+
+/**
+ * Throttles the calls made against the api of each cloud provider, so that large rollouts stay within the request
+ * rate limits that the providers enforce, instead of failing half way with throttling errors.
+ */
+public class ProviderRateLimiter {
+
+    public static final double DEFAULT_REQUESTS_PER_SECOND = 10.0;
+
+    private static final Map<String, Double> PROVIDER_REQUESTS_PER_SECOND = new HashMap<String, Double>();
+
+    static {
+        PROVIDER_REQUESTS_PER_SECOND.put("aws-ec2", 5.0);
+        PROVIDER_REQUESTS_PER_SECOND.put("cloudservers-us", 1.0);
+        PROVIDER_REQUESTS_PER_SECOND.put("cloudservers-uk", 1.0);
+        PROVIDER_REQUESTS_PER_SECOND.put("rackspace-cloudservers-us", 1.0);
+        PROVIDER_REQUESTS_PER_SECOND.put("rackspace-cloudservers-uk", 1.0);
+        PROVIDER_REQUESTS_PER_SECOND.put("hpcloud-compute", 2.0);
+        PROVIDER_REQUESTS_PER_SECOND.put("openstack-nova", 2.0);
+    }
+
+    private final ConcurrentMap<String, RateLimiter> limiters = new ConcurrentHashMap<String, RateLimiter>();
+    private final Map<String, Double> requestsPerSecond = new ConcurrentHashMap<String, Double>(PROVIDER_REQUESTS_PER_SECOND);
+    private volatile double defaultRequestsPerSecond = DEFAULT_REQUESTS_PER_SECOND;
+
+    /**
+     * Blocks until a request can be sent to the given provider.
+     *
+     * @param provider The provider or api id, null is throttled using the default rate.
+     */
+    public void acquire(String provider) {
+        acquire(provider, 1);
+    }
+
+    /**
+     * Blocks until the given number of requests can be sent to the given provider.
+     */
+    public void acquire(String provider, int permits) {
+        getRateLimiter(provider).acquire(permits);
+    }
+
+    public double getRequestsPerSecond(String provider) {
+        Double rate = provider != null ? requestsPerSecond.get(provider) : null;
+        return rate != null ? rate : defaultRequestsPerSecond;
+    }
+
+    public void setRequestsPerSecond(String provider, double rate) {
+        requestsPerSecond.put(provider, rate);
+        RateLimiter limiter = limiters.get(provider);
+        if (limiter != null) {
+            limiter.setRate(rate);
+        }
+    }
+
+    /**
+     * Overrides the request rates of the given providers.
+     */
+    public void setRequestsPerSecond(Map<String, Double> rates) {
+        for (Map.Entry<String, Double> entry : rates.entrySet()) {
+            setRequestsPerSecond(entry.getKey(), entry.getValue());
+        }
+    }
+
+    public double getDefaultRequestsPerSecond() {
+        return defaultRequestsPerSecond;
+    }
+
+    public void setDefaultRequestsPerSecond(double defaultRequestsPerSecond) {
+        this.defaultRequestsPerSecond = defaultRequestsPerSecond;
+    }
+
+    private RateLimiter getRateLimiter(String provider) {
+        String key = provider != null ? provider : "";
+        RateLimiter limiter = limiters.get(key);
+        if (limiter == null) {
+            limiter = RateLimiter.create(getRequestsPerSecond(provider));
+            RateLimiter existing = limiters.putIfAbsent(key, limiter);
+            if (existing != null) {
+                limiter = existing;
+            }
+        }
+        return limiter;
+    }
+}
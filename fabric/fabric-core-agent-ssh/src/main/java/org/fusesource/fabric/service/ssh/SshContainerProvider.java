@@ -21,8 +21,16 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import com.jcraft.jsch.ChannelExec;
 import com.jcraft.jsch.JSch;
 import com.jcraft.jsch.Session;
@@ -36,6 +44,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static org.fusesource.fabric.internal.ContainerProviderUtils.buildInstallAndStartScript;
+import static org.fusesource.fabric.internal.ContainerProviderUtils.buildStageDistributionScript;
 import static org.fusesource.fabric.internal.ContainerProviderUtils.buildStartScript;
 import static org.fusesource.fabric.internal.ContainerProviderUtils.buildStopScript;
 import static org.fusesource.fabric.internal.ContainerProviderUtils.buildUninstallScript;
@@ -47,10 +56,17 @@ public class SshContainerProvider implements ContainerProvider<CreateSshContaine
 
     private static final Logger logger = LoggerFactory.getLogger(SshContainerProvider.class);
 
+    private static final long MAXIMUM_POLL_DELAY = 1000L;
+
     private boolean verbose = false;
+    private int maximumConcurrentInstalls = 5;
 
     /**
      * Creates an {@link org.fusesource.fabric.api.Container} with the given name pointing to the specified zooKeeperUrl.
+     * <p/>
+     * All the containers are installed over a single ssh session to the host, with up to
+     * {@link #getMaximumConcurrentInstalls()} install scripts running concurrently on their own channels. When more
+     * than one container is created the distribution is first staged on the host, so that it is only downloaded once.
      */
     public Set<CreateSshContainerMetadata> create(CreateSshContainerOptions options) {
         Set<CreateSshContainerMetadata> result = new LinkedHashSet<CreateSshContainerMetadata>();
@@ -68,6 +84,7 @@ public class SshContainerProvider implements ContainerProvider<CreateSshContaine
             }
 
             String originalName = new String(options.getName());
+            List<String> containerNames = new ArrayList<String>();
             for (int i = 1; i <= options.getNumber(); i++) {
                 String containerName;
                 if (options.getNumber() > 1) {
@@ -78,14 +95,47 @@ public class SshContainerProvider implements ContainerProvider<CreateSshContaine
                 CreateSshContainerMetadata metadata = new CreateSshContainerMetadata();
                 metadata.setCreateOptions(options);
                 metadata.setContainerName(containerName);
-                String script = buildInstallAndStartScript(options.name(containerName));
-                logger.debug("Running script on host {}:\n{}", host, script);
-                try {
-                    runScriptOnHost(options,script);
-                } catch (Throwable ex) {
-                    metadata.setFailure(ex);
-                }
                 result.add(metadata);
+                containerNames.add(containerName);
+            }
+
+            Session session = null;
+            try {
+                long start = System.currentTimeMillis();
+                session = openSession(options);
+                addStepTiming(result, "connect", System.currentTimeMillis() - start);
+
+                boolean staged = false;
+                if (options.getNumber() > 1) {
+                    start = System.currentTimeMillis();
+                    try {
+                        String script = buildStageDistributionScript(options);
+                        logger.debug("Running script on host {}:\n{}", host, script);
+                        runScript(session, options, script);
+                        staged = true;
+                    } catch (Exception e) {
+                        logger.warn("Failed to stage the distribution on host " + host + ". Each container will download it.", e);
+                    }
+                    addStepTiming(result, "stage", System.currentTimeMillis() - start);
+                }
+
+                // the scripts are built up front as all the containers share the same options
+                Map<CreateSshContainerMetadata, String> scripts = new LinkedHashMap<CreateSshContainerMetadata, String>();
+                Iterator<String> names = containerNames.iterator();
+                for (CreateSshContainerMetadata metadata : result) {
+                    scripts.put(metadata, buildInstallAndStartScript(options.name(names.next()), staged));
+                }
+                install(session, options, scripts);
+            } catch (Exception e) {
+                for (CreateSshContainerMetadata metadata : result) {
+                    if (metadata.isSuccess()) {
+                        metadata.setFailure(e);
+                    }
+                }
+            } finally {
+                if (session != null) {
+                    session.disconnect();
+                }
             }
         } catch (FabricException e) {
             throw e;
@@ -95,6 +145,36 @@ public class SshContainerProvider implements ContainerProvider<CreateSshContaine
         return result;
     }
 
+    /**
+     * Runs the install scripts concurrently over the session, each on its own channel
+     */
+    protected void install(final Session session, final CreateSshContainerOptions options, Map<CreateSshContainerMetadata, String> scripts) throws InterruptedException {
+        int threads = Math.max(1, Math.min(scripts.size(), maximumConcurrentInstalls));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (final Map.Entry<CreateSshContainerMetadata, String> entry : scripts.entrySet()) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        CreateSshContainerMetadata metadata = entry.getKey();
+                        long start = System.currentTimeMillis();
+                        try {
+                            logger.debug("Running script on host {}:\n{}", options.getHost(), entry.getValue());
+                            runScript(session, options, entry.getValue());
+                        } catch (Throwable ex) {
+                            metadata.setFailure(ex);
+                        } finally {
+                            metadata.addStepTiming("install", System.currentTimeMillis() - start);
+                        }
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+        }
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    }
+
     @Override
     public void start(Container container) {
         CreateContainerMetadata metadata = container.getMetadata();
@@ -147,6 +227,15 @@ public class SshContainerProvider implements ContainerProvider<CreateSshContaine
     }
 
     protected void runScriptOnHost(CreateSshContainerOptions options, String script) throws Exception {
+        Session session = openSession(options);
+        try {
+            runScript(session, options, script);
+        } finally {
+            session.disconnect();
+        }
+    }
+
+    protected Session openSession(CreateSshContainerOptions options) throws Exception {
         Session session = null;
         Exception connectException = null;
         for (int i = 0; i <= options.getSshRetries(); i++) {
@@ -183,6 +272,10 @@ public class SshContainerProvider implements ContainerProvider<CreateSshContaine
         if (connectException != null) {
             throw connectException;
         }
+        return session;
+    }
+
+    protected void runScript(Session session, CreateSshContainerOptions options, String script) throws Exception {
         ChannelExec executor = null;
         ByteArrayOutputStream output = new ByteArrayOutputStream();
         ByteArrayOutputStream error = new ByteArrayOutputStream();
@@ -197,7 +290,7 @@ public class SshContainerProvider implements ContainerProvider<CreateSshContaine
 
             for (int i = 0; !executor.isClosed(); i++) {
                 if (i > 0) {
-                    long delayMs = (long) (200L * Math.pow(i, 2));
+                    long delayMs = Math.min(MAXIMUM_POLL_DELAY, (long) (200L * Math.pow(i, 2)));
                     Thread.sleep(delayMs);
                 }
                 if ((errorStatus = executor.getExitStatus()) != -1) {
@@ -219,7 +312,24 @@ public class SshContainerProvider implements ContainerProvider<CreateSshContaine
             if (executor != null) {
                 executor.disconnect();
             }
-            session.disconnect();
+        }
+    }
+
+    public int getMaximumConcurrentInstalls() {
+        return maximumConcurrentInstalls;
+    }
+
+    /**
+     * Sets the maximum number of containers installed concurrently on a host. Each install uses a channel of the
+     * same ssh session, so this should stay below the MaxSessions setting of the ssh server, which defaults to 10.
+     */
+    public void setMaximumConcurrentInstalls(int maximumConcurrentInstalls) {
+        this.maximumConcurrentInstalls = maximumConcurrentInstalls;
+    }
+
+    private static void addStepTiming(Set<CreateSshContainerMetadata> metadatas, String step, long millis) {
+        for (CreateSshContainerMetadata metadata : metadatas) {
+            metadata.addStepTiming(step, millis);
         }
     }
 
@@ -17,16 +17,23 @@
 
 package org.fusesource.fabric.api;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 public class CreateContainerBasicMetadata<O extends CreateContainerOptions> implements CreateContainerMetadata<O> {
 
+    // the value computed for the class before the step timings were added, so that the metadata
+    // already stored in the registry can still be read
+    private static final long serialVersionUID = 5589666399090415870L;
+
     private String containerName;
     private O createOptions;
     private transient Throwable failure;
     private transient Container container;
     private final Map<String,String> containerConfiguration = new HashMap<String, String>();
+    private transient Map<String, Long> stepTimings;
 
     public boolean isSuccess() {
         return failure == null;
@@ -69,6 +76,18 @@ public class CreateContainerBasicMetadata<O extends CreateContainerOptions> impl
         return containerConfiguration;
     }
 
+    @Override
+    public synchronized Map<String, Long> getStepTimings() {
+        if (stepTimings == null) {
+            stepTimings = Collections.synchronizedMap(new LinkedHashMap<String, Long>());
+        }
+        return stepTimings;
+    }
+
+    public void addStepTiming(String step, long millis) {
+        getStepTimings().put(step, millis);
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
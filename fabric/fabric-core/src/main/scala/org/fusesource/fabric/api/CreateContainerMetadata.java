@@ -33,6 +33,12 @@ public interface CreateContainerMetadata<O extends CreateContainerOptions> exten
 
     Map<String, String> getContainerConfiguration();
 
+    /**
+     * Returns the time in milliseconds spent in each step of the creation, in the order the steps were taken.
+     * The timings are not serialized, so they are empty for metadata read back from the registry.
+     */
+    Map<String, Long> getStepTimings();
+
     O getCreateOptions();
 
 }
@@ -30,6 +30,13 @@ public interface FabricService {
      */
     Container[] getContainers();
 
+    /**
+     * Gets the existing {@link Container}s with all their registry attributes read in one bulk pass.
+     * The attributes are a point in time snapshot, which is dropped once a container is modified.
+     * @return An array of @{link Container}s
+     */
+    Container[] getContainerSnapshots();
+
     /**
      * Finds the {@link Container} with the specified name.
      * @param name  The name of the {@link Container}.
@@ -40,7 +40,7 @@ public class FabricStatus {
                 profileStatusMap.put(key, status);
             }
         }
-        Container[] containers = service.getContainers();
+        Container[] containers = service.getContainerSnapshots();
         for (Container container : containers) {
             if (container.isAliveAndOK()) {
                 Profile[] profiles = container.getProfiles();
@@ -25,6 +25,8 @@ import org.fusesource.fabric.api.FabricStatus;
 import org.fusesource.fabric.api.Ids;
 import org.fusesource.fabric.api.Profile;
 import org.fusesource.fabric.api.Version;
+import org.fusesource.fabric.api.data.BundleInfo;
+import org.fusesource.fabric.service.ContainerInventory;
 import org.fusesource.fabric.service.FabricServiceImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,6 +38,7 @@ import javax.management.ObjectName;
 import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -187,7 +190,7 @@ public class FabricManager implements FabricManagerMBean {
 
     @Override
     public List<ContainerDTO> containers() {
-        return ContainerDTO.newInstances(getFabricService().getContainers());
+        return ContainerDTO.newInstances(getFabricService().getContainerSnapshots());
     }
     
     @Override
@@ -199,6 +202,20 @@ public class FabricManager implements FabricManagerMBean {
       return answer.toArray(new String[answer.size()]);
     }
 
+    @Override
+    public Map<String, List<String>> containerBundles(String jmxUser, String jmxPassword) {
+        Map<String, List<String>> answer = new HashMap<String, List<String>>();
+        Map<String, ContainerInventory.ContainerDetails> details = getFabricService().getContainerInventory().getDetails(jmxUser, jmxPassword, true, false);
+        for (Map.Entry<String, ContainerInventory.ContainerDetails> entry : details.entrySet()) {
+            List<String> bundles = new ArrayList<String>();
+            for (BundleInfo bundle : entry.getValue().getBundles()) {
+                bundles.add(bundle.getSymbolicName() + "/" + bundle.getVersion());
+            }
+            answer.put(entry.getKey(), bundles);
+        }
+        return answer;
+    }
+
     @Override
     public List<String> containerIdsForProfile(String versionId, String profileId) {
         Profile profile = getFabricService().getProfile(versionId, profileId);
@@ -57,6 +57,8 @@ public interface FabricManagerMBean {
     
     String[] containerIds();
 
+    Map<String, List<String>> containerBundles(String jmxUser, String jmxPassword);
+
     List<String> containerIdsForProfile(String versionId, String profileId);
 
     List<ContainerDTO> containersForProfile(String versionId, String profileId);
@@ -29,6 +29,12 @@ trait PollerFactory {
 
   def create(source: DataSourceDTO): Poller
 
+  /**
+   * Polls the given pollers, which were all created by this factory, returning their values in the same order.
+   * Factories can override this to batch the reads of related pollers together.
+   */
+  def poll_all(pollers: Seq[Poller]): Seq[Double] = pollers.map(_.poll)
+
 }
 
 /**
@@ -58,11 +58,21 @@ public class ContainerImpl implements Container {
     private final String id;
     private final FabricServiceImpl service;
     private CreateContainerMetadata<?> metadata;
+    private volatile ZooKeeperSnapshot snapshot;
 
     public ContainerImpl(Container parent, String id, FabricServiceImpl service) {
+        this(parent, id, service, null);
+    }
+
+    /**
+     * Creates a container whose attributes are read from the given snapshot of the registry, until
+     * the container is modified
+     */
+    public ContainerImpl(Container parent, String id, FabricServiceImpl service, ZooKeeperSnapshot snapshot) {
         this.parent = parent;
         this.id = id;
         this.service = service;
+        this.snapshot = snapshot;
     }
 
     public Container getParent() {
@@ -75,7 +85,7 @@ public class ContainerImpl implements Container {
 
     public boolean isAlive() {
         try {
-            return service.getZooKeeper().exists(ZkPath.CONTAINER_ALIVE.getPath(id)) != null;
+            return exists(ZkPath.CONTAINER_ALIVE.getPath(id));
         } catch (KeeperException.NoNodeException e) {
             return false;
         } catch (Exception e) {
@@ -90,8 +100,8 @@ public class ContainerImpl implements Container {
     @Override
     public boolean isEnsembleServer() {
         try {
-            String clusterId = service.getZooKeeper().getStringData(ZkPath.CONFIG_ENSEMBLES.getPath());
-            String containers = service.getZooKeeper().getStringData(ZkPath.CONFIG_ENSEMBLE.getPath(clusterId));
+            String clusterId = getStringData(ZkPath.CONFIG_ENSEMBLES.getPath());
+            String containers = getStringData(ZkPath.CONFIG_ENSEMBLE.getPath(clusterId));
             for (String name : containers.split(",")) {
                 if (id.equals(name)) {
                     return true;
@@ -136,7 +146,7 @@ public class ContainerImpl implements Container {
 
     public String getSshUrl() {
         try {
-            return ZooKeeperUtils.getSubstitutedPath(service.getZooKeeper(), ZkPath.CONTAINER_SSH.getPath(id));
+            return getSubstitutedPath(ZkPath.CONTAINER_SSH.getPath(id));
         } catch (Exception e) {
             throw new FabricException(e);
         }
@@ -144,7 +154,7 @@ public class ContainerImpl implements Container {
 
     public String getJmxUrl() {
         try {
-            return ZooKeeperUtils.getSubstitutedPath(service.getZooKeeper(), ZkPath.CONTAINER_JMX.getPath(id));
+            return getSubstitutedPath(ZkPath.CONTAINER_JMX.getPath(id));
         } catch (Exception e) {
             throw new FabricException(e);
         }
@@ -152,7 +162,7 @@ public class ContainerImpl implements Container {
 
     private String getZkData(ZkPath path) {
         try {
-            return service.getZooKeeper().getStringData(path.getPath(id));
+            return getStringData(path.getPath(id));
         } catch (KeeperException.NoNodeException e) {
             return null;
         } catch (Exception e) {
@@ -180,6 +190,7 @@ public class ContainerImpl implements Container {
 
     @Override
     public void setVersion(Version version) {
+        snapshot = null;
         try {
             Version curretVersion = getVersion();
 
@@ -210,9 +221,9 @@ public class ContainerImpl implements Container {
 
     public Profile[] getProfiles() {
         try {
-            String version = service.getZooKeeper().getStringData(ZkPath.CONFIG_CONTAINER.getPath(id));
+            String version = getStringData(ZkPath.CONFIG_CONTAINER.getPath(id));
             String node = ZkPath.CONFIG_VERSIONS_CONTAINER.getPath(version, id);
-            String str = service.getZooKeeper().getStringData(node);
+            String str = getStringData(node);
             if (str == null) {
                 return new Profile[0];
             }
@@ -234,10 +245,11 @@ public class ContainerImpl implements Container {
     }
 
     public void setProfiles(Profile[] profiles) {
+        snapshot = null;
         try {
-            String version = service.getZooKeeper().getStringData(ZkPath.CONFIG_CONTAINER.getPath(id));
+            String version = getStringData(ZkPath.CONFIG_CONTAINER.getPath(id));
             String node = ZkPath.CONFIG_VERSIONS_CONTAINER.getPath(version, id);
-            List<String> existingProfiles = Arrays.asList(service.getZooKeeper().getStringData(node).split(" "));
+            List<String> existingProfiles = Arrays.asList(getStringData(node).split(" "));
 
             StringBuilder sb = new StringBuilder();
             if (profiles != null) {
@@ -271,8 +283,8 @@ public class ContainerImpl implements Container {
     public String getLocation() {
         try {
             String path = ZkPath.CONTAINER_LOCATION.getPath(id);
-            if (service.getZooKeeper().exists(path) != null) {
-                return service.getZooKeeper().getStringData(path);
+            if (exists(path)) {
+                return getStringData(path);
             } else {
                 return "";
             }
@@ -282,6 +294,7 @@ public class ContainerImpl implements Container {
     }
 
     public void setLocation(String location) {
+        snapshot = null;
         try {
             String path = ZkPath.CONTAINER_LOCATION.getPath(id);
             ZooKeeperUtils.set(service.getZooKeeper(), path, location);
@@ -293,8 +306,8 @@ public class ContainerImpl implements Container {
     public String getGeoLocation() {
         try {
             String path = ZkPath.CONTAINER_GEOLOCATION.getPath(id);
-            if (service.getZooKeeper().exists(path) != null) {
-                return service.getZooKeeper().getStringData(path);
+            if (exists(path)) {
+                return getStringData(path);
             } else {
                 return "";
             }
@@ -304,6 +317,7 @@ public class ContainerImpl implements Container {
     }
 
     public void setGeoLocation(String location) {
+        snapshot = null;
         try {
             String path = ZkPath.CONTAINER_GEOLOCATION.getPath(id);
             ZooKeeperUtils.set(service.getZooKeeper(), path, location);
@@ -321,7 +335,7 @@ public class ContainerImpl implements Container {
     @Override
     public String getResolver() {
         try {
-            return ZooKeeperUtils.getSubstitutedPath(service.getZooKeeper(), ZkPath.CONTAINER_RESOLVER.getPath(id));
+            return getSubstitutedPath(ZkPath.CONTAINER_RESOLVER.getPath(id));
         } catch (Exception e) {
             throw new FabricException(e);
         }
@@ -334,6 +348,7 @@ public class ContainerImpl implements Container {
      */
     @Override
     public void setResolver(String resolver) {
+        snapshot = null;
         try {
             List<String> validResolverList = Arrays.asList(ZkDefs.VALID_RESOLVERS);
             if (!validResolverList.contains(resolver)) {
@@ -354,7 +369,7 @@ public class ContainerImpl implements Container {
     @Override
     public String getIp() {
         try {
-            return ZooKeeperUtils.getSubstitutedPath(service.getZooKeeper(), ZkPath.CONTAINER_IP.getPath(id));
+            return getSubstitutedPath(ZkPath.CONTAINER_IP.getPath(id));
         } catch (Exception e) {
             throw new FabricException(e);
         }
@@ -363,10 +378,10 @@ public class ContainerImpl implements Container {
     @Override
     public String getLocalIp() {
         try {
-            if (service.getZooKeeper().exists(ZkPath.CONTAINER_LOCAL_IP.getPath(id)) == null) {
+            if (!exists(ZkPath.CONTAINER_LOCAL_IP.getPath(id))) {
                 return null;
             } else {
-                return ZooKeeperUtils.getSubstitutedPath(service.getZooKeeper(), ZkPath.CONTAINER_LOCAL_IP.getPath(id));
+                return getSubstitutedPath(ZkPath.CONTAINER_LOCAL_IP.getPath(id));
             }
         } catch (Exception e) {
             throw new FabricException(e);
@@ -375,6 +390,7 @@ public class ContainerImpl implements Container {
 
     @Override
     public void setLocalIp(String localIp) {
+        snapshot = null;
         try {
             ZooKeeperUtils.set(service.getZooKeeper(), ZkPath.CONTAINER_LOCAL_IP.getPath(id), localIp);
         } catch (Exception e) {
@@ -385,10 +401,10 @@ public class ContainerImpl implements Container {
     @Override
     public String getLocalHostname() {
         try {
-            if (service.getZooKeeper().exists(ZkPath.CONTAINER_LOCAL_HOSTNAME.getPath(id)) == null) {
+            if (!exists(ZkPath.CONTAINER_LOCAL_HOSTNAME.getPath(id))) {
                 return null;
             } else {
-                return ZooKeeperUtils.getSubstitutedPath(service.getZooKeeper(), ZkPath.CONTAINER_LOCAL_HOSTNAME.getPath(id));
+                return getSubstitutedPath(ZkPath.CONTAINER_LOCAL_HOSTNAME.getPath(id));
             }
         } catch (Exception e) {
             throw new FabricException(e);
@@ -397,6 +413,7 @@ public class ContainerImpl implements Container {
 
     @Override
     public void setLocalHostname(String localHostname) {
+        snapshot = null;
         try {
             ZooKeeperUtils.set(service.getZooKeeper(), ZkPath.CONTAINER_LOCAL_HOSTNAME.getPath(id), localHostname);
         } catch (Exception e) {
@@ -407,10 +424,10 @@ public class ContainerImpl implements Container {
     @Override
     public String getPublicIp() {
         try {
-            if (service.getZooKeeper().exists(ZkPath.CONTAINER_PUBLIC_IP.getPath(id)) == null) {
+            if (!exists(ZkPath.CONTAINER_PUBLIC_IP.getPath(id))) {
                 return null;
             } else {
-                return ZooKeeperUtils.getSubstitutedPath(service.getZooKeeper(), ZkPath.CONTAINER_PUBLIC_IP.getPath(id));
+                return getSubstitutedPath(ZkPath.CONTAINER_PUBLIC_IP.getPath(id));
             }
         } catch (Exception e) {
             throw new FabricException(e);
@@ -419,6 +436,7 @@ public class ContainerImpl implements Container {
 
     @Override
     public void setPublicIp(String publicIp) {
+        snapshot = null;
         try {
             ZooKeeperUtils.set(service.getZooKeeper(), ZkPath.CONTAINER_PUBLIC_IP.getPath(id), publicIp);
         } catch (Exception e) {
@@ -429,10 +447,10 @@ public class ContainerImpl implements Container {
     @Override
     public String getPublicHostname() {
         try {
-            if (service.getZooKeeper().exists(ZkPath.CONTAINER_PUBLIC_HOSTNAME.getPath(id)) == null) {
+            if (!exists(ZkPath.CONTAINER_PUBLIC_HOSTNAME.getPath(id))) {
                 return null;
             } else {
-                return ZooKeeperUtils.getSubstitutedPath(service.getZooKeeper(), ZkPath.CONTAINER_PUBLIC_HOSTNAME.getPath(id));
+                return getSubstitutedPath(ZkPath.CONTAINER_PUBLIC_HOSTNAME.getPath(id));
             }
         } catch (Exception e) {
             throw new FabricException(e);
@@ -441,6 +459,7 @@ public class ContainerImpl implements Container {
 
     @Override
     public void setPublicHostname(String publicHostname) {
+        snapshot = null;
         try {
             ZooKeeperUtils.set(service.getZooKeeper(), ZkPath.CONTAINER_PUBLIC_HOSTNAME.getPath(id), publicHostname);
         } catch (Exception e) {
@@ -451,10 +470,10 @@ public class ContainerImpl implements Container {
     @Override
     public String getManulIp() {
         try {
-            if (service.getZooKeeper().exists(ZkPath.CONTAINER_MANUAL_IP.getPath(id)) == null) {
+            if (!exists(ZkPath.CONTAINER_MANUAL_IP.getPath(id))) {
                 return null;
             } else {
-                return ZooKeeperUtils.getSubstitutedPath(service.getZooKeeper(), ZkPath.CONTAINER_MANUAL_IP.getPath(id));
+                return getSubstitutedPath(ZkPath.CONTAINER_MANUAL_IP.getPath(id));
             }
         } catch (Exception e) {
             throw new FabricException(e);
@@ -463,6 +482,7 @@ public class ContainerImpl implements Container {
 
     @Override
     public void setManualIp(String manualIp) {
+        snapshot = null;
         try {
             ZooKeeperUtils.set(service.getZooKeeper(), ZkPath.CONTAINER_MANUAL_IP.getPath(id), manualIp);
         } catch (Exception e) {
@@ -474,8 +494,8 @@ public class ContainerImpl implements Container {
     public int getMinimumPort() {
         int minimumPort = 0;
         try {
-            if (service.getZooKeeper().exists(ZkPath.CONTAINER_PORT_MIN.getPath(id)) != null) {
-                minimumPort = Integer.parseInt(service.getZooKeeper().getStringData(ZkPath.CONTAINER_PORT_MIN.getPath(id)));
+            if (exists(ZkPath.CONTAINER_PORT_MIN.getPath(id))) {
+                minimumPort = Integer.parseInt(getStringData(ZkPath.CONTAINER_PORT_MIN.getPath(id)));
             }
         } catch (InterruptedException e) {
             throw new FabricException(e);
@@ -489,6 +509,7 @@ public class ContainerImpl implements Container {
 
     @Override
     public void setMinimumPort(int port) {
+        snapshot = null;
         try {
             ZooKeeperUtils.set(service.getZooKeeper(), ZkPath.CONTAINER_PORT_MIN.getPath(id), String.valueOf(port));
         } catch (Exception e) {
@@ -500,8 +521,8 @@ public class ContainerImpl implements Container {
     public int getMaximumPort() {
         int maximumPort = 0;
         try {
-            if (service.getZooKeeper().exists(ZkPath.CONTAINER_PORT_MAX.getPath(id)) != null) {
-                maximumPort = Integer.parseInt(service.getZooKeeper().getStringData(ZkPath.CONTAINER_PORT_MAX.getPath(id)));
+            if (exists(ZkPath.CONTAINER_PORT_MAX.getPath(id))) {
+                maximumPort = Integer.parseInt(getStringData(ZkPath.CONTAINER_PORT_MAX.getPath(id)));
             }
         } catch (InterruptedException e) {
             throw new FabricException(e);
@@ -515,6 +536,7 @@ public class ContainerImpl implements Container {
 
     @Override
     public void setMaximumPort(int port) {
+        snapshot = null;
         try {
             ZooKeeperUtils.set(service.getZooKeeper(), ZkPath.CONTAINER_PORT_MAX.getPath(id), String.valueOf(port));
         } catch (Exception e) {
@@ -571,7 +593,10 @@ public class ContainerImpl implements Container {
 
     public List<String> getJmxDomains() {
         try {
-            List<String> list = service.getZooKeeper().getChildren(ZkPath.CONTAINER_DOMAINS.getPath(getId()));
+            ZooKeeperSnapshot snapshot = this.snapshot;
+            List<String> list = snapshot != null
+                    ? new ArrayList<String>(snapshot.getChildren(ZkPath.CONTAINER_DOMAINS.getPath(getId())))
+                    : service.getZooKeeper().getChildren(ZkPath.CONTAINER_DOMAINS.getPath(getId()));
             Collections.sort(list);
             return Collections.unmodifiableList(list);
         } catch (Exception e) {
@@ -600,6 +625,20 @@ public class ContainerImpl implements Container {
 
     public Container[] getChildren() {
         List<Container> children = new ArrayList<Container>();
+        ZooKeeperSnapshot snapshot = this.snapshot;
+        if (snapshot != null) {
+            try {
+                for (String childId : snapshot.getChildren(ZkPath.CONFIGS_CONTAINERS.getPath())) {
+                    String parentId = snapshot.getStringData(ZkPath.CONTAINER_PARENT.getPath(childId));
+                    if (parentId != null && id.equals(parentId.trim())) {
+                        children.add(new ContainerImpl(this, childId, service, snapshot));
+                    }
+                }
+                return children.toArray(new Container[children.size()]);
+            } catch (Exception e) {
+                throw new FabricException(e);
+            }
+        }
         for (Container container : service.getContainers()) {
             if (container.getParent() != null && getId().equals(container.getParent().getId())) {
                 children.add(container);
@@ -632,9 +671,9 @@ public class ContainerImpl implements Container {
     public CreateContainerMetadata<?> getMetadata() {
         try {
             if (metadata == null) {
-                if (service.getZooKeeper().exists(ZkPath.CONTAINER_METADATA.getPath(id)) != null) {
+                if (exists(ZkPath.CONTAINER_METADATA.getPath(id))) {
                     //The metadata are stored encoded so that they are import/export friendly.
-                    String encoded = service.getZooKeeper().getStringData(ZkPath.CONTAINER_METADATA.getPath(id));
+                    String encoded = getStringData(ZkPath.CONTAINER_METADATA.getPath(id));
                     byte[] decoded = Base64Encoder.decode(encoded).getBytes(Base64Encoder.base64CharSet);
                     ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(decoded));
                     metadata = (CreateContainerMetadata) ois.readObject();
@@ -649,6 +688,7 @@ public class ContainerImpl implements Container {
     }
 
     public void setMetadata(CreateContainerMetadata<?> metadata) {
+        snapshot = null;
         this.metadata = metadata;
         try {
             //We need to check if zookeeper is available.
@@ -700,6 +740,28 @@ public class ContainerImpl implements Container {
         return false;
     }
 
+    private boolean exists(String path) throws InterruptedException, KeeperException {
+        ZooKeeperSnapshot snapshot = this.snapshot;
+        return snapshot != null ? snapshot.exists(path) : service.getZooKeeper().exists(path) != null;
+    }
+
+    private String getStringData(String path) throws InterruptedException, KeeperException {
+        ZooKeeperSnapshot snapshot = this.snapshot;
+        if (snapshot != null) {
+            String answer = snapshot.getStringData(path);
+            if (answer == null) {
+                throw new KeeperException.NoNodeException(path);
+            }
+            return answer;
+        }
+        return service.getZooKeeper().getStringData(path);
+    }
+
+    private String getSubstitutedPath(String path) throws Exception {
+        ZooKeeperSnapshot snapshot = this.snapshot;
+        return snapshot != null ? snapshot.getSubstitutedPath(path) : ZooKeeperUtils.getSubstitutedPath(service.getZooKeeper(), path);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -47,6 +47,7 @@ public final class ContainerProviderUtils {
 
     public static final String ADDRESSES_PROPERTY_KEY = "addresses";
     private static final String LINE_APPEND = "sed  's/%s/&%s/' %s > %s";
+    private static final String DISTRIBUTION_CACHE = ".distributions";
     private static final String FIRST_FABRIC_DIRECTORY = "ls -l | grep fuse-fabric | grep ^d | awk '{ print $NF }' | sort -n | head -1";
 
     private static final String RUN_FUNCTION = loadFunction("run.sh");
@@ -84,6 +85,21 @@ public final class ContainerProviderUtils {
      * @throws MalformedURLException
      */
     public static String buildInstallAndStartScript(CreateRemoteContainerOptions options) throws MalformedURLException, URISyntaxException {
+        return buildInstallAndStartScript(options, false);
+    }
+
+    /**
+     * Creates a shell script for installing and starting up a container.
+     * When staged, the script expects the prerequisites to have been installed and the distribution to have been
+     * downloaded by the script built by {@link #buildStageDistributionScript(CreateRemoteContainerOptions)}, and it
+     * only falls back to downloading the distribution itself if it is not in the cache.
+     *
+     * @param options
+     * @param staged
+     * @return
+     * @throws MalformedURLException
+     */
+    public static String buildInstallAndStartScript(CreateRemoteContainerOptions options, boolean staged) throws MalformedURLException, URISyntaxException {
         StringBuilder sb = new StringBuilder();
         sb.append("#!/bin/bash").append("\n");
         sb.append(RUN_FUNCTION).append("\n");
@@ -105,7 +121,7 @@ public final class ContainerProviderUtils {
         sb.append("run mkdir -p ").append(options.getName()).append("\n");
         sb.append("run cd ").append(options.getName()).append("\n");
         //We need admin access to be able to install curl & java.
-        if (options.isAdminAccess()) {
+        if (options.isAdminAccess() && !staged) {
             //This is not really needed.
             //Its just here as a silly workaround for some cases which fail to get the first thing installed.
             sb.append("update_pkgs").append("\n");
@@ -113,7 +129,16 @@ public final class ContainerProviderUtils {
             sb.append("install_curl").append("\n");
         }
         sb.append("validate_requirements").append("\n");
-        extractZipIntoDirectory(sb, options.getProxyUri(), "org.fusesource.fabric", "fuse-fabric", FabricConstants.FABRIC_VERSION);
+        if (staged) {
+            String file = getDistributionCache(options) + "/fuse-fabric-" + FabricConstants.FABRIC_VERSION + ".zip";
+            sb.append("if [ -f ").append(file).append(" ] ; then\n");
+            sb.append("run unzip ").append(file).append("\n");
+            sb.append("else\n");
+            extractZipIntoDirectory(sb, options.getProxyUri(), "org.fusesource.fabric", "fuse-fabric", FabricConstants.FABRIC_VERSION);
+            sb.append("fi\n");
+        } else {
+            extractZipIntoDirectory(sb, options.getProxyUri(), "org.fusesource.fabric", "fuse-fabric", FabricConstants.FABRIC_VERSION);
+        }
         sb.append("run cd `").append(FIRST_FABRIC_DIRECTORY).append("`\n");
         List<String> lines = new ArrayList<String>();
         String globalResolver = options.getResolver() != null ? options.getResolver() : ZkDefs.DEFAULT_RESOLVER;
@@ -199,6 +224,53 @@ public final class ContainerProviderUtils {
         return sb.toString();
     }
 
+    /**
+     * Creates a shell script which installs the prerequisites of the containers and downloads the distribution
+     * into a cache on the host once, so that the containers installed on the host afterwards can unpack it locally.
+     *
+     * @param options
+     * @return
+     * @throws URISyntaxException
+     */
+    public static String buildStageDistributionScript(CreateRemoteContainerOptions options) throws URISyntaxException {
+        String file = "fuse-fabric-" + FabricConstants.FABRIC_VERSION + ".zip";
+        StringBuilder sb = new StringBuilder();
+        sb.append("#!/bin/bash").append("\n");
+        sb.append(RUN_FUNCTION).append("\n");
+        sb.append(DOWNLOAD_FUNCTION).append("\n");
+        sb.append(MAVEN_DOWNLOAD_FUNCTION).append("\n");
+        sb.append(UPDATE_PKGS).append("\n");
+        sb.append(INSTALL_CURL).append("\n");
+        sb.append(INSTALL_JDK).append("\n");
+        sb.append(EXIT_IF_NOT_EXISTS).append("\n");
+        sb.append("run mkdir -p ").append(getDistributionCache(options)).append("\n");
+        sb.append("run cd ").append(getDistributionCache(options)).append("\n");
+        if (options.isAdminAccess()) {
+            sb.append("update_pkgs").append("\n");
+            sb.append("install_openjdk").append("\n");
+            sb.append("install_curl").append("\n");
+        }
+        //Download into a staging directory first so that an interrupted download never ends up in the cache
+        sb.append("if [ ! -f ").append(file).append(" ] ; then\n");
+        sb.append("run mkdir -p staging.$$").append("\n");
+        sb.append("run cd staging.$$").append("\n");
+        downloadArtifact(sb, options.getProxyUri(), "org.fusesource.fabric", "fuse-fabric", FabricConstants.FABRIC_VERSION, "zip");
+        sb.append("if [ -f ").append(file).append(" ] ; then mv ").append(file).append(" ../").append(file).append(" ; fi\n");
+        sb.append("cd ..").append("\n");
+        sb.append("rm -rf staging.$$").append("\n");
+        sb.append("fi\n");
+        sb.append("exit_if_not_exists ").append(file).append("\n");
+        return sb.toString();
+    }
+
+    /**
+     * Returns the directory on the host in which the distribution is staged
+     */
+    public static String getDistributionCache(CreateRemoteContainerOptions options) {
+        String path = options.getPath();
+        return path + (path.endsWith("/") ? "" : "/") + DISTRIBUTION_CACHE;
+    }
+
     /**
      * Creates a shell script for starting an existing remote container.
      *
@@ -294,6 +366,13 @@ public final class ContainerProviderUtils {
 
     private static void extractZipIntoDirectory(StringBuilder sb, URI proxy, String groupId, String artifactId, String version) throws URISyntaxException {
         String file = artifactId + "-" + version + ".zip";
+        downloadArtifact(sb, proxy, groupId, artifactId, version, "zip");
+        sb.append("exit_if_not_exists ").append(file).append("\n");
+        sb.append("run unzip ").append(file).append("\n");
+    }
+
+    private static void downloadArtifact(StringBuilder sb, URI proxy, String groupId, String artifactId, String version, String type) throws URISyntaxException {
+        String file = artifactId + "-" + version + "." + type;
         //TODO: There may be cases where this is not good enough
         if (proxy != null) {
             String baseProxyURL = (!proxy.toString().endsWith("/")) ? proxy.toString() + "/" : proxy.toString();
@@ -303,7 +382,7 @@ public final class ContainerProviderUtils {
                     .append(groupId).append(" ")
                     .append(artifactId).append(" ")
                     .append(version).append(" ")
-                    .append("zip").append("\n");
+                    .append(type).append("\n");
         }
 
         for (String fallbackRepo : FALLBACK_REPOS) {
@@ -311,10 +390,8 @@ public final class ContainerProviderUtils {
                     .append(groupId).append(" ")
                     .append(artifactId).append(" ")
                     .append(version).append(" ")
-                    .append("zip").append(" ; fi \n");
+                    .append(type).append(" ; fi \n");
         }
-        sb.append("exit_if_not_exists ").append(file).append("\n");
-        sb.append("run unzip ").append(file).append("\n");
     }
 
     private static String loadFunction(String function) {
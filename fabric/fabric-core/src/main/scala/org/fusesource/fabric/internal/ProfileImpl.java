@@ -247,7 +247,7 @@ public class ProfileImpl implements Profile {
 	public Container[] getAssociatedContainers() {
 		try {
 			ArrayList<Container> rc = new ArrayList<Container>();
-			Container[] containers = service.getContainers();
+			Container[] containers = service.getContainerSnapshots();
 			for (Container container : containers) {
 				if (!container.getVersion().getName().equals(getVersion())) {
 					continue;
@@ -0,0 +1,249 @@
+/**
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.fabric.internal;
+
+import org.apache.zookeeper.AsyncCallback;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.data.Stat;
+import org.fusesource.fabric.zookeeper.IZKClient;
+import org.fusesource.fabric.zookeeper.ZkPath;
+import org.fusesource.fabric.zookeeper.utils.InterpolationHelper;
+import org.fusesource.fabric.zookeeper.utils.ZooKeeperUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A point in time copy of part of the registry which is read using pipelined asynchronous requests, so that
+ * reading the attributes of many containers does not cost a round trip per attribute.
+ * <p/>
+ * Paths which were not prefetched, or failed to be read, are read from ZooKeeper on demand and then cached.
+ */
+public class ZooKeeperSnapshot {
+    private static final transient Logger LOGGER = LoggerFactory.getLogger(ZooKeeperSnapshot.class);
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final IZKClient zooKeeper;
+    private final Map<String, byte[]> data = new ConcurrentHashMap<String, byte[]>();
+    private final Map<String, List<String>> children = new ConcurrentHashMap<String, List<String>>();
+    private final Set<String> missing = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private int maxOutstandingRequests = 1000;
+    private long timeout = 30000;
+
+    public ZooKeeperSnapshot(IZKClient zooKeeper) {
+        this.zooKeeper = zooKeeper;
+    }
+
+    /**
+     * Reads the data of all the given paths, keeping up to {@link #getMaxOutstandingRequests()} requests in flight
+     */
+    public void prefetchData(Collection<String> paths) throws InterruptedException {
+        final Semaphore permits = new Semaphore(maxOutstandingRequests);
+        final CountDownLatch latch = new CountDownLatch(paths.size());
+        for (String path : paths) {
+            permits.acquire();
+            zooKeeper.getData(path, false, new AsyncCallback.DataCallback() {
+                public void processResult(int rc, String ignore, Object ctx, byte[] bytes, Stat stat) {
+                    try {
+                        String path = (String) ctx;
+                        if (rc == KeeperException.Code.OK.intValue()) {
+                            data.put(path, bytes != null ? bytes : EMPTY);
+                        } else if (rc == KeeperException.Code.NONODE.intValue()) {
+                            missing.add(path);
+                        }
+                    } finally {
+                        permits.release();
+                        latch.countDown();
+                    }
+                }
+            }, path);
+        }
+        await(latch, paths.size());
+    }
+
+    /**
+     * Reads the children of all the given paths, keeping up to {@link #getMaxOutstandingRequests()} requests in flight
+     */
+    public void prefetchChildren(Collection<String> paths) throws InterruptedException {
+        final Semaphore permits = new Semaphore(maxOutstandingRequests);
+        final CountDownLatch latch = new CountDownLatch(paths.size());
+        for (String path : paths) {
+            permits.acquire();
+            zooKeeper.getChildren(path, false, new AsyncCallback.ChildrenCallback() {
+                public void processResult(int rc, String ignore, Object ctx, List<String> list) {
+                    try {
+                        String path = (String) ctx;
+                        if (rc == KeeperException.Code.OK.intValue()) {
+                            children.put(path, list != null ? list : Collections.<String>emptyList());
+                        } else if (rc == KeeperException.Code.NONODE.intValue()) {
+                            missing.add(path);
+                        }
+                    } finally {
+                        permits.release();
+                        latch.countDown();
+                    }
+                }
+            }, path);
+        }
+        await(latch, paths.size());
+    }
+
+    public boolean exists(String path) throws InterruptedException, KeeperException {
+        if (data.containsKey(path) || children.containsKey(path)) {
+            return true;
+        } else if (missing.contains(path)) {
+            return false;
+        }
+        int idx = path.lastIndexOf('/');
+        List<String> siblings = idx > 0 ? children.get(path.substring(0, idx)) : null;
+        if (siblings != null) {
+            return siblings.contains(path.substring(idx + 1));
+        }
+        return zooKeeper.exists(path) != null;
+    }
+
+    /**
+     * Returns the data of the node as a string or null if the node does not exist
+     */
+    public String getStringData(String path) throws InterruptedException, KeeperException {
+        byte[] bytes = getData(path);
+        return bytes != null ? toString(bytes) : null;
+    }
+
+    /**
+     * Returns the data of the node or null if the node does not exist
+     */
+    public byte[] getData(String path) throws InterruptedException, KeeperException {
+        byte[] answer = data.get(path);
+        if (answer == null && !missing.contains(path)) {
+            try {
+                answer = zooKeeper.getData(path);
+                data.put(path, answer != null ? answer : EMPTY);
+            } catch (KeeperException.NoNodeException e) {
+                missing.add(path);
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the children of the node or an empty list if the node does not exist
+     */
+    public List<String> getChildren(String path) throws InterruptedException, KeeperException {
+        List<String> answer = children.get(path);
+        if (answer == null) {
+            if (missing.contains(path)) {
+                return Collections.emptyList();
+            }
+            try {
+                answer = zooKeeper.getChildren(path);
+                children.put(path, answer);
+            } catch (KeeperException.NoNodeException e) {
+                missing.add(path);
+                return Collections.emptyList();
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the data of the node with any <tt>${zk:...}</tt> references replaced, like
+     * {@link ZooKeeperUtils#getSubstitutedPath(IZKClient, String)} does, or null if the node does not exist
+     */
+    public String getSubstitutedPath(String path) throws Exception {
+        if (path.contains("#")) {
+            return ZooKeeperUtils.getSubstitutedPath(zooKeeper, path);
+        }
+        byte[] bytes = getData(path);
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        Map<String, String> props = new HashMap<String, String>();
+        props.put("data", toString(bytes));
+        InterpolationHelper.performSubstitution(props, new InterpolationHelper.SubstitutionCallback() {
+            public String getValue(String key) {
+                if (key.startsWith("zk:")) {
+                    try {
+                        if (key.contains("#")) {
+                            return toString(ZkPath.loadURL(zooKeeper, key));
+                        }
+                        String path = key.substring(3).trim();
+                        if (!path.startsWith("/")) {
+                            path = ZkPath.CONTAINER.getPath(path);
+                        }
+                        byte[] bytes = getData(path);
+                        return bytes != null ? toString(bytes) : null;
+                    } catch (Exception e) {
+                        //ignore and just return null.
+                    }
+                }
+                return null;
+            }
+        });
+        return props.get("data");
+    }
+
+    public IZKClient getZooKeeper() {
+        return zooKeeper;
+    }
+
+    public int getMaxOutstandingRequests() {
+        return maxOutstandingRequests;
+    }
+
+    public void setMaxOutstandingRequests(int maxOutstandingRequests) {
+        this.maxOutstandingRequests = maxOutstandingRequests;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Sets the time in milliseconds to wait for a batch of prefetch requests to complete
+     */
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    private void await(CountDownLatch latch, int requests) throws InterruptedException {
+        if (!latch.await(timeout, TimeUnit.MILLISECONDS)) {
+            // the remaining paths will be read on demand
+            LOGGER.warn("Timed out waiting for " + latch.getCount() + " of " + requests + " prefetch requests to ZooKeeper");
+        }
+    }
+
+    private static String toString(byte[] bytes) {
+        try {
+            return new String(bytes, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -20,6 +20,11 @@ import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -27,6 +32,8 @@ import org.apache.karaf.admin.InstanceSettings;
 import org.apache.karaf.admin.management.AdminServiceMBean;
 import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
 import org.fusesource.fabric.api.*;
 import org.fusesource.fabric.internal.FabricConstants;
 import org.fusesource.fabric.utils.Ports;
@@ -34,6 +41,8 @@ import org.fusesource.fabric.zookeeper.IZKClient;
 import org.fusesource.fabric.zookeeper.ZkDefs;
 import org.fusesource.fabric.zookeeper.ZkPath;
 import org.fusesource.fabric.zookeeper.utils.ZooKeeperUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 
 import static org.fusesource.fabric.utils.Ports.mapPortToRange;
@@ -44,10 +53,25 @@ import static org.fusesource.fabric.zookeeper.ZkPath.CONTAINER_RESOLVER;
 
 public class ChildContainerProvider implements ContainerProvider<CreateContainerChildOptions, CreateContainerChildMetadata> {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChildContainerProvider.class);
+
+    static final String SHARED_AGENT_CACHE_PROPERTY = "fabric.agent.download.cache";
+    //Relative to the home of the child, which is the home of its parent
+    static final String SHARED_AGENT_CACHE = "data/maven/agent";
+    private static final long TEMPLATE_PROVISIONING_TIMEOUT = 5 * 60 * 1000L;
 
     final FabricServiceImpl service;
     Set<Integer> usedPorts = new LinkedHashSet<Integer>();
 
+    //Starts the siblings of a template child once it is provisioned, outside of the call that creates them.
+    private final ExecutorService siblingStarter = Executors.newCachedThreadPool(new ThreadFactory() {
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "fabric-child-container-starter");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
     public ChildContainerProvider(FabricServiceImpl service) {
         this.service = service;
     }
@@ -86,9 +110,14 @@ public class ChildContainerProvider implements ContainerProvider<CreateContainer
                 String featuresUrls = listAsString(defaultProfile.getRepositories());
                 String features = listAsString(defaultProfile.getFeatures());
 
+                //The children share the agent download cache of the parent, so that bundles are downloaded once per host.
+                jvmOptsBuilder.append(" -D").append(SHARED_AGENT_CACHE_PROPERTY).append("=").append(SHARED_AGENT_CACHE);
+                String jvmOpts = jvmOptsBuilder.toString();
+
                 String originalName = options.getName();
                 usedPorts.addAll(getContainerUsedPorts(parent));
 
+                List<CreateContainerChildMetadata> pending = new ArrayList<CreateContainerChildMetadata>();
                 for (int i = 1; i <= options.getNumber(); i++) {
                     String containerName;
                     if (options.getNumber() > 1) {
@@ -129,16 +158,34 @@ public class ChildContainerProvider implements ContainerProvider<CreateContainer
                     usedPorts.add(rmiRegistryPort);
 
                     try {
+                        long start = System.currentTimeMillis();
                         adminService.createInstance(containerName,
                                 sshPort,
                                 rmiServerPort,
-                                rmiRegistryPort, null, jvmOptsBuilder.toString(), features, featuresUrls);
-                        adminService.startInstance(containerName, null);
+                                rmiRegistryPort, null, jvmOpts, features, featuresUrls);
+                        metadata.addStepTiming("create", System.currentTimeMillis() - start);
+                        if (i == 1) {
+                            //The first child populates the shared cache, while the instances of its siblings are laid down.
+                            startInstance(adminService, metadata);
+                        } else {
+                            pending.add(metadata);
+                        }
                     } catch (Throwable t) {
                         metadata.setFailure(t);
                     }
                     result.add(metadata);
                 }
+
+                if (!pending.isEmpty()) {
+                    CreateContainerChildMetadata first = result.iterator().next();
+                    if (first.isSuccess()) {
+                        startWhenProvisioned(parent, first.getContainerName(), pending);
+                    } else {
+                        for (CreateContainerChildMetadata metadata : pending) {
+                            startInstance(adminService, metadata);
+                        }
+                    }
+                }
                 return null;
             }
         });
@@ -183,6 +230,97 @@ public class ChildContainerProvider implements ContainerProvider<CreateContainer
         });
     }
 
+    /**
+     * Stops the pending starts of the siblings of template containers
+     */
+    public void shutdown() {
+        siblingStarter.shutdownNow();
+    }
+
+    private void startInstance(AdminServiceMBean adminService, CreateContainerChildMetadata metadata) {
+        try {
+            long start = System.currentTimeMillis();
+            adminService.startInstance(metadata.getContainerName(), null);
+            metadata.addStepTiming("start", System.currentTimeMillis() - start);
+        } catch (Throwable t) {
+            metadata.setFailure(t);
+        }
+    }
+
+    /**
+     * Starts the siblings of the specified template container once its agent has provisioned it, or has failed
+     * to do so, so that they find the shared cache populated. The wait is bounded, as the siblings can still be
+     * started, only with a colder cache. This returns immediately and the siblings are started in the background.
+     */
+    private void startWhenProvisioned(final Container parent, final String templateName, final List<CreateContainerChildMetadata> siblings) {
+        final String path = ZkPath.CONTAINER_PROVISION_RESULT.getPath(templateName);
+        final CountDownLatch provisioned = new CountDownLatch(1);
+        Watcher watcher = new Watcher() {
+            public void process(WatchedEvent event) {
+                // lets not watch the result again once the siblings no longer wait for it
+                if (provisioned.getCount() > 0 && isProvisioned(path, this)) {
+                    provisioned.countDown();
+                }
+            }
+        };
+        if (isProvisioned(path, watcher)) {
+            provisioned.countDown();
+        }
+        final long start = System.currentTimeMillis();
+        siblingStarter.execute(new Runnable() {
+            public void run() {
+                try {
+                    if (!provisioned.await(TEMPLATE_PROVISIONING_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                        LOGGER.warn("Container " + templateName + " has not been provisioned in time, starting its siblings.");
+                        provisioned.countDown();
+                    }
+                } catch (InterruptedException e) {
+                    LOGGER.warn("Not starting the siblings of container " + templateName + " as the fabric service is shutting down.");
+                    provisioned.countDown();
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (CreateContainerChildMetadata metadata : siblings) {
+                    metadata.addStepTiming("template", System.currentTimeMillis() - start);
+                }
+                CreateContainerChildOptions options = siblings.get(0).getCreateOptions();
+                try {
+                    service.getContainerTemplate(parent, options.getJmxUser(), options.getJmxPassword()).execute(new ContainerTemplate.AdminServiceCallback<Object>() {
+                        public Object doWithAdminService(AdminServiceMBean adminService) throws Exception {
+                            for (CreateContainerChildMetadata metadata : siblings) {
+                                startInstance(adminService, metadata);
+                                if (!metadata.isSuccess()) {
+                                    LOGGER.warn("Failed to start container " + metadata.getContainerName(), metadata.getFailure());
+                                }
+                            }
+                            return null;
+                        }
+                    });
+                } catch (Throwable t) {
+                    LOGGER.warn("Failed to start the siblings of container " + templateName, t);
+                    for (CreateContainerChildMetadata metadata : siblings) {
+                        metadata.setFailure(t);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Checks whether the agent of a container has reported its provisioning result, and watches the result otherwise.
+     */
+    private boolean isProvisioned(String path, Watcher watcher) {
+        try {
+            if (service.getZooKeeper().exists(path, watcher) != null) {
+                String status = service.getZooKeeper().getStringData(path);
+                return ZkDefs.SUCCESS.equals(status) || ZkDefs.ERROR.equals(status);
+            }
+        } catch (Exception e) {
+            LOGGER.debug("Failed to read the provisioning result at " + path, e);
+        }
+        return false;
+    }
+
     /**
      * Returns the {@link ContainerTemplate} of the parent of the specified child {@link Container}.
      *
@@ -0,0 +1,192 @@
+/**
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.fabric.service;
+
+import org.fusesource.fabric.api.Container;
+import org.fusesource.fabric.api.FabricService;
+import org.fusesource.fabric.api.data.BundleInfo;
+import org.fusesource.fabric.api.data.ServiceInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads the bundles and services of many containers over JMX using a bounded number of threads.
+ * <p/>
+ * Each container is only connected to once, using a {@link ContainerCachingJmxTemplate} for all of its requests,
+ * and containers which are not alive or have no JMX URL are skipped.
+ */
+public class ContainerInventory {
+    private static final transient Logger LOGGER = LoggerFactory.getLogger(ContainerInventory.class);
+
+    private final FabricService service;
+    private int parallelism = 16;
+    private long timeout = 60000;
+
+    public ContainerInventory(FabricService service) {
+        this.service = service;
+    }
+
+    /**
+     * The bundles and services of a container
+     */
+    public static class ContainerDetails {
+        private final Container container;
+        private volatile BundleInfo[] bundles = new BundleInfo[0];
+        private volatile ServiceInfo[] services = new ServiceInfo[0];
+
+        public ContainerDetails(Container container) {
+            this.container = container;
+        }
+
+        public Container getContainer() {
+            return container;
+        }
+
+        public BundleInfo[] getBundles() {
+            return bundles;
+        }
+
+        public ServiceInfo[] getServices() {
+            return services;
+        }
+    }
+
+    /**
+     * Returns the details of all the containers in the fabric indexed by container id
+     */
+    public Map<String, ContainerDetails> getDetails(String jmxUser, String jmxPassword, boolean bundles, boolean services) {
+        return getDetails(service.getContainerSnapshots(), jmxUser, jmxPassword, bundles, services);
+    }
+
+    /**
+     * Returns the details of the given containers indexed by container id. Containers which could not be
+     * reached in time have no bundles or services.
+     */
+    public Map<String, ContainerDetails> getDetails(Container[] containers, final String jmxUser, final String jmxPassword,
+                                                    final boolean bundles, final boolean services) {
+        Map<String, ContainerDetails> answer = new HashMap<String, ContainerDetails>();
+        List<String> ids = new ArrayList<String>();
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+        for (Container container : containers) {
+            final ContainerDetails details = new ContainerDetails(container);
+            answer.put(container.getId(), details);
+            if (container.isAlive() && container.getJmxUrl() != null) {
+                ids.add(container.getId());
+                tasks.add(new Callable<Object>() {
+                    public Object call() throws Exception {
+                        fetch(details, jmxUser, jmxPassword, bundles, services);
+                        return null;
+                    }
+                });
+            }
+        }
+        if (tasks.isEmpty()) {
+            return answer;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, tasks.size()), new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "fabric-container-inventory-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            List<Future<Object>> futures = executor.invokeAll(tasks, timeout, TimeUnit.MILLISECONDS);
+            int cancelled = 0;
+            for (int i = 0; i < futures.size(); i++) {
+                Future<Object> future = futures.get(i);
+                if (future.isCancelled()) {
+                    cancelled++;
+                    continue;
+                }
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    LOGGER.warn("Failed to read the details of container " + ids.get(i) + ": " + e.getCause());
+                    LOGGER.debug("Failed to read the details of container " + ids.get(i) + ".", e.getCause());
+                }
+            }
+            if (cancelled > 0) {
+                LOGGER.warn("Timed out reading the details of " + cancelled + " of " + tasks.size() + " containers");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+        return answer;
+    }
+
+    protected void fetch(ContainerDetails details, String jmxUser, String jmxPassword, boolean bundles, boolean services) {
+        Container container = details.getContainer();
+        ContainerTemplate template = new ContainerTemplate(container, jmxUser, jmxPassword, true);
+        try {
+            if (bundles) {
+                details.bundles = container.getBundles(template);
+            }
+            if (services) {
+                details.services = container.getServices(template);
+            }
+        } finally {
+            JmxTemplateSupport jmxTemplate = template.getJmxTemplate();
+            if (jmxTemplate instanceof JmxTemplate) {
+                try {
+                    ((JmxTemplate) jmxTemplate).close();
+                } catch (Exception e) {
+                    LOGGER.debug("Failed to close the JMX connection to container " + container.getId() + ". This exception will be ignored.", e);
+                }
+            }
+        }
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the maximum number of containers which are read at the same time
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Sets the time in milliseconds to wait for all the containers to be read
+     */
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+}
@@ -50,6 +50,7 @@ import org.fusesource.fabric.internal.ContainerImpl;
 import org.fusesource.fabric.internal.ProfileImpl;
 import org.fusesource.fabric.internal.RequirementsJson;
 import org.fusesource.fabric.internal.VersionImpl;
+import org.fusesource.fabric.internal.ZooKeeperSnapshot;
 import org.fusesource.fabric.utils.Base64Encoder;
 import org.fusesource.fabric.utils.ObjectUtils;
 import org.fusesource.fabric.utils.SystemProperties;
@@ -72,8 +73,20 @@ public class FabricServiceImpl implements FabricService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(FabricServiceImpl.class);
 
+    /**
+     * The registry entries of each container which are read when taking container snapshots
+     */
+    private static final ZkPath[] SNAPSHOT_PATHS = {
+            ZkPath.CONFIG_CONTAINER, ZkPath.CONTAINER_PARENT, ZkPath.CONTAINER_PROVISION_RESULT,
+            ZkPath.CONTAINER_PROVISION_EXCEPTION, ZkPath.CONTAINER_IP, ZkPath.CONTAINER_RESOLVER,
+            ZkPath.CONTAINER_LOCAL_IP, ZkPath.CONTAINER_LOCAL_HOSTNAME, ZkPath.CONTAINER_PUBLIC_IP,
+            ZkPath.CONTAINER_PUBLIC_HOSTNAME, ZkPath.CONTAINER_MANUAL_IP, ZkPath.CONTAINER_JMX, ZkPath.CONTAINER_SSH,
+            ZkPath.CONTAINER_LOCATION, ZkPath.CONTAINER_GEOLOCATION, ZkPath.CONTAINER_PORT_MIN, ZkPath.CONTAINER_PORT_MAX
+    };
+
     private IZKClient zooKeeper;
     private Map<String, ContainerProvider> providers;
+    private final ChildContainerProvider childProvider = new ChildContainerProvider(this);
     private ConfigurationAdmin configurationAdmin;
     private String profile = ZkDefs.DEFAULT_PROFILE;
     private String defaultRepo = FabricServiceImpl.DEFAULT_REPO_URI;
@@ -85,7 +98,11 @@ public class FabricServiceImpl implements FabricService {
 
     public FabricServiceImpl() {
         providers = new ConcurrentHashMap<String, ContainerProvider>();
-        providers.put("child", new ChildContainerProvider(this));
+        providers.put("child", childProvider);
+    }
+
+    public void destroy() {
+        childProvider.shutdown();
     }
 
     public void bindMBeanServer(MBeanServer mbeanServer) {
@@ -185,6 +202,69 @@ public class FabricServiceImpl implements FabricService {
         }
     }
 
+    public Container[] getContainerSnapshots() {
+        try {
+            ZooKeeperSnapshot snapshot = new ZooKeeperSnapshot(zooKeeper);
+            List<String> names = snapshot.getChildren(ZkPath.CONFIGS_CONTAINERS.getPath());
+            String alivePath = ZkPath.CONTAINER_ALIVE.getPath("");
+            snapshot.prefetchChildren(Collections.singletonList(alivePath.substring(0, alivePath.length() - 1)));
+
+            List<String> paths = new ArrayList<String>();
+            List<String> domainPaths = new ArrayList<String>();
+            paths.add(ZkPath.CONFIG_ENSEMBLES.getPath());
+            for (String name : names) {
+                for (ZkPath path : SNAPSHOT_PATHS) {
+                    paths.add(path.getPath(name));
+                }
+                domainPaths.add(ZkPath.CONTAINER_DOMAINS.getPath(name));
+            }
+            snapshot.prefetchData(paths);
+            snapshot.prefetchChildren(domainPaths);
+
+            // the profiles and ensemble depend on the data we've just read
+            paths.clear();
+            String clusterId = snapshot.getStringData(ZkPath.CONFIG_ENSEMBLES.getPath());
+            if (clusterId != null) {
+                paths.add(ZkPath.CONFIG_ENSEMBLE.getPath(clusterId));
+            }
+            for (String name : names) {
+                String version = snapshot.getStringData(ZkPath.CONFIG_CONTAINER.getPath(name));
+                if (version != null) {
+                    paths.add(ZkPath.CONFIG_VERSIONS_CONTAINER.getPath(version, name));
+                }
+            }
+            snapshot.prefetchData(paths);
+
+            Map<String, Container> containers = new HashMap<String, Container>();
+            for (String name : names) {
+                String parentId = snapshot.getStringData(ZkPath.CONTAINER_PARENT.getPath(name));
+                parentId = parentId != null ? parentId.trim() : "";
+                if (parentId.isEmpty()) {
+                    if (!containers.containsKey(name)) {
+                        containers.put(name, new ContainerImpl(null, name, this, snapshot));
+                    }
+                } else {
+                    Container parent = containers.get(parentId);
+                    if (parent == null) {
+                        parent = new ContainerImpl(null, parentId, this, snapshot);
+                        containers.put(parentId, parent);
+                    }
+                    containers.put(name, new ContainerImpl(parent, name, this, snapshot));
+                }
+            }
+            return containers.values().toArray(new Container[containers.size()]);
+        } catch (Exception e) {
+            throw new FabricException(e);
+        }
+    }
+
+    /**
+     * Returns a helper to read the bundles and services of many containers over JMX in parallel
+     */
+    public ContainerInventory getContainerInventory() {
+        return new ContainerInventory(this);
+    }
+
     private String getParentOf(String name) throws InterruptedException, KeeperException {
         if (zooKeeper != null) {
             try {
@@ -0,0 +1,239 @@
+/**
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.fabric.service;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.fusesource.fabric.utils.Base64Encoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caches the versions listed in the <tt>maven-metadata.xml</tt> of artifacts in remote repositories.
+ * <p/>
+ * Entries are reused for the time to live and then revalidated with a conditional request using the
+ * ETag and Last-Modified headers of the previous response, so unchanged metadata is not downloaded again.
+ * Concurrent requests for the same metadata share a single fetch, which runs on the given executor.
+ */
+public class MavenMetadataCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MavenMetadataCache.class);
+
+    public static final long DEFAULT_TIME_TO_LIVE = TimeUnit.MINUTES.toMillis(10);
+    public static final int DEFAULT_TIMEOUT = 30000;
+
+    private static final XMLInputFactory xif = XMLInputFactory.newInstance();
+
+    private final Executor executor;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+    private final ConcurrentMap<String, Future<List<String>>> fetches = new ConcurrentHashMap<String, Future<List<String>>>();
+    private long timeToLive = DEFAULT_TIME_TO_LIVE;
+    private int timeout = DEFAULT_TIMEOUT;
+
+    public MavenMetadataCache(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the versions of the artifact in the repository or an empty list if the repository has no metadata for it
+     */
+    public List<String> getVersions(String repository, String groupId, String artifactId) throws IOException {
+        try {
+            return getVersionsAsync(repository, groupId, artifactId).get();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Interrupted while retrieving metadata of " + groupId + ":" + artifactId);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Unable to retrieve metadata of " + groupId + ":" + artifactId, e.getCause());
+        }
+    }
+
+    /**
+     * Returns the versions of the artifact in the repository, fetching the metadata in the background if the
+     * cached entry is missing or expired
+     */
+    public Future<List<String>> getVersionsAsync(String repository, String groupId, String artifactId) {
+        final String location = getMetadataLocation(repository, groupId, artifactId);
+        Entry entry = entries.get(location);
+        if (entry != null && !entry.isExpired(System.currentTimeMillis(), timeToLive)) {
+            return completed(entry.versions);
+        }
+        FutureTask<List<String>> task = new FutureTask<List<String>>(new Callable<List<String>>() {
+            @Override
+            public List<String> call() throws Exception {
+                try {
+                    return fetch(location);
+                } finally {
+                    fetches.remove(location);
+                }
+            }
+        });
+        Future<List<String>> existing = fetches.putIfAbsent(location, task);
+        if (existing != null) {
+            return existing;
+        }
+        executor.execute(task);
+        return task;
+    }
+
+    /**
+     * Expires all the entries so that they are revalidated on their next use
+     */
+    public void invalidate() {
+        for (String location : entries.keySet()) {
+            Entry entry = entries.get(location);
+            if (entry != null) {
+                entries.put(location, new Entry(entry.versions, entry.etag, entry.lastModified, 0));
+            }
+        }
+    }
+
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    /**
+     * Sets the time in milliseconds after which cached metadata is revalidated
+     */
+    public void setTimeToLive(long timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    public int getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Sets the connect and read timeout in milliseconds
+     */
+    public void setTimeout(int timeout) {
+        this.timeout = timeout;
+    }
+
+    protected List<String> fetch(String location) throws IOException, XMLStreamException {
+        Entry cached = entries.get(location);
+        long now = System.currentTimeMillis();
+        URL url = new URL(location);
+        URLConnection con = url.openConnection();
+        con.setConnectTimeout(timeout);
+        con.setReadTimeout(timeout);
+        if (url.getUserInfo() != null) {
+            con.setRequestProperty("Authorization", "Basic " + Base64Encoder.encode(url.getUserInfo()));
+        }
+        if (cached != null) {
+            if (cached.etag != null) {
+                con.setRequestProperty("If-None-Match", cached.etag);
+            }
+            if (cached.lastModified > 0) {
+                con.setIfModifiedSince(cached.lastModified);
+            }
+        }
+        try {
+            if (cached != null && con instanceof HttpURLConnection
+                    && ((HttpURLConnection) con).getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                LOGGER.debug("Metadata {} has not been modified", location);
+                entries.put(location, new Entry(cached.versions, cached.etag, cached.lastModified, now));
+                return cached.versions;
+            }
+            InputStream is = con.getInputStream();
+            List<String> versions;
+            try {
+                versions = parseVersions(is);
+            } finally {
+                PatchServiceImpl.close(is);
+            }
+            entries.put(location, new Entry(versions, con.getHeaderField("ETag"), con.getLastModified(), now));
+            return versions;
+        } catch (FileNotFoundException e) {
+            // the repository does not contain the artifact, which is worth caching as well
+            List<String> versions = Collections.emptyList();
+            entries.put(location, new Entry(versions, null, 0, now));
+            return versions;
+        }
+    }
+
+    static String getMetadataLocation(String repository, String groupId, String artifactId) {
+        return repository + (repository.endsWith("/") ? "" : "/") + groupId.replace('.', '/') + "/" + artifactId + "/maven-metadata.xml";
+    }
+
+    static List<String> parseVersions(InputStream is) throws XMLStreamException {
+        List<String> versions = new ArrayList<String>();
+        XMLStreamReader reader = xif.createXMLStreamReader(is);
+        try {
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT && "version".equals(reader.getLocalName())) {
+                    versions.add(reader.getElementText().trim());
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return Collections.unmodifiableList(versions);
+    }
+
+    private static Future<List<String>> completed(final List<String> versions) {
+        FutureTask<List<String>> future = new FutureTask<List<String>>(new Callable<List<String>>() {
+            @Override
+            public List<String> call() {
+                return versions;
+            }
+        });
+        future.run();
+        return future;
+    }
+
+    static class Entry {
+        final List<String> versions;
+        final String etag;
+        final long lastModified;
+        final long fetched;
+
+        Entry(List<String> versions, String etag, long lastModified, long fetched) {
+            this.versions = versions;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.fetched = fetched;
+        }
+
+        boolean isExpired(long now, long timeToLive) {
+            return now - fetched >= timeToLive;
+        }
+    }
+}
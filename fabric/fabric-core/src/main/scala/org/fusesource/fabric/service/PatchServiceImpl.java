@@ -38,14 +38,18 @@ import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
@@ -67,10 +71,8 @@ import org.osgi.service.cm.Configuration;
 import org.osgi.service.cm.ConfigurationAdmin;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
 public class PatchServiceImpl implements PatchService {
@@ -151,6 +153,7 @@ public class PatchServiceImpl implements PatchService {
     private final FabricService fabric;
     private final ConfigurationAdmin configAdmin;
     private final ExecutorService executor = Executors.newFixedThreadPool(50);
+    private final MavenMetadataCache metadataCache = new MavenMetadataCache(executor);
 
     public PatchServiceImpl(FabricService fabric, ConfigurationAdmin configAdmin) {
         Bundle bundle = FrameworkUtil.getBundle(getClass());
@@ -261,74 +264,72 @@ public class PatchServiceImpl implements PatchService {
 
     private Map<String, Set<String>> doGetPossibleUpgrades(Set<String> artifacts) {
         Dictionary config = getConfig();
-        final List<String> repositories = getRepositories(config);
-        final boolean includeNonFuseVersions = Boolean.parseBoolean((String) config.get(PATCH_INCLUDE_NON_FUSE_VERSION));
-        Set<String> mavenArtifacts = new TreeSet<String>();
+        List<String> repositories = getRepositories(config);
+        boolean includeNonFuseVersions = Boolean.parseBoolean((String) config.get(PATCH_INCLUDE_NON_FUSE_VERSION));
+        // group the artifacts by groupId:artifactId so that the metadata of an artifact used in several
+        // versions by many profiles is only retrieved once
+        Map<String, Set<String>> mavenArtifacts = new TreeMap<String, Set<String>>();
         for (String artifact : artifacts) {
             String mvn = getMavenArtifact(artifact);
             if (mvn != null) {
-                mavenArtifacts.add(mvn);
+                String ga = mvn.substring(0, mvn.lastIndexOf(':'));
+                Set<String> set = mavenArtifacts.get(ga);
+                if (set == null) {
+                    set = new TreeSet<String>();
+                    mavenArtifacts.put(ga, set);
+                }
+                set.add(mvn);
             }
         }
-        ExecutorService executor = Executors.newFixedThreadPool(20);
-        final Map<String, Set<String>> artifactsVersions = new HashMap<String, Set<String>>();
-        for (final String mvn : mavenArtifacts) {
-            executor.submit(new Runnable() {
-                @Override
-                public void run() {
-                    Set<String> versions = doGetPossibleUpgrades(repositories, mvn, includeNonFuseVersions);
-                    if (versions != null && !versions.isEmpty()) {
-                        synchronized (artifactsVersions) {
-                            artifactsVersions.put(mvn, versions);
-                        }
+        Map<String, List<Future<List<String>>>> metadata = new HashMap<String, List<Future<List<String>>>>();
+        for (String ga : mavenArtifacts.keySet()) {
+            String[] mvnParts = ga.split(":");
+            List<Future<List<String>>> futures = new ArrayList<Future<List<String>>>();
+            for (String repo : repositories) {
+                futures.add(metadataCache.getVersionsAsync(repo, mvnParts[0], mvnParts[1]));
+            }
+            metadata.put(ga, futures);
+        }
+        Map<String, Set<String>> artifactsVersions = new HashMap<String, Set<String>>();
+        for (Map.Entry<String, Set<String>> entry : mavenArtifacts.entrySet()) {
+            List<String> versions = new ArrayList<String>();
+            for (Future<List<String>> future : metadata.get(entry.getKey())) {
+                try {
+                    versions.addAll(future.get());
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                } catch (ExecutionException e) {
+                    if (LOGGER.isTraceEnabled()) {
+                        LOGGER.trace("Unable to retrieve versions for artifact: " + entry.getKey(), e.getCause());
+                    } else if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug("Unable to retrieve versions for artifact: " + entry.getKey() + ": " + e.getCause().getMessage());
                     }
                 }
-            });
-        }
-        executor.shutdown();
-        try {
-            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
+            }
+            for (String mvn : entry.getValue()) {
+                Set<String> upgrades = doGetPossibleUpgrades(mvn, versions, includeNonFuseVersions);
+                if (!upgrades.isEmpty()) {
+                    artifactsVersions.put(mvn, upgrades);
+                }
+            }
         }
         return artifactsVersions;
     }
 
-    private Set<String> doGetPossibleUpgrades(List<String> repositories, String mvn, boolean includeNonFuseVersions) {
+    private Set<String> doGetPossibleUpgrades(String mvn, List<String> versions, boolean includeNonFuseVersions) {
         Set<String> allVersions = new TreeSet<String>(new FuseVersionComparator());
         String[] mvnParts = mvn.split(":");
         org.osgi.framework.Version artifactVersion = VersionTable.getVersion(mvnParts[2]);
-        for (String repo : repositories) {
+        for (String v : versions) {
             try {
-                URL base = new URL(repo + "/" + mvnParts[0].replace('.', '/') + "/" + mvnParts[1] + "/");
-                URL metadata = new URL(base, "maven-metadata.xml");
-                URLConnection con = metadata.openConnection();
-                if (metadata.getUserInfo() != null) {
-                    con.setRequestProperty("Authorization", "Basic " + Base64Encoder.encode(metadata.getUserInfo()));
-                }
-                InputStream is = con.getInputStream();
-                try {
-                    Document doc = dbf.newDocumentBuilder().parse(is);
-                    NodeList versions = doc.getDocumentElement().getElementsByTagName("version");
-                    for (int i = 0; i < versions.getLength(); i++) {
-                        Node version = versions.item(i);
-                        String v = version.getTextContent();
-                        org.osgi.framework.Version ver = VersionTable.getVersion(v);
-                        if (isInMajorRange(artifactVersion, ver)) {
-                            if (includeNonFuseVersions || v.contains("fuse")) {
-                                allVersions.add(v.trim());
-                            }
-                        }
+                org.osgi.framework.Version ver = VersionTable.getVersion(v);
+                if (isInMajorRange(artifactVersion, ver)) {
+                    if (includeNonFuseVersions || v.contains("fuse")) {
+                        allVersions.add(v);
                     }
-                } finally {
-                    is.close();
-                }
-            } catch (Exception e) {
-                if (LOGGER.isTraceEnabled()) {
-                    LOGGER.trace("Unable to retrieve versions for artifact: " + mvn, e);
-                } else if (LOGGER.isDebugEnabled()) {
-                    LOGGER.debug("Unable to retrieve versions for artifact: " + mvn + ": " + e.getMessage());
                 }
+            } catch (IllegalArgumentException e) {
+                LOGGER.debug("Ignoring invalid version " + v + " of artifact: " + mvn);
             }
         }
         return allVersions;
@@ -609,6 +610,9 @@ public class PatchServiceImpl implements PatchService {
                 LOGGER.info("Error loading patch cache.  Cache will be reset.", e);
             }
         }
+        if (reload) {
+            metadataCache.invalidate();
+        }
         if (locations == null) {
             // Load patch locations
             List<String> groups = Arrays.asList(DEFAULT_GROUPS.split(","));
@@ -641,47 +645,23 @@ public class PatchServiceImpl implements PatchService {
     }
 
     public List<String> findPerfectusPatchLocations(List<String> repos, List<String> artifacts) throws InterruptedException {
-        final List<String> locations = new ArrayList<String>();
-        final CountDownLatch latch = new CountDownLatch(repos.size() * artifacts.size());
-        for (final String repo : repos) {
-            for (final String artifact : artifacts) {
-                executor.submit(new Runnable() {
-                    @Override
-                    public void run() {
-                        try {
-                            String[] mvn = artifact.split(":");
-                            URL base = new URL(repo + (repo.endsWith("/") ? "" : "/") + mvn[0].replace('.', '/') + "/" + mvn[1] + "/");
-                            URL metadata = new URL(base, "maven-metadata.xml");
-                            URLConnection con = metadata.openConnection();
-                            if (metadata.getUserInfo() != null) {
-                                con.setRequestProperty("Authorization", "Basic " + Base64Encoder.encode(metadata.getUserInfo()));
-                            }
-                            InputStream is = con.getInputStream();
-                            try {
-                                Document doc = dbf.newDocumentBuilder().parse(is);
-                                NodeList versions = doc.getDocumentElement().getElementsByTagName("version");
-                                for (int i = 0; i < versions.getLength(); i++) {
-                                    Node version = versions.item(i);
-                                    String v = version.getTextContent();
-                                    synchronized (locations) {
-                                        locations.add(repo + "|" + mvn[0] + "|" + mvn[1] + "|" + v);
-                                    }
-                                }
-                            } finally {
-                                close(is);
-                            }
-                        } catch (FileNotFoundException e) {
-                            // Ignore
-                        } catch (Exception e) {
-                            LOGGER.info("Error in " + repo + " - " + artifact + ": " + e.getMessage(), e);
-                        } finally {
-                            latch.countDown();
-                        }
-                    }
-                });
+        List<String> locations = new ArrayList<String>();
+        Map<String, Future<List<String>>> metadata = new LinkedHashMap<String, Future<List<String>>>();
+        for (String repo : repos) {
+            for (String artifact : artifacts) {
+                String[] mvn = artifact.split(":");
+                metadata.put(repo + "|" + mvn[0] + "|" + mvn[1], metadataCache.getVersionsAsync(repo, mvn[0], mvn[1]));
+            }
+        }
+        for (Map.Entry<String, Future<List<String>>> entry : metadata.entrySet()) {
+            try {
+                for (String v : entry.getValue().get()) {
+                    locations.add(entry.getKey() + "|" + v);
+                }
+            } catch (ExecutionException e) {
+                LOGGER.info("Error in " + entry.getKey() + ": " + e.getCause().getMessage(), e.getCause());
             }
         }
-        latch.await();
         return locations;
     }
 
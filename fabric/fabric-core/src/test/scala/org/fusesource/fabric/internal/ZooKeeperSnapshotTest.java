@@ -0,0 +1,111 @@
+/**
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.fabric.internal;
+
+import org.apache.zookeeper.AsyncCallback;
+import org.apache.zookeeper.KeeperException;
+import org.easymock.IAnswer;
+import org.fusesource.fabric.zookeeper.IZKClient;
+import org.fusesource.fabric.zookeeper.ZkPath;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ZooKeeperSnapshotTest {
+
+    IZKClient izkClient = createMock(IZKClient.class);
+    ZooKeeperSnapshot snapshot = new ZooKeeperSnapshot(izkClient);
+
+    @Before
+    public void setUp() {
+        reset(izkClient);
+    }
+
+    @Test
+    public void testPrefetchedDataIsNotReadAgain() throws Exception {
+        String ip = ZkPath.CONTAINER_IP.getPath("test");
+        String localIp = ZkPath.CONTAINER_LOCAL_IP.getPath("test");
+        String publicIp = ZkPath.CONTAINER_PUBLIC_IP.getPath("test");
+        expectGetData(ip, KeeperException.Code.OK, "${zk:test/localip}");
+        expectGetData(localIp, KeeperException.Code.OK, "10.0.0.1");
+        expectGetData(publicIp, KeeperException.Code.NONODE, null);
+        replay(izkClient);
+
+        snapshot.prefetchData(Arrays.asList(ip, localIp, publicIp));
+        assertEquals("10.0.0.1", snapshot.getSubstitutedPath(ip));
+        assertTrue(snapshot.exists(localIp));
+        assertFalse(snapshot.exists(publicIp));
+        assertNull(snapshot.getStringData(publicIp));
+        verify(izkClient);
+    }
+
+    @Test
+    public void testExistsUsesPrefetchedChildren() throws Exception {
+        String alive = "/fabric/registry/containers/alive";
+        expectGetChildren(alive, Arrays.asList("root", "child"));
+        replay(izkClient);
+
+        snapshot.prefetchChildren(Arrays.asList(alive));
+        assertTrue(snapshot.exists(ZkPath.CONTAINER_ALIVE.getPath("child")));
+        assertFalse(snapshot.exists(ZkPath.CONTAINER_ALIVE.getPath("other")));
+        verify(izkClient);
+    }
+
+    @Test
+    public void testFailedPrefetchIsReadOnDemand() throws Exception {
+        String version = ZkPath.CONFIG_CONTAINER.getPath("test");
+        expectGetData(version, KeeperException.Code.CONNECTIONLOSS, null);
+        expect(izkClient.getData(version)).andReturn("1.0".getBytes("UTF-8")).once();
+        replay(izkClient);
+
+        snapshot.prefetchData(Arrays.asList(version));
+        assertEquals("1.0", snapshot.getStringData(version));
+        assertEquals("1.0", snapshot.getStringData(version));
+        verify(izkClient);
+    }
+
+    private void expectGetData(final String path, final KeeperException.Code rc, final String value) {
+        izkClient.getData(eq(path), eq(false), isA(AsyncCallback.DataCallback.class), anyObject());
+        expectLastCall().andAnswer(new IAnswer<Object>() {
+            public Object answer() throws Throwable {
+                Object[] args = getCurrentArguments();
+                byte[] data = value != null ? value.getBytes("UTF-8") : null;
+                ((AsyncCallback.DataCallback) args[2]).processResult(rc.intValue(), path, args[3], data, null);
+                return null;
+            }
+        });
+    }
+
+    private void expectGetChildren(final String path, final List<String> children) {
+        izkClient.getChildren(eq(path), eq(false), isA(AsyncCallback.ChildrenCallback.class), anyObject());
+        expectLastCall().andAnswer(new IAnswer<Object>() {
+            public Object answer() throws Throwable {
+                Object[] args = getCurrentArguments();
+                ((AsyncCallback.ChildrenCallback) args[2]).processResult(KeeperException.Code.OK.intValue(), path, args[3], children);
+                return null;
+            }
+        });
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.fabric.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MavenMetadataCacheTest {
+
+    private static final String METADATA =
+            "<metadata><groupId>org.apache.camel</groupId><artifactId>camel-core</artifactId><version>2.10.0.fuse-71-047</version>" +
+            "<versioning><versions><version>2.10.0</version><version>2.10.0.fuse-71-047</version></versions></versioning></metadata>";
+
+    private final AtomicInteger downloads = new AtomicInteger();
+    private final AtomicInteger revalidations = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+    private HttpServer server;
+    private ExecutorService executor;
+    private MavenMetadataCache cache;
+    private String repository;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                if (!exchange.getRequestURI().getPath().equals("/repo/org/apache/camel/camel-core/maven-metadata.xml")) {
+                    misses.incrementAndGet();
+                    exchange.sendResponseHeaders(404, -1);
+                } else if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    revalidations.incrementAndGet();
+                    exchange.sendResponseHeaders(304, -1);
+                } else {
+                    downloads.incrementAndGet();
+                    byte[] body = METADATA.getBytes("UTF-8");
+                    exchange.getResponseHeaders().add("ETag", "\"v1\"");
+                    exchange.sendResponseHeaders(200, body.length);
+                    OutputStream os = exchange.getResponseBody();
+                    os.write(body);
+                    os.close();
+                }
+                exchange.close();
+            }
+        });
+        server.start();
+        repository = "http://localhost:" + server.getAddress().getPort() + "/repo";
+        executor = Executors.newFixedThreadPool(4);
+        cache = new MavenMetadataCache(executor);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testCachedMetadataIsNotDownloadedAgain() throws Exception {
+        List<String> expected = Arrays.asList("2.10.0.fuse-71-047", "2.10.0", "2.10.0.fuse-71-047");
+        assertEquals(expected, cache.getVersions(repository, "org.apache.camel", "camel-core"));
+        assertEquals(expected, cache.getVersions(repository + "/", "org.apache.camel", "camel-core"));
+        assertEquals(1, downloads.get());
+        assertEquals(0, revalidations.get());
+    }
+
+    @Test
+    public void testExpiredMetadataIsRevalidated() throws Exception {
+        cache.setTimeToLive(0);
+        List<String> first = cache.getVersions(repository, "org.apache.camel", "camel-core");
+        List<String> second = cache.getVersions(repository, "org.apache.camel", "camel-core");
+        assertEquals(first, second);
+        assertEquals(1, downloads.get());
+        assertEquals(1, revalidations.get());
+    }
+
+    @Test
+    public void testMissingMetadataIsCached() throws Exception {
+        assertEquals(Collections.<String>emptyList(), cache.getVersions(repository, "org.apache.camel", "camel-spring"));
+        assertEquals(Collections.<String>emptyList(), cache.getVersions(repository, "org.apache.camel", "camel-spring"));
+        assertEquals(1, misses.get());
+    }
+
+    @Test
+    public void testConcurrentRequestsShareOneDownload() throws Exception {
+        Future<List<String>> first = cache.getVersionsAsync(repository, "org.apache.camel", "camel-core");
+        Future<List<String>> second = cache.getVersionsAsync(repository, "org.apache.camel", "camel-core");
+        assertEquals(first.get(), second.get());
+        assertTrue("Expected a single download but got " + downloads.get(), downloads.get() == 1);
+    }
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.fabric.cxf;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The response time and success statistics of a single physical address along with its circuit breaker.
+ * <p/>
+ * The circuit opens after {@link #getFailureThreshold()} consecutive failures so that the address is not used for
+ * {@link #getOpenTime()}; after that a single trial request is let through which either closes the circuit again
+ * or re-opens it for twice as long.
+ */
+public class AddressStatistics {
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private static final int MAX_OPEN_SHIFT = 5;
+
+    private final String address;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong successCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+    private final AtomicBoolean trialInProgress = new AtomicBoolean();
+    private volatile double ewma;
+    private volatile long lastUpdate = System.nanoTime();
+    private volatile long openUntil;
+    private int consecutiveFailures;
+    private int openCount;
+
+    private int failureThreshold = 5;
+    private long openTime = 30000;
+    private long decayTime = 10000;
+
+    public AddressStatistics(String address) {
+        this.address = address;
+    }
+
+    @Override
+    public String toString() {
+        return "AddressStatistics(" + address + ", state: " + getState() + ", inFlight: " + inFlight
+                + ", ewma: " + TimeUnit.NANOSECONDS.toMicros((long) ewma) + " us)";
+    }
+
+    /**
+     * Returns true if the circuit is closed, or half open without a trial request in progress
+     */
+    public boolean isAvailable() {
+        State state = getState();
+        return state == State.CLOSED || (state == State.HALF_OPEN && !trialInProgress.get());
+    }
+
+    /**
+     * Records that a request is sent to this address, returning true if it claimed the trial request of a half
+     * open circuit, which must be passed back to {@link #requestCompleted(long, boolean, boolean)}
+     */
+    public boolean requestStarted() {
+        inFlight.incrementAndGet();
+        return getState() == State.HALF_OPEN && trialInProgress.compareAndSet(false, true);
+    }
+
+    /**
+     * @param trial the value returned by {@link #requestStarted()}, as only the trial request releases the trial
+     */
+    public void requestCompleted(long responseTime, boolean success, boolean trial) {
+        inFlight.decrementAndGet();
+        long now = System.nanoTime();
+        synchronized (this) {
+            double alpha = Math.exp(-(double) Math.max(0, now - lastUpdate) / TimeUnit.MILLISECONDS.toNanos(decayTime));
+            ewma = ewma == 0 ? responseTime : ewma * alpha + responseTime * (1 - alpha);
+            lastUpdate = now;
+            if (success) {
+                successCount.incrementAndGet();
+                consecutiveFailures = 0;
+                openCount = 0;
+                openUntil = 0;
+            } else {
+                failureCount.incrementAndGet();
+                boolean opened = openUntil != 0;
+                if (opened || (failureThreshold > 0 && ++consecutiveFailures >= failureThreshold)) {
+                    long time = TimeUnit.MILLISECONDS.toNanos(openTime) << Math.min(openCount, MAX_OPEN_SHIFT);
+                    openUntil = now + time;
+                    openCount++;
+                    consecutiveFailures = 0;
+                }
+            }
+            if (trial) {
+                trialInProgress.set(false);
+            }
+        }
+    }
+
+    public State getState() {
+        long until = openUntil;
+        if (until == 0) {
+            return State.CLOSED;
+        }
+        return System.nanoTime() - until < 0 ? State.OPEN : State.HALF_OPEN;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getSuccessCount() {
+        return successCount.get();
+    }
+
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    /**
+     * Returns the moving average of the response time in nanoseconds
+     */
+    public double getAverageResponseTime() {
+        return ewma;
+    }
+
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    public void setFailureThreshold(int failureThreshold) {
+        this.failureThreshold = failureThreshold;
+    }
+
+    public long getOpenTime() {
+        return openTime;
+    }
+
+    public void setOpenTime(long openTime) {
+        this.openTime = openTime;
+    }
+
+    public long getDecayTime() {
+        return decayTime;
+    }
+
+    public void setDecayTime(long decayTime) {
+        this.decayTime = decayTime;
+    }
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.fabric.cxf;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Returns the physical address with the lowest exponentially weighted moving average response time,
+ * scaled by the number of requests in flight so that a fast address is not flooded.
+ * <p/>
+ * Addresses without any completed requests are tried first, one request at a time, so that new members are measured.
+ */
+public class EwmaLoadBalanceStrategy extends FabricLoadBalanceStrategySupport {
+    private final Random random = new Random();
+
+    public String getNextAlternateAddress() {
+        List<String> addresses = getAvailableAddresses();
+        int size = addresses.size();
+        if (size == 0) {
+            return null;
+        }
+        int offset = random.nextInt(size);
+        String answer = null;
+        double lowest = Double.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            String address = addresses.get((offset + i) % size);
+            AddressStatistics stats = getStatistics(address);
+            double responseTime = stats.getAverageResponseTime();
+            int inFlight = stats.getInFlight();
+            // lets only send one request at a time to an address until we've measured it
+            double cost = responseTime == 0 && inFlight > 0 ? Double.MAX_VALUE / 2 : responseTime * (inFlight + 1);
+            if (answer == null || cost < lowest) {
+                answer = address;
+                lowest = cost;
+            }
+        }
+        return answer;
+    }
+}
@@ -23,30 +23,39 @@ import org.fusesource.fabric.groups.Group;
 
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
-public abstract class FabricLoadBalanceStrategySupport implements LoadBalanceStrategy {
+public abstract class FabricLoadBalanceStrategySupport implements StatisticsLoadBalanceStrategy {
     private static final transient Log LOG = LogFactory.getLog(FabricLoadBalanceStrategySupport.class);
     protected Group group;
-    protected List<String> alternateAddressList = new CopyOnWriteArrayList<String>();
+    /**
+     * An immutable snapshot of the addresses which is replaced as a whole when the group changes
+     */
+    protected volatile List<String> alternateAddressList = Collections.emptyList();
+    protected final ConcurrentMap<String, AddressStatistics> statistics = new ConcurrentHashMap<String, AddressStatistics>();
+    private int failureThreshold = 5;
+    private long openTime = 30000;
+    private long decayTime = 10000;
 
     public void setGroup(final Group group) {
         this.group = group;
         group.add(new ChangeListener(){
             @Override
             public void changed() {
-
-                alternateAddressList.clear();
+                Set<String> addresses = new LinkedHashSet<String>();
                 for (byte[] uri : group.members().values()) {
                     try {
-                        if (LOG.isDebugEnabled()) {
-                            LOG.debug("Added the CXF endpoint address " + new String(uri, "UTF-8"));
-                        }
-                        alternateAddressList.add(new String(uri, "UTF-8"));
+                        addresses.add(new String(uri, "UTF-8"));
                     } catch (UnsupportedEncodingException ignore) {
                     }
                 }
+                updateAddresses(addresses);
             }
 
             public void connected() {
@@ -64,8 +73,125 @@ public abstract class FabricLoadBalanceStrategySupport implements LoadBalanceStr
         return group;
     }
 
+    /**
+     * Returns a copy of the addresses which the caller may modify
+     */
     public List<String> getAlternateAddressList() {
-        return new ArrayList(alternateAddressList);
+        // lets put the addresses with an open circuit last so that fail over tries the healthy ones first
+        List<String> addresses = alternateAddressList;
+        List<String> answer = new ArrayList<String>(addresses.size());
+        int available = 0;
+        for (int i = 0; i < addresses.size(); i++) {
+            String address = addresses.get(i);
+            if (getStatistics(address).isAvailable()) {
+                answer.add(available++, address);
+            } else {
+                answer.add(address);
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Records that a request is being sent to the address, claiming the trial request if its circuit is half open
+     */
+    public boolean requestStarted(String address) {
+        return getStatistics(address).requestStarted();
+    }
+
+    public void requestCompleted(String address, long responseTime, boolean success, boolean trial) {
+        AddressStatistics stats = getStatistics(address);
+        AddressStatistics.State state = stats.getState();
+        stats.requestCompleted(responseTime, success, trial);
+        if (state != AddressStatistics.State.OPEN && stats.getState() == AddressStatistics.State.OPEN) {
+            LOG.warn("Opened the circuit of the CXF endpoint address " + address + " after "
+                    + (state == AddressStatistics.State.CLOSED ? failureThreshold + " consecutive failures" : "a failed trial request"));
+        }
+    }
+
+    public AddressStatistics getStatistics(String address) {
+        AddressStatistics answer = statistics.get(address);
+        if (answer == null) {
+            AddressStatistics stats = new AddressStatistics(address);
+            stats.setFailureThreshold(failureThreshold);
+            stats.setOpenTime(openTime);
+            stats.setDecayTime(decayTime);
+            answer = statistics.putIfAbsent(address, stats);
+            if (answer == null) {
+                answer = stats;
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Atomically replaces the addresses so that concurrent requests never see a partially updated list
+     */
+    protected void updateAddresses(Collection<String> addresses) {
+        List<String> answer = Collections.unmodifiableList(new ArrayList<String>(addresses));
+        if (LOG.isDebugEnabled()) {
+            for (String address : answer) {
+                if (!alternateAddressList.contains(address)) {
+                    LOG.debug("Added the CXF endpoint address " + address);
+                }
+            }
+        }
+        alternateAddressList = answer;
+        statistics.keySet().retainAll(answer);
+    }
+
+    /**
+     * Returns the addresses whose circuit is not open, or all of the addresses if every circuit is open
+     */
+    protected List<String> getAvailableAddresses() {
+        List<String> addresses = alternateAddressList;
+        List<String> answer = null;
+        for (int i = 0; i < addresses.size(); i++) {
+            String address = addresses.get(i);
+            if (!getStatistics(address).isAvailable()) {
+                if (answer == null) {
+                    answer = new ArrayList<String>(addresses.subList(0, i));
+                }
+            } else if (answer != null) {
+                answer.add(address);
+            }
+        }
+        if (answer == null) {
+            return addresses;
+        }
+        return answer.isEmpty() ? addresses : answer;
+    }
+
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    /**
+     * Sets the number of consecutive failures which opens the circuit of an address, or 0 to never open it
+     */
+    public void setFailureThreshold(int failureThreshold) {
+        this.failureThreshold = failureThreshold;
     }
 
+    public long getOpenTime() {
+        return openTime;
+    }
+
+    /**
+     * Sets the time in milliseconds the circuit of an address stays open before a trial request is sent
+     */
+    public void setOpenTime(long openTime) {
+        this.openTime = openTime;
+    }
+
+    public long getDecayTime() {
+        return decayTime;
+    }
+
+    /**
+     * Sets the time in milliseconds over which older response times stop influencing the moving average
+     */
+    public void setDecayTime(long decayTime) {
+        this.decayTime = decayTime;
+    }
 }
@@ -107,6 +107,7 @@ public class FailOverTargetSelector extends LoadBalanceTargetSelector {
                 outMessage.setContent(Exception.class, null);
                 overrideAddressProperty(invocation.getContext());
                 Retryable retry = exchange.get(Retryable.class);
+                requestCompleted(exchange, false);
                 exchange.clear();
                 if (retry != null) {
                     try {
@@ -138,12 +139,21 @@ public class FailOverTargetSelector extends LoadBalanceTargetSelector {
         }
     }
 
+    @Override
+    protected boolean isFailure(Exchange exchange) {
+        Throwable curr = getException(exchange);
+        while (curr != null) {
+            if (checkExceptionClasses(curr)) {
+                return true;
+            }
+            curr = curr.getCause();
+        }
+        return false;
+    }
+
     // Now we just fail over with the IOException
     protected boolean requiresFailOver(Exchange exchange) {
-        Message outMessage = exchange.getOutMessage();
-        Exception ex = outMessage.get(Exception.class) != null
-                       ? outMessage.get(Exception.class)
-                       : exchange.get(Exception.class);
+        Exception ex = getException(exchange);
         getLogger().log(Level.FINE,
                         "Check last invoke failed " + ex);
         Throwable curr = ex;
@@ -170,9 +180,13 @@ public class FailOverTargetSelector extends LoadBalanceTargetSelector {
 
         Endpoint failOverTarget = null;
         if (invocation.getAlternateAddresses() == null) {
-            invocation.setAlternateAddresses(getLoadBalanceStrategy().getAlternateAddressList());
-            // Remove the first one as it is used
-            invocation.getAlternateAddresses().remove(0);
+            List<String> addresses = getLoadBalanceStrategy().getAlternateAddressList();
+            // Remove the one which has just failed, or the first one as it is used
+            String failedAddress = (String) exchange.get(SELECTED_ADDRESS);
+            if ((failedAddress == null || !addresses.remove(failedAddress)) && !addresses.isEmpty()) {
+                addresses.remove(0);
+            }
+            invocation.setAlternateAddresses(addresses);
         }
         String alternateAddress = null;
         if (invocation.getAlternateAddresses().size() > 0) {
@@ -19,13 +19,16 @@ package org.fusesource.fabric.cxf;
 
 import org.fusesource.fabric.groups.Group;
 
+import java.util.List;
+
 /**
- * Always return the first physical address from the locator
+ * Always return the first physical address from the locator whose circuit is not open
  */
 public class FirstOneLoadBalanceStrategy extends FabricLoadBalanceStrategySupport {
 
     @Override
     public String getNextAlternateAddress() {
-        return alternateAddressList.get(0);
+        List<String> addresses = getAvailableAddresses();
+        return addresses.isEmpty() ? null : addresses.get(0);
     }
 }
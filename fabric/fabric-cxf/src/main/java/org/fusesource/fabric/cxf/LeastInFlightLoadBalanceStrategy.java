@@ -0,0 +1,54 @@
+/**
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.fabric.cxf;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Returns the physical address with the fewest requests in flight, using the average response times
+ * to choose between addresses with the same number
+ */
+public class LeastInFlightLoadBalanceStrategy extends FabricLoadBalanceStrategySupport {
+    private final Random random = new Random();
+
+    public String getNextAlternateAddress() {
+        List<String> addresses = getAvailableAddresses();
+        int size = addresses.size();
+        if (size == 0) {
+            return null;
+        }
+        // start at a random offset so that ties are spread across the addresses
+        int offset = random.nextInt(size);
+        String answer = null;
+        int lowestInFlight = Integer.MAX_VALUE;
+        double lowestResponseTime = Double.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            String address = addresses.get((offset + i) % size);
+            AddressStatistics stats = getStatistics(address);
+            int inFlight = stats.getInFlight();
+            double responseTime = stats.getAverageResponseTime();
+            if (answer == null || inFlight < lowestInFlight
+                    || (inFlight == lowestInFlight && responseTime < lowestResponseTime)) {
+                answer = address;
+                lowestInFlight = inFlight;
+                lowestResponseTime = responseTime;
+            }
+        }
+        return answer;
+    }
+}
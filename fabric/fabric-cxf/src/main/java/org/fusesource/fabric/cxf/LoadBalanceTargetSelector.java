@@ -37,6 +37,9 @@ public class LoadBalanceTargetSelector extends AbstractConduitSelector {
     protected LoadBalanceStrategy loadBalanceStrategy;
     
     public static final String OVERRIDE_ADDRESS = LoadBalanceTargetSelector.class.getName() + ".OVERRIDE_ADDRESS";
+    protected static final String SELECTED_ADDRESS = LoadBalanceTargetSelector.class.getName() + ".SELECTED_ADDRESS";
+    protected static final String START_TIME = LoadBalanceTargetSelector.class.getName() + ".START_TIME";
+    protected static final String TRIAL = LoadBalanceTargetSelector.class.getName() + ".TRIAL";
 
     private static final Logger LOG =
             LogUtils.getL7dLogger(FailOverTargetSelector.class);
@@ -64,6 +67,7 @@ public class LoadBalanceTargetSelector extends AbstractConduitSelector {
     }
 
     public void complete(Exchange exchange) {
+        requestCompleted(exchange, !isFailure(exchange));
         super.complete(exchange);
         // here we just reset the selectConduit for next around connection
         selectedConduit = null;
@@ -91,7 +95,11 @@ public class LoadBalanceTargetSelector extends AbstractConduitSelector {
         Exchange exchange = message.getExchange();
         EndpointInfo ei = endpoint.getEndpointInfo();
         String address = loadBalanceStrategy.getNextAlternateAddress();
-        if (overrideAddress(message)) {
+        if (address == null) {
+            throw new Fault(new IOException("No physical addresses are available for " + ei.getAddress()));
+        }
+        boolean override = overrideAddress(message);
+        if (override) {
             // We need to override the Endpoint Address here
             message.put(Message.ENDPOINT_ADDRESS, address);
         }
@@ -125,9 +133,61 @@ public class LoadBalanceTargetSelector extends AbstractConduitSelector {
         } catch (IOException ex) {
             throw new Fault(ex);
         }
+        // lets only record the request once we know which address it is actually sent to
+        if (override) {
+            requestStarted(exchange, address);
+        } else if (message.get(Message.ENDPOINT_ADDRESS) instanceof String) {
+            requestStarted(exchange, (String) message.get(Message.ENDPOINT_ADDRESS));
+        }
         return answer;
     }
 
+    /**
+     * Tells the load balance strategy that a request is being sent to the given address
+     */
+    protected void requestStarted(Exchange exchange, String address) {
+        if (loadBalanceStrategy instanceof StatisticsLoadBalanceStrategy) {
+            boolean trial = ((StatisticsLoadBalanceStrategy) loadBalanceStrategy).requestStarted(address);
+            exchange.put(SELECTED_ADDRESS, address);
+            exchange.put(TRIAL, trial);
+            exchange.put(START_TIME, System.nanoTime());
+        }
+    }
+
+    /**
+     * Tells the load balance strategy the outcome of the request started on the exchange, if any
+     */
+    protected void requestCompleted(Exchange exchange, boolean success) {
+        String address = (String) exchange.remove(SELECTED_ADDRESS);
+        Long startTime = (Long) exchange.remove(START_TIME);
+        boolean trial = Boolean.TRUE.equals(exchange.remove(TRIAL));
+        if (address != null && startTime != null && loadBalanceStrategy instanceof StatisticsLoadBalanceStrategy) {
+            ((StatisticsLoadBalanceStrategy) loadBalanceStrategy).requestCompleted(address, System.nanoTime() - startTime, success, trial);
+        }
+    }
+
+    protected Exception getException(Exchange exchange) {
+        Message outMessage = exchange.getOutMessage();
+        return outMessage != null && outMessage.get(Exception.class) != null
+               ? outMessage.get(Exception.class)
+               : exchange.get(Exception.class);
+    }
+
+    /**
+     * Returns true if the exchange failed because the address could not be reached, rather than
+     * the service returning a fault
+     */
+    protected boolean isFailure(Exchange exchange) {
+        Throwable curr = getException(exchange);
+        while (curr != null) {
+            if (curr instanceof IOException) {
+                return true;
+            }
+            curr = curr.getCause();
+        }
+        return false;
+    }
+
     public LoadBalanceStrategy getLoadBalanceStrategy() {
         return loadBalanceStrategy;
     }
@@ -16,6 +16,7 @@
  */
 package org.fusesource.fabric.cxf;
 
+import java.util.List;
 import java.util.Random;
 
 public class RandomLoadBalanceStrategy extends FabricLoadBalanceStrategySupport {
@@ -26,6 +27,10 @@ public class RandomLoadBalanceStrategy extends FabricLoadBalanceStrategySupport
     }
 
     public String getNextAlternateAddress() {
-        return alternateAddressList.get(random.nextInt(alternateAddressList.size()));
+        List<String> addresses = getAvailableAddresses();
+        if (addresses.isEmpty()) {
+            return null;
+        }
+        return addresses.get(random.nextInt(addresses.size()));
     }
 }
@@ -0,0 +1,36 @@
+/**
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.fabric.cxf;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Returns each physical address in turn, skipping the addresses whose circuit is open
+ */
+public class RoundRobinLoadBalanceStrategy extends FabricLoadBalanceStrategySupport {
+    private final AtomicInteger counter = new AtomicInteger();
+
+    public String getNextAlternateAddress() {
+        List<String> addresses = getAvailableAddresses();
+        if (addresses.isEmpty()) {
+            return null;
+        }
+        int index = (counter.getAndIncrement() & Integer.MAX_VALUE) % addresses.size();
+        return addresses.get(index);
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.fabric.cxf;
+
+/**
+ * A {@link LoadBalanceStrategy} which is told about the outcome of each request so that it can
+ * take the response times and failures of the addresses into account
+ */
+public interface StatisticsLoadBalanceStrategy extends LoadBalanceStrategy {
+
+    /**
+     * Called when a request is actually sent to the address, which must be followed by a call to
+     * {@link #requestCompleted(String, long, boolean, boolean)}
+     *
+     * @return true if the request is the trial request of a half open circuit
+     */
+    boolean requestStarted(String address);
+
+    /**
+     * @param responseTime the response time in nanoseconds
+     * @param trial the value returned by {@link #requestStarted(String)} for the request
+     */
+    void requestCompleted(String address, long responseTime, boolean success, boolean trial);
+
+    AddressStatistics getStatistics(String address);
+}
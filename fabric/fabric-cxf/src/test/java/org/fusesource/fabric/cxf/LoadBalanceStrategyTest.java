@@ -0,0 +1,144 @@
+/**
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.fabric.cxf;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class LoadBalanceStrategyTest extends Assert {
+    private static final List<String> ADDRESSES = Arrays.asList("http://a", "http://b", "http://c");
+
+    @Test
+    public void testRoundRobin() throws Exception {
+        RoundRobinLoadBalanceStrategy strategy = new RoundRobinLoadBalanceStrategy();
+        strategy.updateAddresses(ADDRESSES);
+        for (int i = 0; i < 6; i++) {
+            assertEquals(ADDRESSES.get(i % 3), strategy.getNextAlternateAddress());
+        }
+    }
+
+    @Test
+    public void testLeastInFlight() throws Exception {
+        LeastInFlightLoadBalanceStrategy strategy = new LeastInFlightLoadBalanceStrategy();
+        strategy.updateAddresses(ADDRESSES);
+        strategy.requestStarted("http://a");
+        strategy.requestStarted("http://b");
+        strategy.requestStarted("http://b");
+        strategy.requestStarted("http://c");
+        strategy.requestCompleted("http://c", 1000, true, false);
+        assertEquals("http://c", strategy.getNextAlternateAddress());
+    }
+
+    @Test
+    public void testEwmaPrefersFastAddresses() throws Exception {
+        EwmaLoadBalanceStrategy strategy = new EwmaLoadBalanceStrategy();
+        strategy.updateAddresses(ADDRESSES);
+        Map<String, Long> responseTimes = new HashMap<String, Long>();
+        responseTimes.put("http://a", 50000000L);
+        responseTimes.put("http://b", 1000000L);
+        responseTimes.put("http://c", 40000000L);
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        for (int i = 0; i < 100; i++) {
+            String address = strategy.getNextAlternateAddress();
+            strategy.requestStarted(address);
+            strategy.requestCompleted(address, responseTimes.get(address), true, false);
+            Integer count = counts.get(address);
+            counts.put(address, count == null ? 1 : count + 1);
+        }
+        assertTrue("Should mostly use the fast address but was " + counts, counts.get("http://b") > 90);
+    }
+
+    @Test
+    public void testCircuitBreaker() throws Exception {
+        FirstOneLoadBalanceStrategy strategy = new FirstOneLoadBalanceStrategy();
+        strategy.setFailureThreshold(2);
+        strategy.setOpenTime(100);
+        strategy.updateAddresses(ADDRESSES);
+        assertEquals("http://a", strategy.getNextAlternateAddress());
+
+        strategy.requestCompleted("http://a", 1000, false, false);
+        assertEquals("http://a", strategy.getNextAlternateAddress());
+        strategy.requestCompleted("http://a", 1000, false, false);
+        assertEquals(AddressStatistics.State.OPEN, strategy.getStatistics("http://a").getState());
+        assertEquals("http://b", strategy.getNextAlternateAddress());
+        assertEquals(Arrays.asList("http://b", "http://c", "http://a"), strategy.getAlternateAddressList());
+
+        // after the open time a single trial request is let through
+        Thread.sleep(150);
+        assertEquals(AddressStatistics.State.HALF_OPEN, strategy.getStatistics("http://a").getState());
+        assertEquals("http://a", strategy.getNextAlternateAddress());
+        // choosing the address does not claim the trial, only sending a request to it does
+        assertEquals("http://a", strategy.getNextAlternateAddress());
+        assertTrue(strategy.requestStarted("http://a"));
+        assertEquals("http://b", strategy.getNextAlternateAddress());
+        strategy.requestCompleted("http://a", 1000, true, true);
+        assertEquals(AddressStatistics.State.CLOSED, strategy.getStatistics("http://a").getState());
+        assertEquals("http://a", strategy.getNextAlternateAddress());
+    }
+
+    @Test
+    public void testTrialIsOnlyReleasedByTheTrialRequest() throws Exception {
+        FirstOneLoadBalanceStrategy strategy = new FirstOneLoadBalanceStrategy();
+        strategy.setFailureThreshold(1);
+        strategy.setOpenTime(100);
+        strategy.updateAddresses(ADDRESSES);
+        assertFalse(strategy.requestStarted("http://a"));
+        strategy.requestCompleted("http://a", 1000, false, false);
+        assertEquals(AddressStatistics.State.OPEN, strategy.getStatistics("http://a").getState());
+
+        Thread.sleep(150);
+        assertTrue(strategy.requestStarted("http://a"));
+        assertFalse(strategy.requestStarted("http://a"));
+        // the request which did not claim the trial fails, which opens the circuit again for twice as long
+        strategy.requestCompleted("http://a", 1000, false, false);
+        Thread.sleep(250);
+        assertEquals(AddressStatistics.State.HALF_OPEN, strategy.getStatistics("http://a").getState());
+        // but the trial is still in progress so no other trial is let through
+        assertFalse(strategy.getStatistics("http://a").isAvailable());
+        assertFalse(strategy.requestStarted("http://a"));
+
+        strategy.requestCompleted("http://a", 1000, true, true);
+        assertEquals(AddressStatistics.State.CLOSED, strategy.getStatistics("http://a").getState());
+        assertTrue(strategy.getStatistics("http://a").isAvailable());
+    }
+
+    @Test
+    public void testNoAddresses() throws Exception {
+        LoadBalanceStrategy[] strategies = {new RoundRobinLoadBalanceStrategy(), new RandomLoadBalanceStrategy(),
+                new FirstOneLoadBalanceStrategy(), new LeastInFlightLoadBalanceStrategy(), new EwmaLoadBalanceStrategy()};
+        for (LoadBalanceStrategy strategy : strategies) {
+            assertNull(strategy + " should not return an address", strategy.getNextAlternateAddress());
+        }
+    }
+
+    @Test
+    public void testUpdateAddressesKeepsStatistics() throws Exception {
+        RandomLoadBalanceStrategy strategy = new RandomLoadBalanceStrategy();
+        strategy.updateAddresses(ADDRESSES);
+        strategy.requestCompleted("http://a", 1000, true, false);
+        strategy.requestCompleted("http://c", 1000, true, false);
+        strategy.updateAddresses(Arrays.asList("http://a", "http://b"));
+        assertEquals(Arrays.asList("http://a", "http://b"), strategy.getAlternateAddressList());
+        assertEquals(1, strategy.getStatistics("http://a").getSuccessCount());
+        assertEquals(0, strategy.getStatistics("http://c").getSuccessCount());
+    }
+}
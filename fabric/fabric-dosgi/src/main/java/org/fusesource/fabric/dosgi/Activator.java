@@ -31,6 +31,7 @@ public class Activator implements LifecycleListener {
     private String uri;
     private String exportedAddress;
     private long timeout = TimeUnit.MINUTES.toMillis(5);
+    private String encoding;
     private ServiceReference reference;
     private IZKClient zookeeper;
 
@@ -50,6 +51,10 @@ public class Activator implements LifecycleListener {
         this.timeout = timeout;
     }
 
+    public void setEncoding(String encoding) {
+        this.encoding = encoding;
+    }
+
     public void destroy() {
         destroyManager();
         if (reference != null) {
@@ -88,6 +93,9 @@ public class Activator implements LifecycleListener {
         destroyManager();
         try {
             manager = new Manager(this.bundleContext, zookeeper, uri, exportedAddress, timeout);
+            if (encoding != null) {
+                manager.setEncoding(encoding);
+            }
             manager.init();
         } catch (Exception e) {
             throw new RuntimeException("Unable to start DOSGi service: " + e.getMessage(), e);
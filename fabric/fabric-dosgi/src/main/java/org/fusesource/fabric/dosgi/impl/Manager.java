@@ -22,7 +22,9 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
@@ -30,6 +32,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.zookeeper.CreateMode;
@@ -103,6 +106,15 @@ public class Manager implements ServiceListener, ListenerHook, EventHook, FindHo
 
     private final Map<ListenerInfo, SimpleFilter> listeners;
 
+    // Listeners indexed by the interfaces their filter requires, so that only candidate filters are evaluated
+    private final ConcurrentMap<String, Set<ListenerInfo>> listenersByInterface;
+
+    // Listeners whose filter does not require any specific interface
+    private final Set<ListenerInfo> unindexedListeners;
+
+    // Endpoints by zookeeper path, so that deleted nodes don't need to be parsed
+    private final Map<String, EndpointDescription> endpointsByPath;
+
     private final Map<String, SerializationStrategy> serializationStrategies;
 
 
@@ -118,6 +130,8 @@ public class Manager implements ServiceListener, ListenerHook, EventHook, FindHo
 
     private ServerInvoker server;
 
+    private String encoding = Utils.ENCODING_XML;
+
     public Manager(BundleContext context, IZKClient zooKeeper) throws Exception {
         this(context, zooKeeper, "tcp://0.0.0.0:2543", null, TimeUnit.MINUTES.toMillis(5));
     }
@@ -127,6 +141,9 @@ public class Manager implements ServiceListener, ListenerHook, EventHook, FindHo
         this.importedServices = new ConcurrentHashMap<EndpointDescription, Map<Long, ImportRegistration>>();
         this.exportedServices = new ConcurrentHashMap<ServiceReference, ExportRegistration>();
         this.listeners = new ConcurrentHashMap<ListenerInfo, SimpleFilter>();
+        this.listenersByInterface = new ConcurrentHashMap<String, Set<ListenerInfo>>();
+        this.unindexedListeners = Collections.newSetFromMap(new ConcurrentHashMap<ListenerInfo, Boolean>());
+        this.endpointsByPath = new ConcurrentHashMap<String, EndpointDescription>();
         this.serializationStrategies = new ConcurrentHashMap<String, SerializationStrategy>();
         this.remoteEndpoints = new CapabilitySet<EndpointDescription>(
                 Arrays.asList(Constants.OBJECTCLASS, ENDPOINT_FRAMEWORK_UUID), false);
@@ -220,6 +237,7 @@ public class Manager implements ServiceListener, ListenerHook, EventHook, FindHo
             String filter = "(&" + listenerInfo.getFilter() + "(!(" + ENDPOINT_FRAMEWORK_UUID + "=" + this.uuid + ")))";
             SimpleFilter exFilter = SimpleFilter.parse(filter);
             listeners.put(listenerInfo, exFilter);
+            indexListener(listenerInfo, exFilter);
             // Iterate through known services and import them if needed
             Set<EndpointDescription> matches = remoteEndpoints.match(exFilter);
             for (EndpointDescription endpoint : matches) {
@@ -236,6 +254,10 @@ public class Manager implements ServiceListener, ListenerHook, EventHook, FindHo
                 continue;
             }
             SimpleFilter exFilter = listeners.remove(listenerInfo);
+            if (exFilter == null) {
+                continue;
+            }
+            unindexListener(listenerInfo, exFilter);
             // Iterate through known services and dereference them if needed
             Set<EndpointDescription> matches = remoteEndpoints.match(exFilter);
             for (EndpointDescription endpoint : matches) {
@@ -305,17 +327,20 @@ public class Manager implements ServiceListener, ListenerHook, EventHook, FindHo
                 switch (event.getEventType()) {
                     case ADDED: {
                         EndpointDescription endpoint = Utils.getEndpointDescription(event.getData());
+                        endpointsByPath.put(event.getPath(), endpoint);
                         remoteEndpoints.addCapability(endpoint);
                         // Check existing listeners
-                        for (Map.Entry<ListenerInfo, SimpleFilter> entry : listeners.entrySet()) {
-                            if (CapabilitySet.matches(endpoint, entry.getValue())) {
-                                doImportService(endpoint, entry.getKey());
+                        for (ListenerInfo listener : getCandidateListeners(endpoint)) {
+                            SimpleFilter filter = listeners.get(listener);
+                            if (filter != null && CapabilitySet.matches(endpoint, filter)) {
+                                doImportService(endpoint, listener);
                             }
                         }
                     }
                     break;
                     case UPDATED: {
                         EndpointDescription endpoint = Utils.getEndpointDescription(event.getData());
+                        endpointsByPath.put(event.getPath(), endpoint);
                         Map<Long, ImportRegistration> registrations = importedServices.get(endpoint);
                         if (registrations != null) {
                             for (ImportRegistration reg : registrations.values()) {
@@ -325,7 +350,10 @@ public class Manager implements ServiceListener, ListenerHook, EventHook, FindHo
                     }
                     break;
                     case DELETED: {
-                        EndpointDescription endpoint = Utils.getEndpointDescription(event.getData());
+                        EndpointDescription endpoint = endpointsByPath.remove(event.getPath());
+                        if (endpoint == null) {
+                            endpoint = Utils.getEndpointDescription(event.getData());
+                        }
                         remoteEndpoints.removeCapability(endpoint);
                         Map<Long, ImportRegistration> registrations = importedServices.remove(endpoint);
                         if (registrations != null) {
@@ -428,13 +456,111 @@ public class Manager implements ServiceListener, ListenerHook, EventHook, FindHo
             }
         }, AriesFrameworkUtil.getClassLoader(reference.getBundle()));
 
-        String descStr = Utils.getEndpointDescriptionXML(description);
+        String descStr = Utils.getEndpointDescription(description, encoding);
         // Publish in ZooKeeper
         final String nodePath = zooKeeper.create(DOSGI_REGISTRY + "/" + uuid, descStr, CreateMode.EPHEMERAL);
         // Return
         return new ExportRegistration(reference, description, nodePath);
     }
 
+    //
+    // Listener index
+    //
+
+    protected void indexListener(ListenerInfo listener, SimpleFilter filter) {
+        Set<String> interfaces = getRequiredInterfaces(filter);
+        if (interfaces == null) {
+            unindexedListeners.add(listener);
+        } else {
+            for (String name : interfaces) {
+                Set<ListenerInfo> set = listenersByInterface.get(name);
+                if (set == null) {
+                    set = Collections.newSetFromMap(new ConcurrentHashMap<ListenerInfo, Boolean>());
+                    Set<ListenerInfo> existing = listenersByInterface.putIfAbsent(name, set);
+                    if (existing != null) {
+                        set = existing;
+                    }
+                }
+                set.add(listener);
+            }
+        }
+    }
+
+    protected void unindexListener(ListenerInfo listener, SimpleFilter filter) {
+        Set<String> interfaces = getRequiredInterfaces(filter);
+        if (interfaces == null) {
+            unindexedListeners.remove(listener);
+        } else {
+            for (String name : interfaces) {
+                Set<ListenerInfo> set = listenersByInterface.get(name);
+                if (set != null) {
+                    set.remove(listener);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the listeners that may be interested in the endpoint, the others can not match its interfaces.
+     */
+    protected Set<ListenerInfo> getCandidateListeners(EndpointDescription endpoint) {
+        Set<ListenerInfo> candidates = new HashSet<ListenerInfo>(unindexedListeners);
+        for (String name : endpoint.getInterfaces()) {
+            Set<ListenerInfo> set = listenersByInterface.get(name);
+            if (set != null) {
+                candidates.addAll(set);
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Returns the interfaces of which a service must provide at least one to match the filter,
+     * or null if the filter does not require any specific interface.
+     */
+    @SuppressWarnings("unchecked")
+    static Set<String> getRequiredInterfaces(SimpleFilter filter) {
+        switch (filter.getOperation()) {
+            case SimpleFilter.EQ:
+                if (Constants.OBJECTCLASS.equalsIgnoreCase(filter.getName()) && filter.getValue() instanceof String) {
+                    return Collections.singleton((String) filter.getValue());
+                }
+                return null;
+            case SimpleFilter.AND:
+                for (SimpleFilter child : (List<SimpleFilter>) filter.getValue()) {
+                    Set<String> interfaces = getRequiredInterfaces(child);
+                    if (interfaces != null) {
+                        return interfaces;
+                    }
+                }
+                return null;
+            case SimpleFilter.OR:
+                Set<String> union = new HashSet<String>();
+                for (SimpleFilter child : (List<SimpleFilter>) filter.getValue()) {
+                    Set<String> interfaces = getRequiredInterfaces(child);
+                    if (interfaces == null) {
+                        return null;
+                    }
+                    union.addAll(interfaces);
+                }
+                return union;
+            default:
+                return null;
+        }
+    }
+
+    public String getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * Sets the encoding of the exported endpoints, either xml or json. Both are always readable, but json should
+     * only be used once the fabric no longer contains containers that can't read it, so xml is the default.
+     */
+    public void setEncoding(String encoding) {
+        this.encoding = encoding;
+    }
+
     //
     // Import logic
     //
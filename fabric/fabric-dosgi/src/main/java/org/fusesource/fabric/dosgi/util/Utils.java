@@ -151,7 +151,125 @@ public class Utils {
         xml.writeAttribute(VALUE_TYPE, dataType);
     }
 
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    public static final String ENCODING_JSON = "json";
+    public static final String ENCODING_XML = "xml";
+
+    private static final String JSON_LIST = "list";
+    private static final String JSON_SET = "set";
+    private static final String JSON_ARRAY_SUFFIX = "[]";
+
+    /**
+     * Encodes the endpoint in the given encoding, either {@link #ENCODING_JSON} or {@link #ENCODING_XML}, which is
+     * used for any other value.
+     */
+    public static String getEndpointDescription(EndpointDescription endpoint, String encoding) throws XMLStreamException {
+        if (ENCODING_JSON.equalsIgnoreCase(encoding)) {
+            return getEndpointDescriptionJSON(endpoint);
+        } else {
+            return getEndpointDescriptionXML(endpoint);
+        }
+    }
+
+    /**
+     * Encodes the endpoint as a compact JSON object, where each property is either a string, or an array holding the
+     * value type followed by the values, e.g. <code>{"objectClass":["String[]","org.foo.Bar"],"ints":["int[]","1","2"]}</code>.
+     * List and set values start with <code>"list"</code> or <code>"set"</code>, followed by their elements.
+     */
+    public static String getEndpointDescriptionJSON(EndpointDescription endpoint) {
+        StringBuilder sb = new StringBuilder();
+        sb.append('{');
+        boolean first = true;
+        for (Map.Entry<String, Object> entry : endpoint.getProperties().entrySet()) {
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            writeJsonString(sb, entry.getKey());
+            sb.append(':');
+            Object val = entry.getValue();
+            if (val.getClass().isArray()) {
+                sb.append('[');
+                writeJsonString(sb, getTypeName(val.getClass().getComponentType().getName()) + JSON_ARRAY_SUFFIX);
+                for (int i = 0, l = Array.getLength(val); i < l; i++) {
+                    sb.append(',');
+                    writeJsonString(sb, Array.get(val, i).toString());
+                }
+                sb.append(']');
+            } else if (val instanceof List || val instanceof Set) {
+                sb.append('[');
+                writeJsonString(sb, val instanceof List ? JSON_LIST : JSON_SET);
+                for (Object o : (Collection) val) {
+                    sb.append(',');
+                    writeJsonValue(sb, o);
+                }
+                sb.append(']');
+            } else {
+                writeJsonValue(sb, val);
+            }
+        }
+        sb.append('}');
+        return sb.toString();
+    }
+
+    private static void writeJsonValue(StringBuilder sb, Object val) {
+        if (val instanceof String) {
+            writeJsonString(sb, (String) val);
+        } else {
+            sb.append('[');
+            writeJsonString(sb, getTypeName(val.getClass().getName()));
+            sb.append(',');
+            writeJsonString(sb, val.toString());
+            sb.append(']');
+        }
+    }
+
+    private static void writeJsonString(StringBuilder sb, String str) {
+        sb.append('"');
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+
+    private static String getTypeName(String dataType) {
+        if (dataType.startsWith("java.lang.")) {
+            dataType = dataType.substring("java.lang.".length());
+        }
+        return dataType;
+    }
+
+    /**
+     * Decodes an endpoint encoded either in JSON or in XML.
+     */
     public static EndpointDescription getEndpointDescription(String data) throws XMLStreamException {
+        if (isJson(data)) {
+            return getEndpointDescriptionFromJSON(data);
+        }
         List<EndpointDescription> endpoints = getEndpointDescriptions(data);
         if (endpoints == null || endpoints.size() != 1) {
             throw new IllegalArgumentException();
@@ -167,7 +285,7 @@ public class Utils {
         String value = null;
         Object val = null;
         String txt = null;
-        XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(data));
+        XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(new StringReader(data));
         for (;;) {
             int code = reader.next();
             switch (code) {
@@ -228,6 +346,157 @@ public class Utils {
         }
     }
 
+    private static boolean isJson(String data) {
+        for (int i = 0; i < data.length(); i++) {
+            char c = data.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                return c == '{';
+            }
+        }
+        return false;
+    }
+
+    public static EndpointDescription getEndpointDescriptionFromJSON(String data) {
+        JsonReader reader = new JsonReader(data);
+        Map<String, Object> properties = new HashMap<String, Object>();
+        reader.expect('{');
+        if (!reader.consume('}')) {
+            do {
+                String key = reader.readString();
+                reader.expect(':');
+                properties.put(key, readJsonProperty(reader));
+            } while (reader.consume(','));
+            reader.expect('}');
+        }
+        return new EndpointDescription(properties);
+    }
+
+    private static Object readJsonProperty(JsonReader reader) {
+        if (!reader.consume('[')) {
+            return reader.readString();
+        }
+        String type = reader.readString();
+        Object val;
+        if (JSON_LIST.equals(type) || JSON_SET.equals(type)) {
+            Collection<Object> collection = JSON_LIST.equals(type) ? new ArrayList<Object>() : new HashSet<Object>();
+            while (reader.consume(',')) {
+                if (reader.consume('[')) {
+                    String elementType = reader.readString();
+                    reader.expect(',');
+                    collection.add(instantiate(elementType, reader.readString()));
+                    reader.expect(']');
+                } else {
+                    collection.add(reader.readString());
+                }
+            }
+            val = collection;
+        } else if (type.endsWith(JSON_ARRAY_SUFFIX)) {
+            String componentType = type.substring(0, type.length() - JSON_ARRAY_SUFFIX.length());
+            List<Object> values = new ArrayList<Object>();
+            while (reader.consume(',')) {
+                values.add(instantiate(componentType, reader.readString()));
+            }
+            Class cls = TYPES.get(componentType);
+            if (cls == null) {
+                throw new IllegalArgumentException("Unsupported array type " + type);
+            }
+            val = Array.newInstance(cls, values.size());
+            for (int i = 0; i < values.size(); i++) {
+                Array.set(val, i, values.get(i));
+            }
+        } else {
+            reader.expect(',');
+            val = instantiate(type, reader.readString());
+        }
+        reader.expect(']');
+        return val;
+    }
+
+    /**
+     * A minimal reader for the subset of JSON used by the endpoint encoding: objects, arrays and strings.
+     */
+    private static class JsonReader {
+        private final String data;
+        private int pos;
+
+        private JsonReader(String data) {
+            this.data = data;
+        }
+
+        private void skipWhitespace() {
+            while (pos < data.length() && Character.isWhitespace(data.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private boolean consume(char c) {
+            skipWhitespace();
+            if (pos < data.length() && data.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) {
+            if (!consume(c)) {
+                throw new IllegalArgumentException("Expected '" + c + "' at position " + pos);
+            }
+        }
+
+        private String readString() {
+            expect('"');
+            StringBuilder sb = null;
+            int start = pos;
+            while (pos < data.length()) {
+                char c = data.charAt(pos++);
+                if (c == '"') {
+                    if (sb == null) {
+                        return data.substring(start, pos - 1);
+                    }
+                    return sb.toString();
+                }
+                if (sb == null && c == '\\') {
+                    sb = new StringBuilder(data.substring(start, pos - 1));
+                }
+                if (sb != null) {
+                    if (c == '\\') {
+                        if (pos >= data.length()) {
+                            break;
+                        }
+                        char e = data.charAt(pos++);
+                        switch (e) {
+                            case 'n':
+                                sb.append('\n');
+                                break;
+                            case 'r':
+                                sb.append('\r');
+                                break;
+                            case 't':
+                                sb.append('\t');
+                                break;
+                            case 'b':
+                                sb.append('\b');
+                                break;
+                            case 'f':
+                                sb.append('\f');
+                                break;
+                            case 'u':
+                                sb.append((char) Integer.parseInt(data.substring(pos, pos + 4), 16));
+                                pos += 4;
+                                break;
+                            default:
+                                sb.append(e);
+                        }
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+            throw new IllegalArgumentException("Unterminated string at position " + start);
+        }
+    }
+
     private static final Map<String, Class> TYPES;
     static {
         Map<String, Class> types = new HashMap<String, Class>();
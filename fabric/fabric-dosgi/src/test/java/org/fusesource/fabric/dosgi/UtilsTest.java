@@ -63,4 +63,33 @@ public class UtilsTest {
         assertEquals(3, ((int[]) endpoint2.getProperties().get("ints"))[2]);
     }
 
+    @Test
+    public void testJson() throws Exception {
+
+        Map<String, Object> props = new HashMap<String, Object>();
+        props.put(Constants.OBJECTCLASS, new String[] { BundleActivator.class.getName() });
+        props.put("protocols", new String[]{"foo", "b\"a\\r"});
+        props.put("ints", new int[]{1, 2, 3});
+        props.put("count", 5L);
+        props.put("endpoint.id", "identifier");
+        props.put("service.imported.configs", Collections.<Object>singletonList(Manager.CONFIG));
+        EndpointDescription endpoint1 = new EndpointDescription(props);
+
+        String json = Utils.getEndpointDescriptionJSON(endpoint1);
+
+        EndpointDescription endpoint2 = Utils.getEndpointDescription(json);
+
+        assertNotNull(endpoint2);
+        assertEquals(1, endpoint2.getInterfaces().size());
+        assertEquals(BundleActivator.class.getName(), endpoint2.getInterfaces().get(0));
+        assertEquals("identifier", endpoint2.getId());
+        assertEquals(2, ((String[]) endpoint2.getProperties().get("protocols")).length);
+        assertEquals("foo", ((String[]) endpoint2.getProperties().get("protocols"))[0]);
+        assertEquals("b\"a\\r", ((String[]) endpoint2.getProperties().get("protocols"))[1]);
+        assertEquals(3, ((int[]) endpoint2.getProperties().get("ints")).length);
+        assertEquals(3, ((int[]) endpoint2.getProperties().get("ints"))[2]);
+        assertEquals(5L, endpoint2.getProperties().get("count"));
+        assertEquals(Collections.singletonList(Manager.CONFIG), endpoint2.getProperties().get("service.imported.configs"));
+    }
+
 }
@@ -1,23 +1,33 @@
 package org.fusesource.fabric.features;
 
+import java.io.File;
 import java.net.URI;
-import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.felix.utils.version.VersionCleaner;
 
 import org.apache.karaf.features.Feature;
 import org.apache.karaf.features.FeaturesService;
 import org.apache.karaf.features.Repository;
 import org.apache.karaf.features.internal.FeatureValidationUtil;
 import org.apache.karaf.features.internal.FeaturesServiceImpl;
-import org.apache.karaf.features.internal.RepositoryImpl;
 import org.apache.zookeeper.KeeperException;
 import org.fusesource.fabric.api.Container;
 import org.fusesource.fabric.api.FabricService;
@@ -47,23 +57,36 @@ public class FabricFeaturesServiceImpl implements FeaturesService, NodeEventsLis
 
     private ZooKeeperTreeTracker<String> profilesTracker;
 
+    private File cacheDirectory = new File(System.getProperty("karaf.data", "data"), "fabric-features");
+    private int parserThreads = 4;
+
+    private RepositoryCache repositoryCache;
+    private ExecutorService parserExecutor;
 
-    private final Set<Repository> repositories = new HashSet<Repository>();
-    private final Set<Feature> allfeatures = new HashSet<Feature>();
-    private final Set<Feature> installed = new HashSet<Feature>();
+    /**
+     * Incremented on every registry event, the catalog is refreshed on the next read if it is older.
+     */
+    private final AtomicLong generation = new AtomicLong();
+    private final Object refreshLock = new Object();
+    private volatile Catalog catalog;
 
     public void init() throws Exception {
+        repositoryCache = new RepositoryCache(cacheDirectory);
+        parserExecutor = Executors.newFixedThreadPool(parserThreads);
     }
 
     public void destroy() throws Exception {
-        profilesTracker.destroy();
+        if (profilesTracker != null) {
+            profilesTracker.destroy();
+        }
+        if (parserExecutor != null) {
+            parserExecutor.shutdownNow();
+        }
     }
 
     @Override
-    public synchronized void onEvents(Collection<NodeEvent<String>> nodeEvents) {
-        repositories.clear();
-        allfeatures.clear();
-        installed.clear();
+    public void onEvents(Collection<NodeEvent<String>> nodeEvents) {
+        generation.incrementAndGet();
     }
 
     @Override
@@ -118,32 +141,8 @@ public class FabricFeaturesServiceImpl implements FeaturesService, NodeEventsLis
      * @return
      */
     @Override
-    public synchronized Repository[] listRepositories() {
-        if (repositories.isEmpty()) {
-            Set<String> repositoryUris = new LinkedHashSet<String>();
-            Container container = fabricService.getCurrentContainer();
-            Version version = container.getVersion();
-            Profile[] profiles = fabricService.getProfiles(version.getName());
-            if (profiles != null) {
-                for (Profile profile : profiles) {
-                    if (profile.getRepositories() != null) {
-                        for (String uri : profile.getRepositories()) {
-                            repositoryUris.add(uri);
-                            addRepositoryUri(uri, repositoryUris);
-                        }
-                    }
-                }
-            }
-
-            for (String uri : repositoryUris) {
-                try {
-                    repositories.add(new RepositoryImpl(new URI(uri)));
-                } catch (URISyntaxException e) {
-                    LOGGER.debug("Error while adding repository with uri {}.", uri);
-                }
-            }
-        }
-        return repositories.toArray(new Repository[repositories.size()]);
+    public Repository[] listRepositories() {
+        return getCatalog().repositories;
     }
 
     @Override
@@ -199,90 +198,30 @@ public class FabricFeaturesServiceImpl implements FeaturesService, NodeEventsLis
     }
 
     @Override
-    public synchronized Feature[] listFeatures() throws Exception {
-        if (allfeatures.isEmpty()) {
-            Repository[] repositories = listRepositories();
-            for (Repository repository : repositories) {
-                try {
-                    for (Feature feature : repository.getFeatures()) {
-                        if (!allfeatures.contains(feature)) {
-                            allfeatures.add(feature);
-                        }
-                    }
-                } catch (Exception ex) {
-                    LOGGER.debug("Could not load features from %s.", repository.getURI());
-                }
-            }
-        }
-        return allfeatures.toArray(new Feature[allfeatures.size()]);
+    public Feature[] listFeatures() throws Exception {
+        return getCatalog().features;
     }
 
     @Override
-    public synchronized Feature[] listInstalledFeatures() {
-        if (installed.isEmpty()) {
-            try {
-                Map<String, Map<String, Feature>> allFeatures = getFeatures(listProfileRepositories());
-                Container container = fabricService.getCurrentContainer();
-                Profile[] profiles = container.getProfiles();
-
-                if (profiles != null) {
-                    for (Profile profile : profiles) {
-                        List<String> featureNames = profile.getFeatures();
-                        for (String featureName : featureNames) {
-                            try {
-                                Feature f;
-                                if (featureName.contains("/")) {
-                                    String[] parts = featureName.split("/");
-                                    String name = parts[0];
-                                    String version = parts[1];
-                                    f = allFeatures.get(name).get(version);
-                                } else {
-                                    TreeMap<String, Feature> versionMap = (TreeMap<String, Feature>) allFeatures.get(featureName);
-                                    f = versionMap.lastEntry().getValue();
-                                }
-                                addFeatures(f, installed);
-                            } catch (Exception ex) {
-                                LOGGER.debug("Error while adding {} to the features list");
-                            }
-                        }
-                    }
-                }
-            } catch (Exception e) {
-                LOGGER.error("Error retrieveing features.", e);
-            }
-        }
+    public Feature[] listInstalledFeatures() {
+        Set<Feature> installed = getCatalog().installed;
         return installed.toArray(new Feature[installed.size()]);
     }
 
 
     @Override
-    public synchronized boolean isInstalled(Feature feature) {
-        if (installed.isEmpty()) {
-            listInstalledFeatures();
-        }
-        return installed.contains(feature);
+    public boolean isInstalled(Feature feature) {
+        return getCatalog().installed.contains(feature);
     }
 
     @Override
     public Feature getFeature(String name) throws Exception {
-        Feature[] features = listFeatures();
-        for (Feature feature : features) {
-            if (name.equals(feature.getName())) {
-                return feature;
-            }
-        }
-        return null;
+        return getCatalog().getFeature(name);
     }
 
     @Override
     public Feature getFeature(String name, String version) throws Exception {
-        Feature[] features = listFeatures();
-        for (Feature feature : features) {
-            if (name.equals(feature.getName()) && version.equals(feature.getVersion())) {
-                return feature;
-            }
-        }
-        return null;
+        return getCatalog().getFeature(name, version);
     }
 
 
@@ -312,39 +251,181 @@ public class FabricFeaturesServiceImpl implements FeaturesService, NodeEventsLis
 
 
     /**
-     * Lists all {@link Repository} enties found in the {@link Profile}s assigned to the current {@link Container}.
+     * Returns the current {@link Catalog}, refreshing it first if the registry has changed since it was built.
+     * Reads of an up to date catalog don't lock.
      *
      * @return
      */
-    private Repository[] listProfileRepositories() {
-        Set<String> repositoryUris = new LinkedHashSet<String>();
-        Set<Repository> repositories = new LinkedHashSet<Repository>();
-        Container container = fabricService.getCurrentContainer();
-        Set<Profile> profilesWithParents = new HashSet<Profile>();
+    protected Catalog getCatalog() {
+        Catalog current = catalog;
+        if (current != null && current.generation == generation.get()) {
+            return current;
+        }
+        synchronized (refreshLock) {
+            current = catalog;
+            long target = generation.get();
+            if (current == null || current.generation != target) {
+                current = refresh(current, target);
+                catalog = current;
+            }
+            return current;
+        }
+    }
 
-        Profile[] profiles = container.getProfiles();
+    /**
+     * Builds a new {@link Catalog} from the previous one. Only the repositories that have been added or whose content
+     * has changed are parsed, and only their features are re-indexed.
+     */
+    private Catalog refresh(Catalog previous, long target) {
+        Container container = fabricService.getCurrentContainer();
+        Version version = container.getVersion();
+        Set<String> rootUris = new LinkedHashSet<String>();
+        Profile[] profiles = fabricService.getProfiles(version.getName());
         if (profiles != null) {
             for (Profile profile : profiles) {
-                addProfiles(profile, profilesWithParents);
-            }
-            for (Profile profile : profilesWithParents) {
                 if (profile.getRepositories() != null) {
-                    for (String uri : profile.getRepositories()) {
-                        repositoryUris.add(uri);
-                        addRepositoryUri(uri, repositoryUris);
+                    rootUris.addAll(profile.getRepositories());
+                }
+            }
+        }
+
+        Map<String, Repository> repositories = loadRepositories(rootUris);
+        repositoryCache.retainAll(repositories.keySet());
+
+        Map<String, Repository> previousRepositories = previous != null ? previous.repositoryMap : Collections.<String, Repository>emptyMap();
+        Map<String, NavigableMap<String, Feature>> index = previous != null
+                ? new HashMap<String, NavigableMap<String, Feature>>(previous.index)
+                : new HashMap<String, NavigableMap<String, Feature>>();
+        Set<String> copied = new HashSet<String>();
+        Set<String> removed = new HashSet<String>();
+        for (Map.Entry<String, Repository> entry : previousRepositories.entrySet()) {
+            if (repositories.get(entry.getKey()) != entry.getValue()) {
+                for (Feature feature : getFeatures(entry.getValue())) {
+                    NavigableMap<String, Feature> versions = getVersionsForUpdate(index, copied, feature.getName());
+                    if (versions.get(feature.getVersion()) == feature) {
+                        versions.remove(feature.getVersion());
+                        removed.add(feature.getName());
+                    }
+                    if (versions.isEmpty()) {
+                        index.remove(feature.getName());
                     }
                 }
             }
         }
+        for (Map.Entry<String, Repository> entry : repositories.entrySet()) {
+            //A removed feature may still be defined by another repository, so its name is indexed again from all of them.
+            boolean changed = previousRepositories.get(entry.getKey()) != entry.getValue();
+            if (changed || !removed.isEmpty()) {
+                for (Feature feature : getFeatures(entry.getValue())) {
+                    if (changed || removed.contains(feature.getName())) {
+                        getVersionsForUpdate(index, copied, feature.getName()).put(feature.getVersion(), feature);
+                    }
+                }
+            }
+        }
+        Catalog next = new Catalog(target, repositories, index);
+        next.installed = getInstalledFeatures(next);
+        return next;
+    }
 
-        for (String uri : repositoryUris) {
-            try {
-                repositories.add(new RepositoryImpl(new URI(uri)));
-            } catch (URISyntaxException e) {
-                LOGGER.debug("Error while adding repository with uri {}.", uri);
+    /**
+     * Loads the repositories of the uris and the repositories they refer to. Each level of references is parsed in parallel.
+     */
+    private Map<String, Repository> loadRepositories(Set<String> rootUris) {
+        Map<String, Repository> repositories = new LinkedHashMap<String, Repository>();
+        Set<String> seen = new HashSet<String>(rootUris);
+        List<String> level = new ArrayList<String>(rootUris);
+        while (!level.isEmpty()) {
+            Map<String, Future<Repository>> futures = new LinkedHashMap<String, Future<Repository>>();
+            for (final String uri : level) {
+                futures.put(uri, parserExecutor.submit(new Callable<Repository>() {
+                    @Override
+                    public Repository call() throws Exception {
+                        return repositoryCache.get(uri);
+                    }
+                }));
             }
+            List<String> next = new ArrayList<String>();
+            for (Map.Entry<String, Future<Repository>> entry : futures.entrySet()) {
+                try {
+                    Repository repository = entry.getValue().get();
+                    repositories.put(entry.getKey(), repository);
+                    URI[] internalUris = repository.getRepositories();
+                    if (internalUris != null) {
+                        for (URI u : internalUris) {
+                            if (seen.add(u.toString())) {
+                                next.add(u.toString());
+                            }
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while loading features repositories.", e);
+                } catch (Exception e) {
+                    LOGGER.debug("Error while adding repository with uri {}.", entry.getKey());
+                }
+            }
+            level = next;
+        }
+        return repositories;
+    }
+
+    /**
+     * Resolves the features of the {@link Profile}s assigned to the current {@link Container} and their dependencies,
+     * using only the {@link Repository} entries of those profiles.
+     */
+    private Set<Feature> getInstalledFeatures(Catalog catalog) {
+        Set<Feature> installed = new HashSet<Feature>();
+        try {
+            Container container = fabricService.getCurrentContainer();
+            Profile[] profiles = container.getProfiles();
+            if (profiles != null) {
+                Set<Profile> profilesWithParents = new HashSet<Profile>();
+                for (Profile profile : profiles) {
+                    addProfiles(profile, profilesWithParents);
+                }
+                Set<String> repositoryUris = new LinkedHashSet<String>();
+                for (Profile profile : profilesWithParents) {
+                    if (profile.getRepositories() != null) {
+                        for (String uri : profile.getRepositories()) {
+                            addRepositoryUri(uri, repositoryUris, catalog);
+                        }
+                    }
+                }
+                List<Repository> repositories = new ArrayList<Repository>();
+                for (String uri : repositoryUris) {
+                    Repository repository = catalog.repositoryMap.get(uri);
+                    if (repository != null) {
+                        repositories.add(repository);
+                    }
+                }
+                Map<String, Map<String, Feature>> allFeatures = getFeatures(repositories.toArray(new Repository[repositories.size()]));
+
+                for (Profile profile : profiles) {
+                    List<String> featureNames = profile.getFeatures();
+                    for (String featureName : featureNames) {
+                        try {
+                            Feature f;
+                            if (featureName.contains("/")) {
+                                String[] parts = featureName.split("/");
+                                String name = parts[0];
+                                String version = parts[1];
+                                f = allFeatures.get(name).get(version);
+                            } else {
+                                TreeMap<String, Feature> versionMap = (TreeMap<String, Feature>) allFeatures.get(featureName);
+                                f = versionMap.lastEntry().getValue();
+                            }
+                            addFeatures(f, installed, repositories);
+                        } catch (Exception ex) {
+                            LOGGER.debug("Error while adding {} to the features list", featureName);
+                        }
+                    }
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.error("Error retrieveing features.", e);
         }
-        return repositories.toArray(new Repository[repositories.size()]);
+        return Collections.unmodifiableSet(installed);
     }
 
 
@@ -353,18 +434,19 @@ public class FabricFeaturesServiceImpl implements FeaturesService, NodeEventsLis
      *
      * @param uri
      * @param repositoryUris
+     * @param catalog
      */
-    protected void addRepositoryUri(String uri, Set<String> repositoryUris) {
+    protected void addRepositoryUri(String uri, Set<String> repositoryUris, Catalog catalog) {
         if (repositoryUris.contains(uri)) {
             return;
         }
         repositoryUris.add(uri);
         try {
-            Repository repository = new RepositoryImpl(new URI(uri));
-            URI[] internalUris = repository.getRepositories();
+            Repository repository = catalog.repositoryMap.get(uri);
+            URI[] internalUris = repository != null ? repository.getRepositories() : null;
             if (internalUris != null) {
                 for (URI u : internalUris) {
-                    addRepositoryUri(u.toString(), repositoryUris);
+                    addRepositoryUri(u.toString(), repositoryUris, catalog);
                 }
             }
         } catch (Exception e) {
@@ -395,14 +477,94 @@ public class FabricFeaturesServiceImpl implements FeaturesService, NodeEventsLis
      * @param feature
      * @param features
      */
-    protected void addFeatures(Feature feature, Set<Feature> features) {
+    protected void addFeatures(Feature feature, Set<Feature> features, Collection<Repository> repositories) {
         if (features.contains(feature)) {
             return;
         }
 
         features.add(feature);
         for (Feature dependency : feature.getDependencies()) {
-            addFeatures(search(dependency.getName(), dependency.getVersion(), repositories), features);
+            addFeatures(search(dependency.getName(), dependency.getVersion(), repositories), features, repositories);
+        }
+    }
+
+    private static Feature[] getFeatures(Repository repository) {
+        try {
+            return repository.getFeatures();
+        } catch (Exception ex) {
+            LOGGER.debug("Could not load features from {}.", repository.getURI());
+            return new Feature[0];
+        }
+    }
+
+    private static NavigableMap<String, Feature> getVersionsForUpdate(Map<String, NavigableMap<String, Feature>> index, Set<String> copied, String name) {
+        NavigableMap<String, Feature> versions = index.get(name);
+        if (versions == null) {
+            versions = new TreeMap<String, Feature>();
+            index.put(name, versions);
+            copied.add(name);
+        } else if (copied.add(name)) {
+            //The maps are shared with the previous catalog, so they are copied before the first update.
+            versions = new TreeMap<String, Feature>(versions);
+            index.put(name, versions);
+        }
+        return versions;
+    }
+
+    /**
+     * An immutable snapshot of the features repositories of the current version, with a name -> version -> feature index.
+     */
+    protected static class Catalog {
+        private final long generation;
+        private final Map<String, Repository> repositoryMap;
+        private final Map<String, NavigableMap<String, Feature>> index;
+        private final Repository[] repositories;
+        private final Feature[] features;
+        private Set<Feature> installed = Collections.emptySet();
+
+        private Catalog(long generation, Map<String, Repository> repositoryMap, Map<String, NavigableMap<String, Feature>> index) {
+            this.generation = generation;
+            this.repositoryMap = repositoryMap;
+            this.index = index;
+            this.repositories = new LinkedHashSet<Repository>(repositoryMap.values()).toArray(new Repository[0]);
+            List<Feature> features = new ArrayList<Feature>();
+            for (NavigableMap<String, Feature> versions : index.values()) {
+                features.addAll(versions.values());
+            }
+            this.features = features.toArray(new Feature[features.size()]);
+        }
+
+        /**
+         * Returns the feature with the highest version.
+         */
+        Feature getFeature(String name) {
+            NavigableMap<String, Feature> versions = index.get(name);
+            if (versions == null || versions.isEmpty()) {
+                return null;
+            }
+            Feature best = null;
+            org.osgi.framework.Version bestVersion = null;
+            for (Feature feature : versions.values()) {
+                org.osgi.framework.Version v = parseVersion(feature.getVersion());
+                if (bestVersion == null || bestVersion.compareTo(v) < 0) {
+                    best = feature;
+                    bestVersion = v;
+                }
+            }
+            return best;
+        }
+
+        Feature getFeature(String name, String version) {
+            NavigableMap<String, Feature> versions = index.get(name);
+            return versions != null ? versions.get(version) : null;
+        }
+
+        private static org.osgi.framework.Version parseVersion(String version) {
+            try {
+                return new org.osgi.framework.Version(VersionCleaner.clean(version));
+            } catch (IllegalArgumentException e) {
+                return org.osgi.framework.Version.emptyVersion;
+            }
         }
     }
 
@@ -415,6 +577,22 @@ public class FabricFeaturesServiceImpl implements FeaturesService, NodeEventsLis
         this.fabricService = fabricService;
     }
 
+    public File getCacheDirectory() {
+        return cacheDirectory;
+    }
+
+    public void setCacheDirectory(File cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    public int getParserThreads() {
+        return parserThreads;
+    }
+
+    public void setParserThreads(int parserThreads) {
+        this.parserThreads = parserThreads;
+    }
+
     public IZKClient getZooKeeper() {
         return zooKeeper;
     }
@@ -0,0 +1,286 @@
+/**
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.fabric.features;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.karaf.features.Repository;
+import org.apache.karaf.features.internal.RepositoryImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the parsed features {@link Repository}s, keyed by uri and by the hash of their content.
+ * <p/>
+ * A repository is only parsed again when its content has changed. The content of each repository is also kept on disk,
+ * so that immutable repositories, i.e. maven releases, don't need to be resolved again after a restart.
+ */
+class RepositoryCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RepositoryCache.class);
+
+    private final File directory;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+    /**
+     * @param directory The directory where the repositories are kept, or null to keep them in memory only.
+     */
+    RepositoryCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the parsed {@link Repository} of the uri, loading it if it is not cached or its content has changed.
+     */
+    Repository get(String uri) throws Exception {
+        Entry entry = entries.get(uri);
+        boolean immutable = isImmutable(uri);
+        if (entry != null && immutable) {
+            return entry.repository;
+        }
+        if (entry == null && immutable) {
+            String hash = readIndex(uri);
+            File file = hash != null ? getContentFile(hash) : null;
+            if (file != null && file.exists()) {
+                entry = load(uri, hash, file);
+                entries.put(uri, entry);
+                return entry.repository;
+            }
+        }
+
+        byte[] content = read(new URI(uri));
+        String hash = toHex(sha1(content));
+        if (entry != null && entry.hash.equals(hash)) {
+            return entry.repository;
+        }
+        File file = store(hash, content);
+        if (immutable) {
+            writeIndex(uri, hash);
+        }
+        entry = load(uri, hash, file);
+        entries.put(uri, entry);
+        return entry.repository;
+    }
+
+    /**
+     * Drops the repositories that are no longer used, from memory and from disk. The disk copies of the immutable
+     * repositories which are still used are kept, even when they are no longer in memory.
+     */
+    void retainAll(Set<String> uris) {
+        entries.keySet().retainAll(uris);
+        if (directory == null) {
+            return;
+        }
+        Set<String> contentFiles = new HashSet<String>();
+        Set<String> indexFiles = new HashSet<String>();
+        for (Entry entry : entries.values()) {
+            contentFiles.add(getContentFile(entry.hash).getName());
+        }
+        for (String uri : uris) {
+            if (isImmutable(uri)) {
+                indexFiles.add(getIndexFile(uri).getName());
+                String hash = readIndex(uri);
+                if (hash != null) {
+                    contentFiles.add(getContentFile(hash).getName());
+                }
+            }
+        }
+        deleteAllBut(new File(directory, "content"), contentFiles);
+        deleteAllBut(new File(directory, "uris"), indexFiles);
+    }
+
+    private static void deleteAllBut(File dir, Set<String> names) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!names.contains(file.getName()) && !file.delete()) {
+                    LOGGER.debug("Failed to delete repository cache file {}.", file);
+                }
+            }
+        }
+    }
+
+    private Entry load(String uri, String hash, File file) throws Exception {
+        URI original = new URI(uri);
+        Repository repository = file != null ? new CachedRepository(original, file.toURI()) : new RepositoryImpl(original);
+        //Parse eagerly, so that the caller thread does the parsing.
+        repository.getFeatures();
+        return new Entry(hash, repository);
+    }
+
+    private File store(String hash, byte[] content) {
+        if (directory == null) {
+            return null;
+        }
+        File file = getContentFile(hash);
+        if (!file.exists()) {
+            try {
+                write(file, content);
+            } catch (IOException e) {
+                LOGGER.debug("Failed to cache repository content in {}.", file);
+                return null;
+            }
+        }
+        return file;
+    }
+
+    private String readIndex(String uri) {
+        if (directory == null) {
+            return null;
+        }
+        File file = getIndexFile(uri);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            return new String(read(file), "UTF-8").trim();
+        } catch (IOException e) {
+            LOGGER.debug("Failed to read repository cache index {}.", file);
+            return null;
+        }
+    }
+
+    private void writeIndex(String uri, String hash) {
+        if (directory != null) {
+            File file = getIndexFile(uri);
+            try {
+                write(file, hash.getBytes("UTF-8"));
+            } catch (IOException e) {
+                LOGGER.debug("Failed to write repository cache index {}.", file);
+            }
+        }
+    }
+
+    private File getContentFile(String hash) {
+        return new File(directory, "content" + File.separator + hash + ".xml");
+    }
+
+    private File getIndexFile(String uri) {
+        try {
+            return new File(directory, "uris" + File.separator + toHex(sha1(uri.getBytes("UTF-8"))));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns true if the content of the uri can never change, such as for maven releases.
+     */
+    static boolean isImmutable(String uri) {
+        return uri.startsWith("mvn:") && !uri.contains("SNAPSHOT");
+    }
+
+    private static byte[] read(URI uri) throws IOException {
+        return read(uri.toURL().openStream());
+    }
+
+    private static byte[] read(File file) throws IOException {
+        return read(new FileInputStream(file));
+    }
+
+    private static byte[] read(InputStream is) throws IOException {
+        try {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int len;
+            while ((len = is.read(buffer)) > 0) {
+                baos.write(buffer, 0, len);
+            }
+            return baos.toByteArray();
+        } finally {
+            try {
+                is.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+        }
+    }
+
+    private static void write(File file, byte[] content) throws IOException {
+        file.getParentFile().mkdirs();
+        File tmp = File.createTempFile("repository-", null, file.getParentFile());
+        OutputStream os = new FileOutputStream(tmp);
+        try {
+            os.write(content);
+        } finally {
+            os.close();
+        }
+        if (!tmp.renameTo(file)) {
+            file.delete();
+            if (!tmp.renameTo(file)) {
+                tmp.delete();
+                throw new IOException("Unable to rename file " + tmp + " to " + file);
+            }
+        }
+    }
+
+    private static byte[] sha1(byte[] content) {
+        try {
+            return MessageDigest.getInstance("SHA-1").digest(content);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    private static class Entry {
+        private final String hash;
+        private final Repository repository;
+
+        private Entry(String hash, Repository repository) {
+            this.hash = hash;
+            this.repository = repository;
+        }
+    }
+
+    /**
+     * A {@link Repository} parsed from a cached copy, which still reports its original uri.
+     */
+    static class CachedRepository extends RepositoryImpl {
+        private final URI originalUri;
+
+        CachedRepository(URI originalUri, URI cachedUri) {
+            super(cachedUri);
+            this.originalUri = originalUri;
+        }
+
+        @Override
+        public URI getURI() {
+            return originalUri;
+        }
+    }
+}
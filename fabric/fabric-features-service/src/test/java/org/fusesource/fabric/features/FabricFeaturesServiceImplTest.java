@@ -0,0 +1,128 @@
+/**
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.fabric.features;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.fusesource.fabric.api.Container;
+import org.fusesource.fabric.api.FabricService;
+import org.fusesource.fabric.api.Profile;
+import org.fusesource.fabric.api.Version;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class FabricFeaturesServiceImplTest {
+
+    private File baseDir;
+    private final List<String> repositories = new ArrayList<String>();
+    private FabricFeaturesServiceImpl featuresService;
+
+    @Before
+    public void setUp() throws Exception {
+        baseDir = new File("target/features-service/" + System.currentTimeMillis());
+
+        FabricService fabricService = createNiceMock(FabricService.class);
+        Container container = createNiceMock(Container.class);
+        Version version = createNiceMock(Version.class);
+        Profile profile = createNiceMock(Profile.class);
+        expect(fabricService.getCurrentContainer()).andReturn(container).anyTimes();
+        expect(fabricService.getProfiles("1.0")).andReturn(new Profile[]{profile}).anyTimes();
+        expect(container.getVersion()).andReturn(version).anyTimes();
+        expect(container.getProfiles()).andReturn(new Profile[0]).anyTimes();
+        expect(version.getName()).andReturn("1.0").anyTimes();
+        expect(profile.getRepositories()).andReturn(repositories).anyTimes();
+        replay(fabricService, container, version, profile);
+
+        featuresService = new FabricFeaturesServiceImpl();
+        featuresService.setFabricService(fabricService);
+        featuresService.setCacheDirectory(new File(baseDir, "cache"));
+        featuresService.init();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        featuresService.destroy();
+    }
+
+    @Test
+    public void testFeatureIsIndexedAgainFromRemainingRepository() throws Exception {
+        String a = writeRepository("a.xml", "f1", "1.0");
+        String b = writeRepository("b.xml", "f1", "1.0");
+        repositories.add(a);
+        repositories.add(b);
+        assertNotNull(featuresService.getFeature("f1", "1.0"));
+
+        repositories.remove(b);
+        featuresService.onEvents(null);
+        assertNotNull(featuresService.getFeature("f1", "1.0"));
+        assertEquals(1, featuresService.listFeatures().length);
+    }
+
+    @Test
+    public void testChangedRepositoryIsIndexedAgain() throws Exception {
+        String a = writeRepository("a.xml", "f1", "1.0");
+        repositories.add(a);
+        assertNotNull(featuresService.getFeature("f1", "1.0"));
+
+        writeRepository("a.xml", "f2", "1.0");
+        featuresService.onEvents(null);
+        assertNull(featuresService.getFeature("f1", "1.0"));
+        assertNotNull(featuresService.getFeature("f2", "1.0"));
+    }
+
+    @Test
+    public void testFeatureOfRemovedRepositoryIsNotListed() throws Exception {
+        String a = writeRepository("a.xml", "f1", "1.0");
+        String b = writeRepository("b.xml", "f2", "1.0");
+        repositories.add(a);
+        repositories.add(b);
+        assertEquals(2, featuresService.listFeatures().length);
+
+        repositories.remove(b);
+        featuresService.onEvents(null);
+        assertNull(featuresService.getFeature("f2"));
+        assertEquals(1, featuresService.listFeatures().length);
+    }
+
+    private String writeRepository(String fileName, String featureName, String featureVersion) throws IOException {
+        File file = new File(baseDir, fileName);
+        file.getParentFile().mkdirs();
+        String xml = "<features xmlns=\"http://karaf.apache.org/xmlns/features/v1.0.0\">\n" +
+                "  <feature name=\"" + featureName + "\" version=\"" + featureVersion + "\"/>\n" +
+                "</features>\n";
+        OutputStream os = new FileOutputStream(file);
+        try {
+            os.write(xml.getBytes("UTF-8"));
+        } finally {
+            os.close();
+        }
+        return file.toURI().toString();
+    }
+}
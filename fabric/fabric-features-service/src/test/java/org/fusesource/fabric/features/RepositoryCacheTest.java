@@ -0,0 +1,123 @@
+/**
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.fabric.features;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.karaf.features.Repository;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RepositoryCacheTest {
+
+    private File baseDir;
+    private File cacheDir;
+    private RepositoryCache cache;
+
+    @Before
+    public void setUp() {
+        baseDir = new File("target/repository-cache/" + System.currentTimeMillis());
+        cacheDir = new File(baseDir, "cache");
+        cache = new RepositoryCache(cacheDir);
+    }
+
+    @Test
+    public void testUnchangedRepositoryIsNotParsedAgain() throws Exception {
+        String uri = writeRepository("a.xml", "f1", "1.0").toURI().toString();
+        Repository repository = cache.get(uri);
+        assertEquals("f1", repository.getFeatures()[0].getName());
+        assertSame(repository, cache.get(uri));
+    }
+
+    @Test
+    public void testChangedRepositoryIsParsedAgain() throws Exception {
+        String uri = writeRepository("a.xml", "f1", "1.0").toURI().toString();
+        Repository repository = cache.get(uri);
+        writeRepository("a.xml", "f2", "1.0");
+        Repository changed = cache.get(uri);
+        assertNotSame(repository, changed);
+        assertEquals("f2", changed.getFeatures()[0].getName());
+    }
+
+    @Test
+    public void testReplacedContentIsDeleted() throws Exception {
+        String uri = writeRepository("a.xml", "f1", "1.0").toURI().toString();
+        cache.get(uri);
+        writeRepository("a.xml", "f2", "1.0");
+        cache.get(uri);
+        assertEquals(2, contentFiles().length);
+
+        cache.retainAll(Collections.singleton(uri));
+        assertEquals(1, contentFiles().length);
+    }
+
+    @Test
+    public void testUnusedContentIsDeleted() throws Exception {
+        String a = writeRepository("a.xml", "f1", "1.0").toURI().toString();
+        String b = writeRepository("b.xml", "f2", "1.0").toURI().toString();
+        cache.get(a);
+        cache.get(b);
+        assertEquals(2, contentFiles().length);
+
+        Set<String> uris = new HashSet<String>();
+        uris.add(b);
+        cache.retainAll(uris);
+        assertEquals(1, contentFiles().length);
+
+        cache.retainAll(Collections.<String>emptySet());
+        assertEquals(0, contentFiles().length);
+    }
+
+    @Test
+    public void testIsImmutable() {
+        assertTrue(RepositoryCache.isImmutable("mvn:org.fusesource.fabric/fuse-fabric/7.0.0/xml/features"));
+        assertFalse(RepositoryCache.isImmutable("mvn:org.fusesource.fabric/fuse-fabric/7.0.0-SNAPSHOT/xml/features"));
+        assertFalse(RepositoryCache.isImmutable("file:/tmp/features.xml"));
+    }
+
+    private File[] contentFiles() {
+        File[] files = new File(cacheDir, "content").listFiles();
+        return files != null ? files : new File[0];
+    }
+
+    private File writeRepository(String fileName, String featureName, String featureVersion) throws IOException {
+        File file = new File(baseDir, fileName);
+        file.getParentFile().mkdirs();
+        String xml = "<features xmlns=\"http://karaf.apache.org/xmlns/features/v1.0.0\">\n" +
+                "  <feature name=\"" + featureName + "\" version=\"" + featureVersion + "\"/>\n" +
+                "</features>\n";
+        OutputStream os = new FileOutputStream(file);
+        try {
+            os.write(xml.getBytes("UTF-8"));
+        } finally {
+            os.close();
+        }
+        return file;
+    }
+}
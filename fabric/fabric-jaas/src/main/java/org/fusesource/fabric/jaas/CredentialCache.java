@@ -0,0 +1,105 @@
+/**
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.fabric.jaas;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of recently verified credentials so that clients which authenticate every request, such as
+ * JMX and REST pollers, do not pay for a password hash on each call.
+ * <p/>
+ * Entries are keyed by a salted SHA-256 digest of the user, the supplied password and the stored password so
+ * no plain text password is kept in memory and any change of the stored password misses the cache. The salt is
+ * random per JVM and entries expire after a time to live.
+ */
+final class CredentialCache {
+
+    public static final int MAXIMUM_SIZE = 1000;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final byte[] SALT = new byte[16];
+
+    private static final Map<String, Long> ENTRIES = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > MAXIMUM_SIZE;
+        }
+    };
+
+    static {
+        new SecureRandom().nextBytes(SALT);
+    }
+
+    private CredentialCache() {
+    }
+
+    /**
+     * Returns true if the credentials have been verified within the time to live
+     */
+    static boolean isVerified(String user, String password, String storedPassword) {
+        String key = digest(user, password, storedPassword);
+        synchronized (ENTRIES) {
+            Long expiry = ENTRIES.get(key);
+            if (expiry == null) {
+                return false;
+            }
+            if (expiry < System.currentTimeMillis()) {
+                ENTRIES.remove(key);
+                return false;
+            }
+            return true;
+        }
+    }
+
+    static void verified(String user, String password, String storedPassword, long timeToLive) {
+        String key = digest(user, password, storedPassword);
+        synchronized (ENTRIES) {
+            ENTRIES.put(key, System.currentTimeMillis() + timeToLive);
+        }
+    }
+
+    static void clear() {
+        synchronized (ENTRIES) {
+            ENTRIES.clear();
+        }
+    }
+
+    private static String digest(String user, String password, String storedPassword) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("No SHA-256 digest available: " + e, e);
+        }
+        digest.update(SALT);
+        for (String text : new String[]{user, password, storedPassword}) {
+            digest.update(text.getBytes(UTF_8));
+            digest.update((byte) 0);
+        }
+        byte[] bytes = digest.digest();
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return builder.toString();
+    }
+}
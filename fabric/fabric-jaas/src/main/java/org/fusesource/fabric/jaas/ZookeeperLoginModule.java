@@ -18,9 +18,10 @@ package org.fusesource.fabric.jaas;
 
 import java.io.IOException;
 import java.security.Principal;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
-import java.util.Properties;
 import javax.security.auth.Subject;
 import javax.security.auth.callback.Callback;
 import javax.security.auth.callback.CallbackHandler;
@@ -37,7 +38,6 @@ import org.apache.karaf.jaas.modules.AbstractKarafLoginModule;
 import org.apache.karaf.jaas.modules.Encryption;
 import org.apache.karaf.jaas.modules.encryption.EncryptionSupport;
 import org.fusesource.fabric.zookeeper.IZKClient;
-import org.fusesource.fabric.zookeeper.utils.ZooKeeperUtils;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.BundleReference;
 import org.osgi.framework.ServiceReference;
@@ -46,16 +46,25 @@ import org.slf4j.LoggerFactory;
 
 public class ZookeeperLoginModule extends AbstractKarafLoginModule implements LoginModule {
     public static final ThreadLocal<IZKClient> ZOOKEEPER_CONTEXT = new ThreadLocal<IZKClient>();
+    public static final String CREDENTIALS_CACHE_TTL = "credentials.cache.ttl";
+    public static final long DEFAULT_CREDENTIALS_CACHE_TTL = 60000L;
     private static final Logger LOG = LoggerFactory.getLogger(ZookeeperLoginModule.class);
 
+    private static Map<?, ?> encryptionOptions;
+
     private boolean debug = false;
-    private static Properties users = new Properties();
+    private long credentialsCacheTtl = DEFAULT_CREDENTIALS_CACHE_TTL;
+    private Map<String, ZookeeperUserStore.User> users = Collections.emptyMap();
 
     EncryptionSupport encryptionSupport;
 
     @Override
     public void initialize(Subject subject, CallbackHandler callbackHandler, Map sharedState, Map options) {
         debug = "true".equalsIgnoreCase((String)options.get("debug"));
+        Object ttl = options.get(CREDENTIALS_CACHE_TTL);
+        if (ttl != null && ttl.toString().trim().length() > 0) {
+            credentialsCacheTtl = Long.parseLong(ttl.toString().trim());
+        }
         IZKClient zookeeper = ZOOKEEPER_CONTEXT.get();
         if( zookeeper==null ) {
             // osgi env.
@@ -65,7 +74,7 @@ public class ZookeeperLoginModule extends AbstractKarafLoginModule implements Lo
             if (serviceReference != null) {
                 try {
                     zookeeper = (IZKClient) bundleContext.getService(serviceReference);
-                    users = ZooKeeperUtils.getProperties(zookeeper, ZookeeperBackingEngine.USERS_NODE);
+                    users = ZookeeperUserStore.getInstance(zookeeper).getUsers();
                 } catch (Exception e) {
                     LOG.warn("Failed fetching authentication data.", e);
                 } finally {
@@ -77,7 +86,7 @@ public class ZookeeperLoginModule extends AbstractKarafLoginModule implements Lo
         } else {
             // non-osgi env.
             try {
-                users = ZooKeeperUtils.getProperties(zookeeper, ZookeeperBackingEngine.USERS_NODE);
+                users = ZookeeperUserStore.getInstance(zookeeper).getUsers();
             } catch (Exception e) {
                 LOG.warn("Failed fetching authentication data.", e);
             }
@@ -85,9 +94,20 @@ public class ZookeeperLoginModule extends AbstractKarafLoginModule implements Lo
         if(encryptionSupport==null) {
             encryptionSupport = new BasicEncryptionSupport(options);
         }
+        checkEncryptionOptions(options);
         super.initialize(subject, callbackHandler, options);
     }
 
+    /**
+     * Clears the verified credentials when the encryption options change, as they may no longer match the stored passwords
+     */
+    private static synchronized void checkEncryptionOptions(Map options) {
+        if (!options.equals(encryptionOptions)) {
+            encryptionOptions = new HashMap<Object, Object>(options);
+            CredentialCache.clear();
+        }
+    }
+
     @Override
     public boolean login() throws LoginException {
         Callback[] callbacks = new Callback[2];
@@ -109,26 +129,33 @@ public class ZookeeperLoginModule extends AbstractKarafLoginModule implements Lo
         if (user == null) {
             throw new FailedLoginException("user name is null");
         }
-        String userInfos = users.getProperty(user);
+        ZookeeperUserStore.User userInfos = users.get(user);
 
         if (userInfos == null) {
             throw new FailedLoginException("User doesn't exist");
         }
 
-        // the password is in the first position
-        String[] infos = userInfos.split(",");
-        String password = infos[0];
+        String password = userInfos.getPassword();
+        String plain = new String(tmpPassword);
 
-        if (!checkPassword(new String(tmpPassword), password)) {
+        if (credentialsCacheTtl > 0 && CredentialCache.isVerified(user, plain, password)) {
+            if (debug) {
+                LOG.debug("Using cached credentials of {}", user);
+            }
+        } else if (checkPassword(plain, password)) {
+            if (credentialsCacheTtl > 0) {
+                CredentialCache.verified(user, plain, password, credentialsCacheTtl);
+            }
+        } else {
             throw new FailedLoginException("Password does not match");
         }
 
         principals = new HashSet<Principal>();
         principals.add(new UserPrincipal(user));
-        for (int i = 1; i < infos.length; i++) {
-            principals.add(new RolePrincipal(infos[i]));
+        for (String role : userInfos.getRoles()) {
+            principals.add(new RolePrincipal(role));
         }
-        subject.getPrivateCredentials().add(new String(tmpPassword));
+        subject.getPrivateCredentials().add(plain);
 
         if (debug) {
             LOG.debug("Successfully logged in {}", user);
@@ -0,0 +1,182 @@
+/**
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.fabric.jaas;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.fusesource.fabric.zookeeper.IZKClient;
+import org.linkedin.zookeeper.client.LifecycleListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An immutable snapshot of the users node which is kept up to date by a zookeeper watch, so that logins only
+ * hit zookeeper when the users actually change rather than on every authentication.
+ * <p/>
+ * A new snapshot is built on each change and swapped in atomically, so a login always sees a consistent set of
+ * users and roles.
+ */
+class ZookeeperUserStore implements Watcher, LifecycleListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ZookeeperUserStore.class);
+
+    private static ZookeeperUserStore instance;
+
+    private final IZKClient zooKeeper;
+    private final String path;
+    private volatile Map<String, User> users;
+    private volatile boolean closed;
+
+    ZookeeperUserStore(IZKClient zooKeeper, String path) {
+        this.zooKeeper = zooKeeper;
+        this.path = path;
+    }
+
+    /**
+     * Returns the shared store for the given client, replacing the previous one if the client has changed
+     */
+    static synchronized ZookeeperUserStore getInstance(IZKClient zooKeeper) {
+        if (instance == null || instance.zooKeeper != zooKeeper) {
+            if (instance != null) {
+                instance.close();
+            }
+            instance = new ZookeeperUserStore(zooKeeper, ZookeeperBackingEngine.USERS_NODE);
+            zooKeeper.registerListener(instance);
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the current snapshot of the users, fetching it if it has not been loaded yet or the last refresh failed
+     */
+    Map<String, User> getUsers() throws Exception {
+        Map<String, User> answer = users;
+        if (answer == null) {
+            answer = refresh();
+        }
+        return answer;
+    }
+
+    void close() {
+        closed = true;
+        users = null;
+        zooKeeper.removeListener(this);
+    }
+
+    @Override
+    public void process(WatchedEvent event) {
+        if (closed) {
+            return;
+        }
+        if (event.getType() == Event.EventType.NodeDataChanged
+                || event.getType() == Event.EventType.NodeCreated
+                || event.getType() == Event.EventType.NodeDeleted) {
+            refreshQuietly();
+        }
+    }
+
+    @Override
+    public void onConnected() {
+        // watches do not survive an expired session so lets re-read the users and register a new one
+        if (!closed && users != null) {
+            refreshQuietly();
+        }
+    }
+
+    @Override
+    public void onDisconnected() {
+        // keep serving the last known users until we reconnect
+    }
+
+    protected void refreshQuietly() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            // keep the last known users, the next reconnect will try again
+            LOG.warn("Failed refreshing authentication data.", e);
+        }
+    }
+
+    protected synchronized Map<String, User> refresh() throws Exception {
+        Map<String, User> answer = parse(readUsers());
+        users = answer;
+        CredentialCache.clear();
+        LOG.debug("Loaded {} users from {}", answer.size(), path);
+        return answer;
+    }
+
+    /**
+     * Reads the users node and watches it for changes, returns null if it doesn't exist
+     */
+    protected String readUsers() throws Exception {
+        try {
+            return zooKeeper.getZKStringData(path, this).getData();
+        } catch (KeeperException.NoNodeException e) {
+            // lets get notified once the node is created
+            if (zooKeeper.exists(path, this) != null) {
+                return zooKeeper.getZKStringData(path, this).getData();
+            }
+            return null;
+        }
+    }
+
+    static Map<String, User> parse(String data) throws IOException {
+        Properties properties = new Properties();
+        if (data != null) {
+            properties.load(new StringReader(data));
+        }
+        Map<String, User> answer = new HashMap<String, User>();
+        for (String name : properties.stringPropertyNames()) {
+            String[] infos = properties.getProperty(name).split(",");
+            List<String> roles = new ArrayList<String>(Arrays.asList(infos).subList(1, infos.length));
+            answer.put(name, new User(infos[0], Collections.unmodifiableList(roles)));
+        }
+        return Collections.unmodifiableMap(answer);
+    }
+
+    /**
+     * The stored password and roles of a user
+     */
+    static class User {
+        private final String password;
+        private final List<String> roles;
+
+        User(String password, List<String> roles) {
+            this.password = password;
+            this.roles = roles;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public List<String> getRoles() {
+            return roles;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.fabric.jaas;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CredentialCacheTest {
+
+    @Before
+    public void setUp() {
+        CredentialCache.clear();
+    }
+
+    @Test
+    public void testVerifiedCredentials() {
+        assertFalse(CredentialCache.isVerified("admin", "secret", "{CRYPT}abc{CRYPT}"));
+        CredentialCache.verified("admin", "secret", "{CRYPT}abc{CRYPT}", 60000L);
+        assertTrue(CredentialCache.isVerified("admin", "secret", "{CRYPT}abc{CRYPT}"));
+    }
+
+    @Test
+    public void testOtherCredentialsAreNotVerified() {
+        CredentialCache.verified("admin", "secret", "{CRYPT}abc{CRYPT}", 60000L);
+        assertFalse(CredentialCache.isVerified("admin", "wrong", "{CRYPT}abc{CRYPT}"));
+        assertFalse(CredentialCache.isVerified("other", "secret", "{CRYPT}abc{CRYPT}"));
+    }
+
+    @Test
+    public void testChangedStoredPasswordIsNotVerified() {
+        CredentialCache.verified("admin", "secret", "{CRYPT}abc{CRYPT}", 60000L);
+        assertFalse(CredentialCache.isVerified("admin", "secret", "{CRYPT}def{CRYPT}"));
+    }
+
+    @Test
+    public void testExpiredCredentialsAreNotVerified() {
+        CredentialCache.verified("admin", "secret", "{CRYPT}abc{CRYPT}", -1L);
+        assertFalse(CredentialCache.isVerified("admin", "secret", "{CRYPT}abc{CRYPT}"));
+    }
+
+    @Test
+    public void testClear() {
+        CredentialCache.verified("admin", "secret", "{CRYPT}abc{CRYPT}", 60000L);
+        CredentialCache.clear();
+        assertFalse(CredentialCache.isVerified("admin", "secret", "{CRYPT}abc{CRYPT}"));
+    }
+
+    @Test
+    public void testEldestCredentialsAreEvicted() {
+        CredentialCache.verified("user0", "secret", "stored", 60000L);
+        for (int i = 1; i <= CredentialCache.MAXIMUM_SIZE; i++) {
+            CredentialCache.verified("user" + i, "secret", "stored", 60000L);
+        }
+        assertFalse(CredentialCache.isVerified("user0", "secret", "stored"));
+        assertTrue(CredentialCache.isVerified("user" + CredentialCache.MAXIMUM_SIZE, "secret", "stored"));
+    }
+}
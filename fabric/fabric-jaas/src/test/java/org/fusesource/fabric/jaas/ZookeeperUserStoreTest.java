@@ -0,0 +1,105 @@
+/**
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.fabric.jaas;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ZookeeperUserStoreTest {
+
+    @Test
+    public void testParseUsersAndRoles() throws Exception {
+        Map<String, ZookeeperUserStore.User> users = ZookeeperUserStore.parse("admin=secret,admin,manager\nguest=guest\n");
+        assertEquals(2, users.size());
+        assertEquals("secret", users.get("admin").getPassword());
+        assertEquals(Arrays.asList("admin", "manager"), users.get("admin").getRoles());
+        assertEquals("guest", users.get("guest").getPassword());
+        assertEquals(Collections.<String>emptyList(), users.get("guest").getRoles());
+        assertNull(users.get("other"));
+    }
+
+    @Test
+    public void testParseEncryptedPassword() throws Exception {
+        Map<String, ZookeeperUserStore.User> users = ZookeeperUserStore.parse("admin={CRYPT}5ebe2294ecd0e0f08eab7690d2a6ee69{CRYPT},admin");
+        assertEquals("{CRYPT}5ebe2294ecd0e0f08eab7690d2a6ee69{CRYPT}", users.get("admin").getPassword());
+        assertEquals(Collections.singletonList("admin"), users.get("admin").getRoles());
+    }
+
+    @Test
+    public void testParseMissingNode() throws Exception {
+        assertTrue(ZookeeperUserStore.parse(null).isEmpty());
+        assertTrue(ZookeeperUserStore.parse("").isEmpty());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSnapshotIsImmutable() throws Exception {
+        ZookeeperUserStore.parse("admin=secret,admin").put("other", null);
+    }
+
+    @Test
+    public void testSnapshotIsKeptUntilRefreshed() throws Exception {
+        MockUserStore store = new MockUserStore("admin=secret,admin");
+        Map<String, ZookeeperUserStore.User> users = store.getUsers();
+        assertSame(users, store.getUsers());
+        assertEquals(1, store.reads);
+
+        store.data = "admin=changed,admin";
+        assertSame(users, store.getUsers());
+        store.refresh();
+        assertEquals("changed", store.getUsers().get("admin").getPassword());
+        assertEquals(2, store.reads);
+    }
+
+    @Test
+    public void testRefreshClearsVerifiedCredentials() throws Exception {
+        MockUserStore store = new MockUserStore("admin=secret,admin");
+        store.getUsers();
+        CredentialCache.verified("admin", "secret", "secret", 60000L);
+        assertTrue(CredentialCache.isVerified("admin", "secret", "secret"));
+
+        store.refresh();
+        assertFalse(CredentialCache.isVerified("admin", "secret", "secret"));
+    }
+
+    /**
+     * A store which reads its users from a field rather than from zookeeper
+     */
+    private static class MockUserStore extends ZookeeperUserStore {
+        private String data;
+        private int reads;
+
+        MockUserStore(String data) {
+            super(null, ZookeeperBackingEngine.USERS_NODE);
+            this.data = data;
+        }
+
+        @Override
+        protected String readUsers() {
+            reads++;
+            return data;
+        }
+    }
+}
@@ -63,7 +63,7 @@ class MonitorService extends MonitorServiceMBean {
   }
 
   def stop():Unit = this.synchronized {
-    if ( monitor == null ) {
+    if ( monitor != null ) {
       println("Stopping Monitor Sevice");
       monitor.close
       monitor = null
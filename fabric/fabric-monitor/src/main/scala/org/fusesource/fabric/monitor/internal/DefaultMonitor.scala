@@ -17,7 +17,7 @@
 
 package org.fusesource.fabric.monitor.internal
 
-import scala.collection.mutable.HashMap
+import scala.collection.mutable.{ListBuffer, HashMap}
 import org.rrd4j.ConsolFun._
 import org.rrd4j.core._
 import org.rrd4j.DsType._
@@ -49,6 +49,25 @@ class DefaultMonitor (
 
   var step_duration = 1000L
 
+  /**
+   * The number of threads shared by all the monitored sets to poll their sources
+   */
+  var poll_threads = 2
+
+  /**
+   * The number of samples buffered by a monitored set before they are written to its RRD file
+   */
+  var rrd_batch_size = 5
+
+  private var _scheduler:MonitorScheduler = _
+
+  def scheduler = this.synchronized {
+    if( _scheduler == null ) {
+      _scheduler = new MonitorScheduler(step_duration, poll_threads)
+    }
+    _scheduler
+  }
+
   def path_to_rrd_file(name:String) = rrd_file_prefix + name +".rrd"
 
   case class MonitoredSet(dto:MonitoredSetDTO) {
@@ -128,8 +147,13 @@ class DefaultMonitor (
       rc
     }
 
-    var pollers = List[(String, Poller)]()
-    var thread:Thread = _
+    @volatile
+    var pollers = List[(PollerFactory, List[(String, Poller)])]()
+    var rrd_db:RrdDb = _
+    var schedule:MonitorScheduler#Entry = _
+    val pending = ListBuffer[(Long, List[(String, Double)])]()
+    var last_sample_time = 0L
+    val polling = new AtomicBoolean()
     var active = new AtomicBoolean()
 
     def start = {
@@ -137,67 +161,94 @@ class DefaultMonitor (
 
         new File(file_base_name+".json").write_bytes(JsonCodec.encode(dto))
 
-        thread = new Thread("Monitoring: "+name) {
-          setDaemon(true)
-          override def run: Unit = {
+        // group the pollers by factory so that each factory can batch its reads
+        val sources_by_factory = HashMap[PollerFactory, List[(String, DataSourceDTO)]]()
+        sources.foreach { case (rrd_id, source) =>
+          poller_factories.find(_.accepts(source)).foreach { factory =>
+            val sources = sources_by_factory.getOrElseUpdate(factory, Nil)
+            sources_by_factory.put(factory, (rrd_id, source)::sources)
+          }
+        }
 
-            val sources_by_factory = HashMap[PollerFactory, List[(String, DataSourceDTO)]]()
-            sources.foreach { case (rrd_id, source) =>
-              poller_factories.find(_.accepts(source)).foreach { factory =>
-                val sources = sources_by_factory.getOrElseUpdate(factory, Nil)
-                sources_by_factory.put(factory, (rrd_id, source)::sources)
-              }
-            }
+        this.synchronized {
+          pollers = sources_by_factory.map { case (factory, sources) =>
+            (factory, sources.map{ case (rrd_id, source) => (rrd_id, factory.create(source)) })
+          }.toList
 
-            pollers = {
-              sources_by_factory.flatMap{ case (factory, sources)=>
-                sources.map{ case (rrd_id, source) => (rrd_id, factory.create(source)) }
-              }
-            }.toList
+          rrd_db = new RrdDb(rrd_def, rrd_backend)
+        }
 
-            val rrd_db = new RrdDb(rrd_def, rrd_backend);
+        schedule = scheduler.schedule(sample_span.getDurationInSeconds) { tick =>
+          // skip this step if the previous poll is still running
+          if( polling.compareAndSet(false, true) ) {
             try {
-              while(active.get) {
-
-                val sample = rrd_db.createSample()
-                sample.setTime(Util.getTime())
-
-                val start = System.currentTimeMillis()
-
-//                log.info("Collecting samples from %d pollers.".format(pollers.size))
-                pollers.foreach { case (rrd_id, poller) =>
-                  val result = poller.poll
-                  sample.setValue(rrd_id, result)
-                }
-//                log.info("Collected sample: "+sample.dump)
-
-                sample.update();
-
-                // Sleep until we need to poll again.
-                def remaining = (start + (step_duration * sample_span.getDurationInSeconds)) - System.currentTimeMillis()
-                var r = remaining
-                while( r > 0 ) {
-                  Thread.sleep( r )
-                  r = remaining
-                }
-
-
-              }
+              poll(tick * step_duration / 1000)
             } finally {
-              rrd_db.close
+              polling.set(false)
             }
+          }
+        }
+      }
+    }
 
+    def poll(time:Long) = {
+      val values = pollers.flatMap { case (factory, factory_pollers) =>
+        try {
+          factory_pollers.map(_._1).zip(factory.poll_all(factory_pollers.map(_._2)))
+        } catch {
+          case e:Throwable =>
+            log.debug(e, "Failed to poll " + name + ": " + e)
+            factory_pollers.map { case (rrd_id, poller) =>
+              (rrd_id, try { poller.poll } catch { case e:Throwable => Double.NaN })
+            }
+        }
+      }
+      this.synchronized {
+        if( active.get && time > last_sample_time ) {
+          last_sample_time = time
+          pending += ((time, values))
+          if( pending.size >= rrd_batch_size ) {
+            flush
           }
+        }
+      }
+    }
 
+    /**
+     * Writes the buffered samples to the RRD file in one go
+     */
+    def flush = this.synchronized {
+      if( rrd_db != null ) {
+        pending.foreach { case (time, values) =>
+          val sample = rrd_db.createSample(time)
+          values.foreach { case (rrd_id, value) =>
+            sample.setValue(rrd_id, value)
+          }
+          sample.update()
         }
-        thread.start()
       }
+      pending.clear
     }
 
     def stop = {
       if( active.compareAndSet(true, false) ) {
-        thread.join
-        thread = null
+        schedule.cancel
+        schedule = null
+        this.synchronized {
+          flush
+          rrd_db.close
+          rrd_db = null
+          pollers.foreach { case (factory, factory_pollers) =>
+            factory_pollers.foreach { case (rrd_id, poller) =>
+              try {
+                poller.close
+              } catch {
+                case e:Throwable => log.debug(e, "Failed to close poller " + rrd_id + ": " + e)
+              }
+            }
+          }
+          pollers = Nil
+        }
       }
     }
   }
@@ -251,7 +302,14 @@ class DefaultMonitor (
   }
 
   def close: Unit = {
-
+    this.synchronized {
+      current_monitored_sets.values.foreach(_.stop)
+      current_monitored_sets.clear
+      if( _scheduler != null ) {
+        _scheduler.shutdown
+        _scheduler = null
+      }
+    }
   }
 
   def fetch(fetch: FetchMonitoredViewDTO):Option[MonitoredViewDTO] = this.synchronized {
@@ -267,6 +325,9 @@ class DefaultMonitor (
       case None => return None
     }
 
+    // make sure the samples buffered by the monitored set are visible to the fetch
+    monitored_set.flush
+
     val rrd_db = new RrdDb(monitored_set.rrd_file_name, true, rrd_backend);
     try {
 
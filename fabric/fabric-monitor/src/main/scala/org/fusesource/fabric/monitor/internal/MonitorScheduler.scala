@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.fabric.monitor.internal
+
+import java.util.concurrent.{ThreadFactory, TimeUnit, ScheduledThreadPoolExecutor}
+import java.util.concurrent.atomic.AtomicInteger
+import collection.mutable.ListBuffer
+import org.fusesource.scalate.util.Log
+
+object MonitorScheduler {
+  val log = Log(classOf[MonitorScheduler])
+
+  /**
+   * The number of ticks covered by one revolution of the wheel
+   */
+  val wheel_size = 512
+}
+import MonitorScheduler._
+
+/**
+ * <p>
+ * A hashed timer wheel which runs any number of periodic tasks on a small, shared
+ * thread pool.  Each task runs on the tick boundaries which are a multiple of its
+ * step so that all the tasks with the same step are polled together.
+ * </p>
+ */
+class MonitorScheduler(val tick_duration:Long, val threads:Int) {
+
+  class Entry(val step:Long, val task:(Long)=>Unit) {
+    @volatile var cancelled = false
+    var due = 0L
+
+    def cancel = cancelled = true
+  }
+
+  private val wheel = Array.fill(wheel_size)(ListBuffer[Entry]())
+  private var last_tick = current_tick
+
+  private val executor = {
+    val counter = new AtomicInteger
+    val rc = new ScheduledThreadPoolExecutor(threads, new ThreadFactory {
+      def newThread(r: Runnable) = {
+        val thread = new Thread(r, "Monitoring " + counter.incrementAndGet)
+        thread.setDaemon(true)
+        thread
+      }
+    })
+    rc.setExecuteExistingDelayedTasksAfterShutdownPolicy(false)
+    rc.setContinueExistingPeriodicTasksAfterShutdownPolicy(false)
+    rc
+  }
+
+  executor.scheduleAtFixedRate(new Runnable {
+    def run = try {
+      advance
+    } catch {
+      case e:Throwable => log.warn(e, "Monitor scheduler tick failed: " + e)
+    }
+  }, tick_duration - (System.currentTimeMillis % tick_duration), tick_duration, TimeUnit.MILLISECONDS)
+
+  def current_tick = System.currentTimeMillis / tick_duration
+
+  /**
+   * Schedules the task to run every step ticks, it is passed the tick it was due on.
+   */
+  def schedule(step:Long)(task:(Long)=>Unit):Entry = {
+    val entry = new Entry(step max 1, task)
+    this.synchronized {
+      add(entry, next_boundary(entry, current_tick))
+    }
+    entry
+  }
+
+  def shutdown = {
+    executor.shutdown
+    executor.awaitTermination(5, TimeUnit.SECONDS)
+  }
+
+  private def next_boundary(entry:Entry, tick:Long) = (tick / entry.step + 1) * entry.step
+
+  private def add(entry:Entry, due:Long) = {
+    entry.due = due
+    wheel((due % wheel_size).toInt) += entry
+  }
+
+  private def advance = {
+    val now = current_tick
+    val due = ListBuffer[(Entry, Long)]()
+    this.synchronized {
+      // catch up on the ticks we missed, visiting each bucket at most once
+      val first = (last_tick + 1) max (now - wheel_size + 1)
+      var tick = first
+      while (tick <= now) {
+        val bucket = wheel((tick % wheel_size).toInt)
+        val ready = bucket.filter(e => e.cancelled || e.due <= now)
+        bucket --= ready
+        ready.foreach { entry =>
+          if (!entry.cancelled) {
+            due += ((entry, entry.due))
+            add(entry, next_boundary(entry, now))
+          }
+        }
+        tick += 1
+      }
+      last_tick = now
+    }
+    due.foreach { case (entry, tick) =>
+      executor.execute(new Runnable {
+        def run = try {
+          if (!entry.cancelled) {
+            entry.task(tick)
+          }
+        } catch {
+          case e:Throwable => log.warn(e, "Monitoring task failed: " + e)
+        }
+      })
+    }
+  }
+}
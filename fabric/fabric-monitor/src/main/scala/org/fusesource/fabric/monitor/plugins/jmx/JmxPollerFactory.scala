@@ -19,9 +19,11 @@ package jmx
 
 import org.fusesource.fabric.api.monitor.{Poller, DataSourceDTO, PollerFactory}
 import org.fusesource.fabric.internal.Numbers._
-import javax.management.ObjectName
+import javax.management.{MBeanServer, ObjectName}
 import javax.management.openmbean.CompositeData
 import org.fusesource.fabric.api.monitor.DataSourceDTO
+import collection.JavaConversions._
+import collection.mutable.HashMap
 
 /**
  * A PollerFactory for dealing with JMX Attribute polls
@@ -38,27 +40,56 @@ class JmxPollerFactory extends PollerFactory with JmxMixin {
     s.poll match {
       case mbeanPoll: MBeanAttributePollDTO =>
         import mbeanPoll._
-        val objectName = new ObjectName(mbean)
-        new Poller {
-          val source = s
-
-          def close = {
-          }
+        new MBeanAttributePoller(s, new ObjectName(mbean), attribute, key, mbeanServer)
+      case p => throw new IllegalArgumentException("Cannot create a Poller for " + p)
+    }
+  }
 
-          def poll = {
-            val value = mbeanServer.getAttribute(objectName, attribute)
-            if (key==null) {
-              toNumber(value, "MBean " + mbean + " attribute " + attribute)
-            } else {
-              def message = "MBean " + mbean + " attribute " + attribute + " key " + key
-              value match {
-                case cd: CompositeData => toNumber(cd.get(key), message)
-                case _ => throw new IllegalArgumentException(message + " is not a CompositeData value")
-              }
-            }
-          }
+  /**
+   * Reads all the polled attributes of each MBean with a single getAttributes call
+   */
+  override def poll_all(pollers: Seq[Poller]): Seq[Double] = {
+    val attribute_pollers = pollers.collect { case p: MBeanAttributePoller => p }
+    val values = HashMap[(ObjectName, String), AnyRef]()
+    attribute_pollers.groupBy(_.objectName).foreach { case (objectName, mbean_pollers) =>
+      val attributes = mbean_pollers.map(_.attribute).distinct.toArray
+      try {
+        mbeanServer.getAttributes(objectName, attributes).asList.foreach { attribute =>
+          values.put((objectName, attribute.getName), attribute.getValue)
         }
-      case p => throw new IllegalArgumentException("Cannot create a Poller for " + p)
+      } catch {
+        case e: Exception =>
+          // the pollers of this mbean fall back to reading their attribute individually
+      }
+    }
+    pollers.map {
+      case p: MBeanAttributePoller if values.contains((p.objectName, p.attribute)) =>
+        p.to_double(values((p.objectName, p.attribute)))
+      case p => p.poll
+    }
+  }
+}
+
+/**
+ * Polls an MBean attribute or a key of a CompositeData attribute
+ */
+class MBeanAttributePoller(val source: DataSourceDTO, val objectName: ObjectName, val attribute: String,
+                           val key: String, mbeanServer: MBeanServer) extends Poller {
+
+  def close = {
+  }
+
+  def poll = to_double(mbeanServer.getAttribute(objectName, attribute))
+
+  def to_double(value: AnyRef): Double = {
+    if (key==null) {
+      toNumber(value, "MBean " + objectName + " attribute " + attribute)
+    } else {
+      def message = "MBean " + objectName + " attribute " + attribute + " key " + key
+      value match {
+        case cd: CompositeData => toNumber(cd.get(key), message)
+        case _ => throw new IllegalArgumentException(message + " is not a CompositeData value")
+      }
     }
   }
 }
@@ -21,6 +21,8 @@ import java.util.concurrent.TimeoutException;
 
 import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.Op;
+import org.apache.zookeeper.OpResult;
 import org.apache.zookeeper.data.ACL;
 import org.apache.zookeeper.data.Stat;
 import org.linkedin.util.clock.Timespan;
@@ -51,6 +53,21 @@ public interface IZKClient extends org.linkedin.zookeeper.client.IZKClient {
 
     Stat createOrSetWithParents(String path, byte[] data, CreateMode createMode) throws InterruptedException, KeeperException;
 
+    // Multi methods
+
+    /**
+     * Executes the given operations in a single atomic request, either all of them succeed or none of them is applied.
+     * The operations must be created with {@link #createOp}, {@link #setDataOp} and {@link #deleteOp} so that the
+     * configured ACLs and chroot are used.
+     */
+    List<OpResult> multi(Iterable<Op> ops) throws InterruptedException, KeeperException;
+
+    Op createOp(String path, byte[] data, CreateMode createMode);
+
+    Op setDataOp(String path, byte[] data);
+
+    Op deleteOp(String path);
+
     // State methods
 
     void waitForConnected(Timespan timeout) throws InterruptedException, TimeoutException;
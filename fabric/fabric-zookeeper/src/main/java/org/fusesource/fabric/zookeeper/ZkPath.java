@@ -66,6 +66,7 @@ public enum ZkPath {
     CONTAINER_PROVISION_LIST       ("/fabric/registry/containers/provision/{container}/list"),
     CONTAINER_PROVISION_RESULT     ("/fabric/registry/containers/provision/{container}/result"),
     CONTAINER_PROVISION_EXCEPTION  ("/fabric/registry/containers/provision/{container}/exception"),
+    CONTAINER_PROVISION_STEP       ("/fabric/registry/containers/provision/{container}/step"),
     CONTAINER_ENTRY                ("/fabric/registry/containers/config/{container}/{entry}"),
     CONTAINER_PORT_MIN             ("/fabric/registry/containers/config/{container}/minimumport"),
     CONTAINER_PORT_MAX             ("/fabric/registry/containers/config/{container}/maximumport"),
@@ -33,9 +33,12 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.Op;
+import org.apache.zookeeper.OpResult;
 import org.apache.zookeeper.WatchedEvent;
 import org.apache.zookeeper.Watcher;
 import org.apache.zookeeper.ZooDefs;
+import org.apache.zookeeper.ZooKeeper;
 import org.apache.zookeeper.data.ACL;
 import org.apache.zookeeper.data.Id;
 import org.apache.zookeeper.data.Stat;
@@ -140,6 +143,7 @@ public abstract class AbstractZKClient extends org.linkedin.zookeeper.client.Abs
                     return f.get(obj);
                 }
             }
+            clazz = clazz.getSuperclass();
         }
         throw new NoSuchFieldError(name);
     }
@@ -575,6 +579,33 @@ public abstract class AbstractZKClient extends org.linkedin.zookeeper.client.Abs
         }
     }
 
+    @Override
+    public List<OpResult> multi(Iterable<Op> ops) throws InterruptedException, KeeperException {
+        ZooKeeper zk;
+        try {
+            // the linkedin wrapper predates multi so we need the underlying client
+            zk = (ZooKeeper) getField(getZk(), "_zk");
+        } catch (Exception e) {
+            throw new IllegalStateException("ZooKeeper client does not support multi operations", e);
+        }
+        return zk.multi(ops);
+    }
+
+    @Override
+    public Op createOp(String path, byte[] data, CreateMode createMode) {
+        return Op.create(adjustPath(path), data, getNodeACLs(path), createMode);
+    }
+
+    @Override
+    public Op setDataOp(String path, byte[] data) {
+        return Op.setData(adjustPath(path), data, -1);
+    }
+
+    @Override
+    public Op deleteOp(String path) {
+        return Op.delete(adjustPath(path), -1);
+    }
+
     private void doFixACLs(String path, boolean recursive) throws KeeperException, InterruptedException {
         setACL(path, getNodeACLs(path), -1);
         if (recursive) {
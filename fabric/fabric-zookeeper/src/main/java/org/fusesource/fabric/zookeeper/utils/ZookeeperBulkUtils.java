@@ -0,0 +1,161 @@
+/**
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.fabric.zookeeper.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.zookeeper.AsyncCallback;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.data.Stat;
+import org.fusesource.fabric.zookeeper.IZKClient;
+
+/**
+ * Reads many znodes using pipelined asynchronous requests, so that reading a large part of the registry costs a
+ * handful of round trips rather than one round trip per znode.
+ */
+public class ZookeeperBulkUtils {
+
+    public static final int MAX_OUTSTANDING_REQUESTS = 1000;
+    public static final long TIMEOUT = 60000L;
+
+    private ZookeeperBulkUtils() {
+        //Utility Class
+    }
+
+    /**
+     * Returns the data of the given paths. Paths which do not exist are not contained in the returned map, znodes
+     * without data are mapped to null.
+     */
+    public static Map<String, byte[]> getData(IZKClient zooKeeper, Collection<String> paths) throws InterruptedException, KeeperException {
+        final Map<String, byte[]> answer = Collections.synchronizedMap(new HashMap<String, byte[]>());
+        final Requests requests = new Requests(paths.size());
+        for (String path : paths) {
+            requests.acquire();
+            zooKeeper.getData(path, false, new AsyncCallback.DataCallback() {
+                public void processResult(int rc, String path, Object ctx, byte[] data, Stat stat) {
+                    if (rc == KeeperException.Code.OK.intValue()) {
+                        answer.put((String) ctx, data);
+                    }
+                    requests.completed(rc, (String) ctx);
+                }
+            }, path);
+        }
+        requests.await();
+        return answer;
+    }
+
+    /**
+     * Returns the subset of the given paths which exist
+     */
+    public static Set<String> exists(IZKClient zooKeeper, Collection<String> paths) throws InterruptedException, KeeperException {
+        final Set<String> answer = Collections.synchronizedSet(new HashSet<String>());
+        final Requests requests = new Requests(paths.size());
+        for (String path : paths) {
+            requests.acquire();
+            zooKeeper.exists(path, false, new AsyncCallback.StatCallback() {
+                public void processResult(int rc, String path, Object ctx, Stat stat) {
+                    if (rc == KeeperException.Code.OK.intValue()) {
+                        answer.add((String) ctx);
+                    }
+                    requests.completed(rc, (String) ctx);
+                }
+            }, path);
+        }
+        requests.await();
+        return answer;
+    }
+
+    /**
+     * Returns the paths of all the descendants of the given path relative to it, like
+     * {@link IZKClient#getAllChildren(String)} does, reading each level of the tree with pipelined requests.
+     */
+    public static List<String> getAllChildren(IZKClient zooKeeper, String path) throws InterruptedException, KeeperException {
+        String root = path.endsWith("/") ? path : path + "/";
+        List<String> answer = new ArrayList<String>();
+        List<String> level = Collections.singletonList(root.length() > 1 ? root.substring(0, root.length() - 1) : root);
+        while (!level.isEmpty()) {
+            final List<String> next = Collections.synchronizedList(new ArrayList<String>());
+            final Requests requests = new Requests(level.size());
+            for (String parent : level) {
+                requests.acquire();
+                zooKeeper.getChildren(parent, false, new AsyncCallback.ChildrenCallback() {
+                    public void processResult(int rc, String path, Object ctx, List<String> children) {
+                        String parent = (String) ctx;
+                        if (rc == KeeperException.Code.OK.intValue() && children != null) {
+                            for (String child : children) {
+                                next.add(parent.equals("/") ? "/" + child : parent + "/" + child);
+                            }
+                        }
+                        requests.completed(rc, parent);
+                    }
+                }, parent);
+            }
+            requests.await();
+            for (String child : next) {
+                answer.add(child.substring(root.length()));
+            }
+            level = next;
+        }
+        Collections.sort(answer);
+        return answer;
+    }
+
+    /**
+     * Keeps track of a batch of asynchronous requests, limiting the number of requests in flight
+     */
+    private static class Requests {
+        private final Semaphore permits = new Semaphore(MAX_OUTSTANDING_REQUESTS);
+        private final CountDownLatch latch;
+        private final AtomicReference<KeeperException> failure = new AtomicReference<KeeperException>();
+
+        Requests(int count) {
+            this.latch = new CountDownLatch(count);
+        }
+
+        void acquire() throws InterruptedException {
+            permits.acquire();
+        }
+
+        void completed(int rc, String path) {
+            if (rc != KeeperException.Code.OK.intValue() && rc != KeeperException.Code.NONODE.intValue()) {
+                failure.compareAndSet(null, KeeperException.create(KeeperException.Code.get(rc), path));
+            }
+            permits.release();
+            latch.countDown();
+        }
+
+        void await() throws InterruptedException, KeeperException {
+            if (!latch.await(TIMEOUT, TimeUnit.MILLISECONDS)) {
+                throw new KeeperException.OperationTimeoutException();
+            }
+            if (failure.get() != null) {
+                throw failure.get();
+            }
+        }
+    }
+}
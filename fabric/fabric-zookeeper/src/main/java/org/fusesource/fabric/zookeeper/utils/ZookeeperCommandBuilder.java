@@ -2,6 +2,8 @@ package org.fusesource.fabric.zookeeper.utils;
 
 import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.Op;
+import org.apache.zookeeper.OpResult;
 import org.apache.zookeeper.WatchedEvent;
 import org.apache.zookeeper.Watcher;
 import org.apache.zookeeper.data.Stat;
@@ -72,6 +74,10 @@ public class ZookeeperCommandBuilder<T> {
         return new ZookeeperCommandBuilder<Boolean>(new ZookeeperFixAclsCommand(znode, recursive));
     }
 
+    public static ZookeeperCommandBuilder<List<OpResult>> multi(Iterable<Op> ops) {
+        return new ZookeeperCommandBuilder<List<OpResult>>(new ZookeeperMultiCommand(ops));
+    }
+
     public ZookeeperCommandBuilder withRetries(int retries) {
         this.retries = retries;
         return this;
@@ -273,6 +279,19 @@ public class ZookeeperCommandBuilder<T> {
         }
     }
 
+    private static class ZookeeperMultiCommand implements ZookeeperCommand<List<OpResult>> {
+        private final Iterable<Op> ops;
+
+        ZookeeperMultiCommand(Iterable<Op> ops) {
+            this.ops = ops;
+        }
+
+        @Override
+        public List<OpResult> execute(IZKClient zooKeeper) throws KeeperException, InterruptedException {
+            return zooKeeper.multi(ops);
+        }
+    }
+
     private static class ZookeeperFixAclsCommand implements ZookeeperCommand<Boolean> {
         private final String znode;
         private final Boolean recursive;
@@ -14,41 +14,138 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-
 package org.fusesource.fabric.zookeeper.utils;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringReader;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.Op;
 import org.fusesource.fabric.utils.Closeables;
 import org.fusesource.fabric.zookeeper.IZKClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import static org.fusesource.fabric.zookeeper.utils.RegexSupport.getPatterns;
 import static org.fusesource.fabric.zookeeper.utils.RegexSupport.matches;
 
 public class ZookeeperImportUtils {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(ZookeeperImportUtils.class);
+
+    /**
+     * The maximum number of operations and bytes of data sent in a single multi request, well below the
+     * default 1MB jute.maxbuffer limit of the server
+     */
+    public static final int MAX_BATCH_OPERATIONS = 1000;
+    public static final int MAX_BATCH_SIZE = 512 * 1024;
+
+    private static final Pattern PROFILE_PATH = Pattern.compile("(" + RegexSupport.PROFILE_REGEX + ")(/.*)?");
 
     private ZookeeperImportUtils() {
         //Utility Class
     }
 
     public static void importFromFileSystem(IZKClient zooKeeper, String source, String target, String includeRegex[], String excludeRegex[], boolean delete, boolean dryRun, boolean verbose) throws Exception {
+        importFromFileSystem(zooKeeper, source, target, includeRegex, excludeRegex, delete, dryRun, verbose, false);
+    }
+
+    /**
+     * Imports the directory tree into the registry. When diff is enabled the znodes whose data is already
+     * equal to the imported data are not written at all.
+     */
+    public static void importFromFileSystem(IZKClient zooKeeper, String source, String target, String includeRegex[], String excludeRegex[], boolean delete, boolean dryRun, boolean verbose, boolean diff) throws Exception {
         Map<String, String> settings = new TreeMap<String, String>();
         File s = new File(source);
         getCandidates(zooKeeper, s, s, settings, target);
+        importSettings(zooKeeper, settings, target, includeRegex, excludeRegex, delete, dryRun, verbose, diff);
+    }
+
+    /**
+     * Imports a zip archive written by the export command, reading it as a stream
+     */
+    public static void importFromArchive(IZKClient zooKeeper, String source, String target, String includeRegex[], String excludeRegex[], boolean delete, boolean dryRun, boolean verbose, boolean diff) throws Exception {
+        Map<String, String> settings = new TreeMap<String, String>();
+        ZipInputStream in = new ZipInputStream(new BufferedInputStream(new FileInputStream(source)));
+        try {
+            for (ZipEntry entry = in.getNextEntry(); entry != null; entry = in.getNextEntry()) {
+                String p = entry.getName();
+                if (p.endsWith("/")) {
+                    addDirectoryCandidate(settings, p.substring(0, p.length() - 1));
+                } else {
+                    addFileCandidate(settings, p, new String(readFully(in)));
+                }
+            }
+        } finally {
+            Closeables.closeQuitely(in);
+        }
+        importSettings(zooKeeper, settings, target, includeRegex, excludeRegex, delete, dryRun, verbose, diff);
+    }
+
+    public static void importFromPropertiesFile(IZKClient zooKeeper, String source, String target, String includeRegex[], String excludeRegex[], boolean dryRun) throws Exception {
+        importFromPropertiesFile(zooKeeper, source, target, includeRegex, excludeRegex, dryRun, false);
+    }
+
+    public static void importFromPropertiesFile(IZKClient zooKeeper, String source, String target, String includeRegex[], String excludeRegex[], boolean dryRun, boolean diff) throws Exception {
+        List<Pattern> includes = getPatterns(includeRegex);
+        List<Pattern> excludes = getPatterns(excludeRegex);
+        Map<String, String> nodes = new TreeMap<String, String>();
+        InputStream in = null;
+        try {
+            in = new BufferedInputStream(new URL(source).openStream());
+            Properties props = new Properties();
+            props.load(in);
+            for (Enumeration names = props.propertyNames(); names.hasMoreElements(); ) {
+                String name = (String) names.nextElement();
+                String value = props.getProperty(name);
+                if (value != null && value.isEmpty()) {
+                    value = null;
+                }
+                if (!name.startsWith("/")) {
+                    name = "/" + name;
+                }
+                name = target + name;
+                if (!matches(includes, name, true) || matches(excludes, name, false)) {
+                    continue;
+                }
+                if (dryRun) {
+                    System.out.printf("Creating path \"%s\" with value \"%s\"\n", name, value);
+                }
+                nodes.put(name, value);
+            }
+        } finally {
+            Closeables.closeQuitely(in);
+        }
+        if (!dryRun) {
+            write(zooKeeper, nodes, false, diff);
+        }
+    }
+
+    private static void importSettings(IZKClient zooKeeper, Map<String, String> settings, String target, String includeRegex[], String excludeRegex[], boolean delete, boolean dryRun, boolean verbose, boolean diff) throws Exception {
         List<Pattern> include = getPatterns(includeRegex);
         List<Pattern> exclude = getPatterns(excludeRegex);
 
@@ -59,7 +156,8 @@ public class ZookeeperImportUtils {
             target = "/" + target;
         }
 
-        List<String> paths = new ArrayList<String>();
+        Set<String> paths = new HashSet<String>();
+        Map<String, String> nodes = new TreeMap<String, String>();
 
         for (Map.Entry<String, String> entry : settings.entrySet()) {
             String key = entry.getKey();
@@ -69,96 +167,156 @@ public class ZookeeperImportUtils {
             if (!matches(include, key, true) || matches(exclude, key, false)) {
                 continue;
             }
-            if (!dryRun) {
-                if (data != null) {
-                    if (verbose) {
-                        System.out.println("importing: " + key);
-                    }
-                    ZookeeperCommandBuilder.set(key,data).execute(zooKeeper);
-                }
-            } else {
+            if (dryRun) {
                 System.out.printf("Creating path \"%s\" with value \"%s\"\n", key, data);
+            } else if (data != null) {
+                nodes.put(key, data);
             }
         }
 
+        if (!nodes.isEmpty()) {
+            write(zooKeeper, nodes, verbose, diff);
+        }
+
         if (delete) {
             deletePathsNotIn(zooKeeper, paths, target, dryRun);
         }
     }
 
-    public static void importFromPropertiesFile(IZKClient zooKeeper, String source, String target, String includeRegex[], String excludeRegex[], boolean dryRun) throws Exception {
-        List<Pattern> includes = getPatterns(includeRegex);
-        List<Pattern> excludes = getPatterns(excludeRegex);
-        InputStream in = null;
-        try {
-            new BufferedInputStream(new URL(source).openStream());
-            Properties props = new Properties();
-            props.load(in);
-            for (Enumeration names = props.propertyNames(); names.hasMoreElements(); ) {
-                String name = (String) names.nextElement();
-                String value = props.getProperty(name);
-                if (value != null && value.isEmpty()) {
-                    value = null;
-                }
-                if (!name.startsWith("/")) {
-                    name = "/" + name;
+    /**
+     * Creates or updates the given znodes. The current state of the registry is read with pipelined requests
+     * and the changes are then written with multi requests, where all the changes of a profile are committed
+     * in a single atomic request.
+     */
+    private static void write(IZKClient zooKeeper, Map<String, String> nodes, boolean verbose, boolean diff) throws Exception {
+        Set<String> paths = new TreeSet<String>();
+        for (String path : nodes.keySet()) {
+            String p = path;
+            while (p.length() > 1 && paths.add(p)) {
+                p = getParentPath(p);
+            }
+        }
+        Set<String> existing = new HashSet<String>(ZookeeperBulkUtils.exists(zooKeeper, paths));
+        Map<String, byte[]> current = Collections.emptyMap();
+        if (diff) {
+            List<String> candidates = new ArrayList<String>();
+            for (String path : nodes.keySet()) {
+                if (existing.contains(path)) {
+                    candidates.add(path);
                 }
-                name = target + name;
-                if (!matches(includes, name, true) || matches(excludes, name, false)) {
+            }
+            current = ZookeeperBulkUtils.getData(zooKeeper, candidates);
+        }
+
+        // lets group the nodes by profile first, as the paths of a profile such as camel are not contiguous
+        // when sorted if another profile such as camel-jms shares its name as a prefix
+        Map<String, List<Map.Entry<String, String>>> groups = new LinkedHashMap<String, List<Map.Entry<String, String>>>();
+        for (Map.Entry<String, String> entry : nodes.entrySet()) {
+            Matcher matcher = PROFILE_PATH.matcher(entry.getKey());
+            String group = matcher.matches() ? matcher.group(1) : null;
+            List<Map.Entry<String, String>> entries = groups.get(group);
+            if (entries == null) {
+                entries = new ArrayList<Map.Entry<String, String>>();
+                groups.put(group, entries);
+            }
+            entries.add(entry);
+        }
+
+        Batch batch = new Batch(zooKeeper);
+        int unchanged = 0;
+        for (Map.Entry<String, List<Map.Entry<String, String>>> group : groups.entrySet()) {
+            batch.begin(group.getKey());
+            for (Map.Entry<String, String> entry : group.getValue()) {
+                String path = entry.getKey();
+                byte[] data = entry.getValue() != null ? entry.getValue().getBytes() : null;
+                if (diff && current.containsKey(path) && Arrays.equals(current.get(path), data)) {
+                    unchanged++;
+                    if (verbose) {
+                        System.out.println("unchanged: " + path);
+                    }
                     continue;
                 }
-                if (!dryRun) {
-                    ZookeeperCommandBuilder.set(name, value).execute(zooKeeper);
+                if (verbose) {
+                    System.out.println("importing: " + path);
+                }
+
+                LinkedList<String> parents = new LinkedList<String>();
+                for (String p = getParentPath(path); p.length() > 1 && !existing.contains(p); p = getParentPath(p)) {
+                    parents.addFirst(p);
+                }
+                for (String parent : parents) {
+                    batch.add(zooKeeper.createOp(parent, null, CreateMode.PERSISTENT), parent, null, false);
+                    existing.add(parent);
+                }
+                if (existing.contains(path)) {
+                    batch.add(zooKeeper.setDataOp(path, data), path, data, true);
                 } else {
-                    System.out.printf("Creating path \"%s\" with value \"%s\"\n", name, value);
+                    batch.add(zooKeeper.createOp(path, data, CreateMode.PERSISTENT), path, data, true);
+                    existing.add(path);
                 }
             }
-        } finally {
-            Closeables.closeQuitely(in);
+        }
+        batch.flush();
+        if (diff) {
+            System.out.printf("Skipped %d unchanged of %d paths\n", unchanged, nodes.size());
         }
     }
 
-
     private static void getCandidates(IZKClient zookeeper, File parent, File current, Map<String, String> settings, String target) throws Exception {
-        List<Pattern> profile = getPatterns(new String[]{RegexSupport.PROFILE_REGEX});
-        List<Pattern> containerProperties = getPatterns(new String[]{RegexSupport.PROFILE_CONTAINER_PROPERTIES_REGEX});
-        List<Pattern> attributes = getPatterns(new String[]{RegexSupport.PROFILE_ATTRIBUTES_REGEX});
         if (current.isDirectory()) {
             for (File child : current.listFiles()) {
                 getCandidates(zookeeper, parent, child, settings, target);
             }
-            String p = buildZKPath(parent, current).replaceFirst("/", "");
-            if (!matches(profile, "/" + p, false)) {
-                settings.put(p, null);
-            }
+            addDirectoryCandidate(settings, buildZKPath(parent, current).replaceFirst("/", ""));
         } else {
             BufferedInputStream in = new BufferedInputStream(new FileInputStream(current));
             byte[] contents = new byte[in.available()];
             in.read(contents);
             in.close();
-            String p = buildZKPath(parent, current).replaceFirst("/", "");
-            if (p.endsWith(".cfg")) {
-                p = p.substring(0, p.length() - ".cfg".length());
-            }
+            addFileCandidate(settings, buildZKPath(parent, current).replaceFirst("/", ""), new String(contents));
+        }
+    }
 
-            if (matches(attributes, "/" + p, false)) {
-                settings.put(p.substring(0, p.lastIndexOf('/')), new String(contents));
-            } else if (matches(containerProperties, "/" + p, false)) {
-                settings.put(p, new String(contents).replaceAll(RegexSupport.PARENTS_REGEX, ""));
-                Properties props = new Properties();
-                props.load(new StringReader(new String(contents)));
-                if (settings.get(p.substring(0, p.lastIndexOf('/'))) == null) {
-                    String parents = (String) props.get("parents");
-                    if (parents != null && !parents.isEmpty()) {
-                        settings.put(p.substring(0, p.lastIndexOf('/')), "parents=" + parents);
-                    }
+    private static void addDirectoryCandidate(Map<String, String> settings, String p) {
+        List<Pattern> profile = getPatterns(new String[]{RegexSupport.PROFILE_REGEX});
+        if (!matches(profile, "/" + p, false) && !settings.containsKey(p)) {
+            settings.put(p, null);
+        }
+    }
+
+    private static void addFileCandidate(Map<String, String> settings, String p, String contents) throws IOException {
+        List<Pattern> profile = getPatterns(new String[]{RegexSupport.PROFILE_REGEX});
+        List<Pattern> containerProperties = getPatterns(new String[]{RegexSupport.PROFILE_CONTAINER_PROPERTIES_REGEX});
+        List<Pattern> attributes = getPatterns(new String[]{RegexSupport.PROFILE_ATTRIBUTES_REGEX});
+        if (p.endsWith(".cfg")) {
+            p = p.substring(0, p.length() - ".cfg".length());
+        }
+
+        if (matches(attributes, "/" + p, false)) {
+            settings.put(p.substring(0, p.lastIndexOf('/')), contents);
+        } else if (matches(containerProperties, "/" + p, false)) {
+            settings.put(p, contents.replaceAll(RegexSupport.PARENTS_REGEX, ""));
+            Properties props = new Properties();
+            props.load(new StringReader(contents));
+            if (settings.get(p.substring(0, p.lastIndexOf('/'))) == null) {
+                String parents = (String) props.get("parents");
+                if (parents != null && !parents.isEmpty()) {
+                    settings.put(p.substring(0, p.lastIndexOf('/')), "parents=" + parents);
                 }
-            } else if (!matches(profile, "/" + p, false)) {
-                settings.put(p, new String(contents));
             }
+        } else if (!matches(profile, "/" + p, false)) {
+            settings.put(p, contents);
         }
     }
 
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        for (int count = in.read(buffer); count > 0; count = in.read(buffer)) {
+            out.write(buffer, 0, count);
+        }
+        return out.toByteArray();
+    }
 
     private static String buildZKPath(File parent, File current) {
         String rc = "";
@@ -168,7 +326,12 @@ public class ZookeeperImportUtils {
         return rc;
     }
 
-    private static void deletePathsNotIn(IZKClient zookeeper, List<String> paths, String target, boolean dryRun) throws Exception {
+    private static String getParentPath(String path) {
+        int idx = path.lastIndexOf('/');
+        return idx > 0 ? path.substring(0, idx) : "/";
+    }
+
+    private static void deletePathsNotIn(IZKClient zookeeper, Set<String> paths, String target, boolean dryRun) throws Exception {
         List<String> zkPaths = ZookeeperCommandBuilder.getChildren(target).execute(zookeeper);
 
         for (String path : zkPaths) {
@@ -182,4 +345,69 @@ public class ZookeeperImportUtils {
             }
         }
     }
+
+    /**
+     * Collects the operations of a group of znodes, such as a profile, so that they are committed in as few
+     * multi requests as possible. A group is only split across requests when it exceeds the batch limits.
+     */
+    private static class Batch {
+        private final IZKClient zooKeeper;
+        private final List<Op> ops = new ArrayList<Op>();
+        private final List<String> paths = new ArrayList<String>();
+        private final List<byte[]> data = new ArrayList<byte[]>();
+        private final List<Boolean> values = new ArrayList<Boolean>();
+        private String group;
+        private int size;
+
+        Batch(IZKClient zooKeeper) {
+            this.zooKeeper = zooKeeper;
+        }
+
+        void begin(String group) throws Exception {
+            if (group == null ? this.group != null : !group.equals(this.group)) {
+                flush();
+            }
+            this.group = group;
+        }
+
+        void add(Op op, String path, byte[] bytes, boolean value) throws Exception {
+            int length = path.length() + (bytes != null ? bytes.length : 0);
+            if (!ops.isEmpty() && (ops.size() >= MAX_BATCH_OPERATIONS || size + length > MAX_BATCH_SIZE)) {
+                if (group != null) {
+                    LOGGER.warn("Profile {} is too large to be imported in a single atomic request", group);
+                }
+                flush();
+            }
+            ops.add(op);
+            paths.add(path);
+            data.add(bytes);
+            values.add(value);
+            size += length;
+        }
+
+        void flush() throws Exception {
+            if (ops.isEmpty()) {
+                return;
+            }
+            try {
+                ZookeeperCommandBuilder.multi(ops).execute(zooKeeper);
+            } catch (KeeperException e) {
+                if (e.code() != KeeperException.Code.NODEEXISTS && e.code() != KeeperException.Code.NONODE) {
+                    throw e;
+                }
+                // the registry has been changed concurrently, so lets fall back to writing the nodes one by one
+                LOGGER.warn("Failed to import {} paths in a single request ({}). Importing them one by one.", ops.size(), e.code());
+                for (int i = 0; i < ops.size(); i++) {
+                    if (values.get(i)) {
+                        ZookeeperCommandBuilder.set(paths.get(i), data.get(i)).execute(zooKeeper);
+                    }
+                }
+            }
+            ops.clear();
+            paths.clear();
+            data.clear();
+            values.clear();
+            size = 0;
+        }
+    }
 }
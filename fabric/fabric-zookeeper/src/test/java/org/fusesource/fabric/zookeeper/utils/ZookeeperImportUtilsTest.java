@@ -0,0 +1,179 @@
+/**
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.fabric.zookeeper.utils;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.zookeeper.AsyncCallback;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.Op;
+import org.apache.zookeeper.OpResult;
+import org.apache.zookeeper.ZooDefs;
+import org.apache.zookeeper.data.Stat;
+import org.easymock.IAnswer;
+import org.fusesource.fabric.zookeeper.IZKClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.easymock.EasyMock.*;
+
+public class ZookeeperImportUtilsTest {
+
+    private static final String PROFILE = "fabric/configs/versions/1.0/profiles/default";
+    private static final String UNCHANGED = "/" + PROFILE + "/org.foo.properties";
+    private static final String CHANGED = "/" + PROFILE + "/org.bar.properties";
+    private static final String ADDED = "/" + PROFILE + "/org.baz.properties";
+
+    IZKClient zookeeper = createMock(IZKClient.class);
+    Map<String, String> registry = new HashMap<String, String>();
+    File source;
+
+    @Before
+    public void setUp() throws Exception {
+        reset(zookeeper);
+        source = File.createTempFile("import", "");
+        source.delete();
+        write(UNCHANGED, "a=1");
+        write(CHANGED, "b=2");
+        write(ADDED, "c=3");
+
+        registry.put("/fabric", null);
+        registry.put("/fabric/configs", null);
+        registry.put("/fabric/configs/versions", null);
+        registry.put("/fabric/configs/versions/1.0", null);
+        registry.put("/fabric/configs/versions/1.0/profiles", null);
+        registry.put("/" + PROFILE, null);
+        registry.put(UNCHANGED, "a=1");
+        registry.put(CHANGED, "b=1");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        delete(source);
+    }
+
+    @Test
+    public void testDiffOnlyWritesChangedNodesInOneRequest() throws Exception {
+        expectReads();
+        Op set = expectSetData(CHANGED, "b=2");
+        Op create = expectCreate(ADDED, "c=3");
+        expect(zookeeper.multi(eq(Arrays.asList(set, create)))).andReturn(Collections.<OpResult>emptyList()).once();
+        replay(zookeeper);
+
+        ZookeeperImportUtils.importFromFileSystem(zookeeper, source.getAbsolutePath(), "/", null, null, false, false, false, true);
+        verify(zookeeper);
+    }
+
+    @Test
+    public void testImportWritesAllNodesOfAProfileInOneRequest() throws Exception {
+        expectReads();
+        Op set = expectSetData(CHANGED, "b=2");
+        Op create = expectCreate(ADDED, "c=3");
+        Op unchanged = expectSetData(UNCHANGED, "a=1");
+        expect(zookeeper.multi(eq(Arrays.asList(set, create, unchanged)))).andReturn(Collections.<OpResult>emptyList()).once();
+        replay(zookeeper);
+
+        ZookeeperImportUtils.importFromFileSystem(zookeeper, source.getAbsolutePath(), "/", null, null, false, false, false, false);
+        verify(zookeeper);
+    }
+
+    @Test
+    public void testProfilesSharingAPrefixAreWrittenInOneRequestEach() throws Exception {
+        String camel = "/fabric/configs/versions/1.0/profiles/camel";
+        String camelJms = "/fabric/configs/versions/1.0/profiles/camel-jms";
+        write(camel + "/attributes.properties", "parents=default");
+        write(camel + "/org.camel.properties", "d=4");
+        write(camelJms + "/org.jms.properties", "e=5");
+        registry.put(camel, null);
+        registry.put(camelJms, null);
+
+        expectReads();
+        Op attributes = expectSetData(camel, "parents=default");
+        Op camelConfig = expectCreate(camel + "/org.camel.properties", "d=4");
+        Op jmsConfig = expectCreate(camelJms + "/org.jms.properties", "e=5");
+        Op set = expectSetData(CHANGED, "b=2");
+        Op create = expectCreate(ADDED, "c=3");
+        Op unchanged = expectSetData(UNCHANGED, "a=1");
+        expect(zookeeper.multi(eq(Arrays.asList(attributes, camelConfig)))).andReturn(Collections.<OpResult>emptyList()).once();
+        expect(zookeeper.multi(eq(Arrays.asList(jmsConfig)))).andReturn(Collections.<OpResult>emptyList()).once();
+        expect(zookeeper.multi(eq(Arrays.asList(set, create, unchanged)))).andReturn(Collections.<OpResult>emptyList()).once();
+        replay(zookeeper);
+
+        ZookeeperImportUtils.importFromFileSystem(zookeeper, source.getAbsolutePath(), "/", null, null, false, false, false, false);
+        verify(zookeeper);
+    }
+
+    private void expectReads() {
+        zookeeper.exists(isA(String.class), eq(false), isA(AsyncCallback.StatCallback.class), anyObject());
+        expectLastCall().andAnswer(new IAnswer<Object>() {
+            public Object answer() throws Throwable {
+                Object[] args = getCurrentArguments();
+                String path = (String) args[0];
+                KeeperException.Code rc = registry.containsKey(path) ? KeeperException.Code.OK : KeeperException.Code.NONODE;
+                ((AsyncCallback.StatCallback) args[2]).processResult(rc.intValue(), path, args[3], null);
+                return null;
+            }
+        }).anyTimes();
+        zookeeper.getData(isA(String.class), eq(false), isA(AsyncCallback.DataCallback.class), anyObject());
+        expectLastCall().andAnswer(new IAnswer<Object>() {
+            public Object answer() throws Throwable {
+                Object[] args = getCurrentArguments();
+                String path = (String) args[0];
+                String value = registry.get(path);
+                ((AsyncCallback.DataCallback) args[2]).processResult(KeeperException.Code.OK.intValue(), path, args[3], value != null ? value.getBytes() : null, new Stat());
+                return null;
+            }
+        }).anyTimes();
+    }
+
+    private Op expectSetData(String path, String value) {
+        Op op = Op.setData(path, value.getBytes(), -1);
+        expect(zookeeper.setDataOp(eq(path), aryEq(value.getBytes()))).andReturn(op).once();
+        return op;
+    }
+
+    private Op expectCreate(String path, String value) {
+        Op op = Op.create(path, value.getBytes(), ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+        expect(zookeeper.createOp(eq(path), aryEq(value.getBytes()), eq(CreateMode.PERSISTENT))).andReturn(op).once();
+        return op;
+    }
+
+    private void write(String path, String value) throws Exception {
+        File file = new File(source, path);
+        file.getParentFile().mkdirs();
+        FileWriter writer = new FileWriter(file);
+        writer.write(value);
+        writer.close();
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
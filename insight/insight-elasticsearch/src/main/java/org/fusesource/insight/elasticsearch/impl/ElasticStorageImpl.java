@@ -16,38 +16,106 @@
  */
 package org.fusesource.insight.elasticsearch.impl;
 
-import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.node.Node;
 import org.fusesource.insight.storage.StorageService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
-public class ElasticStorageImpl implements StorageService, Runnable {
+/**
+ * Indexes events into elastic search using bulk requests.
+ * <p/>
+ * Events are added to a bounded in-memory queue which a dispatcher thread drains into bulk requests of up
+ * to <code>insight.storage.bulk_size</code> events or <code>insight.storage.bulk_bytes</code> bytes, waiting
+ * at most <code>insight.storage.linger</code> millis for a bulk to fill up. Up to
+ * <code>insight.storage.concurrent_bulks</code> bulks are executed asynchronously at the same time.
+ * When the queue is full, or a bulk fails, events overflow to a memory-mapped {@link SpillJournal} which is
+ * replayed once elastic search catches up, including after a restart. Replayed events are only removed from
+ * the journal once their bulk has succeeded. After a failed bulk no further bulks are sent for an exponentially
+ * increasing delay, from <code>insight.storage.retry_delay</code> up to
+ * <code>insight.storage.max_retry_delay</code> millis.
+ */
+public class ElasticStorageImpl implements StorageService, Runnable, ElasticStorageImplMBean {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ElasticStorageImpl.class);
 
-    private static final SimpleDateFormat indexFormat = new SimpleDateFormat("yyyy.MM.dd");
+    private static final ThreadLocal<SimpleDateFormat> indexFormat = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            return new SimpleDateFormat("yyyy.MM.dd");
+        }
+    };
 
     private final Node node;
+    private int queueCapacity = 10000;
     private int max = 1000;
+    private long maxBytes = 5 * 1024 * 1024;
+    private long linger = 100;
+    private int concurrentBulks = 2;
+    private boolean spillEnabled = true;
+    private File spillDirectory;
+    private int spillSegmentSize = 16 * 1024 * 1024;
+    private long spillMaxSize = 1024L * 1024 * 1024;
+    private long retryDelay = 1000;
+    private long maxRetryDelay = 30000;
+
     private Thread thread;
     private volatile boolean running;
-    private BlockingQueue<ActionRequest> queue = new LinkedBlockingQueue<ActionRequest>();
+    private BlockingQueue<StorageEvent> queue;
+    private Semaphore inFlight;
+    private SpillJournal journal;
+    private ObjectName objectName;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long retryTime;
+
+    private final AtomicLong indexedCount = new AtomicLong();
+    private final AtomicLong spilledCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong bulkCount = new AtomicLong();
+    private final AtomicLong totalBulkLatency = new AtomicLong();
+    private final AtomicLong lastBulkLatency = new AtomicLong();
+    private final AtomicLong maxBulkLatency = new AtomicLong();
 
     public ElasticStorageImpl(Node node) {
         this.node = node;
     }
 
     public void init() {
+        configure(node.settings());
+        queue = new ArrayBlockingQueue<StorageEvent>(queueCapacity);
+        inFlight = new Semaphore(concurrentBulks);
+        if (spillEnabled) {
+            journal = new SpillJournal(spillDirectory, spillSegmentSize, spillMaxSize);
+            try {
+                journal.open();
+            } catch (IOException e) {
+                LOGGER.warn("Unable to open the spill journal at " + spillDirectory + ", events will be dropped when the queue is full", e);
+                journal = null;
+            }
+        }
+        registerMBean();
         running = true;
         thread = new Thread(this, "ElasticStorage");
         thread.start();
@@ -57,46 +125,332 @@ public class ElasticStorageImpl implements StorageService, Runnable {
         running = false;
         if (thread != null) {
             thread.interrupt();
+            try {
+                thread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
         }
+        if (inFlight != null) {
+            // lets give the bulks in flight a chance to complete before closing the journal
+            try {
+                if (inFlight.tryAcquire(concurrentBulks, 5000, TimeUnit.MILLISECONDS)) {
+                    inFlight.release(concurrentBulks);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (queue != null) {
+            // lets keep whatever we did not manage to send for the next start
+            List<StorageEvent> remaining = new ArrayList<StorageEvent>();
+            queue.drainTo(remaining);
+            spill(remaining);
+        }
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+        unregisterMBean();
     }
 
+    protected void configure(Settings settings) {
+        queueCapacity = settings.getAsInt("insight.storage.queue_size", queueCapacity);
+        max = settings.getAsInt("insight.storage.bulk_size", max);
+        maxBytes = settings.getAsLong("insight.storage.bulk_bytes", maxBytes);
+        linger = settings.getAsLong("insight.storage.linger", linger);
+        concurrentBulks = settings.getAsInt("insight.storage.concurrent_bulks", concurrentBulks);
+        spillEnabled = settings.getAsBoolean("insight.storage.spill.enabled", spillEnabled);
+        spillSegmentSize = settings.getAsInt("insight.storage.spill.segment_size", spillSegmentSize);
+        spillMaxSize = settings.getAsLong("insight.storage.spill.max_size", spillMaxSize);
+        retryDelay = settings.getAsLong("insight.storage.retry_delay", retryDelay);
+        maxRetryDelay = settings.getAsLong("insight.storage.max_retry_delay", maxRetryDelay);
+        String path = settings.get("insight.storage.spill.path");
+        if (path == null) {
+            path = settings.get("path.home", System.getProperty("java.io.tmpdir")) + File.separator + "insight-spill";
+        }
+        spillDirectory = new File(path);
+    }
 
     @Override
     public void store(String type, long timestamp, String jsonData) {
-        IndexRequest ir = new IndexRequest()
-                .index("insight-"+ indexFormat.format(new Date(timestamp)))
-                .type(type)
-                .source(jsonData)
-                .create(true);
-        queue.add(ir);
+        StorageEvent event = new StorageEvent(type, timestamp, jsonData);
+        if (!queue.offer(event)) {
+            spill(event);
+        }
     }
 
     public void run() {
         while (running) {
+            List<StorageEvent> events = null;
+            SpillJournal.Batch replayed = null;
             try {
-                ActionRequest req = queue.take();
-                // Send data
-                BulkRequest bulk = new BulkRequest();
-                int nb = 0;
-                while (req != null && (nb == 0 || nb < max)) {
-                    bulk.add(req);
-                    nb++;
-                    req = queue.poll();
+                long delay = retryTime - System.currentTimeMillis();
+                if (delay > 0) {
+                    // lets back off after a failure rather than replaying the same events straight away
+                    Thread.sleep(delay);
+                    continue;
                 }
-                if (bulk.numberOfActions() > 0) {
-                    BulkResponse rep = node.client().bulk(bulk).actionGet();
-                    for (BulkItemResponse bir : rep.items()) {
-                        if (bir.failed()) {
-                            LOGGER.warn("Error executing request: {}", bir.getFailureMessage());
-                        }
-                    }
+                events = pollQueue();
+                if (events.isEmpty() && journal != null && !journal.isEmpty()) {
+                    replayed = journal.read(max, maxBytes);
+                    events = replayed.getEvents();
+                }
+                if (!events.isEmpty()) {
+                    inFlight.acquire();
+                    List<StorageEvent> sending = events;
+                    events = null;
+                    send(sending, replayed);
                 }
+            } catch (InterruptedException e) {
+                // we are stopping
             } catch (Exception e) {
                 if (running) {
                     LOGGER.warn("Error while sending requests", e);
                 }
+            } finally {
+                if (events != null && !events.isEmpty()) {
+                    // lets not lose the batch we did not get to send
+                    requeue(events, replayed);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the next batch of events to index from the in memory queue, waiting for events to arrive
+     * if there are none to replay from the spill journal
+     */
+    protected List<StorageEvent> pollQueue() throws InterruptedException {
+        List<StorageEvent> events = new ArrayList<StorageEvent>();
+        StorageEvent event = queue.poll(journal != null && !journal.isEmpty() ? 0 : 1000, TimeUnit.MILLISECONDS);
+        if (event != null) {
+            long bytes = 0;
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(linger);
+            while (event != null) {
+                events.add(event);
+                bytes += event.getSize();
+                if (events.size() >= max || bytes >= maxBytes) {
+                    break;
+                }
+                event = queue.poll();
+                if (event == null) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining > 0) {
+                        event = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    }
+                }
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Sends the events as a bulk request; the replayed batch, if any, is committed to the spill journal
+     * once the bulk has succeeded
+     */
+    protected void send(final List<StorageEvent> events, final SpillJournal.Batch replayed) {
+        BulkRequest bulk = new BulkRequest();
+        for (StorageEvent event : events) {
+            bulk.add(new IndexRequest()
+                    .index("insight-" + indexFormat.get().format(new Date(event.getTimestamp())))
+                    .type(event.getType())
+                    .source(event.getJsonData())
+                    .create(true));
+        }
+        final long start = System.currentTimeMillis();
+        try {
+            node.client().bulk(bulk, new ActionListener<BulkResponse>() {
+                @Override
+                public void onResponse(BulkResponse response) {
+                    try {
+                        recordLatency(System.currentTimeMillis() - start);
+                        int failed = 0;
+                        for (BulkItemResponse bir : response.items()) {
+                            if (bir.failed()) {
+                                failed++;
+                                LOGGER.warn("Error executing request: {}", bir.getFailureMessage());
+                            }
+                        }
+                        failedCount.addAndGet(failed);
+                        indexedCount.addAndGet(events.size() - failed);
+                        SpillJournal journal = ElasticStorageImpl.this.journal;
+                        if (replayed != null && journal != null) {
+                            journal.commit(replayed);
+                        }
+                        consecutiveFailures.set(0);
+                        retryTime = 0;
+                    } finally {
+                        inFlight.release();
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable e) {
+                    try {
+                        recordLatency(System.currentTimeMillis() - start);
+                        bulkFailed(events, replayed, e);
+                    } finally {
+                        inFlight.release();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.release();
+            bulkFailed(events, replayed, e);
+        }
+    }
+
+    /**
+     * Returns the events of a failed bulk to the spill journal and backs off before sending any more bulks
+     */
+    protected void bulkFailed(List<StorageEvent> events, SpillJournal.Batch replayed, Throwable e) {
+        int failures = consecutiveFailures.incrementAndGet();
+        long delay = retryDelay << Math.min(failures - 1, 30);
+        if (delay <= 0 || delay > maxRetryDelay) {
+            delay = maxRetryDelay;
+        }
+        retryTime = System.currentTimeMillis() + delay;
+        LOGGER.warn("Error while sending requests, spilling " + events.size() + " events and retrying in " + delay + " ms", e);
+        requeue(events, replayed);
+    }
+
+    /**
+     * Returns events which were not indexed to the spill journal
+     */
+    protected void requeue(List<StorageEvent> events, SpillJournal.Batch replayed) {
+        if (replayed != null) {
+            // replayed events are still in the journal, even if it has been closed in the meantime
+            SpillJournal journal = this.journal;
+            if (journal != null) {
+                journal.rollback(replayed);
+            }
+        } else {
+            spill(events);
+        }
+    }
+
+    protected void spill(List<StorageEvent> events) {
+        for (StorageEvent event : events) {
+            spill(event);
+        }
+    }
+
+    protected void spill(StorageEvent event) {
+        SpillJournal journal = this.journal;
+        if (journal != null) {
+            try {
+                if (journal.append(event)) {
+                    spilledCount.incrementAndGet();
+                    return;
+                }
+            } catch (IOException e) {
+                LOGGER.debug("Unable to spill event", e);
+            }
+        }
+        if (rejectedCount.getAndIncrement() % 10000 == 0) {
+            LOGGER.warn("Elastic search storage is full, dropping events ({} dropped so far)", rejectedCount.get());
+        }
+    }
+
+    private void recordLatency(long latency) {
+        bulkCount.incrementAndGet();
+        totalBulkLatency.addAndGet(latency);
+        lastBulkLatency.set(latency);
+        long current;
+        while (latency > (current = maxBulkLatency.get())) {
+            if (maxBulkLatency.compareAndSet(current, latency)) {
+                break;
             }
         }
     }
 
+    private void registerMBean() {
+        try {
+            MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+            objectName = new ObjectName("org.fusesource.insight:type=ElasticStorage,name=" + ObjectName.quote(String.valueOf(node.settings().get("name"))));
+            if (!mbeanServer.isRegistered(objectName)) {
+                mbeanServer.registerMBean(this, objectName);
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Unable to register the elastic storage mbean", e);
+            objectName = null;
+        }
+    }
+
+    private void unregisterMBean() {
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (Exception e) {
+                LOGGER.debug("Unable to unregister the elastic storage mbean", e);
+            }
+            objectName = null;
+        }
+    }
+
+    // Metrics
+    //-------------------------------------------------------------------------
+
+    public int getQueueDepth() {
+        return queue != null ? queue.size() : 0;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public long getSpilledBytes() {
+        SpillJournal journal = this.journal;
+        return journal != null ? journal.getSize() : 0;
+    }
+
+    public int getInFlightBulks() {
+        return inFlight != null ? concurrentBulks - inFlight.availablePermits() : 0;
+    }
+
+    public long getIndexedCount() {
+        return indexedCount.get();
+    }
+
+    public long getSpilledCount() {
+        return spilledCount.get();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    public long getBulkCount() {
+        return bulkCount.get();
+    }
+
+    public long getLastBulkLatency() {
+        return lastBulkLatency.get();
+    }
+
+    public long getMaxBulkLatency() {
+        return maxBulkLatency.get();
+    }
+
+    public double getAverageBulkLatency() {
+        long count = bulkCount.get();
+        return count > 0 ? (double) totalBulkLatency.get() / count : 0;
+    }
+
+    public void resetStatistics() {
+        indexedCount.set(0);
+        spilledCount.set(0);
+        rejectedCount.set(0);
+        failedCount.set(0);
+        bulkCount.set(0);
+        totalBulkLatency.set(0);
+        lastBulkLatency.set(0);
+        maxBulkLatency.set(0);
+    }
 }
@@ -0,0 +1,64 @@
+/**
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.insight.elasticsearch.impl;
+
+/**
+ * Metrics of the elastic search storage ingestion pipeline
+ */
+public interface ElasticStorageImplMBean {
+
+    /**
+     * Returns the number of events waiting in memory to be indexed
+     */
+    int getQueueDepth();
+
+    int getQueueCapacity();
+
+    /**
+     * Returns the number of bytes of events waiting in the on-disk spill journal
+     */
+    long getSpilledBytes();
+
+    /**
+     * Returns the number of bulk requests currently being executed
+     */
+    int getInFlightBulks();
+
+    long getIndexedCount();
+
+    long getSpilledCount();
+
+    /**
+     * Returns the number of events which were dropped because both the queue and the spill journal were full
+     */
+    long getRejectedCount();
+
+    /**
+     * Returns the number of events which elastic search failed to index
+     */
+    long getFailedCount();
+
+    long getBulkCount();
+
+    long getLastBulkLatency();
+
+    long getMaxBulkLatency();
+
+    double getAverageBulkLatency();
+
+    void resetStatistics();
+}
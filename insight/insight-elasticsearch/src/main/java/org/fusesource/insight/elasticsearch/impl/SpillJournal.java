@@ -0,0 +1,424 @@
+/**
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.insight.elasticsearch.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * An on-disk overflow journal of events which could not be queued or indexed, made of fixed size
+ * memory-mapped segment files.
+ * <p/>
+ * Each record is written as <code>[int length][long timestamp][short type length][type][json]</code>
+ * with the length written last, so a partially written record is never read back after a crash.
+ * <p/>
+ * Reading is two phase: {@link #read(int, long)} hands out a {@link Batch} of records which stays in the journal
+ * until it is {@link #commit(Batch) committed}, once the events have been indexed, which negates the length of
+ * each record in place so that it is not replayed again after a restart. A batch which could not be indexed is
+ * {@link #rollback(Batch) rolled back} so that its records are read again first. Segments are deleted once all
+ * of their records have been committed.
+ */
+public class SpillJournal {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SpillJournal.class);
+
+    private static final String PREFIX = "spill-";
+    private static final String SUFFIX = ".log";
+    private static final int HEADER_SIZE = 4 + 8 + 2;
+
+    private final File directory;
+    private final int segmentSize;
+    private final long maxSize;
+    private final LinkedList<Segment> segments = new LinkedList<Segment>();
+    private final LinkedList<Record> retries = new LinkedList<Record>();
+    private Segment scanSegment;
+    private int scanPosition;
+    private long nextSequence;
+    private long size;
+    private long pending;
+    private boolean closed;
+
+    public SpillJournal(File directory, int segmentSize, long maxSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Opens the journal, recovering any segments left over from a previous run
+     */
+    public synchronized void open() throws IOException {
+        directory.mkdirs();
+        List<Long> sequences = new ArrayList<Long>();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (name.startsWith(PREFIX) && name.endsWith(SUFFIX)) {
+                    try {
+                        sequences.add(Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())));
+                    } catch (NumberFormatException e) {
+                        // not one of ours
+                    }
+                }
+            }
+        }
+        Collections.sort(sequences);
+        for (Long sequence : sequences) {
+            Segment segment = new Segment(sequence);
+            segment.recover();
+            if (segment.isFullyRead()) {
+                segment.delete();
+            } else {
+                segments.add(segment);
+                size += segment.uncommitted;
+                nextSequence = sequence + 1;
+            }
+        }
+        if (!segments.isEmpty()) {
+            LOGGER.info("Recovered {} bytes of spilled events from {}", size, directory);
+        }
+        closed = false;
+    }
+
+    /**
+     * Closes the journal, any records of batches which have not been committed are replayed after the next open
+     */
+    public synchronized void close() {
+        for (Segment segment : segments) {
+            segment.close();
+        }
+        segments.clear();
+        retries.clear();
+        scanSegment = null;
+        size = 0;
+        pending = 0;
+        closed = true;
+    }
+
+    /**
+     * Returns true if there are no events to read, though batches which have been read may not be committed yet
+     */
+    public synchronized boolean isEmpty() {
+        return size - pending == 0;
+    }
+
+    /**
+     * Returns the number of bytes of events which have not been committed
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Appends the event, returning false if the journal is full
+     */
+    public synchronized boolean append(StorageEvent event) throws IOException {
+        byte[] type = event.getType().getBytes("UTF-8");
+        byte[] json = event.getJsonData().getBytes("UTF-8");
+        int length = HEADER_SIZE - 4 + type.length + json.length;
+        // leave room for the zero length which terminates a segment
+        int required = 4 + length + 4;
+        if (required > segmentSize) {
+            throw new IOException("Event of " + required + " bytes is larger than the journal segment size " + segmentSize);
+        }
+        if (closed) {
+            throw new IOException("The journal " + directory + " is closed");
+        }
+        if (size + required > maxSize) {
+            return false;
+        }
+        Segment segment = segments.isEmpty() ? null : segments.getLast();
+        if (segment == null || segment.writePosition + required > segmentSize) {
+            segment = new Segment(nextSequence++);
+            segment.create();
+            segments.add(segment);
+        }
+        MappedByteBuffer buffer = segment.map();
+        int position = segment.writePosition;
+        buffer.position(position + 4);
+        buffer.putLong(event.getTimestamp());
+        buffer.putShort((short) type.length);
+        buffer.put(type);
+        buffer.put(json);
+        buffer.putInt(position, length);
+        segment.writePosition = position + 4 + length;
+        size += 4 + length;
+        return true;
+    }
+
+    /**
+     * Reads up to the given number of events or bytes from the head of the journal, starting with any batches
+     * which have been rolled back. The events stay in the journal until the batch is committed.
+     */
+    public synchronized Batch read(int maxEvents, long maxBytes) throws IOException {
+        Batch answer = new Batch();
+        long bytes = 0;
+        while (!retries.isEmpty() && answer.events.size() < maxEvents && bytes < maxBytes) {
+            bytes += answer.add(retries.removeFirst());
+        }
+        if (scanSegment == null || !segments.contains(scanSegment)) {
+            scanSegment = segments.isEmpty() ? null : segments.getFirst();
+            scanPosition = scanSegment != null ? scanSegment.readPosition : 0;
+        }
+        while (scanSegment != null && answer.events.size() < maxEvents && bytes < maxBytes) {
+            if (scanPosition >= scanSegment.writePosition) {
+                int index = segments.indexOf(scanSegment);
+                if (index + 1 >= segments.size()) {
+                    break;
+                }
+                scanSegment = segments.get(index + 1);
+                scanPosition = scanSegment.readPosition;
+                continue;
+            }
+            int position = scanPosition;
+            int length = scanSegment.map().getInt(position);
+            scanPosition = position + 4 + Math.abs(length);
+            if (length > 0) {
+                bytes += answer.add(new Record(scanSegment, position, length));
+            }
+        }
+        pending += answer.length;
+        return answer;
+    }
+
+    /**
+     * Marks the events of the batch as consumed, deleting the segments which have been fully consumed
+     */
+    public synchronized void commit(Batch batch) {
+        if (closed || batch.records.isEmpty()) {
+            return;
+        }
+        for (Record record : batch.records) {
+            if (!segments.contains(record.segment)) {
+                continue;
+            }
+            try {
+                record.segment.map().putInt(record.position, -record.length);
+            } catch (IOException e) {
+                LOGGER.debug("Unable to mark spilled event as consumed", e);
+            }
+            size -= 4 + record.length;
+            pending -= 4 + record.length;
+        }
+        // lets move the read position past the consumed records at the head of the journal
+        Iterator<Segment> iter = segments.iterator();
+        while (iter.hasNext()) {
+            Segment segment = iter.next();
+            try {
+                MappedByteBuffer buffer = segment.map();
+                while (segment.readPosition < segment.writePosition) {
+                    int length = buffer.getInt(segment.readPosition);
+                    if (length > 0) {
+                        break;
+                    }
+                    segment.readPosition += 4 - length;
+                }
+            } catch (IOException e) {
+                LOGGER.debug("Unable to read journal segment", e);
+                break;
+            }
+            if (!segment.isFullyRead()) {
+                break;
+            }
+            if (segment == segments.getLast()) {
+                if (size == 0 && scanSegment == segment && scanPosition >= segment.writePosition) {
+                    // lets start afresh rather than keep appending to a fully read segment
+                    iter.remove();
+                    segment.delete();
+                    scanSegment = null;
+                }
+                break;
+            }
+            if (scanSegment == segment) {
+                // the next read still starts from this segment so lets keep it until the scan moves on
+                break;
+            }
+            iter.remove();
+            segment.delete();
+        }
+    }
+
+    /**
+     * Returns the events of the batch to the journal so that they are read again first
+     */
+    public synchronized void rollback(Batch batch) {
+        if (closed) {
+            return;
+        }
+        List<Record> records = new ArrayList<Record>();
+        for (Record record : batch.records) {
+            if (segments.contains(record.segment)) {
+                records.add(record);
+            }
+        }
+        retries.addAll(0, records);
+        pending -= batch.length;
+    }
+
+    private static String toString(byte[] bytes) throws UnsupportedEncodingException {
+        return new String(bytes, "UTF-8");
+    }
+
+    /**
+     * The events read from the journal together with the location of their records
+     */
+    public static class Batch {
+        private final List<StorageEvent> events = new ArrayList<StorageEvent>();
+        private final List<Record> records = new ArrayList<Record>();
+        private long length;
+
+        public List<StorageEvent> getEvents() {
+            return events;
+        }
+
+        public boolean isEmpty() {
+            return events.isEmpty();
+        }
+
+        private long add(Record record) throws IOException {
+            StorageEvent event = record.read();
+            events.add(event);
+            records.add(record);
+            length += 4 + record.length;
+            return event.getSize();
+        }
+    }
+
+    private static class Record {
+        private final Segment segment;
+        private final int position;
+        private final int length;
+
+        private Record(Segment segment, int position, int length) {
+            this.segment = segment;
+            this.position = position;
+            this.length = length;
+        }
+
+        private StorageEvent read() throws IOException {
+            MappedByteBuffer buffer = segment.map();
+            buffer.position(position + 4);
+            long timestamp = buffer.getLong();
+            byte[] type = new byte[buffer.getShort()];
+            buffer.get(type);
+            byte[] json = new byte[length - (HEADER_SIZE - 4) - type.length];
+            buffer.get(json);
+            return new StorageEvent(SpillJournal.toString(type), timestamp, SpillJournal.toString(json));
+        }
+    }
+
+    private class Segment {
+        private final File file;
+        private RandomAccessFile raf;
+        private MappedByteBuffer buffer;
+        private int readPosition;
+        private int writePosition;
+        private long uncommitted;
+
+        private Segment(long sequence) {
+            this.file = new File(directory, PREFIX + sequence + SUFFIX);
+        }
+
+        private void create() throws IOException {
+            RandomAccessFile f = new RandomAccessFile(file, "rw");
+            try {
+                f.setLength(segmentSize);
+            } finally {
+                f.close();
+            }
+        }
+
+        /**
+         * Scans the segment to find the first unread record, the end of the written records and the number of
+         * bytes of the records which have not been committed, as batches may be committed out of order
+         */
+        private void recover() throws IOException {
+            MappedByteBuffer buffer = map();
+            int limit = buffer.capacity();
+            int position = 0;
+            readPosition = -1;
+            uncommitted = 0;
+            while (position + 4 <= limit) {
+                int length = buffer.getInt(position);
+                if (length == 0 || position + 4 + Math.abs(length) > limit) {
+                    break;
+                }
+                if (length > 0) {
+                    if (readPosition < 0) {
+                        readPosition = position;
+                    }
+                    uncommitted += 4 + length;
+                }
+                position += 4 + Math.abs(length);
+            }
+            writePosition = position;
+            if (readPosition < 0) {
+                readPosition = writePosition;
+            }
+        }
+
+        private boolean isFullyRead() {
+            return readPosition >= writePosition;
+        }
+
+        private MappedByteBuffer map() throws IOException {
+            if (buffer == null) {
+                raf = new RandomAccessFile(file, "rw");
+                if (raf.length() < segmentSize) {
+                    raf.setLength(segmentSize);
+                }
+                buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+            }
+            return buffer;
+        }
+
+        private void close() {
+            if (buffer != null) {
+                buffer.force();
+                buffer = null;
+            }
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+                raf = null;
+            }
+        }
+
+        private void delete() {
+            close();
+            if (!file.delete()) {
+                LOGGER.debug("Could not delete journal segment {}", file);
+            }
+        }
+    }
+}
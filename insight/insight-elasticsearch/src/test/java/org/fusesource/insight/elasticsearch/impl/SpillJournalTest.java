@@ -0,0 +1,162 @@
+/**
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.insight.elasticsearch.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SpillJournalTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = new File("target/spill-" + System.nanoTime());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testAppendAndReadAcrossSegments() throws Exception {
+        SpillJournal journal = new SpillJournal(directory, 1024, 1024 * 1024);
+        journal.open();
+        for (int i = 0; i < 100; i++) {
+            assertTrue(journal.append(new StorageEvent("log", i, "{\"message\":\"event " + i + "\"}")));
+        }
+        assertTrue(directory.listFiles().length > 1);
+
+        SpillJournal.Batch batch = journal.read(60, Long.MAX_VALUE);
+        List<StorageEvent> events = batch.getEvents();
+        assertEquals(60, events.size());
+        assertEquals(0, events.get(0).getTimestamp());
+        assertEquals("log", events.get(0).getType());
+        assertEquals("{\"message\":\"event 59\"}", events.get(59).getJsonData());
+
+        SpillJournal.Batch batch2 = journal.read(100, Long.MAX_VALUE);
+        events = batch2.getEvents();
+        assertEquals(40, events.size());
+        assertEquals(99, events.get(39).getTimestamp());
+        assertTrue(journal.isEmpty());
+
+        journal.commit(batch);
+        journal.commit(batch2);
+        assertEquals(0, journal.getSize());
+        assertEquals(0, directory.listFiles().length);
+        journal.close();
+    }
+
+    @Test
+    public void testRecoverUnreadEventsAfterRestart() throws Exception {
+        SpillJournal journal = new SpillJournal(directory, 1024, 1024 * 1024);
+        journal.open();
+        for (int i = 0; i < 10; i++) {
+            journal.append(new StorageEvent("log", i, "{}"));
+        }
+        journal.commit(journal.read(4, Long.MAX_VALUE));
+        // read but not committed, so these are replayed after a restart
+        assertEquals(3, journal.read(3, Long.MAX_VALUE).getEvents().size());
+        journal.close();
+
+        journal = new SpillJournal(directory, 1024, 1024 * 1024);
+        journal.open();
+        List<StorageEvent> events = journal.read(100, Long.MAX_VALUE).getEvents();
+        assertEquals(6, events.size());
+        assertEquals(4, events.get(0).getTimestamp());
+        journal.close();
+    }
+
+    @Test
+    public void testRecoverAfterOutOfOrderCommit() throws Exception {
+        SpillJournal journal = new SpillJournal(directory, 1024, 1024 * 1024);
+        journal.open();
+        for (int i = 0; i < 10; i++) {
+            journal.append(new StorageEvent("log", i, "{}"));
+        }
+        SpillJournal.Batch first = journal.read(4, Long.MAX_VALUE);
+        SpillJournal.Batch second = journal.read(4, Long.MAX_VALUE);
+        journal.commit(second);
+        long size = journal.getSize();
+        assertEquals(4, first.getEvents().size());
+        journal.close();
+
+        journal = new SpillJournal(directory, 1024, 1024 * 1024);
+        journal.open();
+        assertEquals(size, journal.getSize());
+        SpillJournal.Batch batch = journal.read(100, Long.MAX_VALUE);
+        List<StorageEvent> events = batch.getEvents();
+        assertEquals(6, events.size());
+        assertEquals(0, events.get(0).getTimestamp());
+        assertEquals(8, events.get(4).getTimestamp());
+        assertTrue(journal.isEmpty());
+
+        journal.commit(batch);
+        assertTrue(journal.isEmpty());
+        assertEquals(0, journal.getSize());
+        journal.close();
+    }
+
+    @Test
+    public void testRollbackIsReadAgainFirst() throws Exception {
+        SpillJournal journal = new SpillJournal(directory, 1024, 1024 * 1024);
+        journal.open();
+        for (int i = 0; i < 10; i++) {
+            journal.append(new StorageEvent("log", i, "{}"));
+        }
+        SpillJournal.Batch failed = journal.read(4, Long.MAX_VALUE);
+        SpillJournal.Batch inFlight = journal.read(4, Long.MAX_VALUE);
+        assertEquals(4, inFlight.getEvents().get(0).getTimestamp());
+
+        journal.rollback(failed);
+        assertFalse(journal.isEmpty());
+        List<StorageEvent> events = journal.read(100, Long.MAX_VALUE).getEvents();
+        assertEquals(6, events.size());
+        assertEquals(0, events.get(0).getTimestamp());
+        assertEquals(3, events.get(3).getTimestamp());
+        assertEquals(8, events.get(4).getTimestamp());
+        assertTrue(journal.isEmpty());
+
+        journal.commit(inFlight);
+        assertTrue(journal.getSize() > 0);
+        journal.close();
+    }
+
+    @Test
+    public void testMaxSize() throws Exception {
+        SpillJournal journal = new SpillJournal(directory, 1024, 100);
+        journal.open();
+        assertTrue(journal.append(new StorageEvent("log", 0, "{\"a\":1}")));
+        assertFalse(journal.append(new StorageEvent("log", 0, "{\"message\":\"this one does not fit in the journal any more\"}")));
+        journal.close();
+    }
+}
@@ -0,0 +1,212 @@
+/**
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.insight.jetty;
+
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.fusesource.insight.storage.StorageService;
+import org.osgi.util.tracker.ServiceTracker;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.fusesource.insight.jetty.InsightUtils.formatDate;
+import static org.fusesource.insight.jetty.InsightUtils.quote;
+
+/**
+ * Drains the {@link RequestRing} on a background thread, formatting and storing the request documents and,
+ * when aggregating, counting the requests per URI and storing the counters every aggregation interval.
+ */
+public class AsyncRequestLogWriter implements Runnable {
+
+    private static final Logger LOG = Log.getLogger(AsyncRequestLogWriter.class);
+
+    static final String OTHER_URIS = "_other";
+
+    private final RequestRing ring;
+    private final ServiceTracker<StorageService, StorageService> storage;
+    private final String host;
+    private final String type;
+    private final boolean aggregate;
+    private final long aggregateInterval;
+    private final int maxUris;
+    private final long slowRequestThreshold;
+    private final int errorStatus;
+
+    private final Map<String, UriStats> stats = new HashMap<String, UriStats>();
+    private long statsStart = System.currentTimeMillis();
+    private volatile boolean running;
+    private Thread thread;
+
+    public AsyncRequestLogWriter(ServiceTracker<StorageService, StorageService> storage, String host, String type,
+                                 int bufferSize, boolean aggregate, long aggregateInterval, int maxUris,
+                                 long slowRequestThreshold, int errorStatus) {
+        this.ring = new RequestRing(bufferSize);
+        this.storage = storage;
+        this.host = host;
+        this.type = type;
+        this.aggregate = aggregate;
+        this.aggregateInterval = aggregateInterval;
+        this.maxUris = maxUris;
+        this.slowRequestThreshold = slowRequestThreshold;
+        this.errorStatus = errorStatus;
+    }
+
+    public RequestRing getRing() {
+        return ring;
+    }
+
+    public boolean isAggregate() {
+        return aggregate;
+    }
+
+    public synchronized void start() {
+        running = true;
+        thread = new Thread(this, "Insight Jetty RequestLog Writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the writer thread once it has stored the requests which are already in the ring
+     */
+    public synchronized void stop() {
+        running = false;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                int count = drain();
+                if (aggregate && System.currentTimeMillis() - statsStart >= aggregateInterval) {
+                    flushStats();
+                }
+                if (count == 0) {
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+                }
+            } catch (Throwable t) {
+                LOG.warn(t);
+            }
+        }
+        drain();
+        if (aggregate) {
+            flushStats();
+        }
+    }
+
+    /**
+     * Stores the published records, returning how many were consumed
+     */
+    protected int drain() {
+        StorageService svc = storage.getService();
+        int count = 0;
+        RequestRecord record;
+        while ((record = ring.poll()) != null) {
+            try {
+                if (record.isDocument() && svc != null) {
+                    svc.store(type, record.getTimestamp(), record.toJson(host));
+                }
+                if (aggregate) {
+                    count(record);
+                }
+            } catch (Exception e) {
+                LOG.warn(e);
+            } finally {
+                ring.release(record);
+            }
+            count++;
+        }
+        return count;
+    }
+
+    protected void count(RequestRecord record) {
+        String path = record.getPath();
+        UriStats uriStats = stats.get(path);
+        if (uriStats == null) {
+            if (stats.size() >= maxUris) {
+                path = OTHER_URIS;
+                uriStats = stats.get(path);
+            }
+            if (uriStats == null) {
+                uriStats = new UriStats();
+                stats.put(path, uriStats);
+            }
+        }
+        uriStats.count++;
+        if (record.getStatus() >= errorStatus) {
+            uriStats.errors++;
+        }
+        if (slowRequestThreshold >= 0 && record.getLatency() >= slowRequestThreshold) {
+            uriStats.slow++;
+        }
+        uriStats.totalLatency += record.getLatency();
+        uriStats.maxLatency = Math.max(uriStats.maxLatency, record.getLatency());
+        uriStats.responseLength += record.getResponseLength();
+    }
+
+    protected void flushStats() {
+        long now = System.currentTimeMillis();
+        StorageService svc = storage.getService();
+        if (svc != null) {
+            for (Map.Entry<String, UriStats> entry : stats.entrySet()) {
+                UriStats uriStats = entry.getValue();
+                StringBuilder sb = new StringBuilder(256);
+                sb.append("{ \"host\": ");
+                quote(host, sb);
+                sb.append(", \"timestamp\": \"").append(formatDate(now)).append("\"");
+                sb.append(", \"from\": \"").append(formatDate(statsStart)).append("\"");
+                sb.append(", \"uri\": ");
+                quote(entry.getKey(), sb);
+                sb.append(", \"count\": ").append(uriStats.count);
+                sb.append(", \"errors\": ").append(uriStats.errors);
+                sb.append(", \"slow\": ").append(uriStats.slow);
+                sb.append(", \"meanLatency\": ").append(uriStats.totalLatency / uriStats.count);
+                sb.append(", \"maxLatency\": ").append(uriStats.maxLatency);
+                sb.append(", \"responseLength\": ").append(uriStats.responseLength);
+                sb.append(" }");
+                try {
+                    svc.store(type + "-stats", now, sb.toString());
+                } catch (Exception e) {
+                    LOG.warn(e);
+                }
+            }
+        }
+        stats.clear();
+        statsStart = now;
+    }
+
+    static class UriStats {
+        long count;
+        long errors;
+        long slow;
+        long totalLatency;
+        long maxLatency;
+        long responseLength;
+    }
+}
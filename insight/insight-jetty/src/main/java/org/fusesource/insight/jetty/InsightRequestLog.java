@@ -36,9 +36,20 @@ import org.osgi.util.tracker.ServiceTracker;
 
 import java.util.Dictionary;
 import java.util.Hashtable;
+import java.util.concurrent.atomic.AtomicLong;
 
-import static org.fusesource.insight.jetty.InsightUtils.formatDate;
-
+/**
+ * Stores a document per request into the insight storage.
+ * <p/>
+ * By default the document is formatted and stored on the request thread. When <code>async</code> is enabled
+ * the request thread only copies the request fields into a preallocated record of a lock free ring buffer and
+ * a background thread formats and stores them; requests are dropped rather than delaying the response if the
+ * ring is full. When <code>aggregate</code> is enabled (which implies <code>async</code>) every request is counted
+ * per URI and the counters are stored every <code>aggregateInterval</code> seconds.
+ * <p/>
+ * Only the fraction <code>sampleRate</code> of requests are stored as documents, except that requests slower than
+ * <code>slowRequestThreshold</code> millis or with a status of at least <code>errorStatus</code> are always stored.
+ */
 public class InsightRequestLog extends AbstractLifeCycle implements RequestLog, ManagedService {
 
     private static final Logger LOG = Log.getLogger(InsightRequestLog.class);
@@ -52,6 +63,11 @@ public class InsightRequestLog extends AbstractLifeCycle implements RequestLog,
     private boolean enabled = true;
     private String type = "jetty";
     private PathMap ignorePathMap;
+    private double sampleRate = 1.0;
+    private long slowRequestThreshold = 1000;
+    private int errorStatus = 500;
+    private final AtomicLong sampleCounter = new AtomicLong();
+    private volatile AsyncRequestLogWriter writer;
 
     public InsightRequestLog() {
         this.bundleContext = FrameworkUtil.getBundle(getClass()).getBundleContext();
@@ -68,6 +84,7 @@ public class InsightRequestLog extends AbstractLifeCycle implements RequestLog,
 
     @Override
     protected void doStop() throws Exception {
+        stopWriter();
         try {
             storage.close();
         } catch (IllegalStateException e) {
@@ -91,7 +108,29 @@ public class InsightRequestLog extends AbstractLifeCycle implements RequestLog,
         else {
             ignorePathMap = null;
         }
+        this.sampleRate = getDouble("sampleRate", 1.0);
+        this.slowRequestThreshold = getLong("slowRequestThreshold", 1000);
+        this.errorStatus = (int) getLong("errorStatus", 500);
+
+        boolean aggregate = getBoolean("aggregate", false);
+        boolean async = aggregate || getBoolean("async", false);
+        stopWriter();
+        if (async) {
+            AsyncRequestLogWriter w = new AsyncRequestLogWriter(storage, host, type,
+                    (int) getLong("bufferSize", 8192), aggregate,
+                    getLong("aggregateInterval", 60) * 1000, (int) getLong("maxUris", 1000),
+                    slowRequestThreshold, errorStatus);
+            w.start();
+            this.writer = w;
+        }
+    }
 
+    private synchronized void stopWriter() {
+        AsyncRequestLogWriter w = this.writer;
+        this.writer = null;
+        if (w != null) {
+            w.stop();
+        }
     }
 
     private String getString(String name, String def) {
@@ -103,6 +142,28 @@ public class InsightRequestLog extends AbstractLifeCycle implements RequestLog,
         }
     }
 
+    private long getLong(String name, long def) {
+        Object v = this.properties != null ? this.properties.get(name) : null;
+        if (v instanceof Number) {
+            return ((Number) v).longValue();
+        } else if (v == null) {
+            return def;
+        } else {
+            return Long.parseLong(v.toString().trim());
+        }
+    }
+
+    private double getDouble(String name, double def) {
+        Object v = this.properties != null ? this.properties.get(name) : null;
+        if (v instanceof Number) {
+            return ((Number) v).doubleValue();
+        } else if (v == null) {
+            return def;
+        } else {
+            return Double.parseDouble(v.toString().trim());
+        }
+    }
+
     private boolean getBoolean(String name, boolean def) {
         Object v = this.properties != null ? this.properties.get(name) : null;
         if (v instanceof Boolean) {
@@ -121,27 +182,45 @@ public class InsightRequestLog extends AbstractLifeCycle implements RequestLog,
                 return;
             }
 
-            StorageService s = storage.getService();
-            if (s == null) {
-                return;
-            }
-
             if (ignorePathMap != null && ignorePathMap.getMatch(request.getRequestURI()) != null)
                 return;
 
-            String output = "{ " +
-                    "\"host\": \"" + host + "\", " +
-                    "\"timestamp\": \"" + formatDate(request.getTimeStamp()) + "\", " +
-                    "\"remote\": \"" + request.getRemoteAddr() + "\", " +
-                    "\"user\": \"" + (request.getAuthentication() instanceof Authentication.User ? ((Authentication.User)request.getAuthentication()).getUserIdentity().getUserPrincipal().getName() : "") + "\", " +
-                    "\"method\": \"" + request.getMethod() + "\", " +
-                    "\"uri\": \"" + request.getUri().toString() + "\", " +
-                    "\"protocol\": \"" + request.getProtocol() + "\", " +
-                    "\"status\": \"" + response.getStatus() + "\", " +
-                    "\"responseLength\": \"" + response.getContentCount() + "\" " +
-                    " }";
-
-            s.store(type, request.getTimeStamp(), output);
+            long latency = System.currentTimeMillis() - request.getTimeStamp();
+            int status = response.getStatus();
+            boolean document = isSampled()
+                    || (slowRequestThreshold >= 0 && latency >= slowRequestThreshold)
+                    || status >= errorStatus;
+
+            AsyncRequestLogWriter w = writer;
+            if (w != null) {
+                if (!document && !w.isAggregate()) {
+                    return;
+                }
+                RequestRing ring = w.getRing();
+                RequestRecord record = ring.claim();
+                if (record == null) {
+                    return;
+                }
+                try {
+                    record.document = false;
+                    fill(record, request, response, latency);
+                    record.document = document;
+                } finally {
+                    // the ring can only move on once every claimed record has been published
+                    ring.publish(record);
+                }
+            } else {
+                if (!document) {
+                    return;
+                }
+                StorageService s = storage.getService();
+                if (s == null) {
+                    return;
+                }
+                RequestRecord record = new RequestRecord();
+                fill(record, request, response, latency);
+                s.store(type, record.getTimestamp(), record.toJson(host));
+            }
         }
         catch (Exception e)
         {
@@ -149,4 +228,29 @@ public class InsightRequestLog extends AbstractLifeCycle implements RequestLog,
         }
     }
 
+    private boolean isSampled() {
+        double rate = sampleRate;
+        if (rate >= 1.0) {
+            return true;
+        } else if (rate <= 0.0) {
+            return false;
+        }
+        // evenly spread the sampled requests rather than relying on a shared random number generator
+        long n = sampleCounter.incrementAndGet();
+        return (long) (n * rate) != (long) ((n - 1) * rate);
+    }
+
+    private void fill(RequestRecord record, Request request, Response response, long latency) {
+        record.timestamp = request.getTimeStamp();
+        record.latency = latency;
+        record.remote = request.getRemoteAddr();
+        record.user = request.getAuthentication() instanceof Authentication.User ? ((Authentication.User) request.getAuthentication()).getUserIdentity().getUserPrincipal().getName() : "";
+        record.method = request.getMethod();
+        record.uri = request.getUri().toString();
+        record.path = request.getRequestURI();
+        record.protocol = request.getProtocol();
+        record.status = response.getStatus();
+        record.responseLength = response.getContentCount();
+    }
+
 }
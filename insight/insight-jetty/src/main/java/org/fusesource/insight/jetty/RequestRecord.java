@@ -0,0 +1,98 @@
+/**
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.insight.jetty;
+
+import static org.fusesource.insight.jetty.InsightUtils.formatDate;
+import static org.fusesource.insight.jetty.InsightUtils.quote;
+
+/**
+ * The fields of a logged request, captured on the request thread so that the request can be recycled
+ * before the record is formatted.
+ */
+public class RequestRecord {
+
+    long sequence;
+    long timestamp;
+    long latency;
+    String remote;
+    String user;
+    String method;
+    String uri;
+    String path;
+    String protocol;
+    int status;
+    long responseLength;
+    boolean document;
+
+    void clear() {
+        remote = null;
+        user = null;
+        method = null;
+        uri = null;
+        path = null;
+        protocol = null;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public long getLatency() {
+        return latency;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public long getResponseLength() {
+        return responseLength;
+    }
+
+    /**
+     * Returns true if the request should be stored as its own document, false if it is only to be counted
+     */
+    public boolean isDocument() {
+        return document;
+    }
+
+    public String toJson(String host) {
+        StringBuilder sb = new StringBuilder(256);
+        sb.append("{ \"host\": ");
+        quote(host, sb);
+        sb.append(", \"timestamp\": \"").append(formatDate(timestamp)).append("\"");
+        sb.append(", \"remote\": ");
+        quote(remote, sb);
+        sb.append(", \"user\": ");
+        quote(user, sb);
+        sb.append(", \"method\": ");
+        quote(method, sb);
+        sb.append(", \"uri\": ");
+        quote(uri, sb);
+        sb.append(", \"protocol\": ");
+        quote(protocol, sb);
+        sb.append(", \"status\": \"").append(status).append("\"");
+        sb.append(", \"responseLength\": \"").append(responseLength).append("\"");
+        sb.append(", \"latency\": ").append(latency);
+        sb.append(" }");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.insight.jetty;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded, lock free, multiple producer / single consumer ring of preallocated {@link RequestRecord}s.
+ * <p/>
+ * Request threads {@link #claim()} a record, fill it in and {@link #publish(RequestRecord)} it; if the ring is
+ * full the request is dropped rather than blocking the request thread. The background writer {@link #poll()}s
+ * records in order and {@link #release(RequestRecord)}s each one once it has been consumed.
+ */
+public class RequestRing {
+
+    private final int capacity;
+    private final RequestRecord[] records;
+    private final AtomicLongArray published;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long head;
+
+    public RequestRing(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity must be greater than 0");
+        }
+        this.capacity = capacity;
+        this.records = new RequestRecord[capacity];
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            records[i] = new RequestRecord();
+            published.set(i, -1);
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public int size() {
+        return (int) (tail.get() - head);
+    }
+
+    /**
+     * Returns the next free record or null if the ring is full
+     */
+    public RequestRecord claim() {
+        while (true) {
+            long seq = tail.get();
+            if (seq - head >= capacity) {
+                dropped.incrementAndGet();
+                return null;
+            }
+            if (tail.compareAndSet(seq, seq + 1)) {
+                RequestRecord record = records[(int) (seq % capacity)];
+                record.sequence = seq;
+                return record;
+            }
+        }
+    }
+
+    /**
+     * Makes a claimed record available to the consumer
+     */
+    public void publish(RequestRecord record) {
+        published.set((int) (record.sequence % capacity), record.sequence);
+    }
+
+    /**
+     * Returns the next published record or null if there is none yet; must only be called by a single thread
+     */
+    public RequestRecord poll() {
+        long seq = head;
+        int slot = (int) (seq % capacity);
+        if (published.get(slot) != seq) {
+            return null;
+        }
+        return records[slot];
+    }
+
+    /**
+     * Returns the record most recently returned by {@link #poll()} to the ring
+     */
+    public void release(RequestRecord record) {
+        record.clear();
+        head = record.sequence + 1;
+    }
+}
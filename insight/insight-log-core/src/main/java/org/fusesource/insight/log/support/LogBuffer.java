@@ -0,0 +1,378 @@
+/**
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.insight.log.support;
+
+import org.fusesource.insight.log.LogFilter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A fixed size ring buffer of log events which keeps columnar indexes of the timestamp, level and text of each
+ * event so that a {@link LogFilter} can skip most of the buffer without looking at the events themselves.
+ * <ul>
+ *     <li>the running maximum timestamp lets us binary search for the first event after a timestamp</li>
+ *     <li>a bitmap per level lets us skip 64 events at a time which are not of the requested levels</li>
+ *     <li>a 128 bit signature of the trigrams of each event's text lets us skip events which cannot contain
+ *     the text we are looking for</li>
+ * </ul>
+ * The indexes only ever rule events out; the events which pass are handed to a {@link Visitor} which is expected
+ * to apply the complete filter.
+ * <p/>
+ * Adding is synchronized (appenders are already serialized by the logging framework) but queries are lock free;
+ * a query only returns events which were still in the buffer once it had read them.
+ */
+public class LogBuffer<T> {
+    /**
+     * The maximum number of distinct levels which are indexed; any more levels share the last bitmap
+     */
+    public static final int MAX_LEVELS = 16;
+
+    /**
+     * Texts longer than this are not indexed, the event is always considered a candidate for a text match
+     */
+    public static final int MAX_INDEXED_TEXT = 8 * 1024;
+
+    private static final int SIGNATURE_WORDS = 2;
+    private static final int SIGNATURE_MASK = SIGNATURE_WORDS * 64 - 1;
+
+    private final int capacity;
+    private final AtomicReferenceArray<T> elements;
+    private final long[] timestamps;
+    private final long[] maxTimestamps;
+    private final byte[] levelCodes;
+    private final long[] signatures;
+    private final AtomicLongArray[] levelBitmaps = new AtomicLongArray[MAX_LEVELS];
+    private final Map<String, Integer> levelDictionary = new ConcurrentHashMap<String, Integer>();
+
+    /**
+     * The sequence number of the next event to be added; events [published - capacity, published) are readable
+     */
+    private volatile long published;
+    /**
+     * The sequence number of the event currently being written, which invalidates the event previously in its slot
+     */
+    private volatile long claimed;
+    /**
+     * The sequence number of the oldest event which has not been cleared
+     */
+    private volatile long start;
+
+    /**
+     * Called with each candidate event in order of arrival
+     */
+    public interface Visitor<T> {
+        /**
+         * Returns false to stop the query
+         */
+        boolean visit(T element);
+    }
+
+    public LogBuffer(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("The size must be greater than 0");
+        }
+        // lets round up to a whole number of bitmap words so that a word never wraps around the end of the buffer
+        this.capacity = (size + 63) & ~63;
+        this.elements = new AtomicReferenceArray<T>(capacity);
+        this.timestamps = new long[capacity];
+        this.maxTimestamps = new long[capacity];
+        this.levelCodes = new byte[capacity];
+        this.signatures = new long[capacity * SIGNATURE_WORDS];
+    }
+
+    @Override
+    public String toString() {
+        return "LogBuffer(size: " + size() + " capacity: " + capacity + ")";
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int size() {
+        long end = published;
+        return (int) (end - lowestSequence(end));
+    }
+
+    public synchronized void clear() {
+        start = published;
+    }
+
+    /**
+     * Adds an event to the buffer, evicting the oldest event if the buffer is full
+     *
+     * @param element   the event
+     * @param timestamp the time of the event in millis
+     * @param level     the level of the event
+     * @param texts     the text fields of the event which can be matched or null if the text should not be indexed
+     */
+    public synchronized void add(T element, long timestamp, String level, String... texts) {
+        if (element == null) {
+            throw new NullPointerException("Attempted to add null object to buffer");
+        }
+        long seq = published;
+        int slot = slot(seq);
+        claimed = seq;
+
+        long max = timestamp;
+        if (seq > 0) {
+            max = Math.max(timestamp, maxTimestamps[slot(seq - 1)]);
+        }
+        timestamps[slot] = timestamp;
+        maxTimestamps[slot] = max;
+
+        int code = levelCode(level);
+        int oldCode = levelCodes[slot];
+        int word = slot >>> 6;
+        long bit = 1L << slot;
+        if (seq >= capacity && oldCode != code) {
+            clearBit(levelBitmaps[oldCode], word, bit);
+        }
+        if (seq < capacity || oldCode != code) {
+            setBit(levelBitmaps[code], word, bit);
+        }
+        levelCodes[slot] = (byte) code;
+
+        int offset = slot * SIGNATURE_WORDS;
+        if (texts == null) {
+            for (int i = 0; i < SIGNATURE_WORDS; i++) {
+                signatures[offset + i] = -1L;
+            }
+        } else {
+            for (int i = 0; i < SIGNATURE_WORDS; i++) {
+                signatures[offset + i] = 0;
+            }
+            addSignature(signatures, offset, texts);
+        }
+
+        elements.set(slot, element);
+        published = seq + 1;
+    }
+
+    /**
+     * Returns the timestamp of the oldest event in the buffer or {@link Long#MAX_VALUE} if it is empty
+     */
+    public long getFirstTimestamp() {
+        long end = published;
+        long seq = lowestSequence(end);
+        return seq < end ? timestamps[slot(seq)] : Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns the latest timestamp in the buffer or {@link Long#MIN_VALUE} if it is empty
+     */
+    public long getLastTimestamp() {
+        long end = published;
+        return lowestSequence(end) < end ? maxTimestamps[slot(end - 1)] : Long.MIN_VALUE;
+    }
+
+    /**
+     * Returns all the events in the buffer, oldest first
+     */
+    public List<T> getElements() {
+        final List<T> answer = new ArrayList<T>(size());
+        query(null, new Visitor<T>() {
+            public boolean visit(T element) {
+                answer.add(element);
+                return true;
+            }
+        });
+        return answer;
+    }
+
+    /**
+     * Passes every event which may match the filter to the visitor, oldest first, until the visitor returns false
+     */
+    public void query(LogFilter filter, Visitor<T> visitor) {
+        long end = published;
+        long seq = lowestSequence(end);
+        long before = Long.MAX_VALUE;
+        AtomicLongArray[] bitmaps = null;
+        long[] textSignature = null;
+        if (filter != null) {
+            Long after = filter.getAfterTimestamp();
+            if (after != null) {
+                seq = firstMaxTimestampAfter(seq, end, after);
+            }
+            if (filter.getBeforeTimestamp() != null) {
+                before = filter.getBeforeTimestamp();
+            }
+            Set<String> levels = filter.getLevelsSet();
+            if (levels.size() > 0) {
+                bitmaps = selectBitmaps(levels);
+                if (bitmaps.length == 0) {
+                    return;
+                }
+            }
+            textSignature = textSignature(filter.getMatchesText());
+        }
+
+        while (seq < end) {
+            int slot = slot(seq);
+            if (bitmaps != null) {
+                int bitIndex = slot & 63;
+                long word = 0;
+                for (AtomicLongArray bitmap : bitmaps) {
+                    word |= bitmap.get(slot >>> 6);
+                }
+                word >>>= bitIndex;
+                if (word == 0) {
+                    // no events of the requested levels in the rest of this word
+                    seq += 64 - bitIndex;
+                    continue;
+                }
+                int skip = Long.numberOfTrailingZeros(word);
+                if (skip > 0) {
+                    seq += skip;
+                    continue;
+                }
+            }
+            long timestamp = timestamps[slot];
+            if (timestamp < before && matchesSignature(slot, textSignature)) {
+                T element = elements.get(slot);
+                // if the writer has since claimed this slot for a newer event then ours has been evicted
+                if (claimed - capacity >= seq) {
+                    seq = lowestSequence(published);
+                    continue;
+                }
+                if (element != null && !visitor.visit(element)) {
+                    return;
+                }
+            }
+            seq++;
+        }
+    }
+
+    // Implementation
+    //-------------------------------------------------------------------------
+
+    protected int slot(long seq) {
+        return (int) (seq % capacity);
+    }
+
+    protected long lowestSequence(long end) {
+        return Math.max(start, Math.max(0, end - capacity));
+    }
+
+    /**
+     * Binary searches the running maximum timestamps for the first event which could be after the given time
+     */
+    protected long firstMaxTimestampAfter(long low, long high, long after) {
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (maxTimestamps[slot(mid)] > after) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    protected int levelCode(String level) {
+        if (level == null) {
+            level = "";
+        }
+        Integer code = levelDictionary.get(level);
+        if (code == null) {
+            int size = levelDictionary.size();
+            if (size < MAX_LEVELS) {
+                code = size;
+                levelBitmaps[code] = new AtomicLongArray(capacity / 64);
+            } else {
+                code = MAX_LEVELS - 1;
+            }
+            levelDictionary.put(level, code);
+        }
+        return code;
+    }
+
+    protected AtomicLongArray[] selectBitmaps(Set<String> levels) {
+        List<AtomicLongArray> answer = new ArrayList<AtomicLongArray>(levels.size());
+        for (String level : levels) {
+            Integer code = levelDictionary.get(level);
+            if (code != null && !answer.contains(levelBitmaps[code])) {
+                answer.add(levelBitmaps[code]);
+            }
+        }
+        return answer.toArray(new AtomicLongArray[answer.size()]);
+    }
+
+    protected boolean matchesSignature(int slot, long[] textSignature) {
+        if (textSignature != null) {
+            int offset = slot * SIGNATURE_WORDS;
+            for (int i = 0; i < SIGNATURE_WORDS; i++) {
+                if ((signatures[offset + i] & textSignature[i]) != textSignature[i]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    protected static long[] textSignature(String text) {
+        if (text == null || text.length() < 3) {
+            return null;
+        }
+        long[] answer = new long[SIGNATURE_WORDS];
+        addSignature(answer, 0, text);
+        return answer;
+    }
+
+    /**
+     * Sets a bit for each trigram of the texts; if the texts are too large to index then every bit is set
+     */
+    protected static void addSignature(long[] signature, int offset, String... texts) {
+        int length = 0;
+        for (String text : texts) {
+            if (text != null) {
+                length += text.length();
+            }
+        }
+        if (length > MAX_INDEXED_TEXT) {
+            for (int i = 0; i < SIGNATURE_WORDS; i++) {
+                signature[offset + i] = -1L;
+            }
+            return;
+        }
+        for (String text : texts) {
+            if (text == null) {
+                continue;
+            }
+            for (int i = 0, size = text.length() - 2; i < size; i++) {
+                int hash = (text.charAt(i) * 31 + text.charAt(i + 1)) * 31 + text.charAt(i + 2);
+                hash ^= hash >>> 7;
+                int bit = (hash * 0x9E3779B1) >>> 25 & SIGNATURE_MASK;
+                signature[offset + (bit >>> 6)] |= 1L << bit;
+            }
+        }
+    }
+
+    private static void setBit(AtomicLongArray bitmap, int word, long bit) {
+        bitmap.set(word, bitmap.get(word) | bit);
+    }
+
+    private static void clearBit(AtomicLongArray bitmap, int word, long bit) {
+        bitmap.set(word, bitmap.get(word) & ~bit);
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.insight.log.support;
+
+import org.fusesource.insight.log.LogFilter;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LogBufferTest {
+
+    @Test
+    public void testEvictsOldestEvents() throws Exception {
+        LogBuffer<String> buffer = new LogBuffer<String>(64);
+        for (int i = 0; i < 100; i++) {
+            buffer.add("event" + i, i, "INFO", "event" + i);
+        }
+        List<String> elements = buffer.getElements();
+        assertEquals(64, elements.size());
+        assertEquals("event36", elements.get(0));
+        assertEquals("event99", elements.get(63));
+        assertEquals(36, buffer.getFirstTimestamp());
+        assertEquals(99, buffer.getLastTimestamp());
+    }
+
+    @Test
+    public void testLevelAndTimeIndexes() throws Exception {
+        LogBuffer<String> buffer = new LogBuffer<String>(1000);
+        for (int i = 0; i < 1000; i++) {
+            buffer.add("event" + i, i, i % 100 == 0 ? "ERROR" : "INFO", "event" + i);
+        }
+        LogFilter filter = new LogFilter();
+        filter.setLevels(new String[]{"ERROR"});
+        filter.setAfterTimestamp(250L);
+        filter.setBeforeTimestamp(800L);
+        assertEquals(Arrays.asList("event300", "event400", "event500", "event600", "event700"), query(buffer, filter));
+
+        filter.setLevels(new String[]{"FATAL"});
+        assertEquals(0, query(buffer, filter).size());
+    }
+
+    @Test
+    public void testTextIndexNeverSkipsMatches() throws Exception {
+        LogBuffer<String> buffer = new LogBuffer<String>(200);
+        for (int i = 0; i < 199; i++) {
+            buffer.add("event" + i, i, "INFO", "Processed order " + i, "thread-" + (i % 4));
+        }
+        buffer.add("unindexed", 199, "INFO", (String[]) null);
+
+        LogFilter filter = new LogFilter();
+        filter.setMatchesText("order 17");
+        List<String> candidates = query(buffer, filter);
+        assertTrue("Should find event17 in " + candidates, candidates.contains("event17"));
+        assertTrue("Should find event170 in " + candidates, candidates.contains("event170"));
+        assertTrue("Should always return unindexed events", candidates.contains("unindexed"));
+        assertTrue("Should skip most events but found " + candidates.size(), candidates.size() < 50);
+    }
+
+    protected List<String> query(LogBuffer<String> buffer, LogFilter filter) {
+        final List<String> answer = new ArrayList<String>();
+        buffer.query(filter, new LogBuffer.Visitor<String>() {
+            public boolean visit(String element) {
+                answer.add(element);
+                return true;
+            }
+        });
+        return answer;
+    }
+}
@@ -28,8 +28,8 @@ import org.apache.log4j.spi.ThrowableInformation;
 import org.fusesource.insight.log.LogEvent;
 import org.fusesource.insight.log.LogFilter;
 import org.fusesource.insight.log.LogResults;
+import org.fusesource.insight.log.support.LogBuffer;
 import org.fusesource.insight.log.support.LogQuerySupport;
-import org.fusesource.insight.log.support.LruList;
 import org.fusesource.insight.log.support.Predicate;
 import org.ops4j.pax.url.maven.commons.MavenConfigurationImpl;
 import org.ops4j.pax.url.maven.commons.MavenSettingsImpl;
@@ -61,7 +61,7 @@ public class Log4jLogQuery extends LogQuerySupport implements Log4jLogQueryMBean
     private static final transient Logger LOG = LoggerFactory.getLogger(Log4jLogQuery.class);
 
     private int size = 1000;
-    private LruList<LoggingEvent> events;
+    private LogBuffer<LoggingEvent> events;
     private boolean addMavenCoordinates = true;
     private AetherBasedResolver resolver;
     private Properties properties = new Properties();
@@ -85,7 +85,7 @@ public class Log4jLogQuery extends LogQuerySupport implements Log4jLogQueryMBean
                     if (addMavenCoordinates) {
                         appendMavenCoordinates(loggingEvent);
                     }
-                    getEvents().add(loggingEvent);
+                    addEvent(loggingEvent);
                 }
 
                 public void close() {
@@ -108,7 +108,7 @@ public class Log4jLogQuery extends LogQuerySupport implements Log4jLogQueryMBean
     }
 
     public LogResults getLogResults(int maxCount) throws IOException {
-        return filterLogResults(null, maxCount);
+        return filterLogResults(null, null, maxCount);
     }
 
     public LogResults queryLogResults(LogFilter filter) {
@@ -117,7 +117,7 @@ public class Log4jLogQuery extends LogQuerySupport implements Log4jLogQueryMBean
         if (filter != null) {
             maxCount = filter.getCount();
         }
-        return filterLogResults(predicate, maxCount);
+        return filterLogResults(filter, predicate, maxCount);
     }
 
     private Predicate<LogEvent> createPredicate(LogFilter filter) {
@@ -204,38 +204,48 @@ public class Log4jLogQuery extends LogQuerySupport implements Log4jLogQueryMBean
         }
     }
 
-    protected LogResults filterLogResults(Predicate<LogEvent> predicate, int maxCount) {
-        int matched = 0;
-        long from = Long.MAX_VALUE;
-        long to = Long.MIN_VALUE;
-        List<LogEvent> list = new ArrayList<LogEvent>();
-        Iterable<LoggingEvent> elements = getEvents().getElements();
-        for (LoggingEvent element : elements) {
-            LogEvent logEvent = toLogEvent(element);
-            long timestamp = element.getTimeStamp();
-            if (timestamp > to) {
-                to = timestamp;
-            }
-            if (timestamp < from) {
-                from = timestamp;
-            }
-            if (logEvent != null) {
+    /**
+     * Adds the event to the buffer along with the text fields that {@link #createPredicate(LogFilter)} matches
+     * against so that the buffer can index them
+     */
+    protected void addEvent(LoggingEvent loggingEvent) {
+        String[] texts = null;
+        if (loggingEvent.getThrowableInformation() == null) {
+            // the rendered stack trace is only known once we convert the event so we don't index events with exceptions
+            LocationInfo locationInformation = loggingEvent.getLocationInformation();
+            String className = locationInformation != null
+                    ? locationInformation.getClassName() : loggingEvent.getFQNOfLoggerClass();
+            Object message = loggingEvent.getMessage();
+            Map properties = loggingEvent.getProperties();
+            texts = new String[]{className, message != null ? message.toString() : null,
+                    loggingEvent.getLoggerName(), loggingEvent.getThreadName(),
+                    properties != null ? properties.toString() : null};
+        }
+        Level level = loggingEvent.getLevel();
+        getEvents().add(loggingEvent, loggingEvent.getTimeStamp(), level != null ? level.toString() : null, texts);
+    }
+
+    protected LogResults filterLogResults(LogFilter filter, final Predicate<LogEvent> predicate, final int maxCount) {
+        final List<LogEvent> list = new ArrayList<LogEvent>();
+        LogBuffer<LoggingEvent> buffer = getEvents();
+        // the buffer's indexes skip most of the events which cannot match so we only convert the candidates
+        buffer.query(filter, new LogBuffer.Visitor<LoggingEvent>() {
+            public boolean visit(LoggingEvent element) {
+                LogEvent logEvent = toLogEvent(element);
                 if (predicate == null || predicate.matches(logEvent)) {
                     list.add(logEvent);
-                    matched += 1;
-                    if (maxCount > 0 && matched >= maxCount) {
-                        break;
-                    }
+                    return maxCount <= 0 || list.size() < maxCount;
                 }
+                return true;
             }
-        }
+        });
         LogResults results = new LogResults();
         results.setEvents(list);
-        results.setFromTimestamp(from);
-        results.setToTimestamp(to);
+        results.setFromTimestamp(buffer.getFirstTimestamp());
+        results.setToTimestamp(buffer.getLastTimestamp());
         if (LOG.isDebugEnabled()) {
             LOG.debug("Requested " + maxCount + " logging items. returning "
-                    + results.getEvents().size() + " event(s) from a possible " + getEvents().size());
+                    + results.getEvents().size() + " event(s) from a possible " + buffer.size());
 
         }
         return results;
@@ -348,14 +358,14 @@ public class Log4jLogQuery extends LogQuerySupport implements Log4jLogQueryMBean
 
     // Properties
     //-------------------------------------------------------------------------
-    public LruList<LoggingEvent> getEvents() {
+    public LogBuffer<LoggingEvent> getEvents() {
         if (events == null) {
-            events = new LruList<LoggingEvent>(LoggingEvent.class, getSize());
+            events = new LogBuffer<LoggingEvent>(getSize());
         }
         return events;
     }
 
-    public void setEvents(LruList<LoggingEvent> events) {
+    public void setEvents(LogBuffer<LoggingEvent> events) {
         this.events = events;
     }
 
@@ -35,6 +35,7 @@ import org.fusesource.insight.metrics.model.Query;
 import org.fusesource.insight.metrics.model.QueryResult;
 import org.fusesource.insight.metrics.model.Request;
 import org.fusesource.insight.metrics.model.Server;
+import org.fusesource.insight.metrics.support.BatchEncoder;
 import org.fusesource.insight.metrics.support.JmxUtils;
 import org.fusesource.insight.metrics.support.Renderer;
 import org.fusesource.insight.metrics.support.ScriptUtils;
@@ -54,12 +55,18 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.net.URL;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
@@ -91,6 +98,8 @@ public class MetricsCollector implements MetricsCollectorMBean {
     public static final String DEFAULT = "default";
     public static final String LOCK_GLOBAL = "global";
     public static final String LOCK_HOST = "host";
+    public static final String FORMAT_TEMPLATE = "template";
+    public static final String FORMAT_BATCH = "batch";
 
     private static final transient Logger LOG = LoggerFactory.getLogger(MetricsCollector.class);
 
@@ -102,6 +111,8 @@ public class MetricsCollector implements MetricsCollectorMBean {
 
     private ScheduledThreadPoolExecutor executor;
     private Map<Query, QueryState> queries = new ConcurrentHashMap<Query, QueryState>();
+    private Map<Integer, QueryGroup> groups = new ConcurrentHashMap<Integer, QueryGroup>();
+    private Map<String, ProfileQueries> profileQueries = new HashMap<String, ProfileQueries>();
     private Renderer renderer = new Renderer();
 
     private ServiceTracker<MBeanServer, MBeanServer> mbeanServer;
@@ -114,9 +125,11 @@ public class MetricsCollector implements MetricsCollectorMBean {
     private int defaultDelay = 60;
     private int threadPoolSize = 5;
     private String type;
+    private String format = FORMAT_TEMPLATE;
+    private int keyFrameInterval = 10;
 
     static class QueryState {
-        ScheduledFuture<?> future;
+        QueryGroup group;
         Server server;
         Query query;
         QueryResult lastResult;
@@ -126,13 +139,48 @@ public class MetricsCollector implements MetricsCollectorMBean {
         ClusteredSingleton<QueryNodeState> lock;
 
         public void close() {
-            future.cancel(false);
+            group.remove(this);
             if (lock != null) {
                 lock.leave();
             }
         }
     }
 
+    /**
+     * The queries which share the same period and so are collected together in a single pass
+     */
+    static class QueryGroup {
+        final int period;
+        final List<QueryState> states = new CopyOnWriteArrayList<QueryState>();
+        ScheduledFuture<?> future;
+        BatchEncoder encoder;
+
+        QueryGroup(int period) {
+            this.period = period;
+        }
+
+        synchronized void remove(QueryState state) {
+            states.remove(state);
+            if (states.isEmpty() && future != null) {
+                future.cancel(false);
+                future = null;
+            }
+        }
+    }
+
+    /**
+     * The queries parsed from a profile's metrics configuration, so it is only parsed again when it changes
+     */
+    static class ProfileQueries {
+        final byte[] bytes;
+        final Set<Query> queries;
+
+        ProfileQueries(byte[] bytes, Set<Query> queries) {
+            this.bytes = bytes;
+            this.queries = queries;
+        }
+    }
+
     static class QueryNodeState implements NodeState {
         @JsonProperty
         String id;
@@ -176,6 +224,21 @@ public class MetricsCollector implements MetricsCollectorMBean {
         this.type = type;
     }
 
+    /**
+     * Sets how results are stored: <code>template</code> renders a document per query through its MVEL template
+     * whereas <code>batch</code> stores the numeric values of each collection pass as a delta encoded batch
+     */
+    public void setFormat(String format) {
+        if (!FORMAT_TEMPLATE.equals(format) && !FORMAT_BATCH.equals(format)) {
+            throw new IllegalArgumentException("Unknown format: " + format);
+        }
+        this.format = format;
+    }
+
+    public void setKeyFrameInterval(int keyFrameInterval) {
+        this.keyFrameInterval = keyFrameInterval;
+    }
+
     public void setFabricService(FabricService fabricService) {
         this.fabricService = fabricService;
     }
@@ -269,12 +332,14 @@ public class MetricsCollector implements MetricsCollectorMBean {
             Container container = fabricService.getCurrentContainer();
             if (container != null) {
                 Set<Query> newQueries = new HashSet<Query>();
+                Map<String, ProfileQueries> loaded = new HashMap<String, ProfileQueries>();
                 Profile[] profiles = container.getProfiles();
                 if (profiles != null) {
                     for (Profile profile : profiles) {
-                        loadProfile(profile, newQueries);
+                        loadProfile(profile, newQueries, loaded);
                     }
                 }
+                profileQueries = loaded;
                 for (Query q : queries.keySet()) {
                     if (!newQueries.remove(q)) {
                         queries.remove(q).close();
@@ -316,12 +381,8 @@ public class MetricsCollector implements MetricsCollectorMBean {
                         state.lock.join(new QueryNodeState(queryName, containerName, null));
                     }
 
-                    long delay = q.getPeriod() > 0 ? q.getPeriod() : defaultDelay;
-                    state.future = this.executor.scheduleAtFixedRate(
-                            new Task(state),
-                            Math.round(Math.random() * 1000) + 1,
-                            delay * 1000,
-                            TimeUnit.MILLISECONDS);
+                    state.group = getGroup(q.getPeriod() > 0 ? q.getPeriod() : defaultDelay, containerName);
+                    state.group.states.add(state);
                     queries.put(q, state);
                 }
             }
@@ -332,6 +393,28 @@ public class MetricsCollector implements MetricsCollectorMBean {
         }
     }
 
+    /**
+     * Returns the group of queries with the given period, scheduling its collection pass if needed
+     */
+    protected QueryGroup getGroup(int period, String containerName) {
+        QueryGroup group = groups.get(period);
+        if (group == null) {
+            group = new QueryGroup(period);
+            groups.put(period, group);
+        }
+        synchronized (group) {
+            if (group.future == null) {
+                group.encoder = new BatchEncoder(containerName, period, keyFrameInterval);
+                group.future = this.executor.scheduleAtFixedRate(
+                        new Task(group),
+                        Math.round(Math.random() * 1000) + 1,
+                        period * 1000L,
+                        TimeUnit.MILLISECONDS);
+            }
+        }
+        return group;
+    }
+
     protected synchronized Group startGroup(String lock) {
         if (LOCK_GLOBAL.equals(lock)) {
             if (globalGroup == null) {
@@ -356,9 +439,26 @@ public class MetricsCollector implements MetricsCollectorMBean {
         }
     }
 
-    protected void loadProfile(Profile profile, Set<Query> queries) {
-        Map<String, byte[]> fileConfigurations = profile.getFileConfigurations();
-        byte[] bytes = fileConfigurations.get(GRAPH_JSON);
+    protected void loadProfile(Profile profile, Set<Query> queries, Map<String, ProfileQueries> loaded) {
+        String key = profile.getVersion() + "/" + profile.getId();
+        if (!loaded.containsKey(key)) {
+            Map<String, byte[]> fileConfigurations = profile.getFileConfigurations();
+            byte[] bytes = fileConfigurations.get(GRAPH_JSON);
+            ProfileQueries cached = profileQueries.get(key);
+            if (cached == null || !Arrays.equals(cached.bytes, bytes)) {
+                Set<Query> parsed = new HashSet<Query>();
+                loadProfile(profile, bytes, parsed);
+                cached = new ProfileQueries(bytes, parsed);
+            }
+            loaded.put(key, cached);
+            queries.addAll(cached.queries);
+        }
+        for (Profile p : profile.getParents()) {
+            loadProfile(p, queries, loaded);
+        }
+    }
+
+    protected void loadProfile(Profile profile, byte[] bytes, Set<Query> queries) {
         if (bytes != null && bytes.length > 0) {
             try {
                 Map object = new ObjectMapper().readValue(bytes, Map.class);
@@ -393,17 +493,14 @@ public class MetricsCollector implements MetricsCollectorMBean {
                 LOG.warn("Unable to load queries from profile " + profile.getId(), t);
             }
         }
-        for (Profile p : profile.getParents()) {
-            loadProfile(p, queries);
-        }
     }
 
     class Task implements Runnable {
 
-        private final QueryState query;
+        private final QueryGroup group;
 
-        public Task(QueryState query) {
-            this.query = query;
+        public Task(QueryGroup group) {
+            this.group = group;
         }
 
         @Override
@@ -415,32 +512,69 @@ public class MetricsCollector implements MetricsCollectorMBean {
                 if (mbs == null || svc == null) {
                     return;
                 }
-                // If there's a lock, check we are the master
-                if (query.lock != null && !query.lock.isMaster()) {
+                Map<Query, QueryState> active = new HashMap<Query, QueryState>();
+                Server server = null;
+                for (QueryState state : group.states) {
+                    // If there's a lock, check we are the master
+                    if (state.lock == null || state.lock.isMaster()) {
+                        active.put(state.query, state);
+                        server = state.server;
+                    }
+                }
+                if (active.isEmpty()) {
                     return;
                 }
-                QueryResult qrs = JmxUtils.execute(query.server, query.query, mbs);
-                boolean forceSend = query.query.getMinPeriod() == query.query.getPeriod() ||
-                        qrs.getTimestamp().getTime() - query.lastSent >= TimeUnit.SECONDS.toMillis(query.query.getMinPeriod());
-                if (!forceSend && query.lastResult != null) {
-                    if (qrs.getResults().equals(query.lastResult.getResults())) {
-                        query.lastResult = qrs;
-                        query.lastResultSent = false;
-                        return;
-                    }
-                    if (!query.lastResultSent) {
-                        renderAndSend(svc, query.lastResult);
+                Map<Query, QueryResult> results = JmxUtils.execute(server, new ArrayList<Query>(active.keySet()), mbs);
+                if (FORMAT_BATCH.equals(format)) {
+                    sendBatch(svc, results);
+                } else {
+                    for (Map.Entry<Query, QueryResult> entry : results.entrySet()) {
+                        try {
+                            send(svc, active.get(entry.getKey()), entry.getValue());
+                        } catch (Exception e) {
+                            LOG.debug("Error sending metrics", e);
+                        }
                     }
                 }
-                query.lastResult = qrs;
-                query.lastResultSent = true;
-                query.lastSent = qrs.getTimestamp().getTime();
-                renderAndSend(svc, qrs);
             } catch (Exception e) {
                 LOG.debug("Error sending metrics", e);
             }
         }
 
+        private void sendBatch(StorageService svc, Map<Query, QueryResult> results) {
+            SortedMap<String, Number> values = new TreeMap<String, Number>();
+            Date timestamp = null;
+            for (QueryResult qrs : results.values()) {
+                BatchEncoder.collect(qrs, values);
+                timestamp = qrs.getTimestamp();
+            }
+            if (timestamp != null) {
+                String output = group.encoder.encode(timestamp, values);
+                if (output != null) {
+                    svc.store(type + "-batch", timestamp.getTime(), output);
+                }
+            }
+        }
+
+        private void send(StorageService svc, QueryState query, QueryResult qrs) throws Exception {
+            boolean forceSend = query.query.getMinPeriod() == query.query.getPeriod() ||
+                    qrs.getTimestamp().getTime() - query.lastSent >= TimeUnit.SECONDS.toMillis(query.query.getMinPeriod());
+            if (!forceSend && query.lastResult != null) {
+                if (qrs.getResults().equals(query.lastResult.getResults())) {
+                    query.lastResult = qrs;
+                    query.lastResultSent = false;
+                    return;
+                }
+                if (!query.lastResultSent) {
+                    renderAndSend(svc, query.lastResult);
+                }
+            }
+            query.lastResult = qrs;
+            query.lastResultSent = true;
+            query.lastSent = qrs.getTimestamp().getTime();
+            renderAndSend(svc, qrs);
+        }
+
         private void renderAndSend(StorageService svc, QueryResult qrs) throws Exception {
             String output = renderer.render(qrs);
             if (output == null || output.trim().isEmpty()) {
@@ -0,0 +1,146 @@
+/**
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.insight.metrics.support;
+
+import org.fusesource.insight.metrics.model.MBeanAttrResult;
+import org.fusesource.insight.metrics.model.MBeanAttrsResult;
+import org.fusesource.insight.metrics.model.MBeanOperResult;
+import org.fusesource.insight.metrics.model.MBeanOpersResult;
+import org.fusesource.insight.metrics.model.QueryResult;
+import org.fusesource.insight.metrics.model.Result;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Encodes the numeric values gathered by a collection pass as a compact columnar batch document rather than
+ * rendering a document per query.
+ * <p/>
+ * A key frame lists every column name along with its value. The following delta frames only contain the indexes
+ * of the columns which changed since the previous frame along with the difference for integral columns or the new
+ * value for floating point columns. A new key frame is written every <code>keyFrameInterval</code> frames or as
+ * soon as the set of columns changes, so a delta frame can always be decoded from the key frame named by its
+ * <code>base</code> timestamp and the delta frames in between. Nothing is written if no value has changed.
+ */
+public class BatchEncoder {
+
+    private final String host;
+    private final int period;
+    private final int keyFrameInterval;
+
+    private List<String> columns;
+    private Number[] lastValues;
+    private Date keyFrameTimestamp;
+    private int framesSinceKeyFrame;
+
+    public BatchEncoder(String host, int period, int keyFrameInterval) {
+        this.host = host;
+        this.period = period;
+        this.keyFrameInterval = keyFrameInterval;
+    }
+
+    /**
+     * Adds the numeric values of the query results to the columns, named by
+     * <code>query.request.objectName.attribute[.key]</code>
+     */
+    public static void collect(QueryResult qrs, SortedMap<String, Number> columns) {
+        for (Map.Entry<String, Result<?>> entry : qrs.getResults().entrySet()) {
+            String prefix = qrs.getQuery().getName() + "." + entry.getKey() + ".";
+            Result<?> result = entry.getValue();
+            if (result instanceof MBeanAttrsResult) {
+                for (MBeanAttrResult r : ((MBeanAttrsResult) result).getResults()) {
+                    for (Map.Entry<String, Object> attr : r.getAttrs().entrySet()) {
+                        collect(prefix + r.getObjectName() + "." + attr.getKey(), attr.getValue(), columns);
+                    }
+                }
+            } else if (result instanceof MBeanOpersResult) {
+                MBeanOpersResult opers = (MBeanOpersResult) result;
+                for (MBeanOperResult r : opers.getResults()) {
+                    collect(prefix + r.getObjectName() + "." + opers.getRequest().getOper(), r.getValue(), columns);
+                }
+            }
+        }
+    }
+
+    private static void collect(String name, Object value, SortedMap<String, Number> columns) {
+        if (value instanceof Number) {
+            columns.put(name, (Number) value);
+        } else if (value instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                collect(name + "." + entry.getKey(), entry.getValue(), columns);
+            }
+        }
+    }
+
+    /**
+     * Returns the JSON frame for the given values or null if there is nothing to store
+     */
+    public String encode(Date timestamp, SortedMap<String, Number> values) {
+        if (values.isEmpty()) {
+            return null;
+        }
+        Map<String, Object> frame = new LinkedHashMap<String, Object>();
+        frame.put("host", host);
+        frame.put("timestamp", timestamp);
+        frame.put("period", period);
+
+        boolean keyFrame = columns == null || framesSinceKeyFrame + 1 >= keyFrameInterval
+                || !columns.equals(new ArrayList<String>(values.keySet()));
+        if (keyFrame) {
+            columns = new ArrayList<String>(values.keySet());
+            lastValues = values.values().toArray(new Number[values.size()]);
+            keyFrameTimestamp = timestamp;
+            framesSinceKeyFrame = 0;
+            frame.put("keyframe", true);
+            frame.put("columns", columns);
+            frame.put("values", lastValues);
+            return ScriptUtils.toJson(frame);
+        }
+
+        framesSinceKeyFrame++;
+        List<Integer> changed = new ArrayList<Integer>();
+        List<Number> changes = new ArrayList<Number>();
+        int i = 0;
+        for (Number value : values.values()) {
+            Number last = lastValues[i];
+            if (!value.equals(last)) {
+                changed.add(i);
+                changes.add(isIntegral(value) && isIntegral(last) ? value.longValue() - last.longValue() : value);
+                lastValues[i] = value;
+            }
+            i++;
+        }
+        if (changed.isEmpty()) {
+            return null;
+        }
+        frame.put("keyframe", false);
+        frame.put("base", keyFrameTimestamp);
+        frame.put("changed", changed);
+        frame.put("values", changes);
+        return ScriptUtils.toJson(frame);
+    }
+
+    protected static boolean isIntegral(Number value) {
+        return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte
+                || (value instanceof BigInteger && ((BigInteger) value).bitLength() < 63);
+    }
+}
@@ -27,6 +27,8 @@ import org.fusesource.insight.metrics.model.QueryResult;
 import org.fusesource.insight.metrics.model.Request;
 import org.fusesource.insight.metrics.model.Result;
 import org.fusesource.insight.metrics.model.Server;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.management.Attribute;
 import javax.management.AttributeList;
@@ -35,14 +37,18 @@ import javax.management.MBeanServer;
 import javax.management.ObjectName;
 import javax.management.openmbean.CompositeDataSupport;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 public class JmxUtils {
 
+    private static final transient Logger LOG = LoggerFactory.getLogger(JmxUtils.class);
+
     public static QueryResult execute(Server server, Query query, MBeanServer mbs) throws JMException {
         // Iterate through queries
         Map<String, Result<?>> queryResults = new HashMap<String, Result<?>>();
@@ -52,6 +58,108 @@ public class JmxUtils {
         return new QueryResult(server, query, new Date(), queryResults);
     }
 
+    /**
+     * Executes all the queries in a single pass: each object name pattern is only queried once, each mbean is read
+     * with a single bulk <code>getAttributes</code> call for the union of the attributes requested by all the
+     * queries and identical operations are only invoked once.
+     * <p/>
+     * Queries for which any request fails are left out of the returned results.
+     */
+    public static Map<Query, QueryResult> execute(Server server, Collection<Query> queries, MBeanServer mbs) {
+        Map<String, Set<String>> attrsByObj = new HashMap<String, Set<String>>();
+        Set<MBeanOpers> opers = new LinkedHashSet<MBeanOpers>();
+        for (Query query : queries) {
+            for (Request request : query.getRequests()) {
+                if (request instanceof MBeanAttrs) {
+                    MBeanAttrs attrs = (MBeanAttrs) request;
+                    Set<String> names = attrsByObj.get(attrs.getObj());
+                    if (names == null) {
+                        names = new LinkedHashSet<String>();
+                        attrsByObj.put(attrs.getObj(), names);
+                    }
+                    names.addAll(attrs.getAttrs());
+                } else if (request instanceof MBeanOpers) {
+                    opers.add((MBeanOpers) request);
+                }
+            }
+        }
+
+        Map<String, Map<ObjectName, Map<String, Object>>> attrValues = new HashMap<String, Map<ObjectName, Map<String, Object>>>();
+        for (Map.Entry<String, Set<String>> entry : attrsByObj.entrySet()) {
+            try {
+                attrValues.put(entry.getKey(), getAttributes(entry.getKey(), entry.getValue(), mbs));
+            } catch (Exception e) {
+                LOG.debug("Error reading attributes of " + entry.getKey(), e);
+            }
+        }
+        Map<MBeanOpers, MBeanOpersResult> operResults = new HashMap<MBeanOpers, MBeanOpersResult>();
+        for (MBeanOpers oper : opers) {
+            try {
+                operResults.put(oper, execute(server, oper, mbs));
+            } catch (Exception e) {
+                LOG.debug("Error invoking " + oper.getOper() + " on " + oper.getObj(), e);
+            }
+        }
+
+        Date timestamp = new Date();
+        Map<Query, QueryResult> answer = new HashMap<Query, QueryResult>();
+        for (Query query : queries) {
+            Map<String, Result<?>> queryResults = new HashMap<String, Result<?>>();
+            for (Request request : query.getRequests()) {
+                Result<?> result = null;
+                if (request instanceof MBeanAttrs) {
+                    result = select((MBeanAttrs) request, attrValues.get(((MBeanAttrs) request).getObj()));
+                } else if (request instanceof MBeanOpers) {
+                    MBeanOpersResult shared = operResults.get(request);
+                    if (shared != null) {
+                        // the shared result may have been created for an identical request with another name
+                        result = new MBeanOpersResult((MBeanOpers) request, shared.getResults());
+                    }
+                }
+                if (result == null) {
+                    queryResults = null;
+                    break;
+                }
+                queryResults.put(request.getName(), result);
+            }
+            if (queryResults != null) {
+                answer.put(query, new QueryResult(server, query, timestamp, queryResults));
+            }
+        }
+        return answer;
+    }
+
+    private static Map<ObjectName, Map<String, Object>> getAttributes(String obj, Set<String> attrs, MBeanServer mbs) throws JMException {
+        Map<ObjectName, Map<String, Object>> answer = new HashMap<ObjectName, Map<String, Object>>();
+        String[] names = attrs.toArray(new String[attrs.size()]);
+        for (ObjectName mbean : mbs.queryNames(new ObjectName(obj), null)) {
+            AttributeList al = mbs.getAttributes(mbean, names);
+            Map<String, Object> values = new HashMap<String, Object>();
+            for (Attribute attribute : al.asList()) {
+                values.put(attribute.getName(), getJmxValue(attribute.getValue()));
+            }
+            answer.put(mbean, values);
+        }
+        return answer;
+    }
+
+    private static MBeanAttrsResult select(MBeanAttrs request, Map<ObjectName, Map<String, Object>> values) {
+        if (values == null) {
+            return null;
+        }
+        List<MBeanAttrResult> results = new ArrayList<MBeanAttrResult>();
+        for (Map.Entry<ObjectName, Map<String, Object>> entry : values.entrySet()) {
+            Map<String, Object> attrs = new HashMap<String, Object>();
+            for (String attr : request.getAttrs()) {
+                if (entry.getValue().containsKey(attr)) {
+                    attrs.put(attr, entry.getValue().get(attr));
+                }
+            }
+            results.add(new MBeanAttrResult(entry.getKey(), attrs));
+        }
+        return new MBeanAttrsResult(request, results);
+    }
+
     private static Result execute(Server server, Request request, MBeanServer mbs) throws JMException {
         if (request instanceof MBeanAttrs) {
             return execute(server, ((MBeanAttrs) request), mbs);
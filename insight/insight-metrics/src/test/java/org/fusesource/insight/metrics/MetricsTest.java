@@ -23,17 +23,23 @@ import org.fusesource.insight.metrics.model.Query;
 import org.fusesource.insight.metrics.model.QueryResult;
 import org.fusesource.insight.metrics.model.Request;
 import org.fusesource.insight.metrics.model.Server;
+import org.fusesource.insight.metrics.support.BatchEncoder;
 import org.fusesource.insight.metrics.support.JmxUtils;
 import org.fusesource.insight.metrics.support.Renderer;
 import org.junit.Test;
 
 import java.lang.management.ManagementFactory;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 public class MetricsTest {
 
@@ -56,4 +62,55 @@ public class MetricsTest {
         assertEquals("local", map.get("host"));
         assertNotNull(map.get("timestamp"));
     }
+
+    @Test
+    public void testBulkExecute() throws Exception {
+        Query heap = new Query("heap", new HashSet<Request>(Arrays.<Request>asList(
+                new MBeanAttrs("memory", "java.lang:type=Memory", Arrays.asList("HeapMemoryUsage"))
+        )), null, null, null, 0, 0);
+        Query threads = new Query("threads", new HashSet<Request>(Arrays.<Request>asList(
+                new MBeanAttrs("memory", "java.lang:type=Memory", Arrays.asList("NonHeapMemoryUsage")),
+                new MBeanAttrs("threading", "java.lang:type=Threading", Arrays.asList("ThreadCount"))
+        )), null, null, null, 0, 0);
+
+        Map<Query, QueryResult> results = JmxUtils.execute(new Server("local"), Arrays.asList(heap, threads),
+                ManagementFactory.getPlatformMBeanServer());
+        assertEquals(2, results.size());
+
+        SortedMap<String, Number> values = new TreeMap<String, Number>();
+        BatchEncoder.collect(results.get(heap), values);
+        BatchEncoder.collect(results.get(threads), values);
+        assertNotNull(values.get("heap.memory.java.lang:type=Memory.HeapMemoryUsage.used"));
+        assertNull(values.get("heap.memory.java.lang:type=Memory.NonHeapMemoryUsage.used"));
+        assertNotNull(values.get("threads.memory.java.lang:type=Memory.NonHeapMemoryUsage.used"));
+        assertNotNull(values.get("threads.threading.java.lang:type=Threading.ThreadCount"));
+    }
+
+    @Test
+    public void testBatchEncoder() throws Exception {
+        BatchEncoder encoder = new BatchEncoder("local", 60, 3);
+        SortedMap<String, Number> values = new TreeMap<String, Number>();
+        values.put("a", 10L);
+        values.put("b", 1.5);
+        values.put("c", 7);
+
+        Map frame = new ObjectMapper().readValue(encoder.encode(new Date(1000), values), Map.class);
+        assertEquals(Boolean.TRUE, frame.get("keyframe"));
+        assertEquals(Arrays.asList("a", "b", "c"), frame.get("columns"));
+
+        assertNull(encoder.encode(new Date(2000), values));
+
+        values.put("a", 15L);
+        values.put("b", 2.5);
+        frame = new ObjectMapper().readValue(encoder.encode(new Date(3000), values), Map.class);
+        assertEquals(Boolean.FALSE, frame.get("keyframe"));
+        assertEquals(Arrays.asList(0, 1), frame.get("changed"));
+        List changes = (List) frame.get("values");
+        assertEquals(5, ((Number) changes.get(0)).intValue());
+        assertEquals(2.5, ((Number) changes.get(1)).doubleValue(), 0.0);
+
+        // the key frame interval has elapsed
+        frame = new ObjectMapper().readValue(encoder.encode(new Date(4000), values), Map.class);
+        assertEquals(Boolean.TRUE, frame.get("keyframe"));
+    }
 }
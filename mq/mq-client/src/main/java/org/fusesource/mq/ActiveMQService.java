@@ -137,4 +137,8 @@ public class ActiveMQService implements JMSService {
     public void setTransacted(boolean transacted) {
         this.transacted = transacted;
     }
+
+    public void setUseAsyncSend(boolean useAsyncSend) {
+        connectionFactory.setUseAsyncSend(useAsyncSend);
+    }
 }
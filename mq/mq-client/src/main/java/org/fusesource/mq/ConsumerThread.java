@@ -27,7 +27,7 @@ public class ConsumerThread extends Thread {
 
     int messageCount = 1000;
     int receiveTimeOut = 3000;
-    int received = 0;
+    volatile int received = 0;
     int transactions = 0;
     String dest;
     JMSService service;
@@ -35,6 +35,8 @@ public class ConsumerThread extends Thread {
     boolean running = false;
     int sleep;
     int transactionBatchSize;
+    boolean verbose = true;
+    LatencyHistogram histogram;
 
     public ConsumerThread(JMSService service, String dest) {
         this.dest = dest;
@@ -51,7 +53,12 @@ public class ConsumerThread extends Thread {
             while (running && received < messageCount) {
                 Message msg = consumer.receive(receiveTimeOut);
                 if (msg != null) {
-                    LOG.info("Received " + (msg instanceof TextMessage ? ((TextMessage)msg).getText() : msg.getJMSMessageID()));
+                    if (histogram != null && msg.propertyExists(LoadTest.SEND_TIME_PROPERTY)) {
+                        histogram.record(LoadTest.currentTimeMicros() - msg.getLongProperty(LoadTest.SEND_TIME_PROPERTY));
+                    }
+                    if (verbose) {
+                        LOG.info("Received " + (msg instanceof TextMessage ? ((TextMessage)msg).getText() : msg.getJMSMessageID()));
+                    }
                     received++;
                 } else {
                     if (breakOnNull) {
@@ -108,6 +115,20 @@ public class ConsumerThread extends Thread {
         this.transactionBatchSize = transactionBatchSize;
     }
 
+    /**
+     * Sets whether every received message should be logged
+     */
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
+    }
+
+    /**
+     * Sets the histogram used to record the end to end latency in microseconds of messages sent by a load test producer
+     */
+    public void setHistogram(LatencyHistogram histogram) {
+        this.histogram = histogram;
+    }
+
     public boolean isRunning() {
         return running;
     }
@@ -0,0 +1,227 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.mq;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.JMSException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Runs a throughput and latency load test using a number of producer and/or consumer connections,
+ * periodically printing a one line JSON summary of the rates and latency percentiles.
+ * <p/>
+ * Producers embed the time each message was meant to be sent so that consumers in the same or in another
+ * process can record the end to end latency; these wall clock based latencies are only meaningful when the
+ * clocks of the producer and consumer hosts are synchronized.
+ */
+public class LoadTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LoadTest.class);
+
+    public static final String SEND_TIME_PROPERTY = "MQClientSendTime";
+    public static final String SELF_TEST_BROKER_URL = "vm://mq-client-selftest?broker.persistent=false&broker.useJmx=false";
+
+    private static final long BASE_MILLIS = System.currentTimeMillis();
+    private static final long BASE_NANOS = System.nanoTime();
+
+    String brokerUrl;
+    String user;
+    String password;
+    String destination;
+    boolean produce = true;
+    boolean consume = true;
+    int connections = 1;
+    int count = 100;
+    double rate = 0;
+    int size = 0;
+    boolean persistent = true;
+    boolean asyncSend = false;
+    int reportInterval = 1;
+    PrintStream out = System.out;
+
+    private final List<ActiveMQService> services = new ArrayList<ActiveMQService>();
+    private final List<ProducerThread> producers = new ArrayList<ProducerThread>();
+    private final List<ConsumerThread> consumers = new ArrayList<ConsumerThread>();
+    private final LatencyHistogram sendLatency = new LatencyHistogram();
+    private final LatencyHistogram endToEndLatency = new LatencyHistogram();
+
+    /**
+     * Returns the current wall clock time in microseconds, using the monotonic clock for sub millisecond precision
+     */
+    public static long currentTimeMicros() {
+        return toEpochMicros(System.nanoTime());
+    }
+
+    /**
+     * Converts a {@link System#nanoTime()} value into wall clock microseconds
+     */
+    public static long toEpochMicros(long nanoTime) {
+        return BASE_MILLIS * 1000 + (nanoTime - BASE_NANOS) / 1000;
+    }
+
+    /**
+     * Runs the load test, returning when all producers and consumers have completed
+     */
+    public void run() throws JMSException, InterruptedException {
+        try {
+            // lets start the consumers first so they don't miss any messages
+            if (consume) {
+                for (int i = 0; i < connections; i++) {
+                    ConsumerThread consumer = new ConsumerThread(startService(), destination);
+                    consumer.setMessageCount(count);
+                    consumer.setVerbose(false);
+                    consumer.setHistogram(endToEndLatency);
+                    // when running both sides lets stop once the queue has been drained
+                    consumer.setBreakOnNull(produce);
+                    consumer.setName("mq-client-consumer-" + i);
+                    consumers.add(consumer);
+                }
+            }
+            if (produce) {
+                for (int i = 0; i < connections; i++) {
+                    ProducerThread producer = new ProducerThread(startService(), destination);
+                    producer.setMessageCount(count);
+                    producer.setMessageSize(size);
+                    producer.setPersistent(persistent);
+                    producer.setRate(rate / connections);
+                    producer.setVerbose(false);
+                    producer.setHistogram(sendLatency);
+                    producer.setName("mq-client-producer-" + i);
+                    producers.add(producer);
+                }
+            }
+            for (ConsumerThread consumer : consumers) {
+                consumer.start();
+            }
+            for (ProducerThread producer : producers) {
+                producer.start();
+            }
+
+            long start = System.nanoTime();
+            long lastReport = start;
+            long lastSent = 0;
+            long lastReceived = 0;
+            while (isAlive()) {
+                Thread.sleep(reportInterval * 1000L);
+                long now = System.nanoTime();
+                long sent = getSentCount();
+                long received = getReceivedCount();
+                report("interval", (now - lastReport) / 1000000000.0, sent - lastSent, received - lastReceived);
+                lastReport = now;
+                lastSent = sent;
+                lastReceived = received;
+            }
+            report("total", (System.nanoTime() - start) / 1000000000.0, getSentCount(), getReceivedCount());
+        } finally {
+            for (ProducerThread producer : producers) {
+                producer.setRunning(false);
+            }
+            for (ConsumerThread consumer : consumers) {
+                consumer.setRunning(false);
+            }
+            for (ActiveMQService service : services) {
+                service.stop();
+            }
+        }
+    }
+
+    protected ActiveMQService startService() throws JMSException {
+        ActiveMQService service = new ActiveMQService(user, password, brokerUrl);
+        service.setUseAsyncSend(asyncSend);
+        service.start();
+        services.add(service);
+        return service;
+    }
+
+    protected boolean isAlive() {
+        for (ProducerThread producer : producers) {
+            if (producer.isAlive()) {
+                return true;
+            }
+        }
+        for (ConsumerThread consumer : consumers) {
+            if (consumer.isAlive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected long getSentCount() {
+        long answer = 0;
+        for (ProducerThread producer : producers) {
+            answer += producer.getSentCount();
+        }
+        return answer;
+    }
+
+    protected long getReceivedCount() {
+        long answer = 0;
+        for (ConsumerThread consumer : consumers) {
+            answer += consumer.getReceived();
+        }
+        return answer;
+    }
+
+    /**
+     * Prints a machine readable summary; rates are per second and the latency percentiles, which are cumulative
+     * since the start of the test, are in microseconds
+     */
+    protected void report(String type, double seconds, long sent, long received) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("{\"type\":\"").append(type).append("\"");
+        builder.append(",\"time\":").append(System.currentTimeMillis());
+        builder.append(",\"seconds\":").append(String.format(Locale.ENGLISH, "%.3f", seconds));
+        if (produce) {
+            builder.append(",\"sent\":").append(sent);
+            builder.append(",\"sendRate\":").append(String.format(Locale.ENGLISH, "%.1f", seconds > 0 ? sent / seconds : 0));
+            appendPercentiles(builder, "sendLatency", sendLatency);
+        }
+        if (consume) {
+            builder.append(",\"received\":").append(received);
+            builder.append(",\"receiveRate\":").append(String.format(Locale.ENGLISH, "%.1f", seconds > 0 ? received / seconds : 0));
+            appendPercentiles(builder, "latency", endToEndLatency);
+        }
+        builder.append("}");
+        out.println(builder);
+        LOG.debug(builder.toString());
+    }
+
+    private static void appendPercentiles(StringBuilder builder, String name, LatencyHistogram histogram) {
+        builder.append(",\"").append(name).append("\":{");
+        builder.append("\"count\":").append(histogram.getTotalCount());
+        builder.append(",\"p50\":").append(histogram.getValueAtPercentile(50));
+        builder.append(",\"p90\":").append(histogram.getValueAtPercentile(90));
+        builder.append(",\"p99\":").append(histogram.getValueAtPercentile(99));
+        builder.append(",\"p999\":").append(histogram.getValueAtPercentile(99.9));
+        builder.append(",\"max\":").append(histogram.getMaxValue());
+        builder.append("}");
+    }
+
+    public LatencyHistogram getSendLatency() {
+        return sendLatency;
+    }
+
+    public LatencyHistogram getEndToEndLatency() {
+        return endToEndLatency;
+    }
+}
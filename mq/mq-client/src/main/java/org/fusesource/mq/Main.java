@@ -34,6 +34,11 @@ public class Main {
     String password;
     String user;
     int batchSize;
+    boolean loadTest;
+    double rate;
+    int connections = 1;
+    boolean asyncSend;
+    int reportInterval = 1;
 
     public static void main(String[] args) throws Exception {
 
@@ -69,6 +74,16 @@ public class Main {
                     main.batchSize = Integer.parseInt(shift(arg1));
                 } else if ("--persistent".equals(arg)) {
                     main.persistent = Boolean.valueOf(shift(arg1)).booleanValue();
+                } else if ("--loadTest".equals(arg)) {
+                    main.loadTest = Boolean.valueOf(shift(arg1)).booleanValue();
+                } else if ("--rate".equals(arg)) {
+                    main.rate = Double.parseDouble(shift(arg1));
+                } else if ("--connections".equals(arg)) {
+                    main.connections = Integer.parseInt(shift(arg1));
+                } else if ("--asyncSend".equals(arg)) {
+                    main.asyncSend = Boolean.valueOf(shift(arg1)).booleanValue();
+                } else if ("--reportInterval".equals(arg)) {
+                    main.reportInterval = Integer.parseInt(shift(arg1));
                 } else {
                     System.err.println("Invalid usage: unknown option: " + arg);
                     displayHelpAndExit(1);
@@ -85,6 +100,14 @@ public class Main {
 
     private void execute() {
         initDestination();
+        if ("selftest".equals(action)) {
+            brokerUrl = LoadTest.SELF_TEST_BROKER_URL;
+            loadTest = true;
+        }
+        if (loadTest) {
+            executeLoadTest();
+            return;
+        }
         System.out.println("Using destination: " + destination + ", on broker: " + brokerUrl);
 
         ActiveMQService activeMQService = new ActiveMQService(user, password, brokerUrl);
@@ -131,6 +154,32 @@ public class Main {
         }
     }
 
+    private void executeLoadTest() {
+        System.out.println("Load testing destination: " + destination + ", on broker: " + brokerUrl);
+
+        LoadTest loadTest = new LoadTest();
+        loadTest.brokerUrl = brokerUrl;
+        loadTest.user = user;
+        loadTest.password = password;
+        loadTest.destination = destination;
+        loadTest.produce = !"consumer".equals(action);
+        loadTest.consume = !"producer".equals(action);
+        loadTest.connections = connections;
+        loadTest.count = count;
+        loadTest.rate = rate;
+        loadTest.size = size;
+        loadTest.persistent = persistent;
+        loadTest.asyncSend = asyncSend;
+        loadTest.reportInterval = reportInterval;
+        try {
+            loadTest.run();
+        } catch (Exception error) {
+            System.err.println("Load test failed with: " + error);
+            error.printStackTrace(System.err);
+            System.exit(2);
+        }
+    }
+
     private void initDestination() {
         if (destination == null) {
             if (clientId != null) {
@@ -150,7 +199,7 @@ public class Main {
     }
 
     private static void displayHelpAndExit(int exitCode) {
-        System.out.println(" usage   : (producer|consumer) [OPTIONS]");
+        System.out.println(" usage   : (producer|consumer|selftest) [OPTIONS]");
         System.out.println(" options : [--destination (queue://..|topic://..) - ; default TEST");
         System.out.println("           [--persistent  true|false] - use persistent or non persistent messages; default true");
         System.out.println("           [--count       N] - number of messages to send or receive; default 100");
@@ -161,6 +210,12 @@ public class Main {
         System.out.println("           [--brokerUrl URL] - connection factory url; default " + ActiveMQConnectionFactory.DEFAULT_BROKER_URL);
         System.out.println("           [--user      .. ] - connection user name");
         System.out.println("           [--password  .. ] - connection password");
+        System.out.println("           [--loadTest    true|false] - print periodic JSON rate and latency summaries instead of logging each message; default false");
+        System.out.println("           [--rate        N] - load test target messages per second across all producers; default 0, as fast as possible");
+        System.out.println("           [--connections N] - load test number of producer and/or consumer connections; default 1");
+        System.out.println("           [--asyncSend   true|false] - use asynchronous sends; default false");
+        System.out.println("           [--reportInterval N] - load test seconds between summaries; default 1");
+        System.out.println("           selftest runs a load test with both producers and consumers against an embedded vm:// broker");
 
         System.out.println("");
 
@@ -20,6 +20,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.jms.*;
+import java.util.concurrent.locks.LockSupport;
 
 public class ProducerThread extends Thread {
 
@@ -29,13 +30,16 @@ public class ProducerThread extends Thread {
     String dest;
     protected JMSService service;
     int sleep = 0;
-    int sentCount = 0;
+    volatile int sentCount = 0;
     int transactions = 0;
     boolean persistent = true;
     int messageSize = 0;
     byte[] payload = null;
     int transactionBatchSize;
     boolean running = false;
+    double rate = 0;
+    boolean verbose = true;
+    LatencyHistogram histogram;
 
     public ProducerThread(JMSService service, String dest) {
         this.dest = dest;
@@ -49,12 +53,26 @@ public class ProducerThread extends Thread {
             producer.setDeliveryMode(persistent ? DeliveryMode.PERSISTENT : DeliveryMode.NON_PERSISTENT);
             initPayLoad();
             running = true;
+            long intervalNanos = rate > 0 ? (long) (1000000000L / rate) : 0;
+            long startTime = System.nanoTime();
             for (sentCount = 0; sentCount < messageCount; sentCount++) {
                 if (!running)
                     break;
+                // lets measure from when the message should have been sent rather than when it actually was
+                // so that a stalled broker doesn't hide its own latency (coordinated omission)
+                long intendedTime = intervalNanos > 0 ? startTime + sentCount * intervalNanos : System.nanoTime();
+                waitUntil(intendedTime);
                 Message message = createMessage(sentCount);
+                if (histogram != null) {
+                    message.setLongProperty(LoadTest.SEND_TIME_PROPERTY, LoadTest.toEpochMicros(intendedTime));
+                }
                 producer.send(message);
-                LOG.info("Sent: " + (message instanceof TextMessage ? ((TextMessage) message).getText() : message.getJMSMessageID()));
+                if (histogram != null) {
+                    histogram.record((System.nanoTime() - intendedTime) / 1000);
+                }
+                if (verbose) {
+                    LOG.info("Sent: " + (message instanceof TextMessage ? ((TextMessage) message).getText() : message.getJMSMessageID()));
+                }
 
                 if (transactionBatchSize > 0 && sentCount > 0 && sentCount % transactionBatchSize == 0) {
                     LOG.info("Committing transaction: " + transactions++);
@@ -79,6 +97,13 @@ public class ProducerThread extends Thread {
         LOG.info("Producer thread finished");
     }
 
+    private void waitUntil(long time) {
+        long remaining;
+        while (running && (remaining = time - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
     private void initPayLoad() {
         if (messageSize > 0) {
             payload = new byte[messageSize];
@@ -124,6 +149,28 @@ public class ProducerThread extends Thread {
         this.transactionBatchSize = transactionBatchSize;
     }
 
+    /**
+     * Sets the target send rate in messages per second; 0 sends as fast as possible
+     */
+    public void setRate(double rate) {
+        this.rate = rate;
+    }
+
+    /**
+     * Sets whether every sent message should be logged
+     */
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
+    }
+
+    /**
+     * Sets the histogram used to record the send latency in microseconds. When set the intended send time
+     * is also embedded in each message so that consumers can measure the end to end latency
+     */
+    public void setHistogram(LatencyHistogram histogram) {
+        this.histogram = histogram;
+    }
+
     public boolean isRunning() {
         return running;
     }
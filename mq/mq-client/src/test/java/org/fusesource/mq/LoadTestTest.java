@@ -0,0 +1,73 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.mq;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LoadTestTest {
+
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    private LoadTest createLoadTest(String destination) {
+        LoadTest loadTest = new LoadTest();
+        loadTest.brokerUrl = LoadTest.SELF_TEST_BROKER_URL;
+        loadTest.destination = destination;
+        loadTest.persistent = false;
+        loadTest.out = new PrintStream(output, true);
+        return loadTest;
+    }
+
+    @Test
+    public void testSelfTestSendsAndReceivesAllMessages() throws Exception {
+        LoadTest loadTest = createLoadTest("queue://LoadTestTest.all");
+        loadTest.connections = 2;
+        loadTest.count = 200;
+        loadTest.run();
+
+        assertEquals(400, loadTest.getSendLatency().getTotalCount());
+        assertEquals(400, loadTest.getEndToEndLatency().getTotalCount());
+
+        String[] lines = output.toString().trim().split("\n");
+        String total = lines[lines.length - 1];
+        assertTrue(total, total.startsWith("{\"type\":\"total\""));
+        assertTrue(total, total.contains("\"sent\":400,"));
+        assertTrue(total, total.contains("\"received\":400,"));
+        assertTrue(total, total.contains("\"latency\":{\"count\":400,"));
+    }
+
+    @Test
+    public void testProducersArePacedToTheRate() throws Exception {
+        LoadTest loadTest = createLoadTest("queue://LoadTestTest.rate");
+        loadTest.consume = false;
+        loadTest.count = 50;
+        loadTest.rate = 100;
+        long start = System.nanoTime();
+        loadTest.run();
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        // the 50th message is scheduled 490ms after the first
+        assertTrue("Completed in " + elapsedMillis + "ms", elapsedMillis >= 490);
+        assertEquals(50, loadTest.getSendLatency().getTotalCount());
+        assertEquals(0, loadTest.getEndToEndLatency().getTotalCount());
+    }
+}
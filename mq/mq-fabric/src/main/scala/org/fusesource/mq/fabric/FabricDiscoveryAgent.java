@@ -17,12 +17,26 @@
 package org.fusesource.mq.fabric;
 
 import java.io.IOException;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.activemq.command.DiscoveryEvent;
@@ -50,6 +64,8 @@ public class FabricDiscoveryAgent implements DiscoveryAgent, ServiceTrackerCusto
     
     private static final Logger LOG = LoggerFactory.getLogger(FabricDiscoveryAgent.class);
 
+    private static final Random RANDOM = new Random();
+
     private IZKClient zkClient;
     private boolean managedZkClient;
 
@@ -57,6 +73,7 @@ public class FabricDiscoveryAgent implements DiscoveryAgent, ServiceTrackerCusto
     private String groupName = "default";
 
     private AtomicBoolean running=new AtomicBoolean();
+    private volatile ScheduledExecutorService scheduler;
     private final AtomicReference<DiscoveryListener> discoveryListener = new AtomicReference<DiscoveryListener>();
 
     private final HashMap<String, SimpleDiscoveryEvent> discoveredServices = new HashMap<String, SimpleDiscoveryEvent>();
@@ -67,8 +84,18 @@ public class FabricDiscoveryAgent implements DiscoveryAgent, ServiceTrackerCusto
     private long backOffMultiplier = 2;
     private boolean useExponentialBackOff=true;    
     private int maxReconnectAttempts = 0;
-    private final Object sleepMutex = new Object();
     private long minConnectTime = 5000;
+    private double reconnectJitter = 0.5;
+    private long membershipDebounce = 100;
+    private boolean preferLocalServices = true;
+
+    private final AtomicLong pendingUpdateTime = new AtomicLong();
+    private final AtomicLong membershipUpdates = new AtomicLong();
+    private final AtomicLong lastDiscoveryLatency = new AtomicLong();
+    private final AtomicLong maxDiscoveryLatency = new AtomicLong();
+    private final AtomicLong reconnects = new AtomicLong();
+    private final AtomicLong lastReconnectLatency = new AtomicLong();
+    private final AtomicLong maxReconnectLatency = new AtomicLong();
     private String id;
     private String agent;
 
@@ -128,7 +155,7 @@ public class FabricDiscoveryAgent implements DiscoveryAgent, ServiceTrackerCusto
         singleton.add(new ChangeListener(){
             @Override
             public void changed() {
-                update(singleton.masters());
+                scheduleUpdate();
             }
 
             @Override
@@ -149,6 +176,8 @@ public class FabricDiscoveryAgent implements DiscoveryAgent, ServiceTrackerCusto
         private long connectTime = System.currentTimeMillis();
         private AtomicBoolean failed = new AtomicBoolean(false);
         private AtomicBoolean removed = new AtomicBoolean(false);
+        private long failedTime;
+        private volatile ScheduledFuture<?> reconnectTask;
 
         public SimpleDiscoveryEvent(String service) {
             super(service);
@@ -173,65 +202,163 @@ public class FabricDiscoveryAgent implements DiscoveryAgent, ServiceTrackerCusto
 
         final SimpleDiscoveryEvent event = (SimpleDiscoveryEvent)devent;
         if (event.failed.compareAndSet(false, true)) {
-        	discoveryListener.get().onServiceRemove(event);
-        	if(!event.removed.get()) {
-	        	// Setup a thread to re-raise the event...
-	            Thread thread = new Thread() {
-	                public void run() {
-	
-	                    // We detect a failed connection attempt because the service
-	                    // fails right away.
-	                    if (event.connectTime + minConnectTime > System.currentTimeMillis()) {
-	                        LOG.debug("Failure occurred soon after the discovery event was generated.  It will be classified as a connection failure: "+event);
-	
-	                        event.connectFailures++;
-	
-	                        if (maxReconnectAttempts > 0 && event.connectFailures >= maxReconnectAttempts) {
-	                            LOG.debug("Reconnect attempts exceeded "+maxReconnectAttempts+" tries.  Reconnecting has been disabled.");
-	                            return;
-	                        }
-	
-	                        synchronized (sleepMutex) {
-	                            try {
-	                                if (!running.get() || event.removed.get()) {
-	                                    return;
-	                                }
-	                                LOG.debug("Waiting "+event.reconnectDelay+" ms before attempting to reconnect.");
-	                                sleepMutex.wait(event.reconnectDelay);
-	                            } catch (InterruptedException ie) {
-	                                Thread.currentThread().interrupt();
-	                                return;
-	                            }
-	                        }
-	
-	                        if (!useExponentialBackOff) {
-	                            event.reconnectDelay = initialReconnectDelay;
-	                        } else {
-	                            // Exponential increment of reconnect delay.
-	                            event.reconnectDelay *= backOffMultiplier;
-	                            if (event.reconnectDelay > maxReconnectDelay) {
-	                                event.reconnectDelay = maxReconnectDelay;
-	                            }
-	                        }
-	
-	                    } else {
-	                        event.connectFailures = 0;
-	                        event.reconnectDelay = initialReconnectDelay;
-	                    }
-	
-	                    if (!running.get() || event.removed.get()) {
-	                        return;
-	                    }
-	
-	                    event.connectTime = System.currentTimeMillis();
-	                    event.failed.set(false);
-	                    discoveryListener.get().onServiceAdd(event);
-	                }
-	            };
-	            thread.setDaemon(true);
-	            thread.start();
-        	}
+            event.failedTime = System.currentTimeMillis();
+            discoveryListener.get().onServiceRemove(event);
+            if (!event.removed.get()) {
+                long delay;
+                // We detect a failed connection attempt because the service
+                // fails right away.
+                if (event.connectTime + minConnectTime > System.currentTimeMillis()) {
+                    LOG.debug("Failure occurred soon after the discovery event was generated.  It will be classified as a connection failure: "+event);
+
+                    event.connectFailures++;
+
+                    if (maxReconnectAttempts > 0 && event.connectFailures >= maxReconnectAttempts) {
+                        LOG.debug("Reconnect attempts exceeded "+maxReconnectAttempts+" tries.  Reconnecting has been disabled.");
+                        return;
+                    }
+
+                    delay = jitter(event.reconnectDelay);
+                    if (!useExponentialBackOff) {
+                        event.reconnectDelay = initialReconnectDelay;
+                    } else {
+                        // Exponential increment of reconnect delay.
+                        event.reconnectDelay *= backOffMultiplier;
+                        if (event.reconnectDelay > maxReconnectDelay) {
+                            event.reconnectDelay = maxReconnectDelay;
+                        }
+                    }
+                } else {
+                    event.connectFailures = 0;
+                    event.reconnectDelay = initialReconnectDelay;
+                    // spread out the clients which all lost the same broker at the same time
+                    delay = initialReconnectDelay - jitter(initialReconnectDelay);
+                }
+
+                LOG.debug("Waiting "+delay+" ms before attempting to reconnect.");
+                event.reconnectTask = schedule(new Runnable() {
+                    public void run() {
+                        reconnect(event);
+                    }
+                }, delay);
+            }
+        }
+    }
+
+    private void reconnect(SimpleDiscoveryEvent event) {
+        if (!running.get() || event.removed.get()) {
+            return;
+        }
+        DiscoveryListener listener = discoveryListener.get();
+        if (listener == null) {
+            return;
         }
+        event.connectTime = System.currentTimeMillis();
+        event.failed.set(false);
+        listener.onServiceAdd(event);
+        reconnects.incrementAndGet();
+        recordLatency(lastReconnectLatency, maxReconnectLatency, System.currentTimeMillis() - event.failedTime);
+    }
+
+    /**
+     * Randomly shortens the given delay by up to the configured jitter fraction so that clients backing off
+     * from the same failure don't all retry at the same moment
+     */
+    private long jitter(long delay) {
+        return delay - (long) (delay * reconnectJitter * RANDOM.nextDouble());
+    }
+
+    private static void recordLatency(AtomicLong last, AtomicLong max, long latency) {
+        last.set(latency);
+        long current;
+        while (latency > (current = max.get())) {
+            if (max.compareAndSet(current, latency)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Creates the scheduler of this agent for debouncing membership changes and scheduling reconnects.
+     * Each agent has its own thread as the discovery listener connects synchronously, so a slow or
+     * unreachable broker only delays the discovery of the agent which found it.
+     */
+    private ScheduledExecutorService createScheduler() {
+        return new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "FabricDiscoveryAgent: " + groupName);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Schedules the task on the scheduler of this agent, returning null if the agent is not started
+     */
+    private ScheduledFuture<?> schedule(Runnable task, long delay) {
+        ScheduledExecutorService executor = scheduler;
+        if (executor != null) {
+            try {
+                return executor.schedule(task, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                LOG.debug("Not scheduling task as the discovery agent has been stopped");
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Coalesces bursts of cluster membership changes into a single update
+     */
+    void scheduleUpdate() {
+        if (pendingUpdateTime.compareAndSet(0, System.currentTimeMillis())) {
+            ScheduledFuture<?> future = schedule(new Runnable() {
+                public void run() {
+                    long changeTime = pendingUpdateTime.getAndSet(0);
+                    if (!running.get()) {
+                        return;
+                    }
+                    try {
+                        update(singleton.masters());
+                    } catch (Throwable e) {
+                        LOG.warn("Failed to update the discovered services: " + e, e);
+                    }
+                    membershipUpdates.incrementAndGet();
+                    recordLatency(lastDiscoveryLatency, maxDiscoveryLatency, System.currentTimeMillis() - changeTime);
+                }
+            }, membershipDebounce);
+            if (future == null) {
+                pendingUpdateTime.set(0);
+            }
+        }
+    }
+
+    /**
+     * Creates the scheduler and lets membership updates and reconnects run
+     */
+    void startScheduler() {
+        scheduler = createScheduler();
+        running.set(true);
+    }
+
+    /**
+     * Cancels the pending reconnects and membership update, so that the next start schedules them afresh
+     */
+    void stopScheduler() {
+        running.set(false);
+        synchronized (discoveredServices) {
+            for (SimpleDiscoveryEvent event : discoveredServices.values()) {
+                cancelReconnect(event);
+            }
+        }
+        ScheduledExecutorService executor = scheduler;
+        scheduler = null;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        // a dropped update never resets the pending time itself and would otherwise suppress all later updates
+        pendingUpdateTime.set(0);
     }
 
     public void setDiscoveryListener(DiscoveryListener discoveryListener) {
@@ -240,7 +367,7 @@ public class FabricDiscoveryAgent implements DiscoveryAgent, ServiceTrackerCusto
 
     synchronized public void start() throws Exception {
         if( startCounter.addAndGet(1)==1 ) {
-            running.set(true);
+            startScheduler();
 
             if (zkClient == null) {
                 LOG.info("Using local ZKClient");
@@ -264,7 +391,7 @@ public class FabricDiscoveryAgent implements DiscoveryAgent, ServiceTrackerCusto
 
     synchronized  public void stop() throws Exception {
         if( startCounter.decrementAndGet()==0 ) {
-            running.set(false);
+            stopScheduler();
             try {
                 group.close();
             } catch (Throwable ignore) {
@@ -303,6 +430,8 @@ public class FabricDiscoveryAgent implements DiscoveryAgent, ServiceTrackerCusto
                     activeServices.add(resolved);
                 }
             }
+            // lets look up the local addresses before taking the lock as it can be slow
+            Set<String> localAddresses = preferLocalServices ? getLocalAddresses() : Collections.<String>emptySet();
             // If there is error talking the the central server, then activeServices == null
             if( members !=null ) {
                 synchronized(discoveredServices) {
@@ -314,24 +443,84 @@ public class FabricDiscoveryAgent implements DiscoveryAgent, ServiceTrackerCusto
                     addedServices.removeAll(discoveredServices.keySet());
                     addedServices.removeAll(removedServices);
                     
-                    for (String service : addedServices) {
-                        SimpleDiscoveryEvent e = new SimpleDiscoveryEvent(service);
-                        discoveredServices.put(service, e);
-                        discoveryListener.onServiceAdd(e);
-                    }
-                    
                     for (String service : removedServices) {
                     	SimpleDiscoveryEvent e = discoveredServices.remove(service);
                     	if( e !=null ) {
                     		e.removed.set(true);
+                    		cancelReconnect(e);
                     	}
                         discoveryListener.onServiceRemove(e);
                     }
+
+                    for (String service : orderServices(addedServices, localAddresses)) {
+                        SimpleDiscoveryEvent e = new SimpleDiscoveryEvent(service);
+                        discoveredServices.put(service, e);
+                        discoveryListener.onServiceAdd(e);
+                    }
                 }
             }
         }
     }
 
+    private void cancelReconnect(SimpleDiscoveryEvent event) {
+        ScheduledFuture<?> task = event.reconnectTask;
+        if (task != null) {
+            task.cancel(false);
+        }
+    }
+
+    /**
+     * Orders newly discovered services so that brokers on this host come first and the rest are shuffled,
+     * so that clients spread over the remote brokers rather than all connecting to the same one
+     */
+    List<String> orderServices(Set<String> services, Set<String> localAddresses) {
+        List<String> local = new ArrayList<String>();
+        List<String> remote = new ArrayList<String>();
+        for (String service : services) {
+            if (isLocal(service, localAddresses)) {
+                local.add(service);
+            } else {
+                remote.add(service);
+            }
+        }
+        Collections.shuffle(local, RANDOM);
+        Collections.shuffle(remote, RANDOM);
+        local.addAll(remote);
+        return local;
+    }
+
+    private static boolean isLocal(String service, Set<String> localAddresses) {
+        if (localAddresses.isEmpty()) {
+            return false;
+        }
+        try {
+            String host = new URI(service).getHost();
+            return host != null && localAddresses.contains(host.toLowerCase());
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static Set<String> getLocalAddresses() {
+        Set<String> answer = new HashSet<String>();
+        answer.add("localhost");
+        try {
+            InetAddress localHost = InetAddress.getLocalHost();
+            answer.add(localHost.getHostName().toLowerCase());
+            answer.add(localHost.getCanonicalHostName().toLowerCase());
+            Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
+            while (interfaces != null && interfaces.hasMoreElements()) {
+                Enumeration<InetAddress> addresses = interfaces.nextElement().getInetAddresses();
+                while (addresses.hasMoreElements()) {
+                    answer.add(addresses.nextElement().getHostAddress().toLowerCase());
+                }
+            }
+        } catch (Exception e) {
+            LOG.debug("Could not determine the local addresses: " + e);
+        }
+        return answer;
+    }
+
     public String getId() {
         return id;
     }
@@ -371,4 +560,70 @@ public class FabricDiscoveryAgent implements DiscoveryAgent, ServiceTrackerCusto
     public void setAgent(String agent) {
         this.agent = agent;
     }
+
+    public double getReconnectJitter() {
+        return reconnectJitter;
+    }
+
+    /**
+     * Sets the fraction (0 to 1) by which reconnect delays are randomly shortened
+     */
+    public void setReconnectJitter(double reconnectJitter) {
+        this.reconnectJitter = reconnectJitter;
+    }
+
+    public long getMembershipDebounce() {
+        return membershipDebounce;
+    }
+
+    /**
+     * Sets the time in millis to wait for further cluster changes before updating the discovered services
+     */
+    public void setMembershipDebounce(long membershipDebounce) {
+        this.membershipDebounce = membershipDebounce;
+    }
+
+    public boolean isPreferLocalServices() {
+        return preferLocalServices;
+    }
+
+    public void setPreferLocalServices(boolean preferLocalServices) {
+        this.preferLocalServices = preferLocalServices;
+    }
+
+    /**
+     * Returns the number of debounced membership updates which have been processed
+     */
+    public long getMembershipUpdates() {
+        return membershipUpdates.get();
+    }
+
+    /**
+     * Returns the time in millis between the last cluster change and the discovered services being updated
+     */
+    public long getLastDiscoveryLatency() {
+        return lastDiscoveryLatency.get();
+    }
+
+    public long getMaxDiscoveryLatency() {
+        return maxDiscoveryLatency.get();
+    }
+
+    /**
+     * Returns the number of times a failed service has been re-raised to the discovery listener
+     */
+    public long getReconnects() {
+        return reconnects.get();
+    }
+
+    /**
+     * Returns the time in millis between the last service failure and it being re-raised
+     */
+    public long getLastReconnectLatency() {
+        return lastReconnectLatency.get();
+    }
+
+    public long getMaxReconnectLatency() {
+        return maxReconnectLatency.get();
+    }
 }
@@ -39,6 +39,15 @@ public class FabricDiscoveryAgentFactory extends DiscoveryAgentFactory {
                 if( query.get("id")!=null ) {
                     rc.setId(query.get("id"));
                 }
+                if( query.get("membershipDebounce")!=null ) {
+                    rc.setMembershipDebounce(Long.parseLong(query.get("membershipDebounce")));
+                }
+                if( query.get("reconnectJitter")!=null ) {
+                    rc.setReconnectJitter(Double.parseDouble(query.get("reconnectJitter")));
+                }
+                if( query.get("preferLocalServices")!=null ) {
+                    rc.setPreferLocalServices(Boolean.parseBoolean(query.get("preferLocalServices")));
+                }
                 rc.setGroupName(groupName);
             }
             return rc;
@@ -0,0 +1,46 @@
+/**
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.mq.fabric;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class FabricDiscoveryAgentTest {
+
+    @Test
+    public void testUpdateIsScheduledAfterRestartWithPendingUpdate() throws Exception {
+        FabricDiscoveryAgent agent = new FabricDiscoveryAgent();
+        agent.setMembershipDebounce(60000);
+        agent.startScheduler();
+        agent.scheduleUpdate();
+        // the pending update is dropped when stopping
+        agent.stopScheduler();
+
+        agent.setMembershipDebounce(10);
+        agent.startScheduler();
+        try {
+            agent.scheduleUpdate();
+            for (int i = 0; i < 500 && agent.getMembershipUpdates() == 0; i++) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, agent.getMembershipUpdates());
+        } finally {
+            agent.stopScheduler();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/**
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.mq.monitor;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * <p>
+ * Writes alerts as plain text or one JSON object per line, either to stdout or to
+ * a set of rolling files, each limited to <code>maxFileSize</code> bytes.
+ * </p>
+ */
+public class AlertWriter {
+    private static final String ENCODING = "UTF-8";
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+    boolean json;
+    File file;
+    long maxFileSize = 10 * 1024 * 1024;
+    int maxFiles = 5;
+
+    private PrintWriter out;
+    private long written;
+
+    public synchronized void alert(String rule, String type, String name, String message, Map<String, Object> values) {
+        String line = json ? toJson(rule, type, name, message, values) : toText(rule, message);
+        try {
+            int length = byteLength(line);
+            PrintWriter writer = getWriter(length);
+            writer.println(line);
+            writer.flush();
+            written += length;
+        } catch (IOException e) {
+            System.err.println("Failed to write alert to " + file + ": " + e);
+            System.out.println(line);
+        }
+    }
+
+    public synchronized void close() {
+        if (out != null && file != null) {
+            out.close();
+        }
+        out = null;
+    }
+
+    private String toText(String rule, String message) {
+        return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()) + " [" + rule + "] " + message;
+    }
+
+    private String toJson(String rule, String type, String name, String message, Map<String, Object> values) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"time\":").append(System.currentTimeMillis());
+        sb.append(",\"rule\":").append(quote(rule));
+        sb.append(",\"type\":").append(quote(type));
+        sb.append(",\"name\":").append(quote(name));
+        sb.append(",\"message\":").append(quote(message));
+        if (values != null) {
+            for (Map.Entry<String, Object> entry : values.entrySet()) {
+                sb.append(",").append(quote(entry.getKey())).append(":");
+                Object value = entry.getValue();
+                if (value instanceof Number || value instanceof Boolean) {
+                    sb.append(value);
+                } else {
+                    sb.append(quote(value == null ? null : value.toString()));
+                }
+            }
+        }
+        sb.append("}");
+        return sb.toString();
+    }
+
+    static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder sb = new StringBuilder(value.length() + 2);
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+        return sb.toString();
+    }
+
+    /**
+     * Returns the number of bytes the line takes up in the file including the line separator
+     */
+    private static int byteLength(String line) throws UnsupportedEncodingException {
+        return (line + LINE_SEPARATOR).getBytes(ENCODING).length;
+    }
+
+    private PrintWriter getWriter(int length) throws IOException {
+        if (file == null) {
+            if (out == null) {
+                out = new PrintWriter(System.out);
+            }
+            return out;
+        }
+        if (out != null && written + length > maxFileSize) {
+            out.close();
+            out = null;
+            roll();
+        }
+        if (out == null) {
+            written = file.exists() ? file.length() : 0;
+            out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file, true), ENCODING));
+        }
+        return out;
+    }
+
+    private void roll() {
+        new File(file.getPath() + "." + (maxFiles - 1)).delete();
+        for (int i = maxFiles - 2; i >= 1; i--) {
+            new File(file.getPath() + "." + i).renameTo(new File(file.getPath() + "." + (i + 1)));
+        }
+        if (maxFiles > 1) {
+            file.renameTo(new File(file.getPath() + ".1"));
+        } else {
+            file.delete();
+        }
+    }
+}
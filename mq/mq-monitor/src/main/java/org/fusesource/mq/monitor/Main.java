@@ -17,9 +17,14 @@
 
 package org.fusesource.mq.monitor;
 
+import java.io.File;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.management.*;
 import javax.management.remote.*;
 
@@ -35,6 +40,12 @@ public class Main {
     String user;
     String password;
     long interval = 5*1000;
+    int threads = 4;
+    String queueFilter;
+    long maxQueueSize = -1;
+    double maxGrowthRate = -1;
+    AlertWriter writer = new AlertWriter();
+    List<Rule> rules = new ArrayList<Rule>();
 
     public static void main(String[] args) throws Exception {
         Main main = new Main();
@@ -54,6 +65,22 @@ public class Main {
                     main.password = shift(argl);
                 } else if( "--interval".equals(arg) ) {
                     main.interval = Long.parseLong(shift(argl));
+                } else if( "--threads".equals(arg) ) {
+                    main.threads = Integer.parseInt(shift(argl));
+                } else if( "--queues".equals(arg) ) {
+                    main.queueFilter = shift(argl);
+                } else if( "--max-queue-size".equals(arg) ) {
+                    main.maxQueueSize = Long.parseLong(shift(argl));
+                } else if( "--max-growth-rate".equals(arg) ) {
+                    main.maxGrowthRate = Double.parseDouble(shift(argl));
+                } else if( "--json".equals(arg) ) {
+                    main.writer.json = true;
+                } else if( "--output".equals(arg) ) {
+                    main.writer.file = new File(shift(argl));
+                } else if( "--max-file-size".equals(arg) ) {
+                    main.writer.maxFileSize = Long.parseLong(shift(argl));
+                } else if( "--max-files".equals(arg) ) {
+                    main.writer.maxFiles = Integer.parseInt(shift(argl));
                 } else {
                     System.err.println("Invalid usage: unknown option: "+arg);
                     displayHelpAndExit(1);
@@ -77,12 +104,23 @@ public class Main {
     }
 
     private static void displayHelpAndExit(int exitCode) {
+        System.out.println(" usage   : [OPTIONS]");
+        System.out.println(" options : [--jmx URL] - the JMX service url of the broker");
+        System.out.println("           [--user .. ] [--password .. ] - the JMX credentials");
+        System.out.println("           [--interval N] - milliseconds between polls; default 5000");
+        System.out.println("           [--threads N] - number of threads fetching attributes in parallel; default 4");
+        System.out.println("           [--queues pattern] - only monitor queues whose name matches the wildcard pattern, evaluated by the broker");
+        System.out.println("           [--max-queue-size N] - alert when a queue holds more than N messages");
+        System.out.println("           [--max-growth-rate N] - alert when a queue grows faster than N messages per second");
+        System.out.println("           [--json] - write alerts as one JSON object per line");
+        System.out.println("           [--output file] - write alerts to a rolling file rather than stdout");
+        System.out.println("           [--max-file-size N] [--max-files N] - the size in bytes and number of rolled alert files; default 10MB and 5");
         System.exit(exitCode);
     }
 
     static class Stats {
-        private final HashMap<ObjectName, HashMap<String, Object>> queues;
-        private final HashMap<ObjectName, HashMap<String, Object>> subs;
+        final HashMap<ObjectName, HashMap<String, Object>> queues;
+        final HashMap<ObjectName, HashMap<String, Object>> subs;
 
         Stats(HashMap<ObjectName, HashMap<String, Object>> queues, HashMap<ObjectName, HashMap<String, Object>> subs) {
             this.queues = queues;
@@ -90,11 +128,28 @@ public class Main {
         }
     }
 
-    HashSet<String> fetchedQueueAttributes = new HashSet<String>(Arrays.asList("Name", "QueueSize", "ExpiredCount"));
-    HashSet<String> fetchedSubscriptionAttributes = new HashSet<String>(Arrays.asList("ConnectionId", "MessageCountAwaitingAcknowledge", "DispatchedCounter"));
+    String[] fetchedQueueAttributes = {"Name", "QueueSize", "ExpiredCount", "EnqueueCount", "DequeueCount", "ConsumerCount"};
+    String[] fetchedSubscriptionAttributes = {"ConnectionId", "MessageCountAwaitingAcknowledge", "DispatchedCounter"};
 
     MBeanServerConnection connection;
+    ExecutorService executor;
+
+    private void initRules() {
+        rules.add(new Rules.ExpiredMessages());
+        rules.add(new Rules.HungSubscription());
+        rules.add(new Rules.ConsumerStall());
+        rules.add(new Rules.DeadLetterGrowth());
+        if( maxQueueSize >= 0 ) {
+            rules.add(new Rules.QueueSizeThreshold(maxQueueSize));
+        }
+        if( maxGrowthRate >= 0 ) {
+            rules.add(new Rules.QueueGrowthRate(maxGrowthRate));
+        }
+    }
+
     private void execute() throws Exception {
+        initRules();
+        executor = Executors.newFixedThreadPool(threads);
         HashMap<String, Object> env = new HashMap<String, Object>();
         if( user!=null ) {
             String[] creds = {user, password};
@@ -104,97 +159,80 @@ public class Main {
         try {
             connection = connector.getMBeanServerConnection();
             Stats oldStats = fetchStats();
+            long oldTime = System.nanoTime();
             while(true) {
                 Thread.sleep(interval);
                 Stats newStats = fetchStats();
-                analyze(oldStats, newStats);
+                long newTime = System.nanoTime();
+                analyze(oldStats, newStats, (newTime - oldTime) / 1000000000.0);
+                oldStats = newStats;
+                oldTime = newTime;
             }
 
         } finally {
+            executor.shutdownNow();
+            writer.close();
             connector.close();
         }
     }
 
-    private long diff(String attribute, HashMap<String, Object> next, HashMap<String, Object> prev) {
-        Number prevNumber = (Number) prev.get(attribute);
-        Number nextNumber = (Number) next.get(attribute);
-        if(prevNumber==null || nextNumber==null)
-            return 0;
-        return nextNumber.longValue() - prevNumber.longValue();
-    }
-
-    private long l(HashMap<String, Object> next, String attribute) {
-        Number n = (Number) next.get(attribute);
-        if(n==null)
-            return 0;
-        return n.longValue();
-    }
-
-    private void analyze(Stats prevStats, Stats currentStats) {
-
+    private void analyze(Stats prevStats, Stats currentStats, double seconds) {
         // We can now compare the old stats with the new stats..
-        for (Map.Entry<ObjectName, HashMap<String, Object>> entry : currentStats.queues.entrySet()) {
-            HashMap<String, Object> current = entry.getValue();
-            HashMap<String, Object> previous = prevStats.queues.get(entry.getKey());
-            if(previous==null) continue;
-
-            long diff = diff("ExpiredCount", current, previous);
-            if(diff!=0) {
-                System.out.println(String.format("Queue %s expired count changed: %d", current.get("Name"), diff));
-            }
+        for (Rule rule : rules) {
+            rule.analyze(prevStats, currentStats, seconds, writer);
         }
-
-        for (Map.Entry<ObjectName, HashMap<String, Object>> entry : currentStats.subs.entrySet()) {
-            HashMap<String, Object> current = entry.getValue();
-            HashMap<String, Object> previous = prevStats.subs.get(entry.getKey());
-            if(previous==null) continue;
-
-            if( l(current, "MessageCountAwaitingAcknowledge") > 0 && diff("DispatchedCounter", current, previous) ==0 )  {
-                System.out.println(String.format("Subscription %s looks hung, on connection: %s it has not acknowleged any messages since the last poll interval.", entry.getKey(), current.get("ConnectionId")));
-            }
-        }
-
-
     }
 
     public Stats fetchStats() throws Exception {
-
-        HashMap<ObjectName, HashMap<String, Object>> queues = new HashMap<ObjectName, HashMap<String, Object>>();
-        {
-            Set<ObjectName> mbeans = connection.queryNames(new ObjectName("org.apache.activemq:Type=Queue,*"), null);
-            for (ObjectName mbean : mbeans) {
-                HashMap<String, Object> attributes = new HashMap<String, Object>();
-                for( String attr: fetchedQueueAttributes) {
-                    try {
-                        Object value = connection.getAttribute(mbean, attr);
-                        attributes.put(attr, value);
-                    } catch (Exception e) {
-                    }
-                }
-                if( !attributes.isEmpty() ) {
-                    queues.put(mbean, attributes);
-                }
-            }
+        QueryExp queueQuery = null;
+        if( queueFilter!=null ) {
+            // lets get the broker to filter the queues so we don't fetch ones we are not interested in
+            queueQuery = Query.match(Query.attr("Name"), Query.value(queueFilter));
         }
+        Set<ObjectName> queueNames = connection.queryNames(new ObjectName("org.apache.activemq:Type=Queue,*"), queueQuery);
+        Set<ObjectName> subscriptionNames = connection.queryNames(new ObjectName("org.apache.activemq:Type=Subscription,destinationType=Queue,*"), null);
+        return new Stats(fetchAttributes(queueNames, fetchedQueueAttributes), fetchAttributes(subscriptionNames, fetchedSubscriptionAttributes));
+    }
 
-        HashMap<ObjectName, HashMap<String, Object>> subscriptions = new HashMap<ObjectName, HashMap<String, Object>>();
-        {
-            Set<ObjectName> mbeans = connection.queryNames(new ObjectName("org.apache.activemq:Type=Subscription,destinationType=Queue,*"), null);
-            for (ObjectName mbean : mbeans) {
-                HashMap<String, Object> attributes = new HashMap<String, Object>();
-                for( String attr: fetchedSubscriptionAttributes) {
-                    try {
-                        Object value = connection.getAttribute(mbean, attr);
-                        attributes.put(attr, value);
-                    } catch (Exception e) {
+    /**
+     * Fetches the attributes of all the mbeans with one bulk getAttributes call per mbean,
+     * spreading the calls over the thread pool.
+     */
+    private HashMap<ObjectName, HashMap<String, Object>> fetchAttributes(Set<ObjectName> mbeans, final String[] attributes) throws Exception {
+        List<ObjectName> names = new ArrayList<ObjectName>(mbeans);
+        int chunkSize = Math.max(1, (names.size() + threads - 1) / threads);
+        List<Future<HashMap<ObjectName, HashMap<String, Object>>>> futures = new ArrayList<Future<HashMap<ObjectName, HashMap<String, Object>>>>();
+        for( int i=0; i < names.size(); i+=chunkSize ) {
+            final List<ObjectName> chunk = names.subList(i, Math.min(names.size(), i + chunkSize));
+            futures.add(executor.submit(new Callable<HashMap<ObjectName, HashMap<String, Object>>>() {
+                public HashMap<ObjectName, HashMap<String, Object>> call() throws Exception {
+                    HashMap<ObjectName, HashMap<String, Object>> answer = new HashMap<ObjectName, HashMap<String, Object>>();
+                    for (ObjectName mbean : chunk) {
+                        HashMap<String, Object> values = new HashMap<String, Object>();
+                        try {
+                            for (Object o : connection.getAttributes(mbean, attributes)) {
+                                Attribute attribute = (Attribute) o;
+                                values.put(attribute.getName(), attribute.getValue());
+                            }
+                        } catch (InstanceNotFoundException e) {
+                            // the destination was removed since we queried for it
+                        } catch (Exception e) {
+                            // lets skip this mbean rather than failing the whole poll
+                            System.err.println("Failed to fetch the attributes of " + mbean + ": " + e);
+                        }
+                        if( !values.isEmpty() ) {
+                            answer.put(mbean, values);
+                        }
                     }
+                    return answer;
                 }
-                if( !attributes.isEmpty() ) {
-                    subscriptions.put(mbean, attributes);
-                }
-            }
+            }));
+        }
+        HashMap<ObjectName, HashMap<String, Object>> answer = new HashMap<ObjectName, HashMap<String, Object>>();
+        for (Future<HashMap<ObjectName, HashMap<String, Object>>> future : futures) {
+            answer.putAll(future.get());
         }
-        return new Stats(queues, subscriptions);
+        return answer;
     }
 
 
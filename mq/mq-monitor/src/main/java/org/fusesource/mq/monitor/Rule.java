@@ -0,0 +1,35 @@
+/**
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.mq.monitor;
+
+/**
+ * <p>
+ * A rule which compares two consecutive samples of the broker statistics and raises alerts.
+ * </p>
+ */
+public interface Rule {
+
+    /**
+     * @param previous the previous sample
+     * @param current the latest sample
+     * @param seconds the time elapsed between the two samples
+     * @param writer where to write any alerts
+     */
+    void analyze(Main.Stats previous, Main.Stats current, double seconds, AlertWriter writer);
+
+}
@@ -0,0 +1,172 @@
+/**
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.mq.monitor;
+
+import javax.management.ObjectName;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ * The built in alerting rules.
+ * </p>
+ */
+public class Rules {
+
+    static long l(Map<String, Object> values, String attribute) {
+        Number n = (Number) values.get(attribute);
+        if (n == null)
+            return 0;
+        return n.longValue();
+    }
+
+    static long diff(String attribute, Map<String, Object> next, Map<String, Object> prev) {
+        Number prevNumber = (Number) prev.get(attribute);
+        Number nextNumber = (Number) next.get(attribute);
+        if (prevNumber == null || nextNumber == null)
+            return 0;
+        return nextNumber.longValue() - prevNumber.longValue();
+    }
+
+    static Map<String, Object> values(Object... keyValues) {
+        Map<String, Object> answer = new LinkedHashMap<String, Object>();
+        for (int i = 0; i + 1 < keyValues.length; i += 2) {
+            answer.put((String) keyValues[i], keyValues[i + 1]);
+        }
+        return answer;
+    }
+
+    /**
+     * Applies a comparison to every queue which was present in both samples
+     */
+    static abstract class QueueRule implements Rule {
+        public void analyze(Main.Stats previous, Main.Stats current, double seconds, AlertWriter writer) {
+            for (Map.Entry<ObjectName, HashMap<String, Object>> entry : current.queues.entrySet()) {
+                HashMap<String, Object> prev = previous.queues.get(entry.getKey());
+                if (prev != null) {
+                    analyze(String.valueOf(entry.getValue().get("Name")), prev, entry.getValue(), seconds, writer);
+                }
+            }
+        }
+
+        protected abstract void analyze(String queue, Map<String, Object> previous, Map<String, Object> current, double seconds, AlertWriter writer);
+    }
+
+    /**
+     * Alerts when messages expire on a queue
+     */
+    static class ExpiredMessages extends QueueRule {
+        protected void analyze(String queue, Map<String, Object> previous, Map<String, Object> current, double seconds, AlertWriter writer) {
+            long diff = diff("ExpiredCount", current, previous);
+            if (diff != 0) {
+                writer.alert("expired", "queue", queue, String.format("Queue %s expired count changed: %d", queue, diff),
+                        values("expired", diff));
+            }
+        }
+    }
+
+    /**
+     * Alerts when a queue grows faster than the given rate in messages per second
+     */
+    static class QueueGrowthRate extends QueueRule {
+        private final double maxRate;
+
+        QueueGrowthRate(double maxRate) {
+            this.maxRate = maxRate;
+        }
+
+        protected void analyze(String queue, Map<String, Object> previous, Map<String, Object> current, double seconds, AlertWriter writer) {
+            double rate = seconds > 0 ? diff("QueueSize", current, previous) / seconds : 0;
+            if (rate > maxRate) {
+                writer.alert("growth", "queue", queue, String.format("Queue %s is growing at %.1f msgs/sec, size is now %d", queue, rate, l(current, "QueueSize")),
+                        values("rate", rate, "size", l(current, "QueueSize")));
+            }
+        }
+    }
+
+    /**
+     * Alerts when a queue holds more than the given number of messages
+     */
+    static class QueueSizeThreshold extends QueueRule {
+        private final long maxSize;
+
+        QueueSizeThreshold(long maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        protected void analyze(String queue, Map<String, Object> previous, Map<String, Object> current, double seconds, AlertWriter writer) {
+            long size = l(current, "QueueSize");
+            if (size > maxSize) {
+                writer.alert("size", "queue", queue, String.format("Queue %s size %d exceeds %d", queue, size, maxSize),
+                        values("size", size, "threshold", maxSize));
+            }
+        }
+    }
+
+    /**
+     * Alerts when a queue has consumers and pending messages but nothing was dequeued since the last poll
+     */
+    static class ConsumerStall extends QueueRule {
+        protected void analyze(String queue, Map<String, Object> previous, Map<String, Object> current, double seconds, AlertWriter writer) {
+            if (l(current, "ConsumerCount") > 0 && l(current, "QueueSize") > 0 && diff("DequeueCount", current, previous) == 0) {
+                writer.alert("stall", "queue", queue, String.format("Queue %s has %d consumers but none dequeued any of its %d messages since the last poll interval",
+                        queue, l(current, "ConsumerCount"), l(current, "QueueSize")),
+                        values("consumers", l(current, "ConsumerCount"), "size", l(current, "QueueSize")));
+            }
+        }
+    }
+
+    /**
+     * Alerts when messages are added to a dead letter queue
+     */
+    static class DeadLetterGrowth extends QueueRule {
+        protected void analyze(String queue, Map<String, Object> previous, Map<String, Object> current, double seconds, AlertWriter writer) {
+            if (isDeadLetterQueue(queue)) {
+                long diff = diff("EnqueueCount", current, previous);
+                if (diff > 0) {
+                    writer.alert("dlq", "queue", queue, String.format("Dead letter queue %s received %d messages, size is now %d", queue, diff, l(current, "QueueSize")),
+                            values("added", diff, "size", l(current, "QueueSize")));
+                }
+            }
+        }
+
+        static boolean isDeadLetterQueue(String queue) {
+            return queue.startsWith("ActiveMQ.DLQ") || queue.startsWith("DLQ.");
+        }
+    }
+
+    /**
+     * Alerts when a subscription has unacknowledged messages but was not dispatched anything since the last poll
+     */
+    static class HungSubscription implements Rule {
+        public void analyze(Main.Stats previous, Main.Stats current, double seconds, AlertWriter writer) {
+            for (Map.Entry<ObjectName, HashMap<String, Object>> entry : current.subs.entrySet()) {
+                HashMap<String, Object> cur = entry.getValue();
+                HashMap<String, Object> prev = previous.subs.get(entry.getKey());
+                if (prev == null) continue;
+
+                if (l(cur, "MessageCountAwaitingAcknowledge") > 0 && diff("DispatchedCounter", cur, prev) == 0) {
+                    writer.alert("hung", "subscription", entry.getKey().toString(),
+                            String.format("Subscription %s looks hung, on connection: %s it has not acknowleged any messages since the last poll interval.", entry.getKey(), cur.get("ConnectionId")),
+                            values("connectionId", cur.get("ConnectionId"), "awaitingAck", l(cur, "MessageCountAwaitingAcknowledge")));
+                }
+            }
+        }
+    }
+}
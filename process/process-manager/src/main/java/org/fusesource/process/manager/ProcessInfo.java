@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.process.manager;
+
+/**
+ * A snapshot of the operating system process table entry of a managed process, as sampled by the process monitor.
+ */
+public class ProcessInfo {
+    private final Integer pid;
+    private final boolean alive;
+    private final char state;
+    private final String commandLine;
+    private final long rssBytes;
+    private final long cpuTimeMillis;
+    private final double cpuPercent;
+    private final long timestamp;
+
+    public ProcessInfo(Integer pid, boolean alive, char state, String commandLine, long rssBytes, long cpuTimeMillis, double cpuPercent, long timestamp) {
+        this.pid = pid;
+        this.alive = alive;
+        this.state = state;
+        this.commandLine = commandLine;
+        this.rssBytes = rssBytes;
+        this.cpuTimeMillis = cpuTimeMillis;
+        this.cpuPercent = cpuPercent;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Creates an entry for a process which is not running
+     */
+    public static ProcessInfo notRunning(Integer pid, long timestamp) {
+        return new ProcessInfo(pid, false, ' ', null, 0, 0, 0, timestamp);
+    }
+
+    @Override
+    public String toString() {
+        return "ProcessInfo[pid: " + pid + " alive: " + alive + " state: " + state + " rss: " + rssBytes
+                + " cpu: " + cpuTimeMillis + "ms]";
+    }
+
+    /**
+     * Returns the pid of the process or null if no pid file could be found
+     */
+    public Integer getPid() {
+        return pid;
+    }
+
+    public boolean isAlive() {
+        return alive;
+    }
+
+    /**
+     * Returns the single character process state from <code>/proc/&lt;pid&gt;/stat</code> such as R, S or D
+     */
+    public char getState() {
+        return state;
+    }
+
+    public String getCommandLine() {
+        return commandLine;
+    }
+
+    /**
+     * Returns the resident set size of the process in bytes
+     */
+    public long getRssBytes() {
+        return rssBytes;
+    }
+
+    /**
+     * Returns the total user and system CPU time consumed by the process
+     */
+    public long getCpuTimeMillis() {
+        return cpuTimeMillis;
+    }
+
+    /**
+     * Returns the CPU usage between the last two samples as a percentage of a single CPU
+     */
+    public double getCpuPercent() {
+        return cpuPercent;
+    }
+
+    /**
+     * Returns the time in millis when this sample was taken
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+}
@@ -45,4 +45,16 @@ public interface ProcessManager {
     Installation installJar(JarInstallParameters parameters) throws Exception;
 
     ImmutableMap<Integer, Installation> listInstallationMap();
+
+    /**
+     * Returns the most recently sampled process table information for the given installation id
+     * or null if the process table is not being monitored on this platform
+     */
+    ProcessInfo getProcessInfo(int id);
+
+    /**
+     * Samples the process table information of the given installation now, such as after it has been started
+     * or stopped, or returns null if the process table is not being monitored on this platform
+     */
+    ProcessInfo refreshProcessInfo(Installation installation);
 }
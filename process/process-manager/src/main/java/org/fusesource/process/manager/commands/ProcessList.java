@@ -19,6 +19,7 @@ package org.fusesource.process.manager.commands;
 
 import org.apache.felix.gogo.commands.Command;
 import org.fusesource.process.manager.Installation;
+import org.fusesource.process.manager.ProcessInfo;
 import org.fusesource.process.manager.commands.support.ProcessCommandSupport;
 
 import java.io.IOException;
@@ -27,8 +28,8 @@ import java.util.List;
 
 @Command(name = "ps", scope = "process", description = "Lists the currently installed managed processes.")
 public class ProcessList extends ProcessCommandSupport {
-    static final String[] HEADERS = {"[id]", "[pid]", "[name]"};
-    static final String FORMAT = "%7s %9s %s";
+    static final String[] HEADERS = {"[id]", "[pid]", "[status]", "[rss]", "[cpu]", "[name]"};
+    static final String FORMAT = "%7s %9s %-9s %9s %7s %s";
 
     @Override
     protected Object doExecute() throws Exception {
@@ -43,13 +44,24 @@ public class ProcessList extends ProcessCommandSupport {
         out.println(String.format(FORMAT, HEADERS));
         for (Installation installation : installations) {
             int id = installation.getId();
-            Integer pid = null;
-            try {
-                pid = installation.getController().getPid();
-            } catch (IOException e) {
-                System.err.println("Failed to find pid for id: " + id + ". " + e);
+            ProcessInfo info = getProcessManager().getProcessInfo(id);
+            if (info != null) {
+                // lets use the cached process table information from the monitor
+                Integer pid = info.getPid();
+                out.println(String.format(FORMAT, "" + id, (pid != null) ? pid.toString() : "",
+                        info.isAlive() ? "running" : "stopped",
+                        info.isAlive() ? (info.getRssBytes() / (1024 * 1024)) + "M" : "",
+                        info.isAlive() ? String.format("%.1f%%", info.getCpuPercent()) : "",
+                        installation.getName()));
+            } else {
+                Integer pid = null;
+                try {
+                    pid = installation.getController().getPid();
+                } catch (IOException e) {
+                    System.err.println("Failed to find pid for id: " + id + ". " + e);
+                }
+                out.println(String.format(FORMAT, "" + id, (pid != null) ? pid.toString() : "", "", "", "", installation.getName()));
             }
-            out.println(String.format(FORMAT, "" + id, (pid != null) ? pid.toString() : "", installation.getName()));
         }
     }
 
@@ -19,6 +19,7 @@ package org.fusesource.process.manager.commands;
 
 import org.apache.felix.gogo.commands.Command;
 import org.fusesource.process.manager.Installation;
+import org.fusesource.process.manager.ProcessInfo;
 import org.fusesource.process.manager.commands.support.ProcessControlCommandSupport;
 
 /**
@@ -27,6 +28,19 @@ import org.fusesource.process.manager.commands.support.ProcessControlCommandSupp
 public class Status extends ProcessControlCommandSupport {
     @Override
     protected void doControlCommand(Installation installation) throws Exception {
-        installation.getController().status();
+        ProcessInfo info = getProcessManager().getProcessInfo(installation.getId());
+        if (info == null) {
+            // no process table monitor on this platform so lets ask the launch script
+            installation.getController().status();
+        } else if (info.isAlive()) {
+            System.out.println("Process " + installation.getId() + " is running with pid " + info.getPid()
+                    + " state: " + info.getState() + " rss: " + (info.getRssBytes() / 1024) + "K cpu time: "
+                    + info.getCpuTimeMillis() + "ms cpu: " + String.format("%.1f%%", info.getCpuPercent()));
+            if (info.getCommandLine() != null) {
+                System.out.println("Command: " + info.getCommandLine());
+            }
+        } else {
+            System.out.println("Process " + installation.getId() + " is not running");
+        }
     }
 }
@@ -40,6 +40,8 @@ public abstract class ProcessControlCommandSupport extends ProcessCommandSupport
                 System.out.println("No such process number: " + id);
             } else {
                 doControlCommand(installation);
+                // lets make sure process listings don't show the state from before the command
+                getProcessManager().refreshProcessInfo(installation);
             }
         }
         return null;
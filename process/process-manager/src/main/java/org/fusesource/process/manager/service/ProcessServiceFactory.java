@@ -21,6 +21,7 @@ import com.google.common.base.Preconditions;
 import org.fusesource.process.manager.Installation;
 import org.fusesource.process.manager.ProcessController;
 import org.fusesource.process.manager.ProcessManager;
+import org.fusesource.process.manager.support.ProcFs;
 import org.osgi.framework.BundleContext;
 import org.osgi.service.cm.ConfigurationException;
 import org.osgi.service.cm.ManagedServiceFactory;
@@ -57,8 +58,9 @@ public class ProcessServiceFactory implements ManagedServiceFactory {
         if (installation != null) {
 
             try {
-                if (installation.getController().status() == 0) {
+                if (isRunning(installation)) {
                     installation.getController().stop();
+                    processManager.refreshProcessInfo(installation);
                 }
                 // TODO uninstall is not supported right now
 //                installation.getController().uninstall();
@@ -152,7 +154,7 @@ public class ProcessServiceFactory implements ManagedServiceFactory {
         try {
 
             final ProcessController controller = installation.getController();
-            final boolean running = (controller.status() == 0);
+            final boolean running = isRunning(installation);
 
             // stop if running, since config may not be changed while process is running
             if (running) {
@@ -169,6 +171,7 @@ public class ProcessServiceFactory implements ManagedServiceFactory {
             if (running) {
                 controller.start();
             }
+            processManager.refreshProcessInfo(installation);
 
         } catch (Exception e) {
             String msg = "Error updating process " + pid + ": " + e.getMessage();
@@ -177,6 +180,21 @@ public class ProcessServiceFactory implements ManagedServiceFactory {
         }
     }
 
+    /**
+     * Checks the process table directly rather than the cached process information, which can be stale,
+     * as we use the answer to decide whether to stop and restart the process; otherwise asks the controller
+     */
+    private boolean isRunning(Installation installation) throws Exception {
+        ProcessController controller = installation.getController();
+        if (ProcFs.isAvailable()) {
+            Integer pid = controller.getPid();
+            if (pid != null) {
+                return ProcFs.isAlive(pid);
+            }
+        }
+        return controller.status() == 0;
+    }
+
     private Installation installProcess(String pid, InstallParameters parameters, Map<String, String> env) throws ConfigurationException {
 
         try {
@@ -191,6 +209,7 @@ public class ProcessServiceFactory implements ManagedServiceFactory {
             // TODO check whether commands completed successfully
             installation.getController().configure();
             installation.getController().start();
+            processManager.refreshProcessInfo(installation);
 
             return installation;
 
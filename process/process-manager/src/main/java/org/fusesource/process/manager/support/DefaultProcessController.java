@@ -42,7 +42,7 @@ public class DefaultProcessController implements ProcessController
     private final File baseDir;
     private final ProcessConfig config;
     private final Executor executor;
-
+    private volatile PidFileEntry lastPidFile;
 
     public DefaultProcessController(int id, ProcessConfig config, Executor executor, File baseDir) {
         this.id = id;
@@ -193,7 +193,22 @@ public class DefaultProcessController implements ProcessController
         return launchScript;
     }
 
+    /**
+     * Returns the pid from the given file, reusing the last parsed value if the file has not been modified since
+     */
     private Integer extractPidFromFile(File file) throws IOException {
+        long lastModified = file.lastModified();
+        long length = file.length();
+        PidFileEntry entry = lastPidFile;
+        if (entry != null && entry.matches(file, lastModified, length)) {
+            return entry.pid;
+        }
+        Integer pid = readPidFromFile(file);
+        lastPidFile = new PidFileEntry(file, lastModified, length, pid);
+        return pid;
+    }
+
+    private Integer readPidFromFile(File file) throws IOException {
         List<String> lines = Files.readLines(file, Charset.defaultCharset());
         for (String line : lines) {
             String text = line.trim();
@@ -232,4 +247,21 @@ public class DefaultProcessController implements ProcessController
         }
     }
 
+    private static class PidFileEntry {
+        private final File file;
+        private final long lastModified;
+        private final long length;
+        private final Integer pid;
+
+        private PidFileEntry(File file, long lastModified, long length, Integer pid) {
+            this.file = file;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.pid = pid;
+        }
+
+        private boolean matches(File file, long lastModified, long length) {
+            return this.file.equals(file) && this.lastModified == lastModified && this.length == length;
+        }
+    }
 }
@@ -17,24 +17,135 @@
 package org.fusesource.process.manager.support;
 
 import com.google.common.base.Preconditions;
-import org.fusesource.process.manager.support.command.Command;
-import org.fusesource.process.manager.support.command.CommandFailedException;
-import org.fusesource.process.manager.support.command.Duration;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closeables;
+import com.google.common.io.Files;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.BufferedInputStream;
 import java.io.File;
-import java.util.concurrent.Executor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
 public class FileUtils {
+    private static final transient Logger LOG = LoggerFactory.getLogger(FileUtils.class);
 
-    public static void extractTar(File tarFile, File targetDirectory, Duration timeLimit, Executor executor)
-            throws CommandFailedException {
+    /**
+     * Extracts the given gzipped tarball into the target directory in process, without forking a tar command
+     */
+    public static void extractTarGz(File tarFile, File targetDirectory) throws IOException {
         Preconditions.checkNotNull(tarFile, "tarFile is null");
+        InputStream in = new FileInputStream(tarFile);
+        try {
+            extractTarGz(in, targetDirectory);
+        } finally {
+            Closeables.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Extracts a gzipped tar stream into the target directory in process, streaming each entry straight to disk.
+     *
+     * The executable bits of each entry are preserved. As symbolic and hard links cannot be created from Java
+     * they are replaced by copies of their targets once the rest of the archive has been extracted.
+     */
+    public static void extractTarGz(InputStream in, File targetDirectory) throws IOException {
+        Preconditions.checkNotNull(in, "in is null");
         Preconditions.checkNotNull(targetDirectory, "targetDirectory is null");
         Preconditions.checkArgument(targetDirectory.isDirectory(), "targetDirectory is not a directory: " + targetDirectory.getAbsolutePath());
 
-        new Command("tar", "zxf", tarFile.getAbsolutePath())
-                .setDirectory(targetDirectory)
-                .setTimeLimit(timeLimit)
-                .execute(executor);
+        String rootPath = targetDirectory.getCanonicalPath() + File.separator;
+        Map<File, File> links = new LinkedHashMap<File, File>();
+        TarArchiveInputStream tar = new TarArchiveInputStream(new GZIPInputStream(new BufferedInputStream(in)));
+        TarArchiveEntry entry;
+        while ((entry = tar.getNextTarEntry()) != null) {
+            File file = new File(targetDirectory, entry.getName());
+            if (!file.getCanonicalPath().startsWith(rootPath)) {
+                throw new IOException("Tar entry " + entry.getName() + " is outside of the target directory " + targetDirectory);
+            }
+            if (entry.isDirectory()) {
+                file.mkdirs();
+            } else if (entry.isSymbolicLink()) {
+                links.put(file, linkTarget(entry, file.getParentFile(), rootPath, targetDirectory));
+            } else if (entry.isLink()) {
+                links.put(file, linkTarget(entry, targetDirectory, rootPath, targetDirectory));
+            } else {
+                file.getParentFile().mkdirs();
+                OutputStream out = new FileOutputStream(file);
+                try {
+                    ByteStreams.copy(tar, out);
+                } finally {
+                    Closeables.closeQuietly(out);
+                }
+                if ((entry.getMode() & 0111) != 0) {
+                    file.setExecutable(true, (entry.getMode() & 0011) == 0);
+                }
+            }
+        }
+        for (Map.Entry<File, File> link : links.entrySet()) {
+            File target = link.getValue();
+            if (target.exists()) {
+                copyRecursive(target, link.getKey());
+            } else {
+                LOG.warn("Ignoring link " + link.getKey() + " as its target " + target + " does not exist");
+            }
+        }
+    }
+
+    /**
+     * Resolves the target of a link entry relative to the given directory, failing if it is absolute or
+     * would be outside of the target directory
+     */
+    private static File linkTarget(TarArchiveEntry entry, File baseDir, String rootPath, File targetDirectory) throws IOException {
+        String linkName = entry.getLinkName();
+        File target = new File(baseDir, linkName);
+        if (linkName.startsWith("/") || new File(linkName).isAbsolute() || !target.getCanonicalPath().startsWith(rootPath)) {
+            throw new IOException("Tar entry " + entry.getName() + " links to " + linkName + " which is outside of the target directory " + targetDirectory);
+        }
+        return target;
+    }
+
+    /**
+     * Recursively copies the given file or directory, making the copies of executable files executable by their owner
+     */
+    public static void copyRecursive(File from, File to) throws IOException {
+        if (from.isDirectory()) {
+            to.mkdirs();
+            File[] files = from.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    copyRecursive(file, new File(to, file.getName()));
+                }
+            }
+        } else {
+            to.getParentFile().mkdirs();
+            Files.copy(from, to);
+            // lets not make the copy executable by anyone else, as we can't tell who else may execute the original
+            if (from.canExecute()) {
+                to.setExecutable(true, true);
+            }
+        }
+    }
+
+    /**
+     * Recursively deletes the given file or directory
+     */
+    public static void deleteRecursive(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                deleteRecursive(child);
+            }
+        }
+        file.delete();
     }
 }
@@ -0,0 +1,287 @@
+/*
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.process.manager.support;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closeables;
+import com.google.common.io.Files;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A content addressed staging area of unpacked installation trees so that installing many instances of the
+ * same distribution only downloads and extracts it once; later installations just copy the cached tree.
+ * <p/>
+ * Tarballs are keyed by the SHA-1 of their content. Immutable URLs (maven release artifacts) are also indexed
+ * by URL so that repeat installs avoid downloading the tarball at all. Entries which have not been used for
+ * {@link #getMaxUnusedTime()} are removed by {@link #prune()}.
+ */
+public class InstallCache {
+    private static final transient Logger LOG = LoggerFactory.getLogger(InstallCache.class);
+
+    private final File cacheDir;
+    private long maxUnusedTime = 7 * 24 * 60 * 60 * 1000L;
+
+    public InstallCache(File cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    @Override
+    public String toString() {
+        return "InstallCache(" + cacheDir + ")";
+    }
+
+    /**
+     * Creates the contents of a new cache entry
+     */
+    public interface Populator {
+        void populate(File directory) throws Exception;
+    }
+
+    public File getCacheDir() {
+        return cacheDir;
+    }
+
+    public long getMaxUnusedTime() {
+        return maxUnusedTime;
+    }
+
+    /**
+     * Sets the time in millis after which an entry which has not been used is removed when pruning
+     */
+    public void setMaxUnusedTime(long maxUnusedTime) {
+        this.maxUnusedTime = maxUnusedTime;
+    }
+
+    /**
+     * Removes the entries which have not been used for the maximum unused time, along with the URL index files
+     * referring to them and any temporary directories left behind by interrupted installs.
+     *
+     * @return the number of removed entries
+     */
+    public int prune() {
+        long oldest = System.currentTimeMillis() - maxUnusedTime;
+        int answer = 0;
+        File[] entries = new File(cacheDir, "entries").listFiles();
+        if (entries != null) {
+            for (File entry : entries) {
+                if (entry.lastModified() < oldest) {
+                    LOG.info("Removing unused entry " + entry + " from the install cache");
+                    FileUtils.deleteRecursive(entry);
+                    answer++;
+                }
+            }
+        }
+        File[] urls = new File(cacheDir, "urls").listFiles();
+        if (urls != null) {
+            for (File url : urls) {
+                try {
+                    if (!entryDir(Files.toString(url, Charsets.UTF_8).trim()).isDirectory()) {
+                        url.delete();
+                    }
+                } catch (IOException e) {
+                    LOG.debug("Failed to read install cache index " + url, e);
+                }
+            }
+        }
+        File[] tmpDirs = new File(cacheDir, "tmp").listFiles();
+        if (tmpDirs != null) {
+            for (File tmpDir : tmpDirs) {
+                if (tmpDir.lastModified() < oldest) {
+                    FileUtils.deleteRecursive(tmpDir);
+                }
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Copies the unpacked contents of the tarball at the given URL into the install directory
+     */
+    public void installTarball(String url, File installDir) throws Exception {
+        FileUtils.copyRecursive(getUnpackedTarball(url), installDir);
+    }
+
+    /**
+     * Copies the unpacked contents of the given class path tarball into the install directory
+     */
+    public void installResource(ClassLoader classLoader, String resourceName, File installDir) throws Exception {
+        FileUtils.copyRecursive(getUnpackedResource(classLoader, resourceName), installDir);
+    }
+
+    /**
+     * Returns the cached directory containing the unpacked tarball at the given URL
+     */
+    public File getUnpackedTarball(final String url) throws Exception {
+        File urlIndex = null;
+        if (isImmutableUrl(url)) {
+            urlIndex = new File(cacheDir, "urls/" + sha1(url));
+            if (urlIndex.exists()) {
+                File dir = entryDir(Files.toString(urlIndex, Charsets.UTF_8).trim());
+                if (dir.isDirectory()) {
+                    LOG.debug("Using cached unpacked tarball " + dir + " for " + url);
+                    return used(dir);
+                }
+            }
+        }
+        InputStream in = new URL(url).openStream();
+        File dir;
+        try {
+            dir = getUnpackedTarball(in, url);
+        } finally {
+            Closeables.closeQuietly(in);
+        }
+        if (urlIndex != null) {
+            urlIndex.getParentFile().mkdirs();
+            Files.write(dir.getName(), urlIndex, Charsets.UTF_8);
+        }
+        return dir;
+    }
+
+    /**
+     * Returns the cached directory containing the unpacked tarball on the class path
+     */
+    public File getUnpackedResource(ClassLoader classLoader, String resourceName) throws Exception {
+        InputStream in = classLoader.getResourceAsStream(resourceName);
+        Preconditions.checkNotNull(in, "Could not find " + resourceName + " on the class path");
+        try {
+            return getUnpackedTarball(in, resourceName);
+        } finally {
+            Closeables.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Returns the cache entry for the given key, creating it with the populator if it does not yet exist.
+     * The entry is populated in a temporary directory and then renamed into place so that concurrent installs
+     * never see a partially populated entry.
+     */
+    public File getOrCreate(String key, Populator populator) throws Exception {
+        File dir = entryDir(sha1(key));
+        if (dir.isDirectory()) {
+            return used(dir);
+        }
+        File tmpDir = createTempDir();
+        try {
+            populator.populate(tmpDir);
+            return commit(tmpDir, dir);
+        } finally {
+            FileUtils.deleteRecursive(tmpDir);
+        }
+    }
+
+    // Implementation
+    //-------------------------------------------------------------------------
+
+    protected File getUnpackedTarball(InputStream in, String description) throws IOException {
+        // lets spool the tarball while computing its digest
+        File tmpDir = createTempDir();
+        try {
+            File tarball = new File(tmpDir, "install.tar.gz");
+            MessageDigest messageDigest = newDigest();
+            OutputStream out = new FileOutputStream(tarball);
+            try {
+                ByteStreams.copy(new DigestInputStream(in, messageDigest), out);
+            } finally {
+                Closeables.closeQuietly(out);
+            }
+            File dir = entryDir(toHex(messageDigest.digest()));
+            if (dir.isDirectory()) {
+                LOG.debug("Using cached unpacked tarball " + dir + " for " + description);
+                return used(dir);
+            }
+            LOG.info("Unpacking " + description + " into the install cache at " + dir);
+            File unpackDir = new File(tmpDir, "unpacked");
+            unpackDir.mkdirs();
+            FileUtils.extractTarGz(tarball, unpackDir);
+            return commit(unpackDir, dir);
+        } finally {
+            FileUtils.deleteRecursive(tmpDir);
+        }
+    }
+
+    protected File commit(File tmpDir, File dir) throws IOException {
+        dir.getParentFile().mkdirs();
+        if (!tmpDir.renameTo(dir) && !dir.isDirectory()) {
+            throw new IOException("Failed to move " + tmpDir + " to " + dir);
+        }
+        return used(dir);
+    }
+
+    /**
+     * Records the use of the entry in its modification time so that it is not pruned
+     */
+    protected File used(File dir) {
+        dir.setLastModified(System.currentTimeMillis());
+        return dir;
+    }
+
+    protected File createTempDir() throws IOException {
+        File tmpRoot = new File(cacheDir, "tmp");
+        tmpRoot.mkdirs();
+        File tmpFile = File.createTempFile("install", "", tmpRoot);
+        tmpFile.delete();
+        if (!tmpFile.mkdirs()) {
+            throw new IOException("Failed to create temporary directory " + tmpFile);
+        }
+        return tmpFile;
+    }
+
+    protected File entryDir(String digest) {
+        return new File(cacheDir, "entries/" + digest);
+    }
+
+    /**
+     * Returns true if the contents of the URL can never change, such as for maven release artifacts
+     */
+    protected static boolean isImmutableUrl(String url) {
+        return url.startsWith("mvn:") && !url.contains("SNAPSHOT");
+    }
+
+    protected static String sha1(String text) {
+        return Hashing.sha1().hashString(text, Charsets.UTF_8).toString();
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("No SHA-1 digest available: " + e, e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(String.format("%02x", b & 0xff));
+        }
+        return builder.toString();
+    }
+}
@@ -82,6 +82,22 @@ public class JarInstaller {
         copyDependencies(mainJarDependency, libDir);
     }
 
+    /**
+     * Returns the key used to cache the unpacked jar process for the given parameters or null if the
+     * resolved dependencies could change between installs, such as for SNAPSHOT or unversioned artifacts
+     */
+    public String getCacheKey(JarInstallParameters parameters) {
+        String version = parameters.getVersion();
+        if (version == null || version.length() == 0 || version.contains("SNAPSHOT")) {
+            return null;
+        }
+        return "jar:" + parameters.getGroupId() + ":" + parameters.getArtifactId() + ":" + version
+                + ":" + parameters.getExtension() + ":" + parameters.getClassifier()
+                + ":" + parameters.getMainClass()
+                + ":" + join(Arrays.asList(parameters.getOptionalDependencyPatterns()), " ")
+                + ":" + join(Arrays.asList(parameters.getExcludeDependencyFilterPatterns()), " ");
+    }
+
     /**
      * Sets the executable class name in the given jar
      */
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.process.manager.support;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.CharStreams;
+import com.google.common.io.Closeables;
+import com.google.common.io.Files;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+/**
+ * Helper methods for reading the process table directly from the Linux <code>/proc</code> file system
+ * so that we don't have to fork a launch script just to find out if a process is alive.
+ */
+public class ProcFs {
+    private static final transient Logger LOG = LoggerFactory.getLogger(ProcFs.class);
+
+    private static final File PROC_DIR = new File("/proc");
+
+    /**
+     * The USER_HZ clock ticks in which the kernel reports CPU times, as reported by <code>getconf CLK_TCK</code>
+     */
+    public static final long CLOCK_TICKS_PER_SECOND = getconf("CLK_TCK", 100);
+
+    /**
+     * The page size used to convert the RSS page count into bytes, as reported by <code>getconf PAGE_SIZE</code>
+     */
+    public static final long PAGE_SIZE = getconf("PAGE_SIZE", 4096);
+
+    /**
+     * Returns true if the /proc file system is available on this platform
+     */
+    public static boolean isAvailable() {
+        return new File(PROC_DIR, "self/stat").exists();
+    }
+
+    /**
+     * Returns true if there is a live, non zombie, process with the given pid
+     */
+    public static boolean isAlive(int pid) {
+        try {
+            Stat stat = readStat(pid);
+            return stat != null && stat.isAlive();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads and parses <code>/proc/&lt;pid&gt;/stat</code> or returns null if there is no such process
+     */
+    public static Stat readStat(int pid) throws IOException {
+        File file = new File(PROC_DIR, pid + "/stat");
+        if (!file.exists()) {
+            return null;
+        }
+        return parseStat(Files.toString(file, Charsets.US_ASCII));
+    }
+
+    /**
+     * Reads the command line of the given process or returns null if there is no such process
+     */
+    public static String readCommandLine(int pid) throws IOException {
+        File file = new File(PROC_DIR, pid + "/cmdline");
+        if (!file.exists()) {
+            return null;
+        }
+        return Files.toString(file, Charsets.UTF_8).replace('\0', ' ').trim();
+    }
+
+    /**
+     * Parses the contents of a <code>/proc/&lt;pid&gt;/stat</code> file.
+     *
+     * The second field is the executable name in parentheses which can itself contain spaces and parentheses
+     * so we split the remaining fields from the last closing parenthesis.
+     */
+    public static Stat parseStat(String text) {
+        int idx = text.lastIndexOf(')');
+        if (idx < 0) {
+            throw new IllegalArgumentException("Invalid /proc stat line: " + text);
+        }
+        String[] fields = text.substring(idx + 1).trim().split("\\s+");
+        if (fields.length < 22) {
+            throw new IllegalArgumentException("Invalid /proc stat line, only " + fields.length + " fields after the command: " + text);
+        }
+        // fields[0] is field 3 of proc(5) so utime (14) is fields[11], stime (15) is fields[12],
+        // starttime (22) is fields[19] and rss (24) is fields[21]
+        char state = fields[0].charAt(0);
+        long utime = Long.parseLong(fields[11]);
+        long stime = Long.parseLong(fields[12]);
+        long startTime = Long.parseLong(fields[19]);
+        long rssPages = Long.parseLong(fields[21]);
+        return new Stat(state, ticksToMillis(utime + stime), ticksToMillis(startTime), rssPages * PAGE_SIZE);
+    }
+
+    /**
+     * Returns the value of the given system configuration variable using <code>getconf</code>
+     * or the default value if it could not be found
+     */
+    protected static long getconf(String name, long defaultValue) {
+        if (!isAvailable()) {
+            return defaultValue;
+        }
+        try {
+            Process process = new ProcessBuilder("getconf", name).redirectErrorStream(true).start();
+            process.getOutputStream().close();
+            InputStreamReader reader = new InputStreamReader(process.getInputStream(), Charsets.US_ASCII);
+            String text;
+            try {
+                text = CharStreams.toString(reader).trim();
+            } finally {
+                Closeables.closeQuietly(reader);
+            }
+            if (process.waitFor() == 0) {
+                long answer = Long.parseLong(text);
+                if (answer > 0) {
+                    return answer;
+                }
+            }
+            LOG.debug("Could not find " + name + " using getconf: " + text);
+        } catch (Exception e) {
+            LOG.debug("Failed to run getconf " + name + ". " + e, e);
+        }
+        return defaultValue;
+    }
+
+    protected static long ticksToMillis(long ticks) {
+        return ticks * 1000 / CLOCK_TICKS_PER_SECOND;
+    }
+
+    /**
+     * The fields we use from <code>/proc/&lt;pid&gt;/stat</code>
+     */
+    public static class Stat {
+        private final char state;
+        private final long cpuTimeMillis;
+        private final long startTimeMillis;
+        private final long rssBytes;
+
+        public Stat(char state, long cpuTimeMillis, long startTimeMillis, long rssBytes) {
+            this.state = state;
+            this.cpuTimeMillis = cpuTimeMillis;
+            this.startTimeMillis = startTimeMillis;
+            this.rssBytes = rssBytes;
+        }
+
+        /**
+         * Returns false for zombie or dead processes
+         */
+        public boolean isAlive() {
+            return state != 'Z' && state != 'X' && state != 'x';
+        }
+
+        public char getState() {
+            return state;
+        }
+
+        public long getCpuTimeMillis() {
+            return cpuTimeMillis;
+        }
+
+        /**
+         * Returns the start time of the process in millis since boot, which lets us detect pid reuse
+         */
+        public long getStartTimeMillis() {
+            return startTimeMillis;
+        }
+
+        public long getRssBytes() {
+            return rssBytes;
+        }
+    }
+}
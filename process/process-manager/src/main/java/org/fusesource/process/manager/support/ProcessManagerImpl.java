@@ -17,37 +17,42 @@
 package org.fusesource.process.manager.support;
 
 import com.google.common.base.Charsets;
-import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Maps;
 import com.google.common.io.Files;
-import com.google.common.io.InputSupplier;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.fusesource.process.manager.Installation;
 import org.fusesource.process.manager.JarInstallParameters;
 import org.fusesource.process.manager.ProcessController;
+import org.fusesource.process.manager.ProcessInfo;
 import org.fusesource.process.manager.ProcessManager;
 import org.fusesource.process.manager.config.JsonHelper;
 import org.fusesource.process.manager.config.ProcessConfig;
-import org.fusesource.process.manager.support.command.CommandFailedException;
-import org.fusesource.process.manager.support.command.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.URL;
 import java.util.SortedMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class ProcessManagerImpl implements ProcessManager {
+    private static final transient Logger LOG = LoggerFactory.getLogger(ProcessManagerImpl.class);
+
     private Executor executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setDaemon(true).setNameFormat("fuse-process-manager-%s").build());
     private File storageLocation;
     private int lastId = 0;
-    private final Duration untarTimeout = Duration.valueOf("1h");
-    private SortedMap<Integer, Installation> installations = Maps.newTreeMap();
+    private SortedMap<Integer, Installation> installations = new ConcurrentSkipListMap<Integer, Installation>();
+    private InstallCache installCache;
+    private long monitorInterval = 5000;
+    private ProcessMonitor monitor;
+    private ScheduledExecutorService monitorExecutor;
 
     public ProcessManagerImpl() {
     }
@@ -85,6 +90,16 @@ public class ProcessManagerImpl implements ProcessManager {
             }
         }
 
+        pruneInstallCache();
+        startMonitor();
+    }
+
+    public void destroy() {
+        if (monitorExecutor != null) {
+            monitorExecutor.shutdownNow();
+            monitorExecutor = null;
+        }
+        monitor = null;
     }
 
 
@@ -103,6 +118,18 @@ public class ProcessManagerImpl implements ProcessManager {
         return ImmutableMap.copyOf(installations);
     }
 
+    @Override
+    public ProcessInfo getProcessInfo(int id) {
+        ProcessMonitor processMonitor = monitor;
+        return processMonitor != null ? processMonitor.getProcessInfo(id) : null;
+    }
+
+    @Override
+    public ProcessInfo refreshProcessInfo(Installation installation) {
+        ProcessMonitor processMonitor = monitor;
+        return processMonitor != null ? processMonitor.refresh(installation) : null;
+    }
+
     @Override
     public Installation install(final String url, URL controllerJson) throws Exception {
         InstallScript installScript = new InstallScript() {
@@ -119,7 +146,7 @@ public class ProcessManagerImpl implements ProcessManager {
     public Installation installJar(final JarInstallParameters parameters) throws Exception {
         InstallScript installScript = new InstallScript() {
             @Override
-            public void doInstall(ProcessConfig config, int id, File installDir) throws Exception {
+            public void doInstall(final ProcessConfig config, final int id, File installDir) throws Exception {
                 String name = parameters.getGroupId() + ":" + parameters.getArtifactId();
                 String version = parameters.getVersion();
                 if (!Strings.isNullOrEmpty(version)) {
@@ -128,17 +155,7 @@ public class ProcessManagerImpl implements ProcessManager {
                 config.setName(name);
 
                 // lets untar the process launcher
-                String resourceName = "process-launcher.tar.gz";
-                final InputStream in = getClass().getClassLoader().getResourceAsStream(resourceName);
-                Preconditions.checkNotNull(in, "Could not find " + resourceName + " on the file system");
-                File tmpFile = File.createTempFile("process-launcher", ".tar.gz");
-                Files.copy(new InputSupplier<InputStream>() {
-                    @Override
-                    public InputStream getInput() throws IOException {
-                        return in;
-                    }
-                }, tmpFile);
-                FileUtils.extractTar(tmpFile, installDir, untarTimeout, executor);
+                getInstallCache().installResource(getClass().getClassLoader(), "process-launcher.tar.gz", installDir);
 
                 // lets generate the etc configs
                 File etc = new File(installDir, "etc");
@@ -146,8 +163,20 @@ public class ProcessManagerImpl implements ProcessManager {
                 Files.write("", new File(etc, "config.properties"), Charsets.UTF_8);
                 Files.write("", new File(etc, "jvm.config"), Charsets.UTF_8);
 
-                JarInstaller installer = new JarInstaller(executor);
-                installer.unpackJarProcess(config, id, installDir, parameters);
+                final JarInstaller installer = new JarInstaller(executor);
+                String cacheKey = installer.getCacheKey(parameters);
+                if (cacheKey == null) {
+                    installer.unpackJarProcess(config, id, installDir, parameters);
+                } else {
+                    // lets resolve the jar and its dependencies once and reuse them for later installs
+                    File cachedDir = getInstallCache().getOrCreate(cacheKey, new InstallCache.Populator() {
+                        @Override
+                        public void populate(File directory) throws Exception {
+                            installer.unpackJarProcess(config, id, directory, parameters);
+                        }
+                    });
+                    FileUtils.copyRecursive(cachedDir, installDir);
+                }
             }
         };
         return installViaScript(parameters.getControllerJson(), installScript);
@@ -171,9 +200,44 @@ public class ProcessManagerImpl implements ProcessManager {
         this.executor = executor;
     }
 
+    public synchronized InstallCache getInstallCache() {
+        if (installCache == null) {
+            installCache = new InstallCache(new File(storageLocation, ".cache"));
+        }
+        return installCache;
+    }
+
+    public synchronized void setInstallCache(InstallCache installCache) {
+        this.installCache = installCache;
+    }
+
+    public long getMonitorInterval() {
+        return monitorInterval;
+    }
+
+    /**
+     * Sets the interval in millis at which the process table is sampled; a value of zero or less disables the monitor
+     */
+    public void setMonitorInterval(long monitorInterval) {
+        this.monitorInterval = monitorInterval;
+    }
+
     // Implementation
     //-------------------------------------------------------------------------
 
+    /**
+     * Starts the background monitor which samples the process table of all installations natively via /proc
+     * if its available on this platform
+     */
+    protected void startMonitor() {
+        destroy();
+        if (monitorInterval > 0 && ProcFs.isAvailable()) {
+            monitor = new ProcessMonitor(this);
+            monitorExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setDaemon(true).setNameFormat("fuse-process-monitor-%s").build());
+            monitorExecutor.scheduleWithFixedDelay(monitor, 0, monitorInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
     protected Installation installViaScript(URL controllerJson, InstallScript installScript) throws Exception {
         int id = createNextId();
         File installDir = createInstallDir(id);
@@ -185,21 +249,24 @@ public class ProcessManagerImpl implements ProcessManager {
 
         Installation installation = createInstallation(id, installDir, config);
         installation.getController().install();
+        refreshProcessInfo(installation);
+        pruneInstallCache();
         return installation;
     }
 
-    protected void untarTarball(final String url, File installDir) throws IOException, CommandFailedException {
-        // copy the URL to the install dir
-        // TODO should we use a temp file?
-        File tarball = new File(installDir, "install.tar.gz");
-        Files.copy(new InputSupplier<InputStream>() {
-            @Override
-            public InputStream getInput() throws IOException {
-                return new URL(url).openStream();
-            }
-        }, tarball);
+    /**
+     * Removes the unused entries of the install cache, which is otherwise never cleaned up
+     */
+    protected void pruneInstallCache() {
+        try {
+            getInstallCache().prune();
+        } catch (Exception e) {
+            LOG.warn("Failed to prune the install cache " + getInstallCache() + ": " + e, e);
+        }
+    }
 
-        FileUtils.extractTar(tarball, installDir, untarTimeout, executor);
+    protected void untarTarball(final String url, File installDir) throws Exception {
+        getInstallCache().installTarball(url, installDir);
     }
 
     protected ProcessConfig loadControllerJson(URL controllerJson) throws IOException {
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.process.manager.support;
+
+import org.fusesource.process.manager.Installation;
+import org.fusesource.process.manager.ProcessInfo;
+import org.fusesource.process.manager.ProcessManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Periodically samples the process table entry of every managed process via the /proc file system
+ * and caches the results so that listing processes does not need to fork any launch scripts.
+ */
+public class ProcessMonitor implements Runnable {
+    private static final transient Logger LOG = LoggerFactory.getLogger(ProcessMonitor.class);
+
+    private final ProcessManager processManager;
+    private final Map<Integer, Sample> samples = new ConcurrentHashMap<Integer, Sample>();
+
+    public ProcessMonitor(ProcessManager processManager) {
+        this.processManager = processManager;
+    }
+
+    @Override
+    public String toString() {
+        return "ProcessMonitor(" + processManager + ")";
+    }
+
+    @Override
+    public void run() {
+        try {
+            poll();
+        } catch (Throwable e) {
+            // lets not kill the scheduler thread
+            LOG.warn("Failed to poll the process table: " + e, e);
+        }
+    }
+
+    /**
+     * Returns the last sampled information for the given installation id or null if it has not been sampled yet
+     */
+    public ProcessInfo getProcessInfo(int id) {
+        Sample sample = samples.get(id);
+        return sample != null ? sample.info : null;
+    }
+
+    /**
+     * Samples all the current installations
+     */
+    public void poll() {
+        Set<Integer> ids = new HashSet<Integer>();
+        for (Installation installation : processManager.listInstallations()) {
+            ids.add(installation.getId());
+            refresh(installation);
+        }
+        samples.keySet().retainAll(ids);
+    }
+
+    /**
+     * Samples a single installation, updating the cache and returning the new information
+     */
+    public ProcessInfo refresh(Installation installation) {
+        int id = installation.getId();
+        long now = System.currentTimeMillis();
+        Sample previous = samples.get(id);
+        ProcessInfo info;
+        try {
+            Integer pid = installation.getController().getPid();
+            ProcFs.Stat stat = pid != null ? ProcFs.readStat(pid) : null;
+            if (stat == null || !stat.isAlive()) {
+                info = ProcessInfo.notRunning(pid, now);
+            } else {
+                String commandLine = null;
+                double cpuPercent = 0;
+                if (previous != null && pid.equals(previous.info.getPid()) && previous.startTimeMillis == stat.getStartTimeMillis()) {
+                    // same process as last time so we can reuse the command line and compute the cpu usage
+                    commandLine = previous.info.getCommandLine();
+                    long elapsed = now - previous.info.getTimestamp();
+                    if (elapsed > 0) {
+                        cpuPercent = 100.0 * (stat.getCpuTimeMillis() - previous.info.getCpuTimeMillis()) / elapsed;
+                    }
+                }
+                if (commandLine == null) {
+                    commandLine = ProcFs.readCommandLine(pid);
+                }
+                info = new ProcessInfo(pid, true, stat.getState(), commandLine, stat.getRssBytes(),
+                        stat.getCpuTimeMillis(), cpuPercent, now);
+                samples.put(id, new Sample(info, stat.getStartTimeMillis()));
+                return info;
+            }
+        } catch (Exception e) {
+            LOG.debug("Failed to sample " + installation + ". " + e, e);
+            info = ProcessInfo.notRunning(null, now);
+        }
+        samples.put(id, new Sample(info, 0));
+        return info;
+    }
+
+    private static class Sample {
+        private final ProcessInfo info;
+        private final long startTimeMillis;
+
+        private Sample(ProcessInfo info, long startTimeMillis) {
+            this.info = info;
+            this.startTimeMillis = startTimeMillis;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.process.manager.support;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.zip.GZIPOutputStream;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+public class FileUtilsTest {
+    private File targetDirectory = new File("target/file-utils-test/install");
+
+    @Before
+    public void setUp() throws Exception {
+        FileUtils.deleteRecursive(targetDirectory.getParentFile());
+        targetDirectory.mkdirs();
+    }
+
+    @Test
+    public void extractsLinksInsideTheTargetDirectory() throws Exception {
+        byte[] tarball = createTarball("bin/launcher", "#!/bin/sh", "bin/run", TarArchiveEntry.LF_SYMLINK, "launcher");
+        FileUtils.extractTarGz(new ByteArrayInputStream(tarball), targetDirectory);
+
+        assertEquals("#!/bin/sh", Files.toString(new File(targetDirectory, "bin/run"), Charsets.UTF_8));
+    }
+
+    @Test
+    public void rejectsRelativeSymbolicLinkOutsideTheTargetDirectory() throws Exception {
+        assertRejected(createTarball("bin/launcher", "#!/bin/sh", "bin/passwd", TarArchiveEntry.LF_SYMLINK, "../../etc/passwd"));
+    }
+
+    @Test
+    public void rejectsAbsoluteSymbolicLink() throws Exception {
+        assertRejected(createTarball("bin/launcher", "#!/bin/sh", "bin/passwd", TarArchiveEntry.LF_SYMLINK, "/etc/passwd"));
+    }
+
+    @Test
+    public void rejectsHardLinkOutsideTheTargetDirectory() throws Exception {
+        assertRejected(createTarball("bin/launcher", "#!/bin/sh", "bin/passwd", TarArchiveEntry.LF_LINK, "../../etc/passwd"));
+    }
+
+    @Test
+    public void copiesExecutableBitsOnlyOfExecutableFiles() throws Exception {
+        File from = new File(targetDirectory.getParentFile(), "from");
+        File launcher = new File(from, "bin/launcher");
+        File config = new File(from, "etc/config.properties");
+        launcher.getParentFile().mkdirs();
+        config.getParentFile().mkdirs();
+        Files.write("#!/bin/sh", launcher, Charsets.UTF_8);
+        Files.write("", config, Charsets.UTF_8);
+        launcher.setExecutable(true, true);
+        config.setExecutable(false, false);
+
+        FileUtils.copyRecursive(from, targetDirectory);
+        assertTrue(new File(targetDirectory, "bin/launcher").canExecute());
+        assertFalse(new File(targetDirectory, "etc/config.properties").canExecute());
+        assertEquals("#!/bin/sh", Files.toString(new File(targetDirectory, "bin/launcher"), Charsets.UTF_8));
+    }
+
+    protected void assertRejected(byte[] tarball) throws Exception {
+        try {
+            FileUtils.extractTarGz(new ByteArrayInputStream(tarball), targetDirectory);
+            fail("Should have rejected the link outside of " + targetDirectory);
+        } catch (IOException e) {
+            assertTrue("Unexpected message: " + e.getMessage(), e.getMessage().contains("outside of the target directory"));
+        }
+        assertFalse("Should not have copied the link target", new File(targetDirectory, "bin/passwd").exists());
+    }
+
+    /**
+     * Creates a gzipped tarball with a regular file and a link
+     */
+    protected byte[] createTarball(String fileName, String content, String linkName, byte linkFlag, String linkTarget) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        TarArchiveOutputStream tar = new TarArchiveOutputStream(new GZIPOutputStream(buffer));
+        byte[] data = content.getBytes(Charsets.UTF_8);
+        TarArchiveEntry fileEntry = new TarArchiveEntry(fileName);
+        fileEntry.setSize(data.length);
+        tar.putArchiveEntry(fileEntry);
+        tar.write(data);
+        tar.closeArchiveEntry();
+
+        TarArchiveEntry linkEntry = new TarArchiveEntry(linkName, linkFlag);
+        linkEntry.setLinkName(linkTarget);
+        tar.putArchiveEntry(linkEntry);
+        tar.closeArchiveEntry();
+        tar.close();
+        return buffer.toByteArray();
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.process.manager.support;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+public class InstallCacheTest {
+    private File cacheDirectory = new File("target/install-cache-test/cache");
+    private InstallCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        FileUtils.deleteRecursive(cacheDirectory.getParentFile());
+        cache = new InstallCache(cacheDirectory);
+    }
+
+    @Test
+    public void prunesEntriesWhichHaveNotBeenUsed() throws Exception {
+        File unused = createEntry("unused");
+        File recent = createEntry("recent");
+        File urlIndex = new File(cacheDirectory, "urls/" + InstallCache.sha1("mvn:org.foo/foo/1.0/tar.gz"));
+        urlIndex.getParentFile().mkdirs();
+        Files.write(unused.getName(), urlIndex, Charsets.UTF_8);
+        unused.setLastModified(System.currentTimeMillis() - 2 * cache.getMaxUnusedTime());
+
+        assertEquals(1, cache.prune());
+        assertFalse(unused.exists());
+        assertFalse("Should have removed the index of the pruned entry", urlIndex.exists());
+        assertTrue(recent.isDirectory());
+    }
+
+    @Test
+    public void usingAnEntryKeepsIt() throws Exception {
+        File entry = createEntry("used");
+        entry.setLastModified(System.currentTimeMillis() - 2 * cache.getMaxUnusedTime());
+
+        assertEquals(entry, cache.getOrCreate("used", null));
+        assertEquals(0, cache.prune());
+        assertTrue(entry.isDirectory());
+    }
+
+    protected File createEntry(String key) throws Exception {
+        return cache.getOrCreate(key, new InstallCache.Populator() {
+            @Override
+            public void populate(File directory) throws Exception {
+                Files.write("content", new File(directory, "file.txt"), Charsets.UTF_8);
+            }
+        });
+    }
+}
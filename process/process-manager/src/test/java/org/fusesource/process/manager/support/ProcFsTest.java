@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) FuseSource, Inc.
+ * http://fusesource.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.process.manager.support;
+
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+public class ProcFsTest {
+
+    @Test
+    public void parseStatWithSpacesInCommand() throws Exception {
+        String line = "4242 (java (main) x) S 1 4242 4242 0 -1 4202752 51 0 0 0 250 50 0 0 20 0 30 0 1500 3000000000 2048 18446744073709551615";
+        ProcFs.Stat stat = ProcFs.parseStat(line);
+
+        assertEquals('S', stat.getState());
+        assertTrue("Should be alive", stat.isAlive());
+        assertEquals(300 * 1000 / ProcFs.CLOCK_TICKS_PER_SECOND, stat.getCpuTimeMillis());
+        assertEquals(1500 * 1000 / ProcFs.CLOCK_TICKS_PER_SECOND, stat.getStartTimeMillis());
+        assertEquals(2048 * ProcFs.PAGE_SIZE, stat.getRssBytes());
+    }
+
+    @Test
+    public void systemConfigurationIsAvailable() throws Exception {
+        assertTrue("CLK_TCK should be positive", ProcFs.CLOCK_TICKS_PER_SECOND > 0);
+        assertTrue("PAGE_SIZE should be positive", ProcFs.PAGE_SIZE > 0);
+        assertEquals(42, ProcFs.getconf("NO_SUCH_CONFIGURATION_VARIABLE", 42));
+    }
+
+    @Test
+    public void zombieIsNotAlive() throws Exception {
+        String line = "17 (launcher) Z 1 17 17 0 -1 4202752 0 0 0 0 0 0 0 0 20 0 1 0 99 0 0 18446744073709551615";
+        assertFalse("Zombie should not be alive", ProcFs.parseStat(line).isAlive());
+    }
+}